@@ -17,7 +17,10 @@
  */
 package org.apache.abdera2.activities.io.gson;
 
+import java.io.IOException;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -66,7 +69,9 @@ import org.apache.abdera2.activities.model.objects.VersionObject;
 import org.apache.abdera2.activities.model.objects.VideoObject;
 import org.joda.time.DateTime;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonElement;
@@ -74,6 +79,9 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * (De)serialization of ASBase object
@@ -88,6 +96,9 @@ final class BaseAdapter
   private final Map<String,Class<? extends ASObject.Builder>> objsmap =
     new ConcurrentHashMap<String,Class<? extends ASObject.Builder>>();
   
+  private final Map<Class<?>,Optional<Constructor<? extends ASObject.Builder>>> ctors =
+    new ConcurrentHashMap<Class<?>,Optional<Constructor<? extends ASObject.Builder>>>();
+  
   public BaseAdapter() {
     initPropMap();
   }
@@ -230,40 +241,13 @@ final class BaseAdapter
     JsonDeserializationContext context) 
       throws JsonParseException {
     JsonObject obj = (JsonObject)el;
-    ASBase.Builder<?,?> builder;
-    if (type == Collection.class)
-      builder = Collection.makeCollection();
-    else if (type == Activity.class)
-      builder = Activity.makeActivity();
-    else if (type == MediaLink.class)
-      builder = MediaLink.makeMediaLink();
-    else if (type == PlaceObject.class)
-      builder = PlaceObject.makePlace();
-    else if (type == Mood.class)
-      builder = Mood.makeMood();
-    else if (type == Address.class)
-      builder = Address.makeAddress();
-    else {
+    ASBase.Builder<?,?> builder = builder(type);
+    if (builder == null) {
       JsonPrimitive ot = obj.getAsJsonPrimitive("objectType");
-      if (ot != null) {
-        String ots = ot.getAsString();
-        Class<? extends ASObject.Builder> _class = objsmap.get(ots);
-        if (_class != null) {
-          builder = Discover.locate(_class, _class.getName());
-          try {
-            builder = _class.getConstructor(String.class).newInstance(ots);
-          } catch (Throwable t) {}
-          
-        } else builder = ASObject.makeObject(ots);
-      } else {
-        if (obj.has("verb") && (obj.has("actor") || obj.has("object") || obj.has("target"))) {
-          builder = Activity.makeActivity();
-        } else if (obj.has("items")) {
-          builder = Collection.makeCollection();
-        } else {
-          builder = ASObject.makeObject(); // anonymous
-        }
-      }
+      builder = builder(
+        ot != null ? ot.getAsString() : null, 
+        obj.has("verb") && (obj.has("actor") || obj.has("object") || obj.has("target")), 
+        obj.has("items"));
     }
     for (Entry<String,JsonElement> entry : obj.entrySet()) {
       String name = entry.getKey();
@@ -298,6 +282,173 @@ final class BaseAdapter
     return builder.get();
   }
 
+  /**
+   * Returns the builder for the given type, or null if the type of 
+   * builder can only be determined from the properties of the object
+   */
+  private static ASBase.Builder<?,?> builder(Type type) {
+    if (type == Collection.class)
+      return Collection.makeCollection();
+    else if (type == Activity.class)
+      return Activity.makeActivity();
+    else if (type == MediaLink.class)
+      return MediaLink.makeMediaLink();
+    else if (type == PlaceObject.class)
+      return PlaceObject.makePlace();
+    else if (type == Mood.class)
+      return Mood.makeMood();
+    else if (type == Address.class)
+      return Address.makeAddress();
+    else return null;
+  }
+  
+  private ASBase.Builder<?,?> builder(
+    String objectType, 
+    boolean activity, 
+    boolean items) {
+    ASBase.Builder<?,?> builder;
+    if (objectType != null) {
+      Class<? extends ASObject.Builder> _class = objsmap.get(objectType);
+      if (_class != null) {
+        builder = null;
+        Optional<Constructor<? extends ASObject.Builder>> ctor = constructor(_class);
+        if (ctor.isPresent()) {
+          try {
+            builder = ctor.get().newInstance(objectType);
+          } catch (Throwable t) {}
+        }
+        if (builder == null)
+          builder = Discover.locate(_class, _class.getName());
+      } else builder = ASObject.makeObject(objectType);
+    } else if (activity) {
+      builder = Activity.makeActivity();
+    } else if (items) {
+      builder = Collection.makeCollection();
+    } else {
+      builder = ASObject.makeObject(); // anonymous
+    }
+    return builder;
+  }
+  
+  /**
+   * Builder classes are instantiated for every typed object read, so 
+   * the (String) constructor used is looked up only once per class
+   */
+  @SuppressWarnings("unchecked")
+  private Optional<Constructor<? extends ASObject.Builder>> constructor(
+    Class<? extends ASObject.Builder> _class) {
+    Optional<Constructor<? extends ASObject.Builder>> ctor = ctors.get(_class);
+    if (ctor == null) {
+      try {
+        ctor = Optional.<Constructor<? extends ASObject.Builder>>of(
+          _class.getConstructor(String.class));
+      } catch (Throwable t) {
+        ctor = Optional.absent();
+      }
+      ctors.put(_class, ctor);
+    }
+    return ctor;
+  }
+  
+  /**
+   * Reads an object directly from the token stream, without first 
+   * building the JsonElement tree for it. When the type of object is 
+   * known up front the properties are passed straight to its builder; 
+   * otherwise the converted property values are held until the end of 
+   * the object, when the objectType and the properties present are 
+   * used to select the builder just as deserialize does. Nested 
+   * ASBase values are read the same way; all other values are handed to
+   * the Gson adapter registered for the property type.
+   */
+  public ASBase read(
+    JsonReader reader, 
+    Type type, 
+    Gson gson) 
+      throws IOException {
+    ASBase.Builder<?,?> builder = builder(type);
+    Map<String,Object> props = 
+      builder == null ? new LinkedHashMap<String,Object>() : null;
+    String objectType = null;
+    reader.beginObject();
+    while (reader.hasNext()) {
+      String name = reader.nextName();
+      if (name.equalsIgnoreCase("objectType")) {
+        if (name.equals("objectType") && 
+            (reader.peek() == JsonToken.STRING || 
+             reader.peek() == JsonToken.NUMBER))
+          objectType = reader.nextString();
+        else reader.skipValue();
+        continue;
+      }
+      Object val = readValue(reader, map.get(name), gson);
+      if (val == null) continue;
+      if (builder != null)
+        builder.set(name, val);
+      else props.put(name, val);
+    }
+    reader.endObject();
+    if (builder == null) {
+      builder = builder(
+        objectType, 
+        props.containsKey("verb") && 
+          (props.containsKey("actor") || 
+           props.containsKey("object") || 
+           props.containsKey("target")),
+        props.containsKey("items"));
+      for (Map.Entry<String,Object> entry : props.entrySet())
+        builder.set(entry.getKey(), entry.getValue());
+    }
+    return builder.get();
+  }
+  
+  /**
+   * Reads the value of the named property, converting it according to 
+   * the property type map
+   */
+  Object readValue(
+    JsonReader reader, 
+    String name, 
+    Gson gson) 
+      throws IOException {
+    return readValue(reader, map.get(name), gson);
+  }
+  
+  private Object readValue(
+    JsonReader reader, 
+    Class<?> _class, 
+    Gson gson) 
+      throws IOException {
+    switch(reader.peek()) {
+      case BEGIN_OBJECT:
+        if (_class == null || ASBase.class.isAssignableFrom(_class))
+          return read(reader, _class != null ? _class : ASObject.class, gson);
+        return gson.getAdapter(_class).read(reader);
+      case BEGIN_ARRAY:
+        ImmutableList.Builder<Object> list = ImmutableList.builder();
+        reader.beginArray();
+        while (reader.hasNext()) {
+          Object val = readValue(reader, _class, gson);
+          if (val != null) list.add(val);
+        }
+        reader.endArray();
+        return list.build();
+      case NULL:
+        reader.nextNull();
+        return null;
+      default:
+        if (_class != null)
+          return gson.getAdapter(_class).read(reader);
+        switch(reader.peek()) {
+          case BOOLEAN:
+            return reader.nextBoolean();
+          case NUMBER:
+            return new LazilyParsedNumber(reader.nextString());
+          default:
+            return reader.nextString();
+        }
+    }
+  }
+
   private void processArray(
     JsonArray arr, 
     Class<?> _class, 
@@ -17,10 +17,12 @@
  */
 package org.apache.abdera2.activities.io.gson;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
 import java.util.Date;
 
@@ -36,9 +38,11 @@ import org.apache.abdera2.common.lang.Lang;
 import org.apache.abdera2.common.templates.Template;
 import org.apache.abdera2.activities.model.ASBase;
 import org.apache.abdera2.activities.model.ASObject;
+import org.apache.abdera2.activities.model.AbstractCollectionReader;
 import org.apache.abdera2.activities.model.AbstractCollectionWriter;
 import org.apache.abdera2.activities.model.Activity;
 import org.apache.abdera2.activities.model.Collection;
+import org.apache.abdera2.activities.model.CollectionReader;
 import org.apache.abdera2.activities.model.CollectionWriter;
 import org.apache.abdera2.activities.model.IO;
 import org.apache.abdera2.activities.model.MediaLink;
@@ -51,7 +55,12 @@ import org.apache.abdera2.activities.model.objects.PlaceObject;
 import com.google.common.collect.Multimap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
 
 @SuppressWarnings("unchecked")
 public class GsonIO extends IO {
@@ -115,10 +124,12 @@ public class GsonIO extends IO {
   }
   
   private final Gson gson;
+  private final BaseAdapter asbs;
   
   GsonIO(Builder builder, BaseAdapter asbs, Gson gson) {
     super(builder);
     this.gson = gson;
+    this.asbs = asbs;
   }
   
   public String write(ASBase base) {
@@ -129,44 +140,73 @@ public class GsonIO extends IO {
     gson.toJson(base, writer);
   }
 
+  /**
+   * Reads the document straight from the token stream rather than 
+   * through Gson's tree based deserialization, so that large documents 
+   * are not held in memory twice. Errors are reported the same way 
+   * Gson.fromJson reports them.
+   */
+  private <T extends ASBase>T read(Reader in, Class<?> type) {
+    JsonReader reader = new JsonReader(in);
+    reader.setLenient(true);
+    try {
+      try {
+        if (reader.peek() == JsonToken.NULL)
+          return null;
+      } catch (EOFException e) {
+        return null; // empty document
+      }
+      T t = (T)asbs.read(reader, type, gson);
+      if (reader.peek() != JsonToken.END_DOCUMENT)
+        throw new JsonIOException("JSON document was not fully consumed.");
+      return t;
+    } catch (MalformedJsonException e) {
+      throw new JsonSyntaxException(e);
+    } catch (IllegalStateException e) {
+      throw new JsonSyntaxException(e);
+    } catch (IOException e) {
+      throw new JsonIOException(e);
+    }
+  }
+
   public <T extends ASBase>T read(Reader reader) {
-    return gson.<T>fromJson(reader, ASBase.class);
+    return this.<T>read(reader, ASBase.class);
   }
   
   public <T extends ASBase>T read(String json) {
-    return gson.<T>fromJson(json, ASBase.class);
+    return this.<T>read(new StringReader(json), ASBase.class);
   }
   
   public Activity readActivity(Reader reader) {
-    return gson.fromJson(reader, Activity.class);
+    return read(reader, Activity.class);
   }
   
   public Activity readActivity(String json) {
-    return gson.fromJson(json, Activity.class);
+    return read(new StringReader(json), Activity.class);
   }
   
   public <T extends ASObject>Collection<T> readCollection(Reader reader) {
-    return gson.fromJson(reader, Collection.class);
+    return read(reader, Collection.class);
   }
   
   public <T extends ASObject>Collection<T> readCollection(String json) {
-    return gson.fromJson(json, Collection.class);
+    return read(new StringReader(json), Collection.class);
   }
   
   public <T extends ASObject>T readObject(Reader reader) {
-    return gson.<T>fromJson(reader, ASObject.class);
+    return this.<T>read(reader, ASObject.class);
   }
   
   public <T extends ASObject>T readObject(String json) {
-    return gson.<T>fromJson(json, ASObject.class);
+    return this.<T>read(new StringReader(json), ASObject.class);
   }
   
   public MediaLink readMediaLink(Reader reader) {
-    return gson.fromJson(reader, MediaLink.class);
+    return read(reader, MediaLink.class);
   }
   
   public MediaLink readMediaLink(String json) {
-    return gson.fromJson(json, MediaLink.class);
+    return read(new StringReader(json), MediaLink.class);
   }
   
   public void writeCollection(
@@ -219,6 +259,83 @@ public class GsonIO extends IO {
     return new GsonCollectionWriter(gson,out, autoclose);
   }
   
+  public <T extends ASObject>CollectionReader<T> getCollectionReader(Reader in) {
+    return new GsonCollectionReader<T>(asbs, gson, in, autoclose);
+  }
+  
+  private static class GsonCollectionReader<T extends ASObject>
+    extends AbstractCollectionReader<T> {
+    private final JsonReader reader;
+    private final BaseAdapter asbs;
+    private final Gson gson;
+    private final boolean autoclose;
+    private boolean _items = false;
+    
+    GsonCollectionReader(BaseAdapter asbs, Gson gson, Reader in, boolean autoclose) {
+      this.asbs = asbs;
+      this.gson = gson;
+      this.autoclose = autoclose;
+      this.reader = new JsonReader(in);
+      reader.setLenient(true);
+      try {
+        reader.beginObject();
+        readHeader();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    
+    /**
+     * Reads properties up to the start of the items array or the 
+     * end of the Collection
+     */
+    private void readHeader() throws IOException {
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (name.equals("items") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+          reader.beginArray();
+          _items = true;
+          return;
+        } else if (name.equalsIgnoreCase("objectType")) {
+          reader.skipValue();
+        } else {
+          header(name, asbs.readValue(reader, name, gson));
+        }
+      }
+      reader.endObject();
+      if (autoclose)
+        close();
+    }
+    
+    @SuppressWarnings("unchecked")
+    protected T readItem() {
+      try {
+        while (_items) {
+          if (reader.hasNext()) {
+            Object item = asbs.readValue(reader, "items", gson);
+            if (item instanceof ASObject)
+              return (T)item;
+          } else {
+            reader.endArray();
+            _items = false;
+            readHeader();
+          }
+        }
+        return null;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    
+    public void close() {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+  
   private static class GsonCollectionWriter
     extends AbstractCollectionWriter {
     private final JsonWriter writer;
@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
@@ -46,10 +47,14 @@ import static com.google.common.base.Preconditions.*;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 
 import static com.google.common.collect.Maps.filterEntries;
@@ -86,15 +91,82 @@ public class ASBase
     }    
   }
   
+  /**
+   * Registered factories and those created from constructors are held
+   * with weak keys so that the classes can still be unloaded. The 
+   * constructor factories refer back to their class, so their values are 
+   * soft; they are simply looked up again if collected.
+   */
+  private static final ConcurrentMap<Class<?>,Function<Map<String,Object>,?>> factories =
+    new MapMaker().weakKeys().makeMap();
+  
+  private static final LoadingCache<Class<?>,Function<Map<String,Object>,?>> constructors =
+    CacheBuilder.newBuilder()
+      .weakKeys()
+      .softValues()
+      .build(
+        new CacheLoader<Class<?>,Function<Map<String,Object>,?>>() {
+          public Function<Map<String,Object>,?> load(Class<?> _class) {
+            return constructorFactory(_class);
+          }
+        });
+  
+  /**
+   * Registers the factory used to create instances of the given ASBase 
+   * or ASBase.Builder class from a map of properties. Types that do 
+   * not register a factory are created by reflectively invoking their 
+   * public (Map) constructor, which is looked up once per class.
+   */
+  public static <T>void registerFactory(
+    Class<T> _class, 
+    Function<Map<String,Object>,? extends T> factory) {
+      factories.put(checkNotNull(_class), checkNotNull(factory));
+  }
+  
+  /**
+   * Returns the factory used to create instances of the given ASBase 
+   * or ASBase.Builder class from a map of properties
+   */
+  public static <T>Function<Map<String,Object>,T> factory(
+    Class<T> _class) {
+      Function<Map<String,Object>,?> factory = factories.get(_class);
+      if (factory == null)
+        factory = constructors.getUnchecked(_class);
+      return (Function<Map<String,Object>,T>)factory;
+  }
+  
+  private static <T>Function<Map<String,Object>,T> constructorFactory(
+    final Class<T> _class) {
+      final Constructor<T> c;
+      try {
+        c = _class.getConstructor(Map.class);
+        c.setAccessible(true);
+      } catch (final Throwable t) {
+        // report the failure when the factory is used, as before
+        return new Function<Map<String,Object>,T>() {
+          public T apply(Map<String,Object> input) {
+            throw ExceptionHelper.propogate(t);
+          }
+        };
+      }
+      return new Function<Map<String,Object>,T>() {
+        public T apply(Map<String,Object> input) {
+          try {
+            return c.newInstance(input);
+          } catch (Throwable t) {
+            throw ExceptionHelper.propogate(t);
+          }
+        }
+      };
+  }
+  
   public static <X extends ASBase, M extends Builder<X,M>>Function<Object[],M> createBuilder(
       final Class<M> _m) {
       return new Function<Object[],M>() {
         public M apply(Object[] input) {
           try {
             if (input != null) {
-              Constructor<M> c = _m.getConstructor(Map.class);
-              c.setAccessible(true);
-              return c.newInstance(input);
+              return factory(_m).apply((Map<String,Object>)input[0]);
             } else {
               return _m.newInstance();
             }
@@ -110,15 +182,15 @@ public class ASBase
 
     protected final ImmutableMap.Builder<String,Object> map = 
       ImmutableMap.builder();
-    private final Function<Object[],X> con;
-    private final Function<Object[],M> bld;
+    private final Class<X> _class;
+    private final Class<M> _builder;
     private boolean experimental = false; // true if experimental extensions have been enabled on this builder
     private ImmutableMultimap.Builder<String, IRI> links = ImmutableMultimap.builder();
     private boolean y = false;
     
     protected Builder(Class<X> _class, Class<M> _builder) {
-      con = createInstance(_class, Map.class);
-      bld = createBuilder(_builder);
+      this._class = _class;
+      this._builder = _builder;
     }
         
     protected Builder(Map<String,Object> map,Class<X> _class, Class<M> _builder) {
@@ -275,28 +347,28 @@ public class ASBase
     }
     public X get() {
       preGet();
-      return con.apply(array(map.build()));
+      return factory(_class).apply(map.build());
     }
     public <N>N extend(Class<N> as) {
       checkArgument(as.isInterface(),"Extension is not an interface!");
       return (N) Extra.extendBuilder(this,as);
     }
     public M template() {
-      return bld.apply(array(map.build()));
+      return factory(_builder).apply(map.build());
     }
   }
 
   protected final Map<String,Object> exts;
-  private final transient Function<Object[],?> builder;
+  private final Class<?> builder;
   
   public ASBase(Map<String,Object> map) {
     this.exts = map;
-    this.builder = createBuilder(ASBuilder.class);
+    this.builder = ASBuilder.class;
   }
   
   protected <X extends ASBase, M extends Builder<X,M>>ASBase(Map<String,Object> map, Class<M> _class, Class<X> _obj) {
     this.exts = ImmutableMap.copyOf(map);
-    this.builder = createBuilder(_class);
+    this.builder = _class;
   }
   
   public Lang getLang() {
@@ -336,11 +408,11 @@ public class ASBase
   }
   
   public <X extends ASBase, M extends Builder<X,M>>M template() {
-    return (M)builder.apply(array(exts));
+    return (M)factory(builder).apply(exts);
   }
   
   public <X extends ASBase, M extends Builder<X,M>>M template(Selector<Map.Entry<String,Object>> predicate) {
-    return (M)builder.apply(array(filterEntries(exts, predicate)));
+    return (M)factory(builder).apply(filterEntries(exts, predicate));
   }
   
   public <X extends ASBase, M extends Builder<X,M>>M templateWith(ASBase other) {
@@ -446,7 +518,7 @@ public class ASBase
     try {
       if (type.isAssignableFrom(this.getClass()))
         return type.cast(this);
-      return createInstance(type,Map.class).apply(array(exts));
+      return factory(type).apply(exts);
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
@@ -459,7 +531,7 @@ public class ASBase
    **/
   public <T extends ASBase>T as(Class<T> type,Selector<Map.Entry<String, Object>> filter) {
     try {
-      return createInstance(type,Map.class).apply(array(filterEntries(exts,filter)));
+      return factory(type).apply(filterEntries(exts,filter));
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.activities.model;
+
+import java.util.Iterator;
+
+import org.apache.abdera2.common.selector.Selector;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterables;
+
+/**
+ * Base implementation of the CollectionReader interface.. handles 
+ * basic flow and state management
+ */
+public abstract class AbstractCollectionReader<T extends ASObject>
+  implements CollectionReader<T> {
+
+  private final Collection.CollectionBuilder<T> header = 
+    Collection.makeCollection();
+  private boolean _iterated = false;
+  
+  /**
+   * Records a property of the Collection other than "items"
+   */
+  protected void header(String name, Object val) {
+    header.set(name, val);
+  }
+  
+  /**
+   * Reads the next item, returning null once all of the items have 
+   * been read
+   */
+  protected abstract T readItem();
+  
+  public abstract void close();
+  
+  public Collection<T> getHeader() {
+    return header.get();
+  }
+  
+  public Iterator<T> iterator() {
+    if (_iterated)
+      throw new IllegalStateException();
+    _iterated = true;
+    return new AbstractIterator<T>() {
+      protected T computeNext() {
+        T item = readItem();
+        return item != null ? item : endOfData();
+      }
+    };
+  }
+  
+  public Iterable<T> getItems() {
+    return this;
+  }
+  
+  public Iterable<T> getItems(Selector<T> selector) {
+    return Iterables.filter(this, selector);
+  }
+  
+}
@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.activities.model;
+
+import java.io.Closeable;
+
+import org.apache.abdera2.common.selector.Selector;
+
+/**
+ * Interface used to incrementally read a Collection of activity 
+ * objects. Items are read from the underlying stream one at a time 
+ * as the reader is iterated and are never held by the reader, so 
+ * collections of any size can be processed. A CollectionReader can 
+ * only be iterated once.
+ */
+public interface CollectionReader<T extends ASObject>
+  extends Iterable<T>, Closeable {
+
+  /**
+   * Returns all of the properties of the Collection other than the 
+   * "items" property that have been read so far. Properties that 
+   * precede the items array are available as soon as the reader is 
+   * created, those that follow it only once all of the items have
+   * been read.
+   */
+  Collection<T> getHeader();
+  
+  /**
+   * Returns the items of the Collection. Equivalent to iterating the
+   * reader itself.
+   */
+  Iterable<T> getItems();
+  
+  /**
+   * Returns only the items of the Collection that match the selector.
+   * Items that do not match are discarded as soon as they have been 
+   * read.
+   */
+  Iterable<T> getItems(Selector<T> selector);
+  
+  /**
+   * Closes the underlying stream
+   */
+  void close();
+  
+}
@@ -313,6 +313,25 @@ public abstract class IO {
   
   public abstract CollectionWriter getCollectionWriter(Writer out);
   
+  public <T extends ASObject>CollectionReader<T> getCollectionReader(InputStream in, String charset) {
+    try {
+      return getCollectionReader(new InputStreamReader(in,charset));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+  
+  public <T extends ASObject>CollectionReader<T> getCollectionReader(InputStream in) {
+    return getCollectionReader(in, getDefaultCharset());
+  }
+  
+  /**
+   * Returns a reader that incrementally reads the items of the 
+   * Collection rather than building the complete Collection in 
+   * memory the way readCollection does
+   */
+  public abstract <T extends ASObject>CollectionReader<T> getCollectionReader(Reader in);
+  
   
   
   
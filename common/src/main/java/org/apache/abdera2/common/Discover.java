@@ -140,8 +140,6 @@ public final class Discover {
       @Nullable ClassLoader cl, 
       Object... args) {
       return locate(
-        _class, 
-        classesonly, 
         new DefaultLoader<T>(
           _class, 
           classesonly, 
@@ -155,8 +153,6 @@ public final class Discover {
       @Nullable ClassLoader cl, 
       Object... args) {
         return locate(
-          id, 
-          classesonly, 
           new DefaultLoader<T>(
             id, 
             classesonly, 
@@ -25,20 +25,30 @@ import java.io.Reader;
 
 import org.apache.abdera2.common.misc.ExceptionHelper;
 import org.apache.abdera2.common.text.CharUtils.Profile;
+import org.apache.abdera2.common.text.CodepointMatcher;
 import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkPositionIndexes;
 
 /**
  * A reader implementation that profiles out unwanted characters By default, unwanted characters are simply removed from
  * the stream. Alternatively, a replacement character can be provided so long as it is acceptable to the specified
- * profile
+ * profile. Characters are read from the underlying reader in blocks and filtered in place, surrogate pairs are 
+ * tested as a single codepoint.
  */
 public class FilteredCharReader extends FilterReader {
 
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
     /**
      * The XMLVersion determines which set of restrictions to apply depending on the XML version being parsed
      */
     private final Profile profile;
+    private final CodepointMatcher matcher;
     private final char replacement;
+    private final char[] buf = new char[DEFAULT_BUFFER_SIZE];
+    private int pos, lim;
+    private int pending = -1; // a trailing high surrogate awaiting its pair
+    private boolean eof;
 
     public FilteredCharReader(
       InputStream in, 
@@ -95,6 +105,7 @@ public class FilteredCharReader extends FilterReader {
     public FilteredCharReader(Reader in, Profile profile, char replacement) {
       super(in);
       this.profile = profile;
+      this.matcher = profile.matcher();
       this.replacement = replacement;
       checkArgument(
         replacement == 0 ||
@@ -103,31 +114,108 @@ public class FilteredCharReader extends FilterReader {
       );
     }
 
+    /**
+     * Ensures that filtered characters are available in the buffer, 
+     * returns false if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+      while (pos == lim && !eof) {
+        int end = 0;
+        if (pending != -1) {
+          buf[end++] = (char)pending;
+          pending = -1;
+        }
+        int r = in.read(buf, end, buf.length - end);
+        if (r == -1) 
+          eof = true;
+        else 
+          end += r;
+        if (!eof && end > 0 && Character.isHighSurrogate(buf[end-1]))
+          pending = buf[--end];
+        pos = 0;
+        lim = filter(end);
+      }
+      return pos < lim;
+    }
+    
+    /**
+     * Removes or replaces the restricted characters in buf between 0 and 
+     * end, compacting the buffer in place. Returns the new end.
+     */
+    private int filter(int end) {
+      int w = 0;
+      for (int n = 0; n < end;) {
+        int i = matcher.indexIn(buf, n, end);
+        int e = i == -1 ? end : i;
+        if (w != n) 
+          System.arraycopy(buf, n, buf, w, e - n);
+        w += e - n;
+        if (i == -1) break;
+        if (replacement != 0) 
+          buf[w++] = replacement;
+        n = i + Character.charCount(Character.codePointAt(buf, i, end));
+      }
+      return w;
+    }
+    
     @Override
     public int read() throws IOException {
-      int c = -1;
-      if (replacement == 0)
-        while (((c = super.read()) != -1 && profile.apply(c))) {}
-      else {
-        c = super.read();
-        if (c != -1 && profile.apply(c))
-          c = replacement;
+      synchronized(lock) {
+        return fill() ? buf[pos++] : -1;
       }
-      return c;
     }
 
     @Override
     public int read(char[] cbuf, int off, int len) throws IOException {
-      int n = off;
-      for (; n < Math.min(len, cbuf.length - off); n++) {
-        int r = read();
-        if (r != -1)
-            cbuf[n] = (char)r;
-        else
-            break;
+      checkPositionIndexes(off, off + len, cbuf.length);
+      if (len == 0) return 0;
+      synchronized(lock) {
+        int n = 0;
+        // keep reading only while doing so will not block
+        while (n < len && (n == 0 || pos < lim || in.ready()) && fill()) {
+          int c = Math.min(len - n, lim - pos);
+          System.arraycopy(buf, pos, cbuf, off + n, c);
+          pos += c;
+          n += c;
+        }
+        return n == 0 ? -1 : n;
+      }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      checkArgument(n >= 0);
+      synchronized(lock) {
+        long s = 0;
+        while (s < n && fill()) {
+          int c = (int)Math.min(n - s, lim - pos);
+          pos += c;
+          s += c;
+        }
+        return s;
       }
-      n -= off;
-      return n <= 0 ? -1 : n;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+      synchronized(lock) {
+        return pos < lim || in.ready();
+      }
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+      throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+      throw new IOException("reset() not supported");
     }
 
 }
@@ -24,38 +24,59 @@ import java.util.Arrays;
 
 /**
  * InputStream that reads a given inputStream and skips the boundary tokens.
+ * Each boundary reads as the end of the stream once, after which reading 
+ * continues with the data following the boundary. Input is read through 
+ * a single fixed buffer that is searched for the boundary using the 
+ * Boyer-Moore-Horspool algorithm, so memory use does not depend on the 
+ * size of the parts.
  */
 public class MultipartInputStream extends FilterInputStream {
 
-    private InputStream input;
-    private byte[] boundary;
-    private byte[] storedBuffer;
-    private int storedBufferPosition;
-    private boolean fakeEof;
-    private boolean realEof;
-    private boolean bufferEnd;
-    private int[] lastTable = new int[256];
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] boundary;
+    private final int[] lastTable = new int[256];
+    private final byte[] buf;
+    private int start;   // position of the next unread byte
+    private int end;     // end of the data in the buffer
+    private int safe;    // bytes from start known not to be part of a boundary
+    private int match = -1; // position of the next boundary in the buffer
+    private boolean eof;
 
     public MultipartInputStream(InputStream input, byte[] boundary) {
         super(input);
-        this.input = input;
+        if (boundary == null || boundary.length == 0)
+            throw new IllegalArgumentException();
         this.boundary = boundary;
+        this.buf = new byte[Math.max(BUFFER_SIZE, boundary.length * 2)];
         computeLastTable();
     }
 
+    /**
+     * Skip the remainder of the current part, including the boundary
+     */
     public void skipBoundary() throws IOException {
-        byte[] buffer = new byte[256];
-        while (read(buffer) != -1) {
+        while (prepare() > 0) {
+            start += safe;
+            safe = 0;
         }
     }
 
+    /**
+     * Return a view of the current part that ends at the next boundary. 
+     * Reading from the view reads directly from this stream, closing the 
+     * view skips whatever remains of the part.
+     */
+    public InputStream getPart() {
+        return new PartInputStream();
+    }
+
     @Override
     public int read() throws IOException {
-        byte[] b = new byte[1];
-        if (read(b) == -1) {
+        if (prepare() <= 0) 
             return -1;
-        }
-        return b[0] & 0xff;
+        safe--;
+        return buf[start++] & 0xff;
     }
 
     @Override
@@ -65,123 +86,102 @@ public class MultipartInputStream extends FilterInputStream {
 
     @Override
     public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > buffer.length)
+            throw new IndexOutOfBoundsException();
         if (length == 0) {
             return 0;
         }
-
-        int bytesReaded = -1;
-        if (!checkEndOfFile()) {
-            int bufferLength =
-                Math.max(boundary.length * 3/* number of tokens into the stream */, length + boundary.length);
-
-            byte[] newBuffer = new byte[bufferLength];
-
-            int position = cleanStoredBuffer(newBuffer, 0, bufferLength);
-            if (bufferLength >= position) {
-                position += readBuffer(newBuffer, position, bufferLength - position);
-            }
-
-            if (realEof && position == 0) {
-                return -1;
-            }
-
-            bytesReaded = getBytesReaded(buffer, newBuffer, offset, position, length);
-        }
-        return bytesReaded != 0 ? bytesReaded : -1;
+        int n = prepare();
+        if (n <= 0)
+            return -1;
+        n = Math.min(n, length);
+        System.arraycopy(buf, start, buffer, offset, n);
+        start += n;
+        safe -= n;
+        return n;
     }
 
-    private int readBuffer(byte[] buffer, int offset, int length) throws IOException {
-        int count = 0;
-        int read = 0;
-
-        do {
-            read = input.read(buffer, offset + count, length - count);
-            if (read > 0) {
-                count += read;
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            int a = prepare();
+            if (a <= 0) {
+                // leave the boundary to be reported by the next read
+                if (a == -1) 
+                    match = start -= boundary.length;
+                break;
             }
-        } while (read > 0 && count < length);
-
-        if (read < 0) {
-            realEof = true;
+            int s = (int)Math.min(a, n - skipped);
+            start += s;
+            safe -= s;
+            skipped += s;
         }
-
-        return count;
+        return skipped;
     }
 
-    private boolean checkEndOfFile() {
-        if (fakeEof) {
-            fakeEof = false;
-            return true;
-        }
-
-        if (realEof && storedBuffer == null) {
-            return true;
-        }
-        if (realEof && !bufferEnd) {
-            bufferEnd = true;
-        }
+    @Override
+    public int available() throws IOException {
+        return safe;
+    }
 
+    @Override
+    public boolean markSupported() {
         return false;
     }
 
-    private int getBytesReaded(byte[] buffer, byte[] newBuffer, int offSet, int position, int length) {
-        int boundaryPosition = locateBoundary(newBuffer, boundary.length - 1, position);
-        int bytesReaded;
-
-        if (length < boundaryPosition || boundaryPosition == -1) {// boundary not found
-            bytesReaded = Math.min(length, position);
-            createStoredBuffer(newBuffer, bytesReaded, position);
-        } else {
-            bytesReaded = boundaryPosition;
-            createStoredBuffer(newBuffer, bytesReaded + boundary.length, position);
-
-            if (bytesReaded == 0) {
-                return -1;
-            }
-
-            fakeEof = true;
-        }
-
-        System.arraycopy(newBuffer, 0, buffer, offSet, bytesReaded);
-        return bytesReaded;
+    @Override
+    public void mark(int readlimit) {
     }
 
-    private void createStoredBuffer(byte[] buffer, int start, int end) {
-        int length = end - start;
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
 
-        if (length > 0) {
-            if (bufferEnd && storedBuffer != null) {
-                storedBufferPosition -= length;
+    /**
+     * Returns the number of bytes that can be read before the next 
+     * boundary, reading more input if necessary. Returns -1 if the 
+     * stream is positioned at a boundary, which is then skipped, and 
+     * 0 at the end of the input.
+     */
+    private int prepare() throws IOException {
+        while (safe == 0) {
+            if (match == start) {
+                start += boundary.length;
+                match = -1;
+                return -1;
+            } else if (match > start) {
+                safe = match - start;
+            } else if ((match = locateBoundary(start, end)) != -1) {
+                continue;
+            } else if (eof) {
+                safe = end - start;
+                if (safe == 0)
+                    return 0;
+            } else if (end - start >= boundary.length) {
+                // the tail could be the start of a boundary
+                safe = end - start - boundary.length + 1;
             } else {
-                int bufferLength = (storedBuffer == null ? 0 : storedBuffer.length - storedBufferPosition);
-                byte[] newBuffer = new byte[length + bufferLength];
-                System.arraycopy(buffer, start, newBuffer, 0, length);
-
-                if (storedBuffer != null) {
-                    System.arraycopy(storedBuffer, storedBufferPosition, newBuffer, length, bufferLength);
-                }
-
-                storedBuffer = newBuffer;
-                storedBufferPosition = 0;
+                fill();
             }
         }
+        return safe;
     }
 
-    private int cleanStoredBuffer(byte[] buffer, int offset, int length) {
-        int i = 0;
-
-        if (storedBuffer != null) {
-            for (i = 0; i < length && storedBufferPosition < storedBuffer.length; i++) {
-                buffer[offset + i] = storedBuffer[storedBufferPosition++];
-            }
-
-            if (storedBufferPosition >= storedBuffer.length) {
-                storedBuffer = null;
-                storedBufferPosition = 0;
-            }
+    private void fill() throws IOException {
+        if (start > 0) {
+            System.arraycopy(buf, start, buf, 0, end - start);
+            end -= start;
+            start = 0;
         }
-
-        return i;
+        int r = 0;
+        while (r == 0)
+            r = in.read(buf, end, buf.length - end);
+        if (r < 0)
+            eof = true;
+        else
+            end += r;
     }
 
     /* computation of the last table */
@@ -192,22 +192,56 @@ public class MultipartInputStream extends FilterInputStream {
         }
     }
 
-    /* simplified boyer-moore algorithm */
-    private int locateBoundary(byte[] bytes, int start, int end) {
-        int position = -1;
-        if (end > boundary.length) {
-            int j = 0;
-            int k = 0;
-            for (int i = start; i < end; i += lastTable[bytes[i] & 0xff]) {
-                for (k = i, j = boundary.length - 1; j >= 0 && boundary[j] == bytes[k]; j--) {
-                    k--;
-                }
-                if (j == -1) {
-                    position = k + 1;
-                }
+    /* boyer-moore-horspool search for the first boundary in the range */
+    private int locateBoundary(int from, int to) {
+        int last = boundary.length - 1;
+        for (int i = from + last; i < to; i += lastTable[buf[i] & 0xff]) {
+            int j = last, k = i;
+            while (j >= 0 && buf[k] == boundary[j]) {
+                j--;
+                k--;
             }
+            if (j < 0)
+                return k + 1;
+        }
+        return -1;
+    }
+
+    private final class PartInputStream extends InputStream {
+        private boolean done;
+
+        @Override
+        public int read() throws IOException {
+            int r = done ? -1 : MultipartInputStream.this.read();
+            done = r == -1;
+            return r;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done)
+                return -1;
+            int r = MultipartInputStream.this.read(b, off, len);
+            done = r == -1;
+            return r;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return done ? 0 : MultipartInputStream.this.skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return done ? 0 : safe;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!done)
+                skipBoundary();
+            done = true;
         }
-        return position;
     }
 
 }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An OutputStream that collects the bytes written to it in a list of 
+ * fixed size segments rather than a single array that is copied each 
+ * time it grows. The buffered bytes can be written to another stream or 
+ * read back any number of times. Segments are taken from a shared pool 
+ * and returned to it when the buffer is released. Segments still being 
+ * read through an InputStream obtained from the buffer are only returned 
+ * once the last such stream has been closed; streams that are never 
+ * closed leave their segments to the garbage collector instead.
+ */
+public final class SegmentedBuffer extends OutputStream {
+
+    public static final int SEGMENT_SIZE = 8192;
+    private static final int MAX_POOLED_SEGMENTS = 64;
+
+    private static final ConcurrentLinkedQueue<byte[]> pool = 
+      new ConcurrentLinkedQueue<byte[]>();
+    private static final AtomicInteger pooled = 
+      new AtomicInteger();
+
+    private final List<byte[]> segments = 
+      new ArrayList<byte[]>();
+    private final List<byte[]> retained = 
+      new ArrayList<byte[]>();
+    private byte[] current;
+    private int pos;
+    private long size;
+    private int readers;
+
+    private static byte[] allocate() {
+      byte[] segment = pool.poll();
+      if (segment != null) {
+        pooled.decrementAndGet();
+        return segment;
+      }
+      return new byte[SEGMENT_SIZE];
+    }
+
+    private static void recycle(byte[] segment) {
+      if (pooled.incrementAndGet() <= MAX_POOLED_SEGMENTS)
+        pool.offer(segment);
+      else 
+        pooled.decrementAndGet();
+    }
+
+    private void next() {
+      current = allocate();
+      segments.add(current);
+      pos = 0;
+    }
+
+    public void write(int b) {
+      if (current == null || pos == SEGMENT_SIZE)
+        next();
+      current[pos++] = (byte)b;
+      size++;
+    }
+
+    public void write(byte[] b, int off, int len) {
+      if (off < 0 || len < 0 || off + len > b.length)
+        throw new IndexOutOfBoundsException();
+      while (len > 0) {
+        if (current == null || pos == SEGMENT_SIZE)
+          next();
+        int n = Math.min(len, SEGMENT_SIZE - pos);
+        System.arraycopy(b, off, current, pos, n);
+        pos += n;
+        off += n;
+        len -= n;
+        size += n;
+      }
+    }
+
+    /**
+     * The number of bytes in the buffer
+     */
+    public long size() {
+      return size;
+    }
+
+    /**
+     * Write the buffered bytes to the given stream
+     */
+    public void writeTo(OutputStream out) throws IOException {
+      int last = segments.size() - 1;
+      for (int n = 0; n < last; n++)
+        out.write(segments.get(n), 0, SEGMENT_SIZE);
+      if (last >= 0)
+        out.write(current, 0, pos);
+    }
+
+    /**
+     * Return a new InputStream over the buffered bytes. The stream should 
+     * be closed when it is no longer needed so the segments can be 
+     * returned to the pool
+     */
+    public synchronized InputStream getInputStream() {
+      readers++;
+      return new SegmentInputStream(this, segments.toArray(new byte[segments.size()][]), size);
+    }
+
+    /**
+     * Empty the buffer and return the segments to the pool, or, if any 
+     * InputStream over them is still open, once the last one is closed
+     */
+    public synchronized void release() {
+      if (readers > 0) {
+        retained.addAll(segments);
+      } else {
+        for (byte[] segment : segments)
+          recycle(segment);
+      }
+      segments.clear();
+      current = null;
+      pos = 0;
+      size = 0;
+    }
+
+    private synchronized void closed() {
+      if (--readers == 0) {
+        for (byte[] segment : retained)
+          recycle(segment);
+        retained.clear();
+      }
+    }
+
+    private static final class SegmentInputStream extends InputStream {
+      private SegmentedBuffer buffer;
+      private byte[][] segments;
+      private final long size;
+      private long read;
+      private long mark;
+
+      SegmentInputStream(SegmentedBuffer buffer, byte[][] segments, long size) {
+        this.buffer = buffer;
+        this.segments = segments;
+        this.size = size;
+      }
+
+      private void check() throws IOException {
+        if (segments == null)
+          throw new IOException("Stream closed");
+      }
+
+      public int read() throws IOException {
+        check();
+        if (read >= size)
+          return -1;
+        byte b = segments[(int)(read / SEGMENT_SIZE)][(int)(read % SEGMENT_SIZE)];
+        read++;
+        return b & 0xFF;
+      }
+
+      public int read(byte[] b, int off, int len) throws IOException {
+        check();
+        if (off < 0 || len < 0 || off + len > b.length)
+          throw new IndexOutOfBoundsException();
+        if (len == 0)
+          return 0;
+        if (read >= size)
+          return -1;
+        int r = (int)Math.min(len, size - read);
+        for (int c = 0; c < r;) {
+          int i = (int)(read % SEGMENT_SIZE);
+          int n = Math.min(r - c, SEGMENT_SIZE - i);
+          System.arraycopy(segments[(int)(read / SEGMENT_SIZE)], i, b, off + c, n);
+          c += n;
+          read += n;
+        }
+        return r;
+      }
+
+      public long skip(long n) throws IOException {
+        check();
+        long s = Math.max(0, Math.min(n, size - read));
+        read += s;
+        return s;
+      }
+
+      public int available() throws IOException {
+        check();
+        return (int)Math.min(Integer.MAX_VALUE, size - read);
+      }
+
+      public boolean markSupported() {
+        return true;
+      }
+
+      public void mark(int limit) {
+        mark = read;
+      }
+
+      public void reset() throws IOException {
+        check();
+        read = mark;
+      }
+
+      public void close() {
+        if (segments != null) {
+          segments = null;
+          buffer.closed();
+          buffer = null;
+        }
+      }
+    }
+}
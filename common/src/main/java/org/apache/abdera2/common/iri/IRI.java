@@ -21,8 +21,6 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URISyntaxException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.abdera2.common.misc.MoreFunctions;
 import org.apache.abdera2.common.text.InvalidCharacterException;
@@ -31,8 +29,25 @@ import org.apache.abdera2.common.text.UrlEncoding;
 import org.apache.abdera2.common.text.CharUtils.Profile;
 
 import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.ibm.icu.text.IDNA;
 
+/**
+ * An immutable Internationalized Resource Identifier (RFC 3987). Parsing
+ * a string is done in a single pass that splits and validates the 
+ * components at the same time. The ASCII forms of the components 
+ * (IDNA host, percent-encoded path, query, etc) are only computed the 
+ * first time one of the getASCII* methods or toASCIIString is called, 
+ * so an invalid Internationalized Domain Name is reported at that point
+ * rather than when the IRI is created.
+ * 
+ * Frequently repeated values (e.g. xml:base or feed and collection
+ * URIs) can be obtained using intern(String), which returns a shared
+ * instance from a bounded cache. The size of the cache can be set
+ * using the "org.apache.abdera2.iri.cacheSize" system property; a
+ * size of zero disables the cache.
+ */
 public final class IRI implements Serializable, Cloneable {
 
     private static final long serialVersionUID = -4530530782760282284L;
@@ -51,6 +66,8 @@ public final class IRI implements Serializable, Cloneable {
     private String a_query;
     private String a_userinfo;
     private String a_authority;
+    private transient volatile boolean ascii;
+    private transient volatile String string;
 
     public IRI(java.net.URL url) {
         this(url.toString());
@@ -62,7 +79,6 @@ public final class IRI implements Serializable, Cloneable {
 
     public IRI(String iri) {
         parse(iri);
-        init();
     }
 
     public IRI(String iri, NormalizationForm nf) throws IOException {
@@ -80,7 +96,6 @@ public final class IRI implements Serializable, Cloneable {
         StringBuilder buf = new StringBuilder();
         buildAuthority(buf, userinfo, host, port);
         this.authority = (buf.length() != 0) ? buf.toString() : null;
-        init();
     }
 
     public IRI(String scheme, String authority, String path, String query, String fragment) {
@@ -89,8 +104,13 @@ public final class IRI implements Serializable, Cloneable {
         this.path = path;
         this.query = query;
         this.fragment = fragment;
-        parseAuthority();
-        init();
+        try {
+            parseAuthority();
+        } catch (IRISyntaxException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IRISyntaxException(e);
+        }
     }
 
     public IRI(String scheme, String host, String path, String fragment) {
@@ -113,10 +133,11 @@ public final class IRI implements Serializable, Cloneable {
         this.path = path;
         this.query = query;
         this.fragment = fragment;
-        init();
     }
 
     private void init() {
+        if (ascii) return;
+        String a_host = null;
         if (host != null && host.startsWith("[")) {
             a_host = host;
         } else {
@@ -128,11 +149,13 @@ public final class IRI implements Serializable, Cloneable {
                 throw new IRISyntaxException("Invalid Internationalized Domain Name");
             }
         }
+        this.a_host = a_host;
         a_fragment = UrlEncoding.encode(fragment, Profile.FRAGMENT);
         a_path = UrlEncoding.encode(path, Profile.PATH);
         a_query = UrlEncoding.encode(query, Profile.QUERY, Profile.PATH);
         a_userinfo = UrlEncoding.encode(userinfo, Profile.USERINFO);
         a_authority = buildASCIIAuthority();
+        ascii = true;
     }
 
     @Override
@@ -204,6 +227,7 @@ public final class IRI implements Serializable, Cloneable {
     }
 
     public String getASCIIHost() {
+        init();
         return (a_host != null && a_host.length() > 0) ? a_host : null;
     }
 
@@ -245,7 +269,8 @@ public final class IRI implements Serializable, Cloneable {
     private String buildASCIIAuthority() {
         if (_scheme instanceof HttpScheme) {
             StringBuilder buf = new StringBuilder();
-            buildAuthority(buf, getASCIIUserInfo(), getASCIIHost(), getPort());
+            buildAuthority(buf, a_userinfo, 
+              (a_host != null && a_host.length() > 0) ? a_host : null, port);
             return buf.toString();
         } else {
             return UrlEncoding.encode(authority, Profile.AUTHORITY);
@@ -253,26 +278,32 @@ public final class IRI implements Serializable, Cloneable {
     }
 
     public String getASCIIAuthority() {
+        init();
         return (a_authority != null && a_authority.length() > 0) ? a_authority : null;
     }
 
     public String getASCIIFragment() {
+        init();
         return a_fragment;
     }
 
     public String getASCIIPath() {
+        init();
         return a_path;
     }
 
     public String getASCIIQuery() {
+        init();
         return a_query;
     }
 
     public String getASCIIUserInfo() {
+        init();
         return a_userinfo;
     }
 
     public String getASCIISchemeSpecificPart() {
+        init();
         return buildSchemeSpecificPart(a_authority, a_path, a_query, a_fragment);
     }
 
@@ -459,10 +490,10 @@ public final class IRI implements Serializable, Cloneable {
           if (segment == null) break;
           if(pos-1>0||segment.length()>0)
             buf.append('/');
-          buf.append(
-               UrlEncoding.encode(
-                 UrlEncoding.decode(segment), 
-                   Profile.IPATHNODELIMS_SEG));
+          UrlEncoding.encodeTo(
+            buf, 
+            UrlEncoding.decode(segment), 
+            Profile.IPATHNODELIMS_SEG);
         }
       }
       if (trailingslash && buf.length() > 1)
@@ -519,13 +550,18 @@ public final class IRI implements Serializable, Cloneable {
     }
     
     public String toString() {
-        StringBuilder buf = new StringBuilder();
-        String scheme = getScheme();
-        if (scheme != null && scheme.length() != 0)
-            buf.append(scheme)
-               .append(':');
-        buf.append(getSchemeSpecificPart());
-        return UrlEncoding.encode(buf.toString(), Profile.SCHEMESPECIFICPART);
+        String string = this.string;
+        if (string == null) {
+            StringBuilder buf = new StringBuilder();
+            String scheme = getScheme();
+            if (scheme != null && scheme.length() != 0)
+                buf.append(scheme)
+                   .append(':');
+            buf.append(getSchemeSpecificPart());
+            string = this.string = 
+              UrlEncoding.encode(buf.toString(), Profile.SCHEMESPECIFICPART);
+        }
+        return string;
     }
 
     public String toASCIIString() {
@@ -548,45 +584,74 @@ public final class IRI implements Serializable, Cloneable {
 
     private void parseAuthority() {
         if (authority != null) {
-            Matcher auth = AUTHORITYPATTERN.matcher(authority);
-            if (auth.find()) {
-                userinfo = auth.group(1);
-                host = auth.group(2);
-                if (auth.group(3) != null)
-                    port = Integer.parseInt(auth.group(3));
-                else
-                    port = -1;
+            int len = authority.length();
+            int pos = 0;
+            int at = authority.lastIndexOf('@');
+            if (at > -1) {
+                userinfo = authority.substring(0, at);
+                pos = at + 1;
             }
-            try {
-              Profile.IUSERINFO.verify(userinfo);
-              Profile.IHOST.verify(host);
-            } catch (InvalidCharacterException e) {
-                throw new IRISyntaxException(e);
+            int end = authority.lastIndexOf(']');
+            if (pos < len && authority.charAt(pos) == '[' && end > pos) {
+                end++;
+            } else {
+                end = authority.indexOf(':', pos);
+                if (end == -1)
+                    end = len;
             }
+            host = authority.substring(pos, end);
+            port = -1;
+            if (end < len && authority.charAt(end) == ':') {
+                int n = end + 1;
+                while (n < len && authority.charAt(n) >= '0' && authority.charAt(n) <= '9')
+                    n++;
+                if (n > end + 1)
+                    port = Integer.parseInt(authority.substring(end + 1, n));
+            }
+            if (userinfo != null)
+                scan(userinfo, 0, -1, -1, IUSERINFO, Profile.IUSERINFO);
+            scan(host, 0, -1, -1, IHOST, Profile.IHOST);
         }
     }
 
+    /**
+     * Splits and verifies the IRI in a single pass. The components are
+     * identical to those matched by the RFC 3986 Appendix B regular 
+     * expression: ^(([^:/?#]+):)?(//([^/?#]*))?([^?#]*)(\?([^#]*))?(#(.*))?
+     */
     private void parse(String iri) {
         try {
-            Matcher irim = IRIPATTERN.matcher(iri);
-            if (irim.find()) {
-                String scheme = irim.group(1);
-                _scheme = SchemeRegistry.get(scheme);
-                authority = irim.group(2);
-                path = irim.group(3);
-                query = irim.group(4);
-                fragment = irim.group(5);
+            int len = iri.length();
+            int pos = 0;
+            int n = 0;
+            while (n < len && !isDelimiter(iri.charAt(n), true))
+                n++;
+            String scheme = null;
+            if (n > 0 && n < len && iri.charAt(n) == ':') {
+                scan(iri, 0, ':', ':', SCHEME, Profile.SCHEME);
+                scheme = iri.substring(0, n);
+                pos = n + 1;
+            }
+            _scheme = SchemeRegistry.get(scheme);
+            if (iri.startsWith("//", pos)) {
+                n = pos + 2;
+                while (n < len && !isDelimiter(iri.charAt(n), false))
+                    n++;
+                authority = iri.substring(pos + 2, n);
+                pos = n;
                 parseAuthority();
-                try {
-                    Profile.SCHEME.verify(scheme);
-                    Profile.IPATH.verify(path);
-                    Profile.IQUERY.verify(query);
-                    Profile.IFRAGMENT.verify(fragment);
-                } catch (InvalidCharacterException e) {
-                    throw new IRISyntaxException(e);
-                }
-            } else {
-                throw new IRISyntaxException("Invalid Syntax");
+            }
+            n = scan(iri, pos, '?', '#', IPATH, Profile.IPATH);
+            path = iri.substring(pos, n);
+            if (n < len && iri.charAt(n) == '?') {
+                pos = n + 1;
+                n = scan(iri, pos, '#', '#', IQUERY, Profile.IQUERY);
+                query = iri.substring(pos, n);
+            }
+            if (n < len) {
+                pos = n + 1;
+                scan(iri, pos, -1, -1, IFRAGMENT, Profile.IFRAGMENT);
+                fragment = iri.substring(pos);
             }
         } catch (IRISyntaxException e) {
             throw e;
@@ -595,11 +660,79 @@ public final class IRI implements Serializable, Cloneable {
         }
     }
 
-    private static final Pattern IRIPATTERN =
-        Pattern.compile("^(?:([^:/?#]+):)?(?://([^/?#]*))?([^?#]*)(?:\\?([^#]*))?(?:#(.*))?");
+    private static boolean isDelimiter(char c, boolean scheme) {
+        return c == '/' || c == '?' || c == '#' || (scheme && c == ':');
+    }
+
+    /**
+     * Verifies the characters of s starting at pos until either of the 
+     * two stop characters (or the end of the string) is reached, returning
+     * the index at which the scan stopped. ASCII characters are checked
+     * using the precomputed table, everything else using the profile.
+     */
+    private static int scan(
+      String s, 
+      int pos, 
+      int stop1, 
+      int stop2, 
+      boolean[] invalid, 
+      Profile profile) {
+        int len = s.length();
+        while (pos < len) {
+            char c = s.charAt(pos);
+            if (c == stop1 || c == stop2)
+                break;
+            if (c < 0x80) {
+                if (invalid[c])
+                    throw new IRISyntaxException(new InvalidCharacterException(c));
+                pos++;
+            } else {
+                int cp = s.codePointAt(pos);
+                if (profile.apply(cp))
+                    throw new IRISyntaxException(new InvalidCharacterException(cp));
+                pos += Character.charCount(cp);
+            }
+        }
+        return pos;
+    }
+
+    private static boolean[] invalid(Profile profile) {
+        boolean[] table = new boolean[0x80];
+        for (int c = 0; c < table.length; c++)
+            table[c] = profile.apply(c);
+        return table;
+    }
+
+    private static final boolean[] SCHEME = invalid(Profile.SCHEME);
+    private static final boolean[] IUSERINFO = invalid(Profile.IUSERINFO);
+    private static final boolean[] IHOST = invalid(Profile.IHOST);
+    private static final boolean[] IPATH = invalid(Profile.IPATH);
+    private static final boolean[] IQUERY = invalid(Profile.IQUERY);
+    private static final boolean[] IFRAGMENT = invalid(Profile.IFRAGMENT);
+
+    public static final String CACHE_SIZE = "org.apache.abdera2.iri.cacheSize";
 
-    private static final Pattern AUTHORITYPATTERN =
-        Pattern.compile("^(?:(.*)?@)?((?:\\[.*\\])|(?:[^:]*))?(?::(\\d+))?");
+    private static final Cache<String,IRI> interned = 
+      CacheBuilder.newBuilder()
+        .maximumSize(Math.max(0, Integer.getInteger(CACHE_SIZE, 1000)))
+        .build();
+
+    /**
+     * Returns a shared IRI instance for the given string, parsing it only 
+     * if it is not already held in the intern cache. IRI instances are 
+     * immutable so the returned instance can safely be used by multiple
+     * threads.
+     */
+    public static IRI intern(String iri) {
+        if (iri == null)
+            return null;
+        IRI i = interned.getIfPresent(iri);
+        if (i == null) {
+            i = new IRI(iri);
+            interned.put(iri, i);
+        }
+        return i;
+    }
 
     /**
      * Returns a new IRI with a trailing slash appended to the path, if necessary.
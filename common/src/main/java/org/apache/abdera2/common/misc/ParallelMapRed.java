@@ -0,0 +1,511 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.misc;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.abdera2.common.misc.MapRed.Collector;
+import org.apache.abdera2.common.misc.MapRed.Mapper;
+import org.apache.abdera2.common.misc.MapRed.Reducer;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
+
+/**
+ * A MapReduce Function that runs the Mapper, optional combiner and Reducer
+ * in parallel using an ExecutorService. The input is split into partitions
+ * that are mapped concurrently, each into its own collector; when a combiner
+ * is given it is applied to each partition's output before the partitions are
+ * merged. The merged intermediate values are then grouped by key and handed 
+ * to the Reducer, again in parallel batches. The result is the same as that 
+ * of the corresponding MapRed.compose(...) Function: keys are sorted by the 
+ * given comparators (or their natural order) and, for each key, values are 
+ * kept in input order.
+ * 
+ * When a memory budget is set, the number of intermediate values held in 
+ * memory is limited. Once the budget is exceeded the buffered values are 
+ * combined (if there is a combiner) and, if still over budget, written as a 
+ * sorted run to a temporary file. The runs are merged back when reducing. 
+ * Spilling requires that intermediate keys and values are Serializable.
+ * 
+ * Because the Mapper, combiner and Reducer are called from multiple threads 
+ * concurrently, they must be threadsafe. 
+ * 
+ * <pre>
+ * Function&lt;Iterable&lt;Pair&lt;Void,Activity>>,Iterable&lt;Pair&lt;String,Iterable&lt;Integer>>>> f = 
+ *   ParallelMapRed.make(new MyMapper(), MapRed.&lt;String,ASObject>countingReducer())
+ *     .memoryBudget(100000)
+ *     .get();
+ * </pre>
+ */
+@SuppressWarnings("unchecked")
+public final class ParallelMapRed<K1,V1,K2,V2,K3,V3> 
+  implements Function<Iterable<Pair<K1,V1>>,Iterable<Pair<K3,Iterable<V3>>>> {
+
+  public static final int DEFAULT_PARTITION_SIZE = 1000;
+  
+  private static ExecutorService defaultExecutor;
+  
+  private static synchronized ExecutorService getDefaultExecutor() {
+    if (defaultExecutor == null)
+      defaultExecutor = 
+        MoreExecutors2.getExitingFixedExecutor(
+          Runtime.getRuntime().availableProcessors());
+    return defaultExecutor;
+  }
+  
+  public static <K1,V1,K2,V2,K3,V3>Builder<K1,V1,K2,V2,K3,V3> make(
+    Mapper<K1,V1,K2,V2> mapper,
+    Reducer<K2,V2,K3,V3> reducer) {
+      return new Builder<K1,V1,K2,V2,K3,V3>(mapper,reducer);
+  }
+  
+  public static class Builder<K1,V1,K2,V2,K3,V3> 
+    implements Supplier<ParallelMapRed<K1,V1,K2,V2,K3,V3>> {
+    
+    private final Mapper<K1,V1,K2,V2> mapper;
+    private final Reducer<K2,V2,K3,V3> reducer;
+    private Reducer<K2,V2,K2,V2> combiner;
+    private Comparator<K2> comparator;
+    private Comparator<K3> outputComparator;
+    private ExecutorService executor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int partitionSize = DEFAULT_PARTITION_SIZE;
+    private long memoryBudget = -1;
+    private boolean nulls = false;
+    
+    Builder(
+      Mapper<K1,V1,K2,V2> mapper, 
+      Reducer<K2,V2,K3,V3> reducer) {
+        this.mapper = checkNotNull(mapper);
+        this.reducer = checkNotNull(reducer);
+    }
+    
+    /**
+     * Reducer applied to the output of each partition, and to the buffered
+     * intermediate values before they are spilled
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> combiner(Reducer<K2,V2,K2,V2> combiner) {
+      this.combiner = combiner;
+      return this;
+    }
+    
+    /**
+     * Order of the intermediate keys
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> comparator(Comparator<K2> comparator) {
+      this.comparator = comparator;
+      return this;
+    }
+    
+    /**
+     * Order of the output keys
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> outputComparator(Comparator<K3> comparator) {
+      this.outputComparator = comparator;
+      return this;
+    }
+    
+    /**
+     * The ExecutorService used to run the map and reduce tasks. By default
+     * a shared fixed pool with one thread per available processor is used.
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> executor(ExecutorService executor) {
+      this.executor = executor;
+      return this;
+    }
+    
+    /**
+     * The maximum number of tasks submitted to the executor at any one time
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> parallelism(int parallelism) {
+      checkArgument(parallelism > 0);
+      this.parallelism = parallelism;
+      return this;
+    }
+    
+    /**
+     * The number of input pairs mapped, or intermediate keys reduced, 
+     * by a single task
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> partitionSize(int size) {
+      checkArgument(size > 0);
+      this.partitionSize = size;
+      return this;
+    }
+    
+    /**
+     * The maximum number of intermediate values to hold in memory before
+     * spilling to disk. A negative value disables spilling.
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> memoryBudget(long values) {
+      this.memoryBudget = values;
+      return this;
+    }
+    
+    /**
+     * True if null values are to be collected
+     */
+    public Builder<K1,V1,K2,V2,K3,V3> nulls(boolean nulls) {
+      this.nulls = nulls;
+      return this;
+    }
+    
+    public ParallelMapRed<K1,V1,K2,V2,K3,V3> get() {
+      return new ParallelMapRed<K1,V1,K2,V2,K3,V3>(this);
+    }
+  }
+  
+  private final Mapper<K1,V1,K2,V2> mapper;
+  private final Reducer<K2,V2,K2,V2> combiner;
+  private final Reducer<K2,V2,K3,V3> reducer;
+  private final Comparator<K2> comparator;
+  private final Comparator<K3> outputComparator;
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final int partitionSize;
+  private final long memoryBudget;
+  private final boolean nulls;
+  
+  ParallelMapRed(Builder<K1,V1,K2,V2,K3,V3> builder) {
+    this.mapper = builder.mapper;
+    this.combiner = builder.combiner;
+    this.reducer = builder.reducer;
+    this.comparator = builder.comparator;
+    this.outputComparator = builder.outputComparator;
+    this.executor = builder.executor;
+    this.parallelism = builder.parallelism;
+    this.partitionSize = builder.partitionSize;
+    this.memoryBudget = builder.memoryBudget;
+    this.nulls = builder.nulls;
+  }
+  
+  private ExecutorService executor() {
+    return executor != null ? executor : getDefaultExecutor();
+  }
+  
+  public Iterable<Pair<K3,Iterable<V3>>> apply(
+    Iterable<Pair<K1,V1>> input) {
+      Spill spill = new Spill();
+      try {
+        Run<K2,V2> merged = map(input, spill);
+        return reduce(spill.merge(merged));
+      } finally {
+        spill.close();
+      }
+  }
+  
+  /**
+   * Maps the input partitions in parallel. Partition results are merged in 
+   * submission order so that values for a key remain in input order.
+   */
+  private Run<K2,V2> map(
+    Iterable<Pair<K1,V1>> input, 
+    Spill spill) {
+      Run<K2,V2> buffer = new Run<K2,V2>(comparator);
+      Deque<Future<Run<K2,V2>>> pending = 
+        new ArrayDeque<Future<Run<K2,V2>>>();
+      try {
+        for (final List<Pair<K1,V1>> partition : 
+             Iterables.partition(input, partitionSize)) {
+          if (pending.size() >= parallelism)
+            buffer = merge(buffer, await(pending.poll()), spill);
+          pending.add(executor().submit(
+            new Callable<Run<K2,V2>>() {
+              public Run<K2,V2> call() {
+                Run<K2,V2> run = new Run<K2,V2>(comparator);
+                for (Pair<K1,V1> pair : partition)
+                  mapper.map(pair.first(), pair.second(), run);
+                return combiner != null ? combine(run) : run;
+              }
+            }));
+        }
+        while (!pending.isEmpty())
+          buffer = merge(buffer, await(pending.poll()), spill);
+        return buffer;
+      } finally {
+        for (Future<?> future : pending)
+          future.cancel(true);
+      }
+  }
+  
+  private Run<K2,V2> merge(
+    Run<K2,V2> buffer, 
+    Run<K2,V2> run, 
+    Spill spill) {
+      buffer.addAll(run);
+      if (memoryBudget < 0 || buffer.size <= memoryBudget)
+        return buffer;
+      if (combiner != null) 
+        buffer = combine(buffer);
+      if (buffer.size > memoryBudget) {
+        spill.write(buffer);
+        buffer = new Run<K2,V2>(comparator);
+      }
+      return buffer;
+  }
+  
+  private Run<K2,V2> combine(Run<K2,V2> run) {
+    Run<K2,V2> combined = new Run<K2,V2>(comparator);
+    for (Map.Entry<K2,List<V2>> entry : run.map.entrySet())
+      combiner.reduce(
+        entry.getKey(), 
+        entry.getValue().iterator(), 
+        combined);
+    return combined;
+  }
+  
+  /**
+   * Reduces batches of grouped intermediate values in parallel
+   */
+  private Iterable<Pair<K3,Iterable<V3>>> reduce(
+    Iterator<Pair<K2,List<V2>>> groups) {
+      Run<K3,V3> output = new Run<K3,V3>(outputComparator);
+      Deque<Future<Run<K3,V3>>> pending = 
+        new ArrayDeque<Future<Run<K3,V3>>>();
+      try {
+        while (groups.hasNext()) {
+          final List<Pair<K2,List<V2>>> batch = 
+            new ArrayList<Pair<K2,List<V2>>>();
+          while (groups.hasNext() && batch.size() < partitionSize)
+            batch.add(groups.next());
+          if (pending.size() >= parallelism)
+            output.addAll(await(pending.poll()));
+          pending.add(executor().submit(
+            new Callable<Run<K3,V3>>() {
+              public Run<K3,V3> call() {
+                Run<K3,V3> run = new Run<K3,V3>(outputComparator);
+                for (Pair<K2,List<V2>> group : batch)
+                  reducer.reduce(group.first(), group.second().iterator(), run);
+                return run;
+              }
+            }));
+        }
+        while (!pending.isEmpty())
+          output.addAll(await(pending.poll()));
+      } finally {
+        for (Future<?> future : pending)
+          future.cancel(true);
+      }
+      ImmutableList.Builder<Pair<K3,Iterable<V3>>> list = 
+        ImmutableList.builder();
+      for (Map.Entry<K3,List<V3>> entry : output.map.entrySet())
+        list.add(
+          Pair.<K3,Iterable<V3>>of(
+            entry.getKey(), 
+            ImmutableList.copyOf(entry.getValue())));
+      return list.build();
+  }
+  
+  private static <T>T await(Future<T> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Throwables.propagate(e);
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+  
+  /**
+   * Sorted, in-memory collection of key/value groups
+   */
+  private class Run<K,V> 
+    implements Collector<K,V> {
+    final TreeMap<K,List<V>> map;
+    long size = 0;
+    Run(Comparator<K> comparator) {
+      map = new TreeMap<K,List<V>>(comparator);
+    }
+    public void collect(K key, V val) {
+      if (!nulls && val == null) return;
+      List<V> list = map.get(key);
+      if (list == null) {
+        list = new ArrayList<V>();
+        map.put(key, list);
+      }
+      list.add(val);
+      size++;
+    }
+    void addAll(Run<K,V> run) {
+      for (Map.Entry<K,List<V>> entry : run.map.entrySet()) {
+        List<V> list = map.get(entry.getKey());
+        if (list == null)
+          map.put(entry.getKey(), entry.getValue());
+        else 
+          list.addAll(entry.getValue());
+      }
+      size += run.size;
+    }
+  }
+  
+  /**
+   * Manages the sorted runs written to temporary files and merges them, 
+   * in the order they were written, with the final in-memory run.
+   */
+  private class Spill {
+    private final List<File> files = new ArrayList<File>();
+    private final List<ObjectInputStream> open = 
+      new ArrayList<ObjectInputStream>();
+    
+    void write(Run<K2,V2> run) {
+      try {
+        File file = File.createTempFile("abdera-mapred", ".run");
+        file.deleteOnExit();
+        files.add(file);
+        ObjectOutputStream out = 
+          new ObjectOutputStream(
+            new BufferedOutputStream(
+              new FileOutputStream(file)));
+        try {
+          for (Map.Entry<K2,List<V2>> entry : run.map.entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(new ArrayList<V2>(entry.getValue()));
+            out.reset();
+          }
+        } finally {
+          out.close();
+        }
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+    }
+    
+    Iterator<Pair<K2,List<V2>>> merge(Run<K2,V2> last) {
+      Iterator<Pair<K2,List<V2>>> mem = 
+        Iterators.transform(
+          last.map.entrySet().iterator(), 
+          new Function<Map.Entry<K2,List<V2>>,Pair<K2,List<V2>>>() {
+            public Pair<K2,List<V2>> apply(Map.Entry<K2,List<V2>> input) {
+              return Pair.of(input.getKey(), input.getValue());
+            }
+          });
+      if (files.isEmpty())
+        return mem;
+      final List<PeekingIterator<Pair<K2,List<V2>>>> sources = 
+        new ArrayList<PeekingIterator<Pair<K2,List<V2>>>>();
+      for (File file : files)
+        sources.add(Iterators.peekingIterator(read(file)));
+      sources.add(Iterators.peekingIterator(mem));
+      final Comparator<K2> order = 
+        comparator != null ? 
+          comparator : 
+          (Comparator<K2>)Ordering.natural();
+      // ties are broken by the run index so values stay in input order
+      final PriorityQueue<Integer> heap = 
+        new PriorityQueue<Integer>(
+          sources.size(), 
+          new Comparator<Integer>() {
+            public int compare(Integer a, Integer b) {
+              int c = order.compare(
+                sources.get(a).peek().first(), 
+                sources.get(b).peek().first());
+              return c != 0 ? c : a.compareTo(b);
+            }
+          });
+      for (int n = 0; n < sources.size(); n++)
+        if (sources.get(n).hasNext())
+          heap.add(n);
+      return new AbstractIterator<Pair<K2,List<V2>>>() {
+        protected Pair<K2,List<V2>> computeNext() {
+          if (heap.isEmpty())
+            return endOfData();
+          K2 key = sources.get(heap.peek()).peek().first();
+          List<V2> vals = new ArrayList<V2>();
+          while (!heap.isEmpty()) {
+            int n = heap.peek();
+            PeekingIterator<Pair<K2,List<V2>>> source = sources.get(n);
+            if (order.compare(source.peek().first(), key) != 0)
+              break;
+            heap.poll();
+            vals.addAll(source.next().second());
+            if (source.hasNext())
+              heap.add(n);
+          }
+          return Pair.of(key, vals);
+        }
+      };
+    }
+    
+    private Iterator<Pair<K2,List<V2>>> read(File file) {
+      final ObjectInputStream in;
+      try {
+        in = new ObjectInputStream(
+          new BufferedInputStream(
+            new FileInputStream(file)));
+        open.add(in);
+      } catch (IOException e) {
+        throw Throwables.propagate(e);
+      }
+      return new AbstractIterator<Pair<K2,List<V2>>>() {
+        protected Pair<K2,List<V2>> computeNext() {
+          try {
+            K2 key = (K2) in.readObject();
+            List<V2> vals = (List<V2>) in.readObject();
+            return Pair.of(key, vals);
+          } catch (EOFException e) {
+            return endOfData();
+          } catch (Exception e) {
+            throw Throwables.propagate(e);
+          }
+        }
+      };
+    }
+    
+    void close() {
+      for (ObjectInputStream in : open) {
+        try {
+          in.close();
+        } catch (IOException e) {}
+      }
+      for (File file : files)
+        file.delete();
+    }
+  }
+}
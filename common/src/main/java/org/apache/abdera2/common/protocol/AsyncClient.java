@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.protocol;
+
+import java.util.concurrent.Executor;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.protocol.HttpContext;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A Client capable of executing requests without blocking the calling 
+ * thread. Sessions created from an AsyncClient (or from a ClientWrapper 
+ * around one) use it for Session.executeAsync and for the ExecutorService
+ * variants of the Session request methods.
+ */
+public interface AsyncClient extends Client {
+
+  /**
+   * Execute the request, returning a future whose value will be set once
+   * the complete response has been received. The context will be 
+   * populated with the executed request and target host, as it would
+   * be by HttpClient.execute
+   */
+  ListenableFuture<HttpResponse> executeAsync(
+    HttpUriRequest request, 
+    HttpContext context);
+  
+  /**
+   * Execute the request, returning a future whose value will be set once
+   * the complete response has been received. Any work that may block, 
+   * such as resolving the target host or executing a request the client
+   * cannot send without blocking, is done using the given executor, and 
+   * the future is completed from one of its threads
+   */
+  ListenableFuture<HttpResponse> executeAsync(
+    HttpUriRequest request, 
+    HttpContext context,
+    Executor executor);
+  
+}
@@ -0,0 +1,550 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.params.ClientPNames;
+import org.apache.http.client.params.HttpClientParams;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.protocol.RequestAddCookies;
+import org.apache.http.client.protocol.RequestAuthCache;
+import org.apache.http.client.protocol.RequestClientConnControl;
+import org.apache.http.client.protocol.RequestDefaultHeaders;
+import org.apache.http.client.protocol.RequestProxyAuthentication;
+import org.apache.http.client.protocol.RequestTargetAuthentication;
+import org.apache.http.client.protocol.ResponseAuthCache;
+import org.apache.http.client.protocol.ResponseProcessCookies;
+import org.apache.http.conn.params.ConnRouteParams;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.CookieSpec;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.impl.conn.DefaultHttpRoutePlanner;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestExpectContinue;
+import org.apache.http.protocol.RequestTargetHost;
+import org.apache.http.protocol.RequestUserAgent;
+import org.apache.http.util.EntityUtils;
+
+import com.google.common.collect.ImmutableSet;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A Client that executes plain HTTP requests asynchronously using a single
+ * non-blocking reactor thread, so the number of requests in flight is not
+ * bounded by the number of threads available. The client's cookie store,
+ * user agent, timeouts, connection limits and redirect settings are 
+ * honored. Each request uses its own connection which is closed once
+ * the response has been read. Request entities are read fully into 
+ * memory before the request is sent, and responses are read fully into
+ * memory, up to the maximum response size, before the future completes.
+ *
+ * The reactor thread only performs I/O. Preparing a request, including 
+ * resolving the target host, and completing its future are done on an 
+ * executor: the one passed to executeAsync, or a pool owned by the 
+ * client with as many threads as the client allows connections. 
+ * Requests that cannot be handled by the reactor are executed on the 
+ * blocking HttpClient using the same executor. That is the case for 
+ * anything other than http, and whenever a proxy, credentials for the
+ * target, default headers, an http scheme with a custom socket factory 
+ * or request or response interceptors other than HttpClient's defaults 
+ * have been configured. Redirects are checked the same way, so a 
+ * redirect to https is never followed over the reactor. Synchronous 
+ * requests always use the blocking HttpClient.
+ */
+@SuppressWarnings("unchecked")
+public class BasicAsyncClient
+  extends BasicClient
+  implements AsyncClient {
+
+  /**
+   * The interceptors installed by DefaultHttpClient, any other 
+   * interceptor causes requests to use the blocking HttpClient
+   */
+  private static final Set<Class<?>> DEFAULT_INTERCEPTORS = 
+    ImmutableSet.<Class<?>>of(
+      RequestDefaultHeaders.class,
+      RequestContent.class,
+      RequestTargetHost.class,
+      RequestClientConnControl.class,
+      RequestUserAgent.class,
+      RequestExpectContinue.class,
+      RequestAddCookies.class,
+      ResponseProcessCookies.class,
+      RequestAuthCache.class,
+      ResponseAuthCache.class,
+      RequestTargetAuthentication.class,
+      RequestProxyAuthentication.class);
+
+  public static final int DEFAULT_MAX_RESPONSE_SIZE = 64 * 1024 * 1024;
+
+  private NioReactor reactor;
+  private ThreadPoolExecutor executor;
+  private volatile int maxResponseSize = DEFAULT_MAX_RESPONSE_SIZE;
+
+  public BasicAsyncClient() {
+    super();
+  }
+
+  public BasicAsyncClient(String useragent) {
+    super(useragent);
+  }
+
+  public BasicAsyncClient(DefaultHttpClient client) {
+    super(client);
+  }
+
+  private synchronized NioReactor getReactor() throws IOException {
+    if (reactor == null)
+      reactor = new NioReactor(
+        "abdera-async-reactor", 
+        getMaxConnectionsTotal(), 
+        getMaxConnectionsPerHost());
+    return reactor;
+  }
+
+  /**
+   * The executor used when none is passed to executeAsync. Its threads 
+   * time out when idle and there are never more of them than the client
+   * allows connections
+   */
+  private synchronized Executor getExecutor() {
+    if (executor == null) {
+      int size = poolSize(getMaxConnectionsTotal());
+      executor = 
+        new ThreadPoolExecutor(
+          size, size, 
+          60, TimeUnit.SECONDS, 
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("abdera-async-%d")
+            .build());
+      executor.allowCoreThreadTimeOut(true);
+    }
+    return executor;
+  }
+
+  private static int poolSize(int max) {
+    return max > 0 ? max : DEFAULT_MAX_TOTAL_CONNECTIONS;
+  }
+
+  @Override
+  public <T extends Client>T setMaxConnectionsTotal(int max) {
+    super.setMaxConnectionsTotal(max);
+    synchronized(this) {
+      if (reactor != null)
+        reactor.setMaxConnections(max);
+      if (executor != null) {
+        int size = poolSize(max);
+        if (size > executor.getMaximumPoolSize()) {
+          executor.setMaximumPoolSize(size);
+          executor.setCorePoolSize(size);
+        } else {
+          executor.setCorePoolSize(size);
+          executor.setMaximumPoolSize(size);
+        }
+      }
+    }
+    return (T)this;
+  }
+
+  /**
+   * Set the maximum size, in bytes, of a response body read by the 
+   * reactor. Larger responses fail with a ProtocolException
+   */
+  public <T extends BasicAsyncClient>T setMaxResponseSize(int max) {
+    this.maxResponseSize = max > 0 ? max : DEFAULT_MAX_RESPONSE_SIZE;
+    return (T)this;
+  }
+
+  public int getMaxResponseSize() {
+    return maxResponseSize;
+  }
+
+  @Override
+  public <T extends Client>T setMaxConnectionsPerHost(int max) {
+    super.setMaxConnectionsPerHost(max);
+    synchronized(this) {
+      if (reactor != null)
+        reactor.setMaxConnectionsPerHost(max);
+    }
+    return (T)this;
+  }
+
+  public ListenableFuture<HttpResponse> executeAsync(
+    HttpUriRequest request,
+    HttpContext context) {
+      return executeAsync(request, context, getExecutor());
+  }
+
+  public ListenableFuture<HttpResponse> executeAsync(
+    final HttpUriRequest request,
+    final HttpContext context,
+    final Executor executor) {
+      final SettableFuture<HttpResponse> future =
+        SettableFuture.create();
+      run(
+        executor, 
+        future,
+        new Runnable() {
+          public void run() {
+            dispatch(request, context, future, 0, executor);
+          }
+        });
+      return future;
+  }
+
+  /**
+   * Runs the task on the executor, failing the future if the executor 
+   * does not accept it
+   */
+  private static void run(
+    Executor executor, 
+    SettableFuture<HttpResponse> future, 
+    Runnable task) {
+      try {
+        executor.execute(task);
+      } catch (RejectedExecutionException e) {
+        future.setException(e);
+      }
+  }
+
+  /**
+   * Sends the request over the reactor if it can handle it, otherwise 
+   * executes it on the blocking HttpClient. Resolves the target address
+   * and may block, so this is only ever called on a thread of the 
+   * executor.
+   */
+  private void dispatch(
+    HttpUriRequest request,
+    HttpContext context,
+    SettableFuture<HttpResponse> future,
+    int redirects,
+    Executor executor) {
+      try {
+        Scheme scheme = getReactorScheme(request, context);
+        if (scheme != null)
+          send(request, context, future, redirects, scheme, executor);
+        else
+          execute(request, context, future);
+      } catch (Throwable t) {
+        future.setException(t);
+      }
+  }
+
+  private void execute(
+    HttpUriRequest request,
+    HttpContext context,
+    SettableFuture<HttpResponse> future) {
+      try {
+        future.set(getClient().execute(request, context));
+      } catch (Throwable t) {
+        future.setException(t);
+      }
+  }
+
+  /**
+   * Returns the http scheme to use for the request if the reactor can 
+   * send it with the same effect as the blocking HttpClient, or null
+   */
+  private Scheme getReactorScheme(
+    HttpUriRequest request, 
+    HttpContext context) {
+    URI uri = request.getURI();
+    if (!"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null)
+      return null;
+    DefaultHttpClient client = getDefaultHttpClient();
+    HttpParams params = client.getParams();
+    if (ConnRouteParams.getDefaultProxy(params) != null ||
+        ConnRouteParams.getDefaultProxy(request.getParams()) != null ||
+        !(client.getRoutePlanner() instanceof DefaultHttpRoutePlanner) ||
+        params.getParameter(ClientPNames.DEFAULT_HEADERS) != null)
+      return null;
+    Scheme scheme = 
+      client.getConnectionManager().getSchemeRegistry().get("http");
+    if (scheme == null || 
+        scheme.getSchemeSocketFactory().getClass() != PlainSocketFactory.class)
+      return null;
+    CredentialsProvider credentials = 
+      (CredentialsProvider) context.getAttribute(ClientContext.CREDS_PROVIDER);
+    if (credentials == null)
+      credentials = client.getCredentialsProvider();
+    if (credentials.getCredentials(
+          new AuthScope(uri.getHost(), scheme.resolvePort(uri.getPort()))) != null)
+      return null;
+    for (int n = 0; n < client.getRequestInterceptorCount(); n++) {
+      HttpRequestInterceptor i = client.getRequestInterceptor(n);
+      if (i == null || !DEFAULT_INTERCEPTORS.contains(i.getClass()))
+        return null;
+    }
+    for (int n = 0; n < client.getResponseInterceptorCount(); n++) {
+      HttpResponseInterceptor i = client.getResponseInterceptor(n);
+      if (i == null || !DEFAULT_INTERCEPTORS.contains(i.getClass()))
+        return null;
+    }
+    return scheme;
+  }
+
+  private void send(
+    final HttpUriRequest request,
+    final HttpContext context,
+    final SettableFuture<HttpResponse> future,
+    final int redirects,
+    final Scheme scheme,
+    final Executor executor)
+      throws Exception {
+    final URI uri = request.getURI();
+    final String host = uri.getHost();
+    final int port = scheme.resolvePort(uri.getPort());
+    final String path = target(uri);
+    final String cookiePath = 
+      uri.getRawPath() != null && uri.getRawPath().length() > 0 ? 
+        uri.getRawPath() : "/";
+    final CookieOrigin origin =
+      new CookieOrigin(host, port, cookiePath, false);
+    final CookieSpec spec = getCookieSpec();
+    HttpHost target = new HttpHost(host, port, uri.getScheme());
+    RequestWrapper wrapper = new RequestWrapper(request);
+    wrapper.setURI(new URI(path));
+    context.setAttribute(ExecutionContext.HTTP_REQUEST, wrapper);
+    context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, target);
+    byte[] bytes = serialize(
+      request, 
+      path, 
+      port != scheme.getDefaultPort() ? host + ":" + port : host, 
+      spec, 
+      origin);
+    NioReactor.Exchange exchange =
+      new NioReactor.Exchange(
+        new InetSocketAddress(host, port),
+        bytes,
+        "HEAD".equalsIgnoreCase(request.getMethod()),
+        getConnectionTimeout(),
+        getSocketTimeout(),
+        getTcpNoDelay(),
+        maxResponseSize,
+        new NioReactor.Callback() {
+          // called on the reactor thread, hand everything to the executor
+          public void completed(final HttpResponse response) {
+            run(
+              executor, 
+              future,
+              new Runnable() {
+                public void run() {
+                  try {
+                    storeCookies(response, spec, origin);
+                    HttpUriRequest redirect =
+                      redirects < getMaximumRedirects() ?
+                        getRedirect(request, response) : null;
+                    if (redirect != null)
+                      dispatch(redirect, context, future, redirects + 1, executor);
+                    else
+                      future.set(response);
+                  } catch (Throwable t) {
+                    future.setException(t);
+                  }
+                }
+              });
+          }
+          public void failed(final Throwable t) {
+            run(
+              executor, 
+              future,
+              new Runnable() {
+                public void run() {
+                  future.setException(t);
+                }
+              });
+          }
+        });
+    getReactor().submit(exchange);
+  }
+
+  private static String target(URI uri) {
+    String path = uri.getRawPath();
+    if (path == null || path.length() == 0)
+      path = "/";
+    String query = uri.getRawQuery();
+    return query != null ? path + "?" + query : path;
+  }
+
+  private CookieSpec getCookieSpec() {
+    DefaultHttpClient client = getDefaultHttpClient();
+    HttpParams params = client.getParams();
+    return client.getCookieSpecs().getCookieSpec(
+      HttpClientParams.getCookiePolicy(params), params);
+  }
+
+  /**
+   * Serializes the request, including the whole of the request entity
+   */
+  private byte[] serialize(
+    HttpUriRequest request,
+    String path,
+    String host,
+    CookieSpec spec,
+    CookieOrigin origin)
+      throws IOException {
+    StringBuilder buf = new StringBuilder();
+    buf.append(request.getMethod())
+       .append(' ')
+       .append(path)
+       .append(" HTTP/1.1\r\n");
+    header(buf, "Host", host);
+    if (request.getFirstHeader("User-Agent") == null) {
+      String ua = HttpProtocolParams.getUserAgent(getDefaultHttpClient().getParams());
+      if (ua != null)
+        header(buf, "User-Agent", ua);
+    }
+    header(buf, "Connection", "close");
+    for (Header header : request.getAllHeaders()) {
+      String name = header.getName();
+      if (!name.equalsIgnoreCase("Host") &&
+          !name.equalsIgnoreCase("Connection") &&
+          !name.equalsIgnoreCase("Content-Length") &&
+          !name.equalsIgnoreCase("Transfer-Encoding"))
+        header(buf, name, header.getValue());
+    }
+    CookieStore store = getCookieStore(false);
+    if (store != null) {
+      List<Cookie> matched = new ArrayList<Cookie>();
+      Date now = new Date();
+      for (Cookie cookie : store.getCookies())
+        if (!cookie.isExpired(now) && spec.match(cookie, origin))
+          matched.add(cookie);
+      if (!matched.isEmpty())
+        for (Header header : spec.formatCookies(matched))
+          header(buf, header.getName(), header.getValue());
+    }
+    byte[] body = null;
+    if (request instanceof HttpEntityEnclosingRequest) {
+      HttpEntity entity = ((HttpEntityEnclosingRequest)request).getEntity();
+      body = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+      if (entity != null) {
+        if (entity.getContentType() != null && request.getFirstHeader("Content-Type") == null)
+          header(buf, "Content-Type", entity.getContentType().getValue());
+        if (entity.getContentEncoding() != null && request.getFirstHeader("Content-Encoding") == null)
+          header(buf, "Content-Encoding", entity.getContentEncoding().getValue());
+      }
+      header(buf, "Content-Length", Integer.toString(body.length));
+    }
+    buf.append("\r\n");
+    byte[] head = buf.toString().getBytes("ISO-8859-1");
+    if (body == null || body.length == 0)
+      return head;
+    byte[] bytes = new byte[head.length + body.length];
+    System.arraycopy(head, 0, bytes, 0, head.length);
+    System.arraycopy(body, 0, bytes, head.length, body.length);
+    return bytes;
+  }
+
+  private static void header(StringBuilder buf, String name, String value) {
+    buf.append(name).append(": ").append(value).append("\r\n");
+  }
+
+  private void storeCookies(
+    HttpResponse response,
+    CookieSpec spec,
+    CookieOrigin origin) {
+    Header[] headers = response.getHeaders("Set-Cookie");
+    if (headers.length == 0)
+      return;
+    CookieStore store = getCookieStore(true);
+    for (Header header : headers) {
+      try {
+        for (Cookie cookie : spec.parse(header, origin)) {
+          try {
+            spec.validate(cookie, origin);
+            store.addCookie(cookie);
+          } catch (MalformedCookieException e) {}
+        }
+      } catch (MalformedCookieException e) {}
+    }
+  }
+
+  private static HttpUriRequest getRedirect(
+    HttpUriRequest request,
+    HttpResponse response) {
+    int status = response.getStatusLine().getStatusCode();
+    if (status != 301 && status != 302 && status != 303 && status != 307)
+      return null;
+    if (request instanceof HttpEntityEnclosingRequest ||
+        !request.getParams().getBooleanParameter(ClientPNames.HANDLE_REDIRECTS, true))
+      return null;
+    Header location = response.getFirstHeader("Location");
+    if (location == null)
+      return null;
+    URI uri = request.getURI().resolve(location.getValue());
+    HttpRequestBase redirect =
+      "HEAD".equalsIgnoreCase(request.getMethod()) ?
+        new HttpHead(uri) :
+        new HttpGet(uri);
+    redirect.setHeaders(request.getAllHeaders());
+    redirect.setParams(request.getParams());
+    return redirect;
+  }
+
+  @Override
+  public void shutdown() {
+    synchronized(this) {
+      if (reactor != null)
+        reactor.shutdown();
+      if (executor != null)
+        executor.shutdown();
+    }
+    super.shutdown();
+  }
+}
@@ -17,6 +17,7 @@
  */
 package org.apache.abdera2.common.protocol;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -67,17 +68,28 @@ class ClientResponseImpl
   private final Session session;
   private final Method method;
   private final HttpContext localContext;
-  private BufferedHttpEntity buffer;
+  private final boolean streaming;
+  private HttpEntity entity;
   
   public ClientResponseImpl(
     Session session,
     HttpResponse response,
     String method,
     HttpContext localContext) {
+    this(session,response,method,localContext,false);
+  }
+  
+  public ClientResponseImpl(
+    Session session,
+    HttpResponse response,
+    String method,
+    HttpContext localContext,
+    boolean streaming) {
     this.response = response;
     this.session = session;
     this.method = Method.get(method,true);
     this.localContext = localContext;
+    this.streaming = streaming;
   }
   
   public Session getSession() {
@@ -232,14 +244,18 @@ class ClientResponseImpl
   }
 
   private HttpEntity getEntity() throws IOException {
-    if (buffer == null) {
-      HttpEntity entity = response.getEntity();
-      if (entity != null)
-        buffer = new BufferedHttpEntity(response.getEntity());
+    if (entity == null) {
+      HttpEntity raw = response.getEntity();
+      if (raw != null)
+        entity = streaming ? raw : new BufferedHttpEntity(raw);
     }
-    return buffer;
+    return entity;
   }
   
+  /**
+   * When streaming, the returned stream reads directly from the
+   * connection and can only be obtained once
+   */
   public InputStream getInputStream() throws IOException {
     InputStream in = null;
     String ce = getHeader("Content-Encoding");
@@ -247,8 +263,46 @@ class ClientResponseImpl
     in = entity != null ? entity.getContent() : null;
     if (ce != null && in != null)
         in = Compression.wrap(in, ce);
+    if (streaming && in != null)
+        in = new ReleasingInputStream(in);
     return in;
   }
+  
+  /**
+   * Releases the underlying connection as soon as the end of the
+   * content is reached or the stream is closed
+   */
+  private final class ReleasingInputStream 
+    extends FilterInputStream {
+    private boolean released = false;
+    ReleasingInputStream(InputStream in) {
+      super(in);
+    }
+    private int check(int r) {
+      if (r == -1) done();
+      return r;
+    }
+    private void done() {
+      if (!released) {
+        released = true;
+        try {
+          in.close();
+        } catch (IOException e) {
+        } finally {
+          release();
+        }
+      }
+    }
+    public int read() throws IOException {
+      return check(super.read());
+    }
+    public int read(byte[] b, int off, int len) throws IOException {
+      return check(super.read(b, off, len));
+    }
+    public void close() throws IOException {
+      done();
+    }
+  }
 
   public Reader getReader() throws IOException {
     return getReader(getCharacterEncoding());
@@ -259,8 +313,8 @@ class ClientResponseImpl
     if (in == null) return null;
     Reader reader = 
       charset != null ? 
-          new InputStreamReader(getInputStream(),charset) :
-          new InputStreamReader(getInputStream());
+          new InputStreamReader(in,charset) :
+          new InputStreamReader(in);
     return reader;
   }
 
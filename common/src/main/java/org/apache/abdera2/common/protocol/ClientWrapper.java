@@ -40,6 +40,10 @@ public abstract class ClientWrapper
     this.internal = client;
   }
   
+  Client getWrappedClient() {
+    return internal;
+  }
+  
   public <T extends Client>T  addRequestInterceptor(HttpRequestInterceptor i, int index) {
     internal.addRequestInterceptor(i, index);
     return (T)this;
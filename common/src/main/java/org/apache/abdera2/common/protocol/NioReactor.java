@@ -0,0 +1,529 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.protocol;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+/**
+ * A single-threaded, selector based HTTP/1.1 transport. Each Exchange
+ * writes a fully serialized request over its own connection and reads
+ * the response (content-length, chunked or connection delimited) without
+ * blocking, so any number of requests can be in flight on the one
+ * reactor thread. The number of open connections, in total and to any 
+ * one address, is limited; exchanges over the limit wait in a queue. 
+ * Responses are buffered in memory, so the size of the response head 
+ * and body are limited as well.
+ */
+final class NioReactor implements Runnable {
+
+  /**
+   * Receives the outcome of an Exchange. Called on the reactor thread, 
+   * so implementations must return quickly and hand any other work, 
+   * including completing futures, to another thread
+   */
+  static interface Callback {
+    void completed(HttpResponse response);
+    void failed(Throwable t);
+  }
+
+  private final Selector selector;
+  private final Thread thread;
+  private final Queue<Exchange> submitted =
+    new ConcurrentLinkedQueue<Exchange>();
+  private final Queue<Exchange> pending =
+    new ArrayDeque<Exchange>();
+  private final Map<InetSocketAddress,Integer> connections =
+    new HashMap<InetSocketAddress,Integer>();
+  private volatile int maxConnections;
+  private volatile int maxConnectionsPerHost;
+  private volatile boolean running = true;
+  private int active = 0;
+
+  NioReactor(
+    String name, 
+    int maxConnections, 
+    int maxConnectionsPerHost) 
+      throws IOException {
+    this.selector = Selector.open();
+    this.maxConnections = limit(maxConnections);
+    this.maxConnectionsPerHost = limit(maxConnectionsPerHost);
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  private static int limit(int max) {
+    return max > 0 ? max : Integer.MAX_VALUE;
+  }
+
+  void setMaxConnections(int max) {
+    this.maxConnections = limit(max);
+    selector.wakeup();
+  }
+
+  void setMaxConnectionsPerHost(int max) {
+    this.maxConnectionsPerHost = limit(max);
+    selector.wakeup();
+  }
+
+  void submit(Exchange exchange) {
+    if (!running)
+      throw new IllegalStateException("The reactor has been shut down");
+    submitted.add(exchange);
+    selector.wakeup();
+  }
+
+  void shutdown() {
+    running = false;
+    selector.wakeup();
+  }
+
+  public void run() {
+    try {
+      while (running) {
+        selector.select(500);
+        Exchange exchange = null;
+        while((exchange = submitted.poll()) != null)
+          pending.add(exchange);
+        openPending();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          process(key);
+        }
+        // use the connections released while processing
+        openPending();
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : selector.keys()) {
+          Exchange ex = (Exchange) key.attachment();
+          if (ex != null && ex.isExpired(now))
+            fail(key, new SocketTimeoutException("Timed out waiting for " + ex.address));
+        }
+      }
+    } catch (ClosedSelectorException e) {
+    } catch (IOException e) {
+    } finally {
+      Throwable t = new ConnectionClosedException("The reactor has been shut down");
+      for (SelectionKey key : selector.keys())
+        fail(key, t);
+      Exchange exchange = null;
+      while((exchange = submitted.poll()) != null)
+        exchange.callback.failed(t);
+      while((exchange = pending.poll()) != null)
+        exchange.callback.failed(t);
+      try {
+        selector.close();
+      } catch (IOException e) {}
+    }
+  }
+
+  private void openPending() {
+    for (Iterator<Exchange> i = pending.iterator(); 
+         i.hasNext() && active < maxConnections;) {
+      Exchange exchange = i.next();
+      if (count(exchange.address) < maxConnectionsPerHost) {
+        i.remove();
+        open(exchange);
+      }
+    }
+  }
+
+  private void open(Exchange exchange) {
+    SocketChannel channel = null;
+    try {
+      channel = SocketChannel.open();
+      acquire(exchange.address);
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(exchange.tcpNoDelay);
+      exchange.touch(exchange.connectTimeout);
+      if (channel.connect(exchange.address)) {
+        channel.register(selector, SelectionKey.OP_WRITE, exchange);
+        exchange.touch(exchange.socketTimeout);
+      } else {
+        channel.register(selector, SelectionKey.OP_CONNECT, exchange);
+      }
+    } catch (Throwable t) {
+      if (channel != null) {
+        release(exchange.address);
+        close(channel);
+      }
+      exchange.callback.failed(t);
+    }
+  }
+
+  private void process(SelectionKey key) {
+    Exchange exchange = (Exchange) key.attachment();
+    SocketChannel channel = (SocketChannel) key.channel();
+    try {
+      if (key.isConnectable()) {
+        channel.finishConnect();
+        exchange.touch(exchange.socketTimeout);
+        key.interestOps(SelectionKey.OP_WRITE);
+      } else if (key.isWritable()) {
+        channel.write(exchange.request);
+        exchange.touch(exchange.socketTimeout);
+        if (!exchange.request.hasRemaining())
+          key.interestOps(SelectionKey.OP_READ);
+      } else if (key.isReadable()) {
+        ByteBuffer buf = exchange.readBuffer();
+        int r = channel.read(buf);
+        exchange.touch(exchange.socketTimeout);
+        if (r == -1) {
+          exchange.eof();
+        } else {
+          exchange.received(r);
+        }
+        if (exchange.response != null) {
+          release(key, exchange);
+          exchange.callback.completed(exchange.response);
+        }
+      }
+    } catch (Throwable t) {
+      fail(key, t);
+    }
+  }
+
+  private int count(InetSocketAddress address) {
+    Integer n = connections.get(address);
+    return n != null ? n : 0;
+  }
+
+  private void acquire(InetSocketAddress address) {
+    connections.put(address, count(address) + 1);
+    active++;
+  }
+
+  private void release(InetSocketAddress address) {
+    int n = count(address) - 1;
+    if (n > 0)
+      connections.put(address, n);
+    else
+      connections.remove(address);
+    active--;
+  }
+
+  private void release(SelectionKey key, Exchange exchange) {
+    key.attach(null);
+    key.cancel();
+    close((SocketChannel)key.channel());
+    release(exchange.address);
+  }
+
+  private void fail(SelectionKey key, Throwable t) {
+    Exchange exchange = (Exchange) key.attachment();
+    if (exchange != null) {
+      release(key, exchange);
+      exchange.callback.failed(t);
+    }
+  }
+
+  private static void close(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException e) {}
+  }
+
+  /**
+   * A single request/response exchange over a dedicated connection
+   */
+  static final class Exchange {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    final InetSocketAddress address;
+    final ByteBuffer request;
+    final boolean head;
+    final int connectTimeout;
+    final int socketTimeout;
+    final boolean tcpNoDelay;
+    final int maxBodySize;
+    final Callback callback;
+
+    private byte[] buf = new byte[8192];
+    private int len = 0;
+    private long deadline = 0;
+
+    private int headerEnd = -1;
+    private int scanned = 0;
+    private BasicHttpResponse head_response;
+    private long contentLength = -1;
+    private boolean chunked = false;
+    private int chunkPos = 0;
+    private int chunkedLen = 0;
+
+    HttpResponse response;
+
+    Exchange(
+      InetSocketAddress address,
+      byte[] request,
+      boolean head,
+      int connectTimeout,
+      int socketTimeout,
+      boolean tcpNoDelay,
+      int maxBodySize,
+      Callback callback) {
+      this.address = address;
+      this.request = ByteBuffer.wrap(request);
+      this.head = head;
+      this.connectTimeout = connectTimeout;
+      this.socketTimeout = socketTimeout;
+      this.tcpNoDelay = tcpNoDelay;
+      this.maxBodySize = maxBodySize;
+      this.callback = callback;
+    }
+
+    void touch(int timeout) {
+      deadline = timeout > 0 ? System.currentTimeMillis() + timeout : 0;
+    }
+
+    boolean isExpired(long now) {
+      return deadline > 0 && now > deadline;
+    }
+
+    /**
+     * Returns the buffer to read into, growing it if it is full. Fails 
+     * once the head or body would exceed the allowed size
+     */
+    ByteBuffer readBuffer() throws IOException {
+      if (len == buf.length) {
+        long limit = 
+          headerEnd == -1 ? 
+            MAX_HEAD_SIZE :
+          contentLength > 0 ?
+            headerEnd + contentLength :
+            // leave room for the chunk header and trailers
+            (long)headerEnd + maxBodySize + MAX_HEAD_SIZE;
+        limit = Math.min(limit, MAX_ARRAY_SIZE);
+        if (len >= limit)
+          throw tooLarge();
+        byte[] b = new byte[(int)Math.min(limit, (long)buf.length << 1)];
+        System.arraycopy(buf, 0, b, 0, len);
+        buf = b;
+      }
+      return ByteBuffer.wrap(buf, len, buf.length - len);
+    }
+
+    private ProtocolException tooLarge() {
+      return new ProtocolException(
+        headerEnd == -1 ? 
+          "The response head exceeds " + MAX_HEAD_SIZE + " bytes" :
+          "The response body exceeds " + maxBodySize + " bytes");
+    }
+
+    void received(int r) throws IOException {
+      len += r;
+      if (headerEnd == -1 && !parseHead())
+        return;
+      if (head_response != null)
+        checkComplete();
+      if (response == null && 
+          contentLength == -1 && 
+          !chunked && 
+          len - headerEnd > maxBodySize)
+        throw tooLarge();
+    }
+
+    void eof() throws IOException {
+      if (head_response == null)
+        throw new ConnectionClosedException("Connection closed before the response was received");
+      if (chunked || contentLength > -1)
+        throw new ConnectionClosedException("Premature end of response content");
+      complete(body(headerEnd, len - headerEnd));
+    }
+
+    private boolean parseHead() throws IOException {
+      int end = indexOf(CR, LF, CR, LF, Math.max(0, scanned - 3), len);
+      if (end == -1) {
+        scanned = len;
+        return false;
+      }
+      String[] lines = latin1(buf, 0, end).split("\r\n");
+      String[] status = lines[0].split(" ", 3);
+      if (status.length < 2 || !status[0].startsWith("HTTP/"))
+        throw new ProtocolException("Invalid status line: " + lines[0]);
+      int code = Integer.parseInt(status[1]);
+      int body = end + 4;
+      if (code >= 100 && code < 200) {
+        // discard interim responses
+        System.arraycopy(buf, body, buf, 0, len - body);
+        len -= body;
+        scanned = 0;
+        return len > 0 ? parseHead() : false;
+      }
+      ProtocolVersion version =
+        status[0].equals("HTTP/1.0") ?
+          HttpVersion.HTTP_1_0 :
+          HttpVersion.HTTP_1_1;
+      head_response =
+        new BasicHttpResponse(
+          new BasicStatusLine(
+            version, code, status.length > 2 ? status[2] : ""));
+      for (int n = 1; n < lines.length; n++) {
+        String line = lines[n];
+        int c = line.indexOf(':');
+        if (c > 0)
+          head_response.addHeader(
+            line.substring(0,c).trim(),
+            line.substring(c+1).trim());
+      }
+      headerEnd = body;
+      chunkPos = body;
+      if (head || code == 204 || code == 304) {
+        contentLength = 0;
+      } else {
+        Header te = head_response.getFirstHeader("Transfer-Encoding");
+        Header cl = head_response.getFirstHeader("Content-Length");
+        if (te != null && te.getValue().toLowerCase().contains("chunked")) {
+          chunked = true;
+        } else if (cl != null) {
+          try {
+            contentLength = Long.parseLong(cl.getValue().trim());
+          } catch (NumberFormatException e) {
+            throw new ProtocolException("Invalid Content-Length: " + cl.getValue());
+          }
+          if (contentLength < 0)
+            throw new ProtocolException("Invalid Content-Length: " + cl.getValue());
+          if (contentLength > maxBodySize || 
+              contentLength > MAX_ARRAY_SIZE - headerEnd)
+            throw tooLarge();
+        }
+      }
+      return true;
+    }
+
+    private void checkComplete() throws IOException {
+      if (contentLength == 0) {
+        complete(null);
+      } else if (contentLength > 0) {
+        if (len - headerEnd >= contentLength)
+          complete(body(headerEnd, (int)contentLength));
+      } else if (chunked) {
+        readChunks();
+      }
+    }
+
+    /**
+     * Decodes the chunks received so far in place, moving the content of
+     * each chunk down to follow the content of the previous one
+     */
+    private void readChunks() throws IOException {
+      while(true) {
+        int eol = indexOf(CR, LF, chunkPos, len);
+        if (eol == -1) return;
+        String line = latin1(buf, chunkPos, eol - chunkPos);
+        int s = line.indexOf(';');
+        int size;
+        try {
+          size = Integer.parseInt((s > -1 ? line.substring(0,s) : line).trim(), 16);
+        } catch (NumberFormatException e) {
+          throw new ProtocolException("Invalid chunk header: " + line);
+        }
+        int start = eol + 2;
+        if (size == 0) {
+          // skip any trailers up to the terminating empty line
+          int p = start;
+          while (true) {
+            int t = indexOf(CR, LF, p, len);
+            if (t == -1) return;
+            if (t == p) break;
+            p = t + 2;
+          }
+          complete(body(headerEnd, chunkedLen));
+          return;
+        }
+        if (size < 0 || size > maxBodySize - chunkedLen)
+          throw tooLarge();
+        if (len - start < (long)size + 2) return;
+        int next = start + size + 2;
+        int to = headerEnd + chunkedLen;
+        System.arraycopy(buf, start, buf, to, size);
+        chunkedLen += size;
+        to += size;
+        System.arraycopy(buf, next, buf, to, len - next);
+        len = to + len - next;
+        chunkPos = to;
+      }
+    }
+
+    private byte[] body(int off, int length) {
+      byte[] b = new byte[length];
+      System.arraycopy(buf, off, b, 0, length);
+      return b;
+    }
+
+    private void complete(byte[] body) {
+      if (body != null) {
+        ByteArrayEntity entity = new ByteArrayEntity(body);
+        entity.setContentType(head_response.getFirstHeader("Content-Type"));
+        entity.setContentEncoding(head_response.getFirstHeader("Content-Encoding"));
+        head_response.setEntity(entity);
+      }
+      response = head_response;
+    }
+
+    private int indexOf(byte a, byte b, int from, int to) {
+      for (int n = from; n < to - 1; n++)
+        if (buf[n] == a && buf[n+1] == b)
+          return n;
+      return -1;
+    }
+
+    private int indexOf(byte a, byte b, byte c, byte d, int from, int to) {
+      for (int n = from; n < to - 3; n++)
+        if (buf[n] == a && buf[n+1] == b && buf[n+2] == c && buf[n+3] == d)
+          return n;
+      return -1;
+    }
+
+    private static String latin1(byte[] buf, int off, int len) {
+      try {
+        return new String(buf, off, len, "ISO-8859-1");
+      } catch (UnsupportedEncodingException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+}
@@ -144,6 +144,7 @@ public class RequestOptions extends AbstractRequest implements Request {
     boolean useExpectContinue = true;
     boolean useConditional = true;
     boolean followRedirects = true;
+    boolean streamResponse = false;
     CacheControl cacheControl = null;
     int waitForContinue = -1;
     
@@ -159,6 +160,7 @@ public class RequestOptions extends AbstractRequest implements Request {
     Builder(RequestOptions template,Selector<Map.Entry<String, Set<String>>> filter) {
       this.revalidateAuth = template.revalidateAuth;
       this.followRedirects = template.followRedirects;
+      this.streamResponse = template.streamResponse;
       this.cacheControl = template.cacheControl;
       this.useChunked = template.useChunked;
       this.usePostOverride = template.usePostOverride;
@@ -216,6 +218,17 @@ public class RequestOptions extends AbstractRequest implements Request {
       return this;
     }
     
+    /**
+     * Read the response entity directly from the connection rather than 
+     * buffering it in memory first. The response content can then only be
+     * read once and the connection is released when the end of the content
+     * is reached or the stream is closed
+     */
+    public Builder streamResponse() {
+      this.streamResponse = true;
+      return this;
+    }
+    
     public Builder contentType(String value) {
       return header("Content-Type", value);
     }
@@ -472,6 +485,7 @@ public class RequestOptions extends AbstractRequest implements Request {
     final boolean useExpectContinue;
     final boolean useConditional;
     final boolean followRedirects;
+    final boolean streamResponse;
     final CacheControl cacheControl;
     final ImmutableMap<String, Set<String>> headers;
     final int waitForContinue;
@@ -485,6 +499,7 @@ public class RequestOptions extends AbstractRequest implements Request {
       this.useConditional = builder.useConditional;
       this.useExpectContinue = builder.useExpectContinue;
       this.followRedirects = builder.followRedirects;
+      this.streamResponse = builder.streamResponse;
       this.cacheControl = builder.cacheControl;
       this.headers = headers;
       this.waitForContinue = builder.waitForContinue;
@@ -591,6 +606,13 @@ public class RequestOptions extends AbstractRequest implements Request {
     public boolean isFollowRedirects() {
         return followRedirects;
     }
+
+    /**
+     * True if the response entity should be streamed directly from the connection rather than buffered
+     */
+    public boolean isStreamResponse() {
+        return streamResponse;
+    }
     
     public boolean has(String header) {
       return headers.containsKey(header);
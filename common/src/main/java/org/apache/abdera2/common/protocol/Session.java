@@ -22,6 +22,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
@@ -47,8 +48,10 @@ import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.util.EntityUtils;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -65,6 +68,7 @@ public class Session {
 
     protected final Client client;
     protected final HttpContext localContext;
+    protected boolean streamResponses = false;
 
     protected Session(Client client) {
         this.client = client;
@@ -92,21 +96,13 @@ public class Session {
     
     public <T extends ClientResponse>Callable<T> getTask(
       final String uri) {
-      return new Callable<T>() {
-        public T call() throws Exception {
-          return (T) get(uri);
-        }
-      };
+      return new RequestTask<T>("GET", uri, null, null);
     }
     
     public <T extends ClientResponse>Callable<T> getTask(
       final String uri, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) get(uri,options);
-          }
-        };
+        return new RequestTask<T>("GET", uri, null, options);
     }
 
     /**
@@ -126,22 +122,14 @@ public class Session {
     public <T extends ClientResponse>Callable<T> postTask(
       final String uri, 
       final HttpEntity entity) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) post(uri,entity);
-          }
-        };
+        return new RequestTask<T>("POST", uri, entity, null);
     }
     
     public <T extends ClientResponse>Callable<T> postTask(
       final String uri, 
       final HttpEntity entity, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) post(uri,entity,options);
-          }
-        };
+        return new RequestTask<T>("POST", uri, entity, options);
     }
 
     /**
@@ -158,22 +146,14 @@ public class Session {
     public <T extends ClientResponse>Callable<T> postTask(
       final String uri, 
       final InputStream in) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) post(uri,in);
-          }
-        };
+        return new RequestTask<T>("POST", uri, new InputStreamEntity(in,-1), null);
     }
     
     public <T extends ClientResponse>Callable<T> postTask(
       final String uri, 
       final InputStream in, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) post(uri,in,options);
-          }
-        };
+        return new RequestTask<T>("POST", uri, new InputStreamEntity(in,-1), options);
     }
 
     /**
@@ -190,22 +170,14 @@ public class Session {
     public <T extends ClientResponse>Callable<T> putTask(
       final String uri, 
       final HttpEntity entity) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) put(uri,entity);
-          }
-        };
+        return new RequestTask<T>("PUT", uri, entity, null);
     }
     
     public <T extends ClientResponse>Callable<T> putTask(
       final String uri, 
       final HttpEntity entity, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) put(uri,entity,options);
-          }
-        };
+        return new RequestTask<T>("PUT", uri, entity, options);
     }
 
     /**
@@ -222,22 +194,14 @@ public class Session {
     public <T extends ClientResponse>Callable<T> putTask(
         final String uri, 
         final InputStream in) {
-          return new Callable<T>() {
-            public T call() throws Exception {
-              return (T) put(uri,in);
-            }
-          };
+          return new RequestTask<T>("PUT", uri, new InputStreamEntity(in,-1), null);
       }
     
     public <T extends ClientResponse>Callable<T> putTask(
       final String uri, 
       final InputStream in, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) put(uri,in,options);
-          }
-        };
+        return new RequestTask<T>("PUT", uri, new InputStreamEntity(in,-1), options);
     }
 
     /**
@@ -252,21 +216,13 @@ public class Session {
     
     public <T extends ClientResponse>Callable<T> deleteTask(
       final String uri) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) delete(uri);
-          }
-        };
+        return new RequestTask<T>("DELETE", uri, null, null);
     }
     
     public <T extends ClientResponse>Callable<T> deleteTask(
       final String uri,
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) delete(uri,options);
-          }
-        };
+        return new RequestTask<T>("DELETE", uri, null, options);
     }
 
     /**
@@ -280,21 +236,13 @@ public class Session {
     
     public <T extends ClientResponse>Callable<T> headTask(
         final String uri) {
-          return new Callable<T>() {
-            public T call() throws Exception {
-              return (T) head(uri);
-            }
-          };
+          return new RequestTask<T>("HEAD", uri, null, null);
       }
     
     public <T extends ClientResponse>Callable<T> headTask(
       final String uri,
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) head(uri,options);
-          }
-        };
+        return new RequestTask<T>("HEAD", uri, null, options);
     }
     
     /**
@@ -378,14 +326,20 @@ public class Session {
         String uri, 
         InputStream in, 
         RequestOptions options) {
+        if (options == null)
+          options = getDefaultRequestOptions().get();
+        return (T)wrap(execute(
+          method, uri, streamEntity(in, options), options));
+    }
+    
+    private HttpEntity streamEntity(InputStream in, RequestOptions options) {
         if (options == null)
           options = getDefaultRequestOptions().get();
         InputStreamEntity re = 
           new InputStreamEntity(in, -1);
         re.setContentType(
           options.getContentType().toString());
-        return (T)wrap(execute(
-          method, uri, re, options));
+        return re;
     }
     
     public <T extends ClientResponse>Callable<T> executeTask(
@@ -393,11 +347,7 @@ public class Session {
       final String uri, 
       final InputStream in, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) execute(method,uri,in,options);
-          }
-        };
+        return new RequestTask<T>(method, uri, streamEntity(in, options), options);
     }
     
     /**
@@ -422,11 +372,7 @@ public class Session {
       final String uri, 
       final InputStream in, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) execute(method,uri,in,options);
-          }
-        };
+        return new RequestTask<T>(method.name(), uri, streamEntity(in, options), options);
     }
 
     public <T extends ClientResponse>T execute(
@@ -442,11 +388,7 @@ public class Session {
       final String uri, 
       final HttpEntity entity, 
       final RequestOptions options) {
-        return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) execute(method,uri,entity,options);
-          }
-        };
+        return new RequestTask<T>(method.name(), uri, entity, options);
     }
     
     /**
@@ -476,7 +418,8 @@ public class Session {
             getClient().execute(request, localContext);
           ClientResponse resp = 
             wrap(new ClientResponseImpl(
-              this, response, method, localContext));
+              this, response, method, localContext,
+              streamResponses || options.isStreamResponse()));
           return (T)checkRequestException(resp, options);
         } catch (RuntimeException r) {
             throw r;
@@ -490,11 +433,7 @@ public class Session {
       final String uri, 
       final HttpEntity entity, 
       final RequestOptions options) {
-       return new Callable<T>() {
-          public T call() throws Exception {
-            return (T) execute(method,uri,entity,options);
-          }
-        };
+       return new RequestTask<T>(method, uri, entity, options);
     }
     
     protected <T extends ClientResponse>T checkRequestException(ClientResponse response, RequestOptions options) {
@@ -508,6 +447,21 @@ public class Session {
       return (T)response;
   }
     
+    /**
+     * When true, the responses to all requests sent using this session are 
+     * streamed directly from the connection rather than buffered in memory,
+     * as if RequestOptions.Builder.streamResponse() had been set on each
+     * request. Streamed responses can only be read once and MUST be either
+     * fully consumed or released.
+     */
+    public void setStreamResponses(boolean stream) {
+      this.streamResponses = stream;
+    }
+
+    public boolean isStreamResponses() {
+      return streamResponses;
+    }
+    
     /**
      * Get a copy of the default request options
      */
@@ -585,13 +539,159 @@ public class Session {
     void onResponse(X resp);
   }
   
+  /**
+   * A request task created by the get/post/put/delete/head/executeTask 
+   * methods. When the session's client is an AsyncClient, processing a
+   * RequestTask does not occupy a thread of the executor
+   */
+  private final class RequestTask<T extends ClientResponse> 
+    implements Callable<T> {
+    private final String method;
+    private final String uri;
+    private final HttpEntity entity;
+    private final RequestOptions options;
+    RequestTask(
+      String method, 
+      String uri, 
+      HttpEntity entity, 
+      RequestOptions options) {
+      this.method = method;
+      this.uri = uri;
+      this.entity = entity;
+      this.options = options;
+    }
+    public T call() throws Exception {
+      return (T) execute(method,uri,entity,options);
+    }
+  }
+  
+  /**
+   * Returns the AsyncClient backing this session, if any, looking through
+   * any ClientWrapper instances. Returns null if the client does not 
+   * support non-blocking requests
+   */
+  protected AsyncClient getAsyncClient() {
+    Client c = client;
+    while (!(c instanceof AsyncClient) && c instanceof ClientWrapper)
+      c = ((ClientWrapper)c).getWrappedClient();
+    return c instanceof AsyncClient ? (AsyncClient)c : null;
+  }
+  
+  /**
+   * Sends the request without blocking the calling thread if the session's
+   * client is an AsyncClient. Otherwise, the request is executed on the 
+   * calling thread and an already completed future is returned.
+   * 
+   * @param method The HTTP method
+   * @param uri The request URI
+   * @param entity A RequestEntity object providing the payload for the request
+   * @param options The Request Options
+   */
+  public <T extends ClientResponse>ListenableFuture<T> executeAsync(
+    String method,
+    String uri,
+    HttpEntity entity,
+    RequestOptions options) {
+      return executeAsync(method,uri,entity,options,null);
+  }
+  
+  /**
+   * Sends the request using the AsyncClient, completing the future on a 
+   * thread of the given executor, or of the client's own if it is null
+   */
+  private <T extends ClientResponse>ListenableFuture<T> executeAsync(
+    final String method,
+    String uri,
+    HttpEntity entity,
+    RequestOptions options,
+    Executor executor) {
+      final RequestOptions opts = 
+        options != null ? 
+          options : 
+          getDefaultRequestOptions()
+            .get();
+      AsyncClient async = getAsyncClient();
+      if (async == null) {
+        try {
+          return Futures.immediateFuture(
+            (T)execute(method,uri,entity,opts));
+        } catch (Throwable t) {
+          return Futures.immediateFailedFuture(t);
+        }
+      }
+      final HttpContext context = 
+        new BasicHttpContext(localContext);
+      HttpUriRequest request = 
+        RequestHelper.createRequest(
+          method, uri, entity, opts);
+      ListenableFuture<HttpResponse> future = 
+        executor != null ?
+          async.executeAsync(request, context, executor) :
+          async.executeAsync(request, context);
+      return Futures.transform(
+        future, 
+        new Function<HttpResponse,T>() {
+          public T apply(HttpResponse response) {
+            ClientResponse resp = 
+              wrap(new ClientResponseImpl(
+                Session.this, response, method, context,
+                streamResponses || opts.isStreamResponse()));
+            return (T)checkRequestException(resp, opts);
+          }
+        });
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> executeAsync(
+    Method method,
+    String uri,
+    HttpEntity entity,
+    RequestOptions options) {
+      return executeAsync(method.name(),uri,entity,options);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> getAsync(String uri) {
+    return executeAsync("GET",uri,null,null);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> getAsync(String uri, RequestOptions options) {
+    return executeAsync("GET",uri,null,options);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> postAsync(String uri, HttpEntity entity, RequestOptions options) {
+    return executeAsync("POST",uri,entity,options);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> putAsync(String uri, HttpEntity entity, RequestOptions options) {
+    return executeAsync("PUT",uri,entity,options);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> deleteAsync(String uri, RequestOptions options) {
+    return executeAsync("DELETE",uri,null,options);
+  }
+  
+  public <T extends ClientResponse>ListenableFuture<T> headAsync(String uri, RequestOptions options) {
+    return executeAsync("HEAD",uri,null,options);
+  }
+  
   /**
    * Processes requests asynchronously.. will return a Future
-   * whose value will be set once the call completes
+   * whose value will be set once the call completes. Tasks created 
+   * by this session are sent without blocking a thread of the 
+   * executor when the session's client is an AsyncClient
    */
   public <X extends ClientResponse>Future<X> process(
     ExecutorService executor, 
     Callable<X> resp) {
+      return submit(executor, resp);
+  }
+  
+  private <X extends ClientResponse>ListenableFuture<X> submit(
+    ExecutorService executor, 
+    Callable<X> resp) {
+      if (resp instanceof RequestTask && getAsyncClient() != null) {
+        RequestTask<X> task = (RequestTask<X>) resp;
+        return executeAsync(task.method,task.uri,task.entity,task.options,executor);
+      }
       ListeningExecutorService exec = 
         MoreExecutors.listeningDecorator(executor);
       return exec.submit(resp);
@@ -605,8 +705,7 @@ public class Session {
     ExecutorService executor, 
     Callable<X> resp, 
     final Listener<X> listener) {
-      ListeningExecutorService exec = MoreExecutors.listeningDecorator(executor);
-      final ListenableFuture<X> lf = exec.submit(resp);
+      final ListenableFuture<X> lf = submit(executor, resp);
       lf.addListener(
         new Runnable() {
           public void run() {
@@ -0,0 +1,309 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.pusher;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Pusher/Receiver implementation backed by a bounded, preallocated ring 
+ * buffer. Pushed items are delivered to the registered listeners by a 
+ * single dispatcher thread that blocks while there is nothing to deliver,
+ * so an idle channel does not consume any CPU. Items are drained from the 
+ * buffer in batches of up to batchSize; BatchListeners receive each batch 
+ * with a single call to onItems, other Listeners have onItem called once 
+ * per item. 
+ * 
+ * Items pushed before any listener has been registered are retained in 
+ * the buffer and are delivered once the first listener starts listening. 
+ * What happens when the buffer is full is determined by the Overflow 
+ * policy: BLOCK waits for space to become available, DROP silently 
+ * discards the item and FAIL throws an IllegalStateException. While no 
+ * listener is registered nothing can make space, so a full buffer 
+ * discards its oldest item whatever the policy and a push never blocks. 
+ * A push blocked waiting for space fails with an IllegalStateException 
+ * if the pushing thread is interrupted or the pusher is shut down.
+ */
+public class RingBufferPusher<T> 
+  extends AbstractPusher<T> 
+  implements Pusher<T>, Receiver<T> {
+
+  final static Log log = LogFactory.getLog(RingBufferPusher.class);
+  
+  public static final int DEFAULT_CAPACITY = 1024;
+  public static final int DEFAULT_BATCH_SIZE = 64;
+  
+  public static enum Overflow {
+    BLOCK, DROP, FAIL
+  }
+  
+  private static final AtomicInteger counter = new AtomicInteger();
+  
+  private final Object[] buffer;
+  private final int mask;
+  private final int batchSize;
+  private final Overflow overflow;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Set<Listener<T>> listeners = 
+    new CopyOnWriteArraySet<Listener<T>>();
+  private final AtomicLong dropped = new AtomicLong();
+  private final Thread dispatcher;
+  private int head = 0;   // guarded by lock
+  private int count = 0;  // guarded by lock
+  private volatile boolean running = true;
+  
+  public RingBufferPusher() {
+    this(DEFAULT_CAPACITY);
+  }
+  
+  public RingBufferPusher(int capacity) {
+    this(capacity, Overflow.BLOCK);
+  }
+  
+  public RingBufferPusher(int capacity, Overflow overflow) {
+    this(capacity, overflow, DEFAULT_BATCH_SIZE);
+  }
+  
+  /**
+   * @param capacity The minimum number of items that can be buffered, 
+   *                 rounded up to the next power of two
+   * @param overflow What to do when an item is pushed into a full buffer
+   * @param batchSize The maximum number of items delivered at once
+   */
+  public RingBufferPusher(int capacity, Overflow overflow, int batchSize) {
+    checkArgument(capacity > 0 && capacity <= 1 << 30, "Invalid capacity");
+    checkArgument(batchSize > 0, "Invalid batch size");
+    this.overflow = checkNotNull(overflow);
+    int size = Integer.highestOneBit(capacity);
+    if (size < capacity) size <<= 1;
+    this.buffer = new Object[size];
+    this.mask = size - 1;
+    this.batchSize = Math.min(batchSize, size);
+    this.dispatcher = 
+      new Thread(
+        new Dispatcher(), 
+        "abdera-pusher-" + counter.incrementAndGet());
+    this.dispatcher.setDaemon(true);
+    this.dispatcher.start();
+  }
+  
+  public void startListening(Listener<T> listener) {
+    listener.beforeItems();
+    listeners.add(listener);
+    lock.lock();
+    try {
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  public void stopListening(Listener<T> listener) {
+    listener.afterItems();
+    listeners.remove(listener);
+    lock.lock();
+    try {
+      // blocked pushes have to discard if nobody is left listening
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  public void push(T t) {
+    checkNotNull(t);
+    lock.lock();
+    try {
+      offer(t);
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  /**
+   * Pushes all of the items while acquiring the buffer lock only once
+   */
+  public void pushAll(Iterable<T> t) {
+    lock.lock();
+    try {
+      for (T i : t)
+        offer(checkNotNull(i));
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  private void offer(T t) {
+    checkState(running, "Pusher has been shutdown");
+    while (count == buffer.length) {
+      if (listeners.isEmpty()) {
+        buffer[head] = null;
+        head = (head + 1) & mask;
+        count--;
+        dropped.incrementAndGet();
+        break;
+      }
+      switch(overflow) {
+      case DROP:
+        dropped.incrementAndGet();
+        return;
+      case FAIL:
+        throw new IllegalStateException("Pusher buffer is full");
+      default:
+        try {
+          notFull.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException(
+            "Interrupted while waiting for space in the buffer", e);
+        }
+        checkState(running, "Pusher has been shutdown");
+      }
+    }
+    buffer[(head + count) & mask] = t;
+    count++;
+    notEmpty.signal();
+  }
+  
+  /**
+   * The number of items discarded because the buffer was full
+   */
+  public long getDroppedCount() {
+    return dropped.get();
+  }
+  
+  /**
+   * The number of items currently waiting to be delivered
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return count;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  public int capacity() {
+    return buffer.length;
+  }
+  
+  public Overflow getOverflow() {
+    return overflow;
+  }
+  
+  public boolean isRunning() {
+    return running;
+  }
+  
+  public void shutdown() {
+    lock.lock();
+    try {
+      running = false;
+      notEmpty.signalAll();
+      notFull.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    // let the dispatcher finish the batch it is delivering
+    if (Thread.currentThread() != dispatcher) {
+      try {
+        dispatcher.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    for (Listener<?> listener : listeners)
+      listener.afterItems();
+    listeners.clear(); // remove all the listeners
+  }
+  
+  @SuppressWarnings("unchecked")
+  private int drain(Object[] batch) throws InterruptedException {
+    lock.lock();
+    try {
+      while (running && (count == 0 || listeners.isEmpty()))
+        notEmpty.await();
+      if (!running) return -1;
+      int n = Math.min(count, batch.length);
+      for (int i = 0; i < n; i++) {
+        int idx = (head + i) & mask;
+        batch[i] = (T)buffer[idx];
+        buffer[idx] = null;
+      }
+      head = (head + n) & mask;
+      count -= n;
+      notFull.signalAll();
+      return n;
+    } finally {
+      lock.unlock();
+    }
+  }
+  
+  @SuppressWarnings("unchecked")
+  private void deliver(Object[] batch, int n) {
+    ImmutableList<T> items = null;
+    for (Listener<T> listener : listeners) {
+      try {
+        if (listener instanceof BatchListener) {
+          if (items == null) {
+            ImmutableList.Builder<T> builder = ImmutableList.builder();
+            for (int i = 0; i < n; i++)
+              builder.add((T)batch[i]);
+            items = builder.build();
+          }
+          ((BatchListener<T>)listener).onItems(items);
+        } else {
+          for (int i = 0; i < n; i++)
+            listener.onItem((T)batch[i]);
+        }
+      } catch (Throwable t) {
+        log.error(t);
+      }
+    }
+  }
+  
+  private class Dispatcher implements Runnable {
+    public void run() {
+      Object[] batch = new Object[batchSize];
+      try {
+        int n;
+        while ((n = drain(batch)) > -1) {
+          deliver(batch, n);
+          for (int i = 0; i < n; i++)
+            batch[i] = null;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
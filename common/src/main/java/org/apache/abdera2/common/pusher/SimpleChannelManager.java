@@ -17,12 +17,46 @@
  */
 package org.apache.abdera2.common.pusher;
 
+import org.apache.abdera2.common.pusher.RingBufferPusher.Overflow;
+
+/**
+ * ChannelManager implementation that uses a RingBufferPusher for each 
+ * channel. By default, a publisher pushing to a channel whose buffer is 
+ * full waits for the listeners to catch up, so no item is lost while 
+ * anyone is listening. Dropping items instead can be chosen using the 
+ * Overflow policy passed to the constructor.
+ * 
+ * Each channel preallocates a buffer of the given capacity and has its
+ * own dispatcher thread, which runs until the channel is shut down, so 
+ * the cost of a channel is one thread plus its buffer.
+ */
 public class SimpleChannelManager 
   extends MapChannelManager {
 
+  private final int capacity;
+  private final Overflow overflow;
+  private final int batchSize;
+  
+  public SimpleChannelManager() {
+    this(
+      RingBufferPusher.DEFAULT_CAPACITY, 
+      Overflow.BLOCK, 
+      RingBufferPusher.DEFAULT_BATCH_SIZE);
+  }
+  
+  public SimpleChannelManager(
+    int capacity, 
+    Overflow overflow, 
+    int batchSize) {
+    this.capacity = capacity;
+    this.overflow = overflow;
+    this.batchSize = batchSize;
+  }
+  
   @SuppressWarnings("rawtypes")
   protected Channel createChannel() {
-    final SimplePusher<?> sp = new SimplePusher();
+    final RingBufferPusher<?> sp = 
+      new RingBufferPusher(capacity, overflow, batchSize);
     return new Channel(sp,sp) {
       protected void shutdown() {
         sp.shutdown();
@@ -18,13 +18,16 @@
 package org.apache.abdera2.common.security;
 
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.Key;
 
 import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.Signature;
-import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.Mac;
 
@@ -37,6 +40,8 @@ import org.apache.commons.codec.binary.Hex;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 @SuppressWarnings("unchecked")
 public final class HashHelper {
@@ -126,46 +131,265 @@ public final class HashHelper {
     }
   
   public static String sig(PrivateKey key, String alg, byte[] mat) {
+    return Base64.encodeBase64URLSafeString(sign(key,alg,mat,null));
+  }
+  
+  /**
+   * Signs the remaining bytes of the buffer without copying them. The 
+   * position of the passed in buffer is not modified.
+   */
+  public static String sig(PrivateKey key, String alg, ByteBuffer mat) {
+    return Base64.encodeBase64URLSafeString(sign(key,alg,null,mat));
+  }
+  
+  public static String hmac(Key key, String alg, byte[] mat) {
+    return Base64.encodeBase64URLSafeString(mac(key,alg,mat));
+  }
+  
+  /**
+   * Calculates the hmac of the remaining bytes of the buffer without 
+   * copying them. The position of the passed in buffer is not modified.
+   */
+  public static String hmac(Key key, String alg, ByteBuffer mat) {
+    return Base64.encodeBase64URLSafeString(mac(key,alg,mat));
+  }
+  
+  public static boolean sigval(PublicKey key, String alg, byte[] mat, byte[] dat) {
+    return verify(key,alg,mat,null,dat);
+  }
+  
+  public static boolean sigval(PublicKey key, String alg, ByteBuffer mat, byte[] dat) {
+    return verify(key,alg,null,mat,dat);
+  }
+  
+  public static boolean hmacval(Key key, String alg, byte[] mat, byte[] dat) {
+    return isEqual(mac(key,alg,mat), dat);
+  }
+  
+  public static boolean hmacval(Key key, String alg, ByteBuffer mat, byte[] dat) {
+    return isEqual(mac(key,alg,mat), dat);
+  }
+  
+  /**
+   * Compares two byte arrays in a time that depends only on their 
+   * length and not on the position of the first difference, so that 
+   * comparing a calculated hmac against a submitted one does not leak
+   * how much of it was correct.
+   */
+  public static boolean isEqual(byte[] a, byte[] b) {
+    if (a == b) return true;
+    if (a == null || b == null || a.length != b.length) 
+      return false;
+    int r = 0;
+    for (int n = 0; n < a.length; n++)
+      r |= a[n] ^ b[n];
+    return r == 0;
+  }
+  
+  /**
+   * The maximum number of distinct type, algorithm and key combinations 
+   * for which initialized Mac, Signature and MessageDigest engines are 
+   * cached. Defaults to 16
+   */
+  public static final String ENGINE_CACHE_SIZE = 
+    "org.apache.abdera2.security.engineCacheSize";
+  
+  /**
+   * The number of seconds an unused engine, and the key it was 
+   * initialized with, is kept in the cache. Defaults to 60
+   */
+  public static final String ENGINE_CACHE_EXPIRY = 
+    "org.apache.abdera2.security.engineCacheExpiry";
+  
+  private static final int MAC = 0, SIGN = 1, VERIFY = 2, DIGEST = 3;
+  
+  // idle engines kept for each type, algorithm and key
+  private static final int ENGINES_PER_KEY = 
+    Runtime.getRuntime().availableProcessors();
+  
+  /**
+   * Looking up an engine from the security providers and initializing 
+   * it with a key is expensive relative to hashing or signing a short 
+   * input, so the most recently used engines are kept keyed by type, 
+   * algorithm and key. An engine is removed from the cache while it is 
+   * in use and only returned once the operation completes normally; an 
+   * engine that failed part way through is simply dropped, so a cached 
+   * engine is always in its freshly initialized state. 
+   * 
+   * The cache holds strong references to the keys, private and secret 
+   * keys included, so it is shared rather than per thread and entries 
+   * expire once they have not been used for the configured time. Expired 
+   * entries are removed on later cache activity; use clearEngineCache() 
+   * to release all of them at once, e.g. after rotating keys.
+   */
+  private static final Cache<EngineKey,Queue<Object>> engines = 
+    CacheBuilder.newBuilder()
+      .maximumSize(Math.max(0, Integer.getInteger(ENGINE_CACHE_SIZE, 16)))
+      .expireAfterAccess(
+        Math.max(0, Integer.getInteger(ENGINE_CACHE_EXPIRY, 60)), 
+        TimeUnit.SECONDS)
+      .build();
+  
+  /**
+   * Discards all cached engines along with the keys they hold
+   */
+  public static void clearEngineCache() {
+    engines.invalidateAll();
+  }
+  
+  private static final class EngineKey {
+    private final int type;
+    private final String alg;
+    private final Key key;
+    private final int hash;
+    EngineKey(int type, String alg, Key key) {
+      this.type = type;
+      this.alg = alg;
+      this.key = key;
+      this.hash = 31 * (31 * type + alg.hashCode()) + (key != null ? key.hashCode() : 0);
+    }
+    public int hashCode() {
+      return hash;
+    }
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof EngineKey)) return false;
+      EngineKey other = (EngineKey) obj;
+      return type == other.type && 
+             alg.equals(other.alg) && 
+             (key == null ? other.key == null : key.equals(other.key));
+    }
+  }
+  
+  private static Object borrow(EngineKey key) {
+    Queue<Object> queue = engines.getIfPresent(key);
+    return queue != null ? queue.poll() : null;
+  }
+  
+  private static void release(EngineKey key, Object engine) {
+    Queue<Object> queue = engines.getIfPresent(key);
+    if (queue == null) {
+      queue = new ArrayBlockingQueue<Object>(ENGINES_PER_KEY);
+      Queue<Object> existing = engines.asMap().putIfAbsent(key, queue);
+      if (existing != null) 
+        queue = existing;
+    }
+    queue.offer(engine);
+  }
+  
+  private static Mac borrowMac(EngineKey ek) throws Exception {
+    Mac mac = (Mac) borrow(ek);
+    if (mac == null) {
+      mac = Mac.getInstance(ek.alg);
+      mac.init(ek.key);
+    }
+    return mac;
+  }
+  
+  static byte[] mac(Key key, String alg, byte[]... mat) {
+    try {
+      EngineKey ek = new EngineKey(MAC,alg,key);
+      Mac mac = borrowMac(ek);
+      for (byte[] m : mat)
+        mac.update(m);
+      byte[] dat = mac.doFinal();
+      release(ek,mac);
+      return dat;
+    } catch (Throwable t) {
+      throw ExceptionHelper.propogate(t);
+    }
+  }
+  
+  private static byte[] mac(Key key, String alg, ByteBuffer mat) {
     try {
-      Signature sig = Signature.getInstance(alg);
-      sig.initSign((PrivateKey)key);
-      sig.update(mat);
+      EngineKey ek = new EngineKey(MAC,alg,key);
+      Mac mac = borrowMac(ek);
+      mac.update(mat.duplicate());
+      byte[] dat = mac.doFinal();
+      release(ek,mac);
+      return dat;
+    } catch (Throwable t) {
+      throw ExceptionHelper.propogate(t);
+    }
+  }
+  
+  private static byte[] sign(PrivateKey key, String alg, byte[] mat, ByteBuffer buf) {
+    try {
+      EngineKey ek = new EngineKey(SIGN,alg,key);
+      Signature sig = (Signature) borrow(ek);
+      if (sig == null) {
+        sig = Signature.getInstance(alg);
+        sig.initSign(key);
+      }
+      if (mat != null) 
+        sig.update(mat);
+      else 
+        sig.update(buf.duplicate());
       byte[] dat = sig.sign();
-      return Base64.encodeBase64URLSafeString(dat);
+      release(ek,sig);
+      return dat;
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
   }
   
-  public static String hmac(Key key, String alg, byte[] mat) {
+  private static boolean verify(PublicKey key, String alg, byte[] mat, ByteBuffer buf, byte[] dat) {
     try {
-      Mac mac = Mac.getInstance(alg);
-      mac.init(key);
-      mac.update(mat,0,mat.length);
-      byte[] sig = mac.doFinal();
-      return Base64.encodeBase64URLSafeString(sig);
+      EngineKey ek = new EngineKey(VERIFY,alg,key);
+      Signature sig = (Signature) borrow(ek);
+      if (sig == null) {
+        sig = Signature.getInstance(alg);
+        sig.initVerify(key);
+      }
+      if (mat != null) 
+        sig.update(mat);
+      else 
+        sig.update(buf.duplicate());
+      boolean valid = sig.verify(dat);
+      release(ek,sig);
+      return valid;
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
   }
   
-  public static boolean sigval(PublicKey key, String alg, byte[] mat, byte[] dat) {
+  /**
+   * Returns a Mac initialized with the key that is owned by the caller, 
+   * cloned from the cached engine where the provider supports it
+   */
+  private static Mac newMac(String alg, Key key) {
     try {
-      Signature sig = Signature.getInstance(alg);
-      sig.initVerify(key);
-      sig.update(mat);
-      return sig.verify(dat);
+      EngineKey ek = new EngineKey(MAC,alg,key);
+      Mac mac = borrowMac(ek);
+      try {
+        Mac copy = (Mac) mac.clone();
+        release(ek,mac);
+        return copy;
+      } catch (CloneNotSupportedException e) {
+        return mac;
+      }
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
   }
   
-  public static boolean hmacval(Key key, String alg, byte[] mat, byte[] dat) {
+  /**
+   * Returns a MessageDigest owned by the caller, cloned from the cached 
+   * engine where the provider supports it
+   */
+  private static MessageDigest newDigest(String alg) {
     try {
-      Mac mac = Mac.getInstance(alg);
-      mac.init(key);
-      byte[] sig = mac.doFinal(mat);
-      return Arrays.equals(sig, dat);
+      EngineKey ek = new EngineKey(DIGEST,alg,null);
+      MessageDigest md = (MessageDigest) borrow(ek);
+      if (md == null)
+        md = MessageDigest.getInstance(alg);
+      try {
+        MessageDigest copy = (MessageDigest) md.clone();
+        release(ek,md);
+        return copy;
+      } catch (CloneNotSupportedException e) {
+        return md;
+      }
     } catch (Throwable t) {
       throw ExceptionHelper.propogate(t);
     }
@@ -179,6 +403,23 @@ public final class HashHelper {
       return (T)this;
     }
     public abstract <T extends Hasher>T update(byte[] buf, int s, int e);
+    /**
+     * Consumes the remaining bytes of the buffer
+     */
+    public <T extends Hasher>T update(ByteBuffer buf) {
+      if (buf.hasArray()) {
+        update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+        buf.position(buf.limit());
+      } else {
+        byte[] b = new byte[Math.min(buf.remaining(), 1024)];
+        while (buf.hasRemaining()) {
+          int r = Math.min(buf.remaining(), b.length);
+          buf.get(b, 0, r);
+          update(b, 0, r);
+        }
+      }
+      return (T)this;
+    }
     protected abstract byte[] digest();
     public String get() {
       return Hex.encodeHexString(digest());
@@ -204,20 +445,17 @@ public final class HashHelper {
   public static class Md5 extends Hasher {
     private final MessageDigest md;
     public Md5() {
-      this.md = init();
-    }
-    private MessageDigest init() {
-      try {
-        return MessageDigest.getInstance("MD5");
-      } catch (Throwable t) {
-        throw ExceptionHelper.propogate(t);
-      }
+      this.md = newDigest("MD5");
     }
     public <T extends Hasher>T update(byte[] buf, int s, int e) {
       if (md != null)
         md.update(buf, s, e);
       return (T)this;
     }
+    public <T extends Hasher>T update(ByteBuffer buf) {
+      md.update(buf);
+      return (T)this;
+    }
     public byte[] digest() {
       return md.digest();
     }
@@ -226,21 +464,16 @@ public final class HashHelper {
   public abstract static class SHA extends Hasher {
     private final Mac mac;
     SHA(Key key, String alg) {
-      this.mac = init(key,alg);
-    }
-    private Mac init(Key key, String alg) {
-      try {
-        Mac mac = Mac.getInstance(alg);
-        mac.init(key);
-        return mac;
-      } catch (Throwable t) {
-        throw ExceptionHelper.propogate(t);
-      }
+      this.mac = newMac(alg,key);
     }
     public <T extends Hasher>T update(byte[] buf, int s, int e) {
       mac.update(buf, s, e);
       return (T)this;
     }
+    public <T extends Hasher>T update(ByteBuffer buf) {
+      mac.update(buf);
+      return (T)this;
+    }
     public byte[] digest() {
       return mac.doFinal();
     }
@@ -307,12 +540,12 @@ public final class HashHelper {
     protected abstract Hasher hasher();
     public String apply(InputStream input) {
       try {
-        Md5 md5 = new Md5();
+        Hasher hasher = hasher();
         byte[] buf = new byte[1024];
         int r = -1;
         while((r = input.read(buf)) > -1)
-          md5.update(buf, 0, r);
-        return md5.get();
+          hasher.update(buf, 0, r);
+        return hasher.get();
       } catch (Throwable t) {
         throw ExceptionHelper.propogate(t);
       }
@@ -19,7 +19,6 @@ package org.apache.abdera2.common.security;
 import java.security.Key;
 import java.security.SecureRandom;
 
-import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.abdera2.common.misc.MoreFunctions;
@@ -92,19 +91,12 @@ public abstract class KeyBase
   }
   
   protected byte[] hmac(byte[]... mat){
-    try {
-      Mac hmac = Mac.getInstance(alg);
-      hmac.init(key);
-      for (byte[] m : mat)
-        hmac.update(m);
-      return hmac.doFinal();
-    } catch (Throwable t) {
-      throw new RuntimeException(t);
-    }
-}
+    return HashHelper.mac(key, alg, mat);
+  }
+  
+  private static final SecureRandom random = new SecureRandom();
   
   protected byte[] randomBytes(int count) {
-    SecureRandom random = new SecureRandom();
     byte[] buf = new byte[count];
     random.nextBytes(buf);
     return buf;
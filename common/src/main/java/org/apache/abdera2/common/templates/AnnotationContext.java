@@ -17,27 +17,62 @@
  */
 package org.apache.abdera2.common.templates;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.apache.abdera2.common.anno.Param;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
 import static com.google.common.base.Preconditions.*;
 
 public class AnnotationContext extends MapContext {
 
   private static final long serialVersionUID = 3092158634973274492L;
   
-  private void process(org.apache.abdera2.common.anno.Context context) {
+  /**
+   * The parameters declared by each annotated class
+   */
+  private static final LoadingCache<Class<?>,ImmutableMap<String,Object>> cache =
+    CacheBuilder.newBuilder()
+      .weakKeys()
+      .build(
+        new CacheLoader<Class<?>,ImmutableMap<String,Object>>() {
+          public ImmutableMap<String,Object> load(Class<?> _class) {
+            return params(checkNotNull(getContext(_class)));
+          }
+        });
+  
+  private static ImmutableMap<String,Object> params(
+    org.apache.abdera2.common.anno.Context context) {
+    Map<String,Object> map = new LinkedHashMap<String,Object>();
     for (Param param : context.value())
-      put(param.name().toLowerCase(),param.value());
+      map.put(param.name().toLowerCase(),param.value());
+    return ImmutableMap.copyOf(map);
+  }
+  
+  private static ImmutableMap<String,Object> params(Object object) {
+    checkNotNull(object);
+    try {
+      return cache.getUnchecked(
+        object instanceof Class<?> ? 
+          (Class<?>)object : object.getClass());
+    } catch (UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
   }
   
   public AnnotationContext(org.apache.abdera2.common.anno.Context context) {
-    process(context);
+    super(params(context));
   }
   
   public AnnotationContext(Object object) {
-    checkNotNull(object);
-    org.apache.abdera2.common.anno.Context context = getContext(object);
-    checkNotNull(context);
-    process(context);
+    super(params(object));
   }
   
   public static org.apache.abdera2.common.anno.Context getContext(Object object) {
@@ -96,6 +96,13 @@ public final class Expression
     return getOperation().evaluate(this, context);
   }
   
+  /**
+   * Evaluate the expression, appending the result to the given buffer
+   */
+  public void evaluate(Context context, StringBuilder buf) {
+    getOperation().evaluate(this, context, buf);
+  }
+  
   public Iterator<Expression.VarSpec> iterator() {
     return varspecs.iterator();
   }
@@ -127,6 +134,7 @@ public final class Expression
     private final int length;
     private final boolean explode;
     private final boolean noval;
+    private final String prefix;
     public static VarSpec create(String name, String modifier) {
       return new VarSpec(name, modifier);
     }
@@ -135,6 +143,7 @@ public final class Expression
       this.length = getLength(modifier);
       this.explode = isExplode(modifier);
       this.noval = isNoval(modifier);
+      this.prefix = name + "=";
     }
     private int getLength(String modifier) {
       if (modifier == null || "".equals(modifier)) 
@@ -156,6 +165,12 @@ public final class Expression
     public int getLength() {
       return length;
     }
+    /**
+     * The "name=" prefix used when exploding name/value pairs
+     */
+    String getPrefix() {
+      return prefix;
+    }
     public boolean isNoval() {
       return noval;
     }
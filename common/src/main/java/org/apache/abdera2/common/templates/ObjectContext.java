@@ -32,12 +32,34 @@ import org.apache.abdera2.common.templates.CachingContext;
 import org.apache.abdera2.common.templates.ObjectContext;
 import org.apache.abdera2.common.anno.Name;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 
 @SuppressWarnings("unchecked")
 public final class ObjectContext extends CachingContext {
 
     private static final long serialVersionUID = -1387599933658718221L;
+    
+    /**
+     * Accessors are resolved once per class. Keys are weak and values soft
+     * (the accessors refer back to the class) so that classes can still be
+     * unloaded.
+     */
+    private static final LoadingCache<Class<?>,ImmutableMap<String,AccessibleObject>> cache =
+      CacheBuilder.newBuilder()
+        .weakKeys()
+        .softValues()
+        .build(
+          new CacheLoader<Class<?>,ImmutableMap<String,AccessibleObject>>() {
+            public ImmutableMap<String,AccessibleObject> load(Class<?> _class) {
+              return initMethods(_class);
+            }
+          });
+    
     private final Object target;
     private final ImmutableMap<String, AccessibleObject> accessors;
 
@@ -49,13 +71,20 @@ public final class ObjectContext extends CachingContext {
       super(isiri);
       checkNotNull(object);
       this.target = object;
-      this.accessors = initMethods();
+      this.accessors = getAccessors(object.getClass());
     }
     
-    private ImmutableMap<String,AccessibleObject> initMethods() {
+    private static ImmutableMap<String,AccessibleObject> getAccessors(Class<?> _class) {
+      try {
+        return cache.getUnchecked(_class);
+      } catch (UncheckedExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+    
+    private static ImmutableMap<String,AccessibleObject> initMethods(Class<?> _class) {
       ImmutableMap.Builder<String, AccessibleObject> accessors = 
         ImmutableMap.builder();
-      Class<?> _class = target.getClass();
       checkArguments(!_class.isAnnotation(),
                      !_class.isArray(),
                      !_class.isEnum(),
@@ -64,7 +93,7 @@ public final class ObjectContext extends CachingContext {
         Field[] fields = _class.getFields();
         for (Field field : fields)
           if (!Modifier.isPrivate(field.getModifiers()))
-            accessors.put(getName(field), field);
+            accessors.put(getName(field), accessible(field));
       }
       Method[] methods = _class.getMethods();
       for (Method method : methods) {
@@ -72,12 +101,23 @@ public final class ObjectContext extends CachingContext {
         if (!Modifier.isPrivate(method.getModifiers()) && method.getParameterTypes().length == 0
             && !method.getReturnType().equals(Void.class)
             && !isReserved(name))
-          accessors.put(getName(method), method);
+          accessors.put(getName(method), accessible(method));
       }
       return accessors.build();
     }
+    
+    /**
+     * Suppress the access check on each call where permitted. This also 
+     * allows the public members of non-public classes to be read.
+     */
+    private static AccessibleObject accessible(AccessibleObject object) {
+      try {
+        object.setAccessible(true);
+      } catch (SecurityException e) {}
+      return object;
+    }
 
-    private String getName(AccessibleObject object) {
+    private static String getName(AccessibleObject object) {
       String name = null;
       Name varName = object.getAnnotation(Name.class);
       if (varName != null)
@@ -94,7 +134,7 @@ public final class ObjectContext extends CachingContext {
       return name;
     }
 
-    private boolean isReserved(String name) {
+    private static boolean isReserved(String name) {
         return (name.equals("toString") || name.equals("hashCode")
             || name.equals("notify")
             || name.equals("notifyAll")
@@ -48,7 +48,26 @@ import static org.apache.abdera2.common.text.CharUtils.*;
 public abstract class Operation implements Serializable {
   
     private static final long serialVersionUID = -1734350302144527120L;
+    
+    private static final Normalizer2 NFC = 
+      Normalizer2.getInstance(
+        null, 
+        "nfc", 
+        Normalizer2.Mode.COMPOSE);
+    
     public abstract String evaluate(Expression exp, Context context);
+    
+    /**
+     * Evaluate the expression, appending the result to the given buffer.
+     * The default implementation appends the result of 
+     * evaluate(Expression, Context); the built in operations write to the
+     * buffer directly
+     */
+    public void evaluate(Expression exp, Context context, StringBuilder buf) {
+      String val = evaluate(exp, context);
+      if (val != null)
+        buf.append(val);
+    }
 
     private static Map<String, Operation> operations = 
       ImmutableMap
@@ -96,11 +115,9 @@ public abstract class Operation implements Serializable {
     }
     
     private static String normalize(CharSequence s) {
-      return Normalizer2.getInstance(
-        null, 
-        "nfc", 
-        Normalizer2.Mode.COMPOSE)
-          .normalize(s);
+      return NFC.isNormalized(s) ? 
+        s.toString() : 
+        NFC.normalize(s);
     }
     
     private static <T>void appendPrim(
@@ -319,13 +336,26 @@ public abstract class Operation implements Serializable {
                 CharUtils.Profile.RESERVEDANDUNRESERVED);
     }
 
+    /**
+     * Base for the built in operations, which are implemented by 
+     * appending to a buffer
+     */
+    abstract static class AppendingOperation extends Operation {
+      private static final long serialVersionUID = -6146224407350546187L;
+      public String evaluate(Expression exp, Context context) {
+        StringBuilder buf = new StringBuilder();
+        evaluate(exp, context, buf);
+        return buf.toString();
+      }
+      public abstract void evaluate(Expression exp, Context context, StringBuilder buf);
+    }
+    
     /**
      * Simple String Expansion ({VAR})
      */
-    static final class DefaultOperation extends Operation {
+    static final class DefaultOperation extends AppendingOperation {
       private static final long serialVersionUID = 8676696520810767327L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             boolean first = true;
             for (VarSpec varspec : exp) {
               if (!first) buf.append(',');
@@ -333,17 +363,15 @@ public abstract class Operation implements Serializable {
               buf.append(val != null ? val : "");
               first = false;
             }
-            return buf.toString();
         }
     }
     
     /**
      * Reserved Expansion Operation ({+VAR})
      */
-    static final class ReservedExpansionOperation extends Operation {
+    static final class ReservedExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = 1736980072492867748L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             boolean first = true;
             for (VarSpec varspec : exp) {
               if (!first) buf.append(',');
@@ -351,17 +379,15 @@ public abstract class Operation implements Serializable {
               buf.append(val != null ? val : "");
               first = false;
             }
-            return buf.toString();
         }
     }
 
     /**
      * Fragment Expansion Operation ({#VAR})
      */
-    static final class FragmentExpansionOperation extends Operation {
+    static final class FragmentExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = -2207953454022197435L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             boolean first = true;
             for (VarSpec varspec : exp) {
               if (!first) buf.append(',');
@@ -371,24 +397,21 @@ public abstract class Operation implements Serializable {
               buf.append(val != null ? val : "");
               first = false;
             }
-            return buf.toString();
         }
     }    
 
     /**
      * Dot Expansion Operation ({.VAR})
      */
-    static final class DotExpansionOperation extends Operation {
+    static final class DotExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = -4357734926260213270L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             for (VarSpec varspec : exp) {
               String val = eval(varspec, context, true, ".", null);
               if (val != null)
                 buf.append('.');
               buf.append(val != null ? val : "");
             }
-            return buf.toString();
         }
     } 
     
@@ -396,29 +419,26 @@ public abstract class Operation implements Serializable {
     /**
      * Path Expansion Operation ({/VAR})
      */
-    static final class PathExpansionOperation extends Operation {
+    static final class PathExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = 5578346646541533713L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             for (VarSpec varspec : exp) {
               String val = eval(varspec, context, false, "/", null);
               if (val != null)
                 buf.append('/');
               buf.append(val != null ? val : "");
             }
-            return buf.toString();
         }
     }
     
     /**
      * Path Param Expansion Operation ({;VAR})
      */
-    static final class PathParamExpansionOperation extends Operation {
+    static final class PathParamExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = 4556090632293646419L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             for (VarSpec varspec : exp) {
-              String val = eval(varspec, context, false, ";", String.format("%s=",varspec.getName()));
+              String val = eval(varspec, context, false, ";", varspec.getPrefix());
               if (val != null)
                 buf.append(';');
               if (!varspec.isExplode()) {
@@ -429,21 +449,19 @@ public abstract class Operation implements Serializable {
               }
               buf.append(val != null ? val : "");
             }
-            return buf.toString();
         }
     }
     
     /**
      * Form Expansion Operation ({?VAR})
      */
-    static final class FormExpansionOperation extends Operation {  
+    static final class FormExpansionOperation extends AppendingOperation {  
         private static final long serialVersionUID = -2166695868296435715L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             boolean first = true;
             buf.append("?");
             for (VarSpec varspec : exp) {
-              String val = eval(varspec, context, false, "&",  String.format("%s=",varspec.getName())); // Per Draft Seven (http://tools.ietf.org/html/draft-gregorio-uritemplate-07)
+              String val = eval(varspec, context, false, "&",  varspec.getPrefix()); // Per Draft Seven (http://tools.ietf.org/html/draft-gregorio-uritemplate-07)
               if (context.contains(varspec.getName())) {
                 if (!first && val != null) buf.append('&');
                 if ((val != null && !varspec.isExplode()) || varspec.isNoval()) {
@@ -456,19 +474,17 @@ public abstract class Operation implements Serializable {
               }
               first = false;
             } 
-            return buf.toString();
         }
     }
     
     /**
      * Query Expansion Operation ({&VAR})
      */
-    static final class QueryExpansionOperation extends Operation {
+    static final class QueryExpansionOperation extends AppendingOperation {
         private static final long serialVersionUID = 4029538625501399067L;
-        public String evaluate(Expression exp, Context context) {
-            StringBuilder buf = new StringBuilder();
+        public void evaluate(Expression exp, Context context, StringBuilder buf) {
             for (VarSpec varspec : exp) {
-              String val = eval(varspec, context, false, "&",  String.format("%s=",varspec.getName())); // Per Draft Seven (http://tools.ietf.org/html/draft-gregorio-uritemplate-07)
+              String val = eval(varspec, context, false, "&",  varspec.getPrefix()); // Per Draft Seven (http://tools.ietf.org/html/draft-gregorio-uritemplate-07)
               if (context.contains(varspec.getName())) {
                 if (varspec.isExplode()) buf.append('&');
                 if ((val != null && !varspec.isExplode()) || varspec.isNoval())
@@ -479,7 +495,6 @@ public abstract class Operation implements Serializable {
                     buf.append(val);
                 }
             }
-            return buf.toString();
         }
     }
 }
@@ -38,7 +38,7 @@ public class Route<T> implements Iterable<String>, Cloneable, Serializable {
 
     private static final long serialVersionUID = -8979172281494208841L;
 
-    private static final Pattern VARIABLE = Pattern.compile("[\\*\\:](?:\\()?[0-9a-zA-Z]+(?:\\))?");
+    static final Pattern VARIABLE = Pattern.compile("[\\*\\:](?:\\()?[0-9a-zA-Z]+(?:\\))?");
     private static final String VARIABLE_CONTENT_MATCH = "([^:/\\?#\\[\\]@!\\$&'\\(\\)\\*\\+,;\\=]+)";
     private static final String VARIABLE_CONTENT_PARSE = "([^:/\\?#\\[\\]@!\\$&'\\(\\)\\*\\+,;\\=]*)";
     private final T key;
@@ -175,7 +175,7 @@ public class Route<T> implements Iterable<String>, Cloneable, Serializable {
         return requirements.get(var);
     }
 
-    private String var(String token) {
+    static String var(String token) {
         token = token.substring(1);
         if (token.startsWith("("))
             token = token.substring(1);
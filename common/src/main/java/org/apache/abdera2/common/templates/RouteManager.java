@@ -0,0 +1,369 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.templates;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Matches a URI against a set of Routes at once. The route patterns are 
+ * compiled into a single character trie in which route variables are 
+ * edges that consume a run of variable characters. A lookup walks the 
+ * trie once over the URI, preferring literal characters to variables 
+ * where both are possible, and records the variable offsets as it goes, 
+ * so no regular expressions are evaluated and variable values are only 
+ * extracted from the URI on request.
+ * 
+ * A URI matches a route in the RouteManager exactly when Route.match 
+ * would return true for it. As with Route.match, the requirements of a 
+ * route are checked against the variable values found by a greedy parse
+ * of the URI (Route.parse), not against every possible split of the URI, 
+ * and a pattern that repeats a variable is matched the way Route.match 
+ * matches it, with only as many variable positions as there are distinct
+ * variables. Where several routes match, the route with 
+ * the longest literal prefix wins; routes with the same shape are tried 
+ * in the order they were added.
+ * 
+ * <pre>
+ * RouteManager&lt;String> routes = 
+ *   RouteManager.&lt;String>make()
+ *     .add("feed", "/:feed")
+ *     .add("entry", "/:feed/:entry")
+ *     .get();
+ * RouteManager.Match&lt;String> match = routes.match("/foo/bar");
+ * match.getKey();       // "entry"
+ * match.get("entry");   // "bar"
+ * </pre>
+ * 
+ * RouteManager instances are immutable and threadsafe.
+ */
+public final class RouteManager<T> 
+  implements Iterable<Route<T>> {
+
+  public static <T>Builder<T> make() {
+    return new Builder<T>();
+  }
+  
+  public static class Builder<T> 
+    implements Supplier<RouteManager<T>> {
+    
+    private final ImmutableList.Builder<Route<T>> routes = 
+      ImmutableList.builder();
+    
+    public Builder<T> add(Route<T> route) {
+      routes.add(checkNotNull(route));
+      return this;
+    }
+    
+    public Builder<T> add(T key, String pattern) {
+      return add(new Route<T>(key, checkNotNull(pattern)));
+    }
+    
+    public Builder<T> add(Iterable<Route<T>> routes) {
+      for (Route<T> route : checkNotNull(routes))
+        add(route);
+      return this;
+    }
+    
+    public RouteManager<T> get() {
+      return new RouteManager<T>(routes.build());
+    }
+  }
+
+  /**
+   * Characters that may appear within a route variable value. This is 
+   * the same set of characters accepted by Route.match
+   */
+  private static final boolean[] VARCHARS = new boolean[128];
+  static {
+    for (int c = 0; c < 128; c++)
+      VARCHARS[c] = true;
+    for (char c : ":/?#[]@!$&'()*+,;=".toCharArray())
+      VARCHARS[c] = false;
+  }
+  
+  private static boolean isVarChar(char c) {
+    return c >= 128 || VARCHARS[c];
+  }
+  
+  private final ImmutableList<Route<T>> routes;
+  private final Node<T> root;
+  private final int maxVars;
+  
+  RouteManager(ImmutableList<Route<T>> routes) {
+    this.routes = routes;
+    Node<T> root = new Node<T>();
+    int maxVars = 0;
+    for (Route<T> route : routes)
+      maxVars = Math.max(maxVars, root.add(route));
+    root.freeze();
+    this.root = root;
+    this.maxVars = maxVars;
+  }
+
+  public Iterator<Route<T>> iterator() {
+    return routes.iterator();
+  }
+  
+  /**
+   * Find the best matching Route for the given URI
+   * @return The match or null if no route matches
+   */
+  public Match<T> match(String uri) {
+    checkNotNull(uri);
+    int[] offsets = new int[maxVars * 2];
+    Terminal<T> terminal = find(root, uri, 0, 0, offsets);
+    return terminal != null ? 
+      new Match<T>(terminal, uri, offsets) : 
+      null;
+  }
+  
+  /**
+   * Return the key of the best matching Route for the given URI
+   * @return The key or null if no route matches
+   */
+  public T matchKey(String uri) {
+    Match<T> match = match(uri);
+    return match != null ? match.getKey() : null;
+  }
+  
+  private static <T>Terminal<T> find(
+    Node<T> node, 
+    String uri, 
+    int pos, 
+    int depth, 
+    int[] offsets) {
+      int len = uri.length();
+      for(;;) {
+        if (pos == len) {
+          if (node.terminals != null)
+            for (Terminal<T> terminal : node.terminals)
+              if (terminal.accept(uri, offsets))
+                return terminal;
+          return null;
+        }
+        Node<T> next = node.child(uri.charAt(pos));
+        if (node.var == null) {
+          // no alternatives to backtrack to, so keep walking
+          if (next == null) return null;
+          node = next;
+          pos++;
+          continue;
+        }
+        if (next != null) {
+          Terminal<T> terminal = find(next, uri, pos + 1, depth, offsets);
+          if (terminal != null) return terminal;
+        }
+        int end = pos;
+        while (end < len && isVarChar(uri.charAt(end)))
+          end++;
+        // longest value first, as with the greedy route regex
+        for (int e = end; e > pos; e--) {
+          offsets[depth * 2] = pos;
+          offsets[depth * 2 + 1] = e;
+          Terminal<T> terminal = find(node.var, uri, e, depth + 1, offsets);
+          if (terminal != null) return terminal;
+        }
+        return null;
+      }
+  }
+  
+  private static final class Node<T> {
+    private TreeMap<Character,Node<T>> building = 
+      new TreeMap<Character,Node<T>>();
+    private char[] chars;
+    private Node<T>[] children;
+    private Node<T> var;
+    private List<Terminal<T>> terminals;
+    
+    /**
+     * Add the route below this node, returning the number of variables. 
+     * The path through the trie follows the route's match expression: 
+     * the literal parts of the pattern separated by one variable for each
+     * distinct variable token, the remaining parts following as literals
+     */
+    int add(Route<T> route) {
+      List<String> names = new ArrayList<String>();
+      for (String token : route)
+        names.add(Route.var(token));
+      Node<T> node = this;
+      int cnt = 0;
+      for (String part : Route.VARIABLE.split(route.getPattern())) {
+        node = node.literal(part, 0, part.length());
+        if (cnt++ < names.size()) {
+          if (node.var == null)
+            node.var = new Node<T>();
+          node = node.var;
+        }
+      }
+      if (node.terminals == null)
+        node.terminals = new ArrayList<Terminal<T>>();
+      node.terminals.add(
+        new Terminal<T>(
+          route, 
+          names.toArray(new String[names.size()])));
+      return names.size();
+    }
+    
+    private Node<T> literal(String pattern, int start, int end) {
+      Node<T> node = this;
+      for (int n = start; n < end; n++) {
+        char c = pattern.charAt(n);
+        Node<T> next = node.building.get(c);
+        if (next == null) {
+          next = new Node<T>();
+          node.building.put(c, next);
+        }
+        node = next;
+      }
+      return node;
+    }
+    
+    @SuppressWarnings("unchecked")
+    void freeze() {
+      chars = new char[building.size()];
+      children = new Node[building.size()];
+      int n = 0;
+      for (Map.Entry<Character,Node<T>> entry : building.entrySet()) {
+        chars[n] = entry.getKey();
+        children[n++] = entry.getValue();
+        entry.getValue().freeze();
+      }
+      building = null;
+      if (var != null) 
+        var.freeze();
+      if (terminals != null)
+        terminals = ImmutableList.copyOf(terminals);
+    }
+    
+    Node<T> child(char c) {
+      int lo = 0, hi = chars.length - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        char m = chars[mid];
+        if (m < c) lo = mid + 1;
+        else if (m > c) hi = mid - 1;
+        else return children[mid];
+      }
+      return null;
+    }
+  }
+  
+  private static final class Terminal<T> {
+    final Route<T> route;
+    final String[] names;
+    final Map<String,Pattern> requirements;
+    
+    Terminal(Route<T> route, String[] names) {
+      this.route = route;
+      this.names = names;
+      Map<String,String> reqs = route.getRequirements();
+      if (reqs != null && !reqs.isEmpty()) {
+        ImmutableMap.Builder<String,Pattern> requirements = 
+          ImmutableMap.builder();
+        for (Map.Entry<String,String> req : reqs.entrySet())
+          requirements.put(req.getKey(), Pattern.compile(req.getValue()));
+        this.requirements = requirements.build();
+      } else this.requirements = null;
+    }
+    
+    /**
+     * Check the requirements against the values found by Route.parse, 
+     * as Route.match does. The result does not depend on the split of 
+     * the URI being tried, so it is the same for every split
+     */
+    boolean accept(String uri, int[] offsets) {
+      if (requirements == null) 
+        return true;
+      Map<String,String> vars = route.parse(uri);
+      for (Map.Entry<String,Pattern> req : requirements.entrySet()) {
+        if (vars.containsKey(req.getKey())) {
+          String value = vars.get(req.getKey());
+          if (!req.getValue().matcher(value != null ? value : "").matches())
+            return false;
+        }
+      }
+      return true;
+    }
+  }
+  
+  /**
+   * The result of matching a URI against the RouteManager
+   */
+  public static final class Match<T> {
+    private final Terminal<T> terminal;
+    private final String uri;
+    private final int[] offsets;
+    private Map<String,String> variables;
+    
+    Match(Terminal<T> terminal, String uri, int[] offsets) {
+      this.terminal = terminal;
+      this.uri = uri;
+      this.offsets = offsets;
+    }
+    
+    public Route<T> getRoute() {
+      return terminal.route;
+    }
+    
+    public T getKey() {
+      return terminal.route.getKey();
+    }
+    
+    public String getUri() {
+      return uri;
+    }
+    
+    /**
+     * Return the value of the named route variable, or null if the route
+     * does not declare the variable
+     */
+    public String get(String var) {
+      String[] names = terminal.names;
+      // where a variable appears more than once, the last value wins
+      for (int n = names.length - 1; n >= 0; n--)
+        if (names[n].equals(var))
+          return uri.substring(offsets[n * 2], offsets[n * 2 + 1]);
+      return null;
+    }
+    
+    /**
+     * Return all of the route variables, as Route.parse would
+     */
+    public Map<String,String> getVariables() {
+      if (variables == null) {
+        Map<String,String> map = new TreeMap<String,String>();
+        String[] names = terminal.names;
+        for (int n = 0; n < names.length; n++)
+          map.put(names[n], uri.substring(offsets[n * 2], offsets[n * 2 + 1]));
+        variables = ImmutableMap.copyOf(map);
+      }
+      return variables;
+    }
+  }
+}
@@ -18,6 +18,7 @@
 package org.apache.abdera2.common.templates;
 
 import java.io.Serializable;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -72,12 +73,15 @@ public final class Template
     private static final long serialVersionUID = -613907262632631896L;
 
     private static final Pattern EXPRESSION = Pattern.compile("\\{[^{}]+\\}");
-    private static final String EXP_START = "\\{";
-    private static final String EXP_STOP = "\\}";
 
     private final String pattern;
     private final Iterable<Expression> expressions;
     private final Iterable<String> variables;
+    /**
+     * The compiled expansion plan: the literal (String) and Expression 
+     * segments of the pattern, in order
+     */
+    private final Object[] segments;
 
     /**
      * @param pattern A URI Template
@@ -85,10 +89,39 @@ public final class Template
     public Template(String pattern) {
       checkNotNull(pattern, "Template pattern must not be null");
       this.pattern = pattern;
-      this.expressions = initExpressions();
+      this.segments = compile(pattern);
+      this.expressions = initExpressions(segments);
       this.variables = initVariables(expressions);
     }
     
+    /**
+     * Split the pattern into literal and expression segments. Identical 
+     * expressions share a single Expression instance.
+     */
+    private static Object[] compile(String pattern) {
+      ImmutableList.Builder<Object> segments = 
+        ImmutableList.builder();
+      Map<String,Expression> parsed = 
+        new HashMap<String,Expression>();
+      Matcher matcher = EXPRESSION.matcher(pattern);
+      int pos = 0;
+      while (matcher.find()) {
+        if (matcher.start() > pos)
+          segments.add(pattern.substring(pos, matcher.start()));
+        String token = pattern.substring(matcher.start() + 1, matcher.end() - 1);
+        Expression exp = parsed.get(token);
+        if (exp == null) {
+          exp = new Expression(token);
+          parsed.put(token, exp);
+        }
+        segments.add(exp);
+        pos = matcher.end();
+      }
+      if (pos < pattern.length())
+        segments.add(pattern.substring(pos));
+      return segments.build().toArray();
+    }
+    
     private static Iterable<String> initVariables(Iterable<Expression> expressions) {
       ImmutableSet.Builder<String> builder = 
         ImmutableSet.builder();
@@ -131,16 +164,12 @@ public final class Template
     /**
      * Return the array of template variables
      */
-    private Iterable<Expression> initExpressions() {
+    private static Iterable<Expression> initExpressions(Object[] segments) {
       ImmutableList.Builder<Expression> expressions = 
         ImmutableList.builder();
-      Matcher matcher = EXPRESSION.matcher(pattern);
-      while (matcher.find()) {
-        String token = matcher.group();
-        token = token.substring(1, token.length() - 1);
-        Expression exp = new Expression(token);
-        expressions.add(exp);
-      }
+      for (Object segment : segments)
+        if (segment instanceof Expression)
+          expressions.add((Expression)segment);
       return expressions.build();
     }
 
@@ -158,14 +187,29 @@ public final class Template
      * @return An expanded URI
      */
     public String expand(Context context) {
-      String pattern = this.pattern;
-      for (Expression exp : this)
-          pattern = 
-            replace(
-              pattern, 
-              exp, 
-              exp.evaluate(context));
-      return pattern;
+      return expand(
+        context, 
+        new StringBuilder(pattern.length() + 32))
+          .toString();
+    }
+    
+    /**
+     * Expand the URI Template using the specified Context, appending the 
+     * result to the given buffer. Callers expanding many templates can 
+     * reuse a single buffer.
+     * 
+     * @param context The Context impl used to resolve variable values
+     * @param buf The buffer the expanded URI is appended to
+     * @return The buffer
+     */
+    public StringBuilder expand(Context context, StringBuilder buf) {
+      for (Object segment : segments) {
+        if (segment instanceof Expression)
+          ((Expression)segment).evaluate(context, buf);
+        else
+          buf.append((String)segment);
+      }
+      return buf;
     }
     
     public String expand(Supplier<Context> context) {
@@ -195,10 +239,6 @@ public final class Template
       return expand(asContext(object,isiri));
     }
 
-    private String replace(String pattern, Expression exp, String value) {
-        return pattern.replaceAll(EXP_START + Pattern.quote(exp.toString()) + EXP_STOP, value);
-    }
-
     @Override
     public int hashCode() {
       return MoreFunctions.genHashCode(1, pattern);
@@ -92,7 +92,7 @@ public final class CharUtils {
         private final CodepointMatcher matcher;
 
         Profile(CodepointMatcher matcher) {
-            this.matcher = matcher;
+            this.matcher = matcher.compile();
         }
 
         public CodepointMatcher matcher() {
@@ -105,7 +105,7 @@ public final class CharUtils {
         
         public void verify(CharSequence seq) {
           if (seq == null) return;
-          matcher.verifyNot(CodepointIterator.getInstance(seq));
+          matcher.verifyNot(seq);
         }
         public boolean check(CharSequence seq) {
           if (seq == null) return false;
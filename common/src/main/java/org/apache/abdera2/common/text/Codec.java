@@ -164,13 +164,10 @@ public enum Codec {
       private static final CodepointMatcher CHECKER =
           CodepointMatcher.and(
             CodepointMatchers.isToken().negate(),
-            CodepointMatcher.isNot(0x20));
+            CodepointMatcher.isNot(0x20)).compile();
       
       private boolean needs(String string) {
-        for (char c : string.toCharArray())
-          if (CHECKER.apply(c)) 
-            return true;
-        return false;
+        return CHECKER.any(string);
       }
     }
   
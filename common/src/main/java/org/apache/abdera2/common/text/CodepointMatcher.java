@@ -23,6 +23,15 @@ import org.apache.abdera2.common.text.CodepointIterator;
 
 import com.google.common.base.Predicate;
 
+/**
+ * Tests unicode codepoints against some criteria. The built in matchers
+ * (ranges, sets, inversion sets and their negations and combinations) 
+ * can be flattened using compile() into a single lookup table that 
+ * avoids both the nested evaluation of composite matchers and the 
+ * boxing of codepoints required by the Predicate interface. Callers 
+ * should prefer the primitive apply(int) and the CharSequence scanning
+ * methods over apply(Integer).
+ */
 public abstract class CodepointMatcher 
   implements Predicate<Integer> {
     
@@ -57,12 +66,34 @@ public abstract class CodepointMatcher
     }
   }
   
+  /**
+   * Verify that each of the unicode codepoints in the specified
+   * charsequence match this matchers criteria. If unsuccessful, an 
+   * InvalidCharacterException will be thrown.
+   */
+  public void verify(CharSequence seq) {
+    int n = indexNotIn(seq, 0, seq.length());
+    if (n > -1)
+      throw new InvalidCharacterException(Character.codePointAt(seq, n));
+  }
+  
+  /**
+   * Verify that each of the unicode codepoints in the specified
+   * charsequence do not match this matchers criteria. If unsuccessful, 
+   * an InvalidCharacterException will be thrown.
+   */
+  public void verifyNot(CharSequence seq) {
+    int n = indexIn(seq, 0, seq.length());
+    if (n > -1)
+      throw new InvalidCharacterException(Character.codePointAt(seq, n));
+  }
+  
   /**
    * True if all of the charsequence's unicode codepoints match
    * the criteria
    */
   public boolean all(CharSequence seq) {
-    return all(CodepointIterator.getInstance(seq));
+    return indexNotIn(seq, 0, seq.length()) == -1;
   }
   
   /**
@@ -70,7 +101,55 @@ public abstract class CodepointMatcher
    * the criteria
    */
   public boolean any(CharSequence seq) {
-    return any(CodepointIterator.getInstance(seq));
+    return indexIn(seq, 0, seq.length()) > -1;
+  }
+  
+  /**
+   * Returns the index of the first unicode codepoint between start 
+   * (inclusive) and end (exclusive) that matches the criteria, or -1
+   */
+  public int indexIn(CharSequence seq, int start, int end) {
+    return scan(seq, start, end, true);
+  }
+  
+  /**
+   * Returns the index of the first unicode codepoint between start 
+   * (inclusive) and end (exclusive) that does not match the criteria, 
+   * or -1
+   */
+  public int indexNotIn(CharSequence seq, int start, int end) {
+    return scan(seq, start, end, false);
+  }
+  
+  protected int scan(CharSequence seq, int start, int end, boolean match) {
+    int n = start;
+    while (n < end) {
+      int cp = Character.codePointAt(seq, n);
+      if (apply(cp) == match)
+        return n;
+      n += Character.charCount(cp);
+    }
+    return -1;
+  }
+  
+  /**
+   * Returns the index of the first unicode codepoint between start 
+   * (inclusive) and end (exclusive) of the array that matches the 
+   * criteria, or -1. A high surrogate at end - 1 is tested on its own.
+   */
+  public int indexIn(char[] chars, int start, int end) {
+    return scan(chars, start, end, true);
+  }
+  
+  protected int scan(char[] chars, int start, int end, boolean match) {
+    int n = start;
+    while (n < end) {
+      int cp = Character.codePointAt(chars, n, end);
+      if (apply(cp) == match)
+        return n;
+      n += Character.charCount(cp);
+    }
+    return -1;
   }
   
   /**
@@ -109,6 +188,27 @@ public abstract class CodepointMatcher
     return this.apply(Integer.valueOf(codepoint));
   }
   
+  /**
+   * Returns the set of codepoints matched as an inversion set, or null
+   * if the criteria cannot be described that way (e.g. a custom 
+   * matcher implementation)
+   */
+  protected int[] inversionSet() {
+    return null;
+  }
+  
+  /**
+   * Returns an equivalent CodepointMatcher that answers using a flat 
+   * lookup table: a bitset for the basic multilingual plane and a binary
+   * searched inversion set for supplementary codepoints. If this 
+   * matcher, or any matcher it is composed of, cannot be described as an 
+   * inversion set, this matcher is returned unchanged.
+   */
+  public CodepointMatcher compile() {
+    int[] set = inversionSet();
+    return set != null ? new CompiledCodepointMatcher(set) : this;
+  }
+  
   /**
    * Returns a CodepointMatcher that matches the opposite of this one
    */
@@ -215,12 +315,24 @@ public abstract class CodepointMatcher
     public boolean apply(Integer codepoint) {
       return true;
     }    
+    public boolean apply(int codepoint) {
+      return true;
+    }
+    protected int[] inversionSet() {
+      return new int[] {Integer.MIN_VALUE};
+    }
   }
   
   public static class MatchNoneCodepointMatcher extends CodepointMatcher {
     public boolean apply(Integer codepoint) {
       return false;
     }
+    public boolean apply(int codepoint) {
+      return false;
+    }
+    protected int[] inversionSet() {
+      return new int[0];
+    }
   }
   
   public static abstract class CodepointMatcherWrapper extends CodepointMatcher {
@@ -237,8 +349,17 @@ public abstract class CodepointMatcher
       Arrays.sort(this.cp);
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       return Arrays.binarySearch(cp, codepoint) > -1;
     }
+    protected int[] inversionSet() {
+      int[] set = new int[0];
+      for (int c : cp)
+        set = union(set, range(c, c));
+      return set;
+    }
   }
   
   public static class RangeCodepointMatcher extends CodepointMatcher {
@@ -248,8 +369,14 @@ public abstract class CodepointMatcher
       this.high = high;
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       return low <= codepoint && high >= codepoint;
     }
+    protected int[] inversionSet() {
+      return range(low, high);
+    }
   }
   
   /**
@@ -261,11 +388,23 @@ public abstract class CodepointMatcher
       this.internal = internal;
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       for (CodepointMatcher matcher : internal)
         if (!matcher.apply(codepoint))
           return false;
       return true;
     }
+    protected int[] inversionSet() {
+      int[] set = new int[] {Integer.MIN_VALUE};
+      for (CodepointMatcher matcher : internal) {
+        int[] other = matcher.inversionSet();
+        if (other == null) return null;
+        set = intersection(set, other);
+      }
+      return set;
+    }
   }
   
   public static class OrCodepointMatcher extends CodepointMatcher {
@@ -274,11 +413,23 @@ public abstract class CodepointMatcher
       this.internal = internal;
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       for (CodepointMatcher matcher : internal)
         if (matcher.apply(codepoint))
           return true;
       return false;
     }
+    protected int[] inversionSet() {
+      int[] set = new int[0];
+      for (CodepointMatcher matcher : internal) {
+        int[] other = matcher.inversionSet();
+        if (other == null) return null;
+        set = union(set, other);
+      }
+      return set;
+    }
   }
   
   public static class NegatingCodepointMatcher extends CodepointMatcherWrapper {
@@ -286,8 +437,15 @@ public abstract class CodepointMatcher
       super(internal);
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       return !internal.apply(codepoint);
     } 
+    protected int[] inversionSet() {
+      int[] set = internal.inversionSet();
+      return set != null ? complement(set) : null;
+    }
   }
   
   /**
@@ -299,8 +457,14 @@ public abstract class CodepointMatcher
       this.set = set;
     }
     public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
       return invset_contains(set,codepoint);
     }
+    protected int[] inversionSet() {
+      return set.clone();
+    }
   }
   
   static boolean invset_contains(int[] set, int value) {
@@ -318,5 +482,140 @@ public abstract class CodepointMatcher
       return ((s - 1) & 1) == 0;
   }
   
-}
+  /**
+   * A CodepointMatcher backed by a flat lookup table. Codepoints in the
+   * basic multilingual plane are tested using a bitset split into 256 
+   * blocks of 256 codepoints, where blocks that match all or none of 
+   * their codepoints are shared. All other values are tested with a 
+   * binary search of the inversion set.
+   */
+  public static class CompiledCodepointMatcher extends CodepointMatcher {
+    private static final long[] NONE = new long[4];
+    private static final long[] ALL = {-1L,-1L,-1L,-1L};
+    private final int[] set;
+    private final long[][] bmp = new long[256][];
+    public CompiledCodepointMatcher(int[] set) {
+      this.set = set;
+      for (int b = 0; b < bmp.length; b++) {
+        long[] block = new long[4];
+        for (int c = b << 8, e = c + 256; c < e; c++)
+          if (invset_contains(set, c))
+            block[(c >> 6) & 3] |= 1L << c;
+        bmp[b] = 
+          Arrays.equals(block, NONE) ? NONE : 
+          Arrays.equals(block, ALL) ? ALL : block;
+      }
+    }
+    public boolean apply(Integer codepoint) {
+      return apply(codepoint.intValue());
+    }
+    public boolean apply(int codepoint) {
+      return (codepoint & ~0xFFFF) == 0 ?
+        (bmp[codepoint >> 8][(codepoint >> 6) & 3] & (1L << codepoint)) != 0 :
+        invset_contains(set, codepoint);
+    }
+    protected int scan(CharSequence seq, int start, int end, boolean match) {
+      int n = start;
+      while (n < end) {
+        char c = seq.charAt(n);
+        if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+          if (((bmp[c >> 8][(c >> 6) & 3] & (1L << c)) != 0) == match)
+            return n;
+          n++;
+        } else {
+          int cp = Character.codePointAt(seq, n);
+          if (apply(cp) == match)
+            return n;
+          n += Character.charCount(cp);
+        }
+      }
+      return -1;
+    }
+    protected int scan(char[] chars, int start, int end, boolean match) {
+      long[] latin = bmp[0];
+      int n = start;
+      while (n < end) {
+        char c = chars[n];
+        if (c < 0x100) {
+          if (((latin[c >> 6] & (1L << c)) != 0) == match)
+            return n;
+          n++;
+        } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+          if (((bmp[c >> 8][(c >> 6) & 3] & (1L << c)) != 0) == match)
+            return n;
+          n++;
+        } else {
+          int cp = Character.codePointAt(chars, n, end);
+          if (apply(cp) == match)
+            return n;
+          n += Character.charCount(cp);
+        }
+      }
+      return -1;
+    }
+    protected int[] inversionSet() {
+      return set;
+    }
+    public CodepointMatcher compile() {
+      return this;
+    }
+    public CodepointMatcher negate() {
+      return new CompiledCodepointMatcher(complement(set));
+    }
+  }
+  
+  /**
+   * Returns the inversion set containing the codepoints low to high 
+   * inclusive
+   */
+  static int[] range(int low, int high) {
+    return low > high ? 
+      new int[0] : 
+      high == Integer.MAX_VALUE ? 
+        new int[] {low} : 
+        new int[] {low, high + 1};
+  }
+  
+  static int[] complement(int[] set) {
+    if (set.length > 0 && set[0] == Integer.MIN_VALUE)
+      return Arrays.copyOfRange(set, 1, set.length);
+    int[] ret = new int[set.length + 1];
+    ret[0] = Integer.MIN_VALUE;
+    System.arraycopy(set, 0, ret, 1, set.length);
+    return ret;
+  }
+  
+  static int[] union(int[] a, int[] b) {
+    return merge(a, b, true);
+  }
+  
+  static int[] intersection(int[] a, int[] b) {
+    return merge(a, b, false);
+  }
+  
+  private static int[] merge(int[] a, int[] b, boolean union) {
+    int[] ret = new int[a.length + b.length];
+    int i = 0, j = 0, n = 0;
+    boolean ina = false, inb = false, in = false;
+    while (i < a.length || j < b.length) {
+      int v = 
+        j == b.length || (i < a.length && a[i] < b[j]) ? 
+          a[i] : b[j];
+      while (i < a.length && a[i] == v) {
+        ina = !ina;
+        i++;
+      }
+      while (j < b.length && b[j] == v) {
+        inb = !inb;
+        j++;
+      }
+      boolean now = union ? ina || inb : ina && inb;
+      if (now != in) {
+        ret[n++] = v;
+        in = now;
+      }
+    }
+    return Arrays.copyOf(ret, n);
+  }
   
+}
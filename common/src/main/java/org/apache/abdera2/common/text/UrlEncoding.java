@@ -30,7 +30,11 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 
 import org.apache.abdera2.common.misc.ExceptionHelper;
 import org.apache.abdera2.common.text.CharUtils.Profile;
@@ -43,6 +47,7 @@ import com.google.common.base.Function;
 public final class UrlEncoding {
 
     private static final String DEFAULT_ENCODING = "UTF-8";
+    private static final Charset UTF8 = Charset.forName(DEFAULT_ENCODING);
     private final static char[] HEX = 
       {'0', '1', '2', '3', '4', '5', '6', '7', 
        '8', '9', 'A', 'B', 'C', 'D', 'E', 'F'};
@@ -208,25 +213,7 @@ public final class UrlEncoding {
 
     private static void processChars(StringBuilder sb, CharBuffer chars, String enc, Profile... profiles)
         throws IOException {
-        for (int n = 0; n < chars.length(); n++) {
-            char c = chars.charAt(n);
-            if (!Character.isHighSurrogate(c) && check(c, profiles)) {
-                encode(sb, String.valueOf(c).getBytes(enc));
-            } else if (Character.isHighSurrogate(c)) {
-                if (check(c, profiles)) {
-                    StringBuilder buf = new StringBuilder();
-                    buf.append(c)
-                       .append(chars.charAt(++n));
-                    byte[] b = buf.toString().getBytes(enc);
-                    encode(sb, b);
-                } else {
-                    sb.append(c)
-                      .append(chars.charAt(++n));
-                }
-            } else {
-                sb.append(c);
-            }
-        }
+        encodeTo(sb, chars, 0, chars.length(), enc, profiles);
     }
 
     public static String encode(Readable readable, String enc, Profile... profiles) throws IOException {
@@ -296,10 +283,26 @@ public final class UrlEncoding {
         }
     }
 
+    /**
+     * For each Profile, the ASCII characters that need to be encoded
+     */
+    private static final boolean[][] ENCODE = 
+      new boolean[Profile.values().length][0x80];
+    static {
+        for (Profile profile : Profile.values())
+            for (int c = 0; c < 0x80; c++)
+                ENCODE[profile.ordinal()][c] = profile.apply(c);
+    }
+
     private static boolean check(int codepoint, Profile... profiles) {
-        for (Profile profile : profiles) {
-            if (profile.apply(codepoint))
-                return true;
+        if (codepoint < 0x80) {
+            for (Profile profile : profiles)
+                if (ENCODE[profile.ordinal()][codepoint])
+                    return true;
+        } else {
+            for (Profile profile : profiles)
+                if (profile.apply(codepoint))
+                    return true;
         }
         return false;
     }
@@ -314,49 +317,201 @@ public final class UrlEncoding {
     public static String encode(CharSequence s, String enc, Profile... profiles) throws UnsupportedEncodingException {
         if (s == null)
             return null;
-        StringBuilder sb = new StringBuilder();
+        int len = s.length();
+        int n = 0;
+        while (n < len) {
+            char c = s.charAt(n);
+            if (check(c, profiles))
+                break;
+            n += Character.isHighSurrogate(c) && n + 1 < len ? 2 : 1;
+        }
+        if (n >= len)
+            return s.toString();
+        StringBuilder sb = new StringBuilder(len + 16);
+        sb.append(s, 0, n);
+        try {
+            encodeTo(sb, s, n, len, enc, profiles);
+        } catch (UnsupportedEncodingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new RuntimeException(e); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
 
-        for (int n = 0; n < s.length(); n++) {
+    /**
+     * Percent-encodes the UTF-8 encoding of the characters in s that are
+     * matched by any of the profiles, writing the result to the given 
+     * Appendable
+     */
+    public static void encodeTo(Appendable out, CharSequence s, Profile... profiles) {
+        try {
+            encodeTo(out, s, 0, s.length(), DEFAULT_ENCODING, profiles);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Percent-encodes the characters in s from start (inclusive) to end 
+     * (exclusive) that are matched by any of the profiles, using the 
+     * specified character encoding, and writes the result to the given
+     * Appendable. A high surrogate that needs to be encoded is encoded 
+     * together with the character that follows it.
+     */
+    public static void encodeTo(
+        Appendable out, 
+        CharSequence s, 
+        int start, 
+        int end, 
+        String enc, 
+        Profile... profiles) 
+          throws IOException {
+        Charset charset = null;
+        CharsetEncoder encoder = null;
+        int n = start;
+        while (n < end) {
             char c = s.charAt(n);
-            if (!Character.isHighSurrogate(c) && check(c, profiles)) {
-                encode(sb, String.valueOf(c).getBytes(enc));
-            } else if (Character.isHighSurrogate(c)) {
-                if (check(c, profiles)) {
-                    StringBuilder buf = new StringBuilder();
-                    buf.append(c)
-                       .append(s.charAt(++n));
-                    byte[] b = buf.toString().getBytes(enc);
-                    encode(sb, b);
+            int count = Character.isHighSurrogate(c) && n + 1 < end ? 2 : 1;
+            if (!check(c, profiles)) {
+                out.append(c);
+                if (count == 2)
+                    out.append(s.charAt(n + 1));
+            } else if (c < 0x80) {
+                out.append('%');
+                encodeByte(out, (byte)c);
+            } else {
+                if (charset == null)
+                    charset = charset(enc);
+                int cp = count == 2 ? Character.codePointAt(s, n) : c;
+                if (charset.equals(UTF8) && 
+                    (cp > 0xFFFF || cp < Character.MIN_SURROGATE || cp > Character.MAX_SURROGATE)) {
+                    encodeUtf8(out, cp);
                 } else {
-                    sb.append(c)
-                      .append(s.charAt(++n));
+                    if (encoder == null)
+                        encoder = 
+                          charset.newEncoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                    ByteBuffer bytes = encoder.encode(CharBuffer.wrap(s, n, n + count));
+                    while (bytes.hasRemaining()) {
+                        out.append('%');
+                        encodeByte(out, bytes.get());
+                    }
                 }
-            } else {
-                sb.append(c);
             }
+            n += count;
+        }
+    }
+
+    private static void encodeUtf8(Appendable out, int cp) throws IOException {
+        if (cp < 0x800) {
+            encodeByte(out, '%', 0xC0 | (cp >> 6));
+        } else if (cp < 0x10000) {
+            encodeByte(out, '%', 0xE0 | (cp >> 12));
+            encodeByte(out, '%', 0x80 | ((cp >> 6) & 0x3F));
+        } else {
+            encodeByte(out, '%', 0xF0 | (cp >> 18));
+            encodeByte(out, '%', 0x80 | ((cp >> 12) & 0x3F));
+            encodeByte(out, '%', 0x80 | ((cp >> 6) & 0x3F));
+        }
+        encodeByte(out, '%', 0x80 | (cp & 0x3F));
+    }
+
+    private static void encodeByte(Appendable out, char pfx, int b) throws IOException {
+        out.append(pfx)
+           .append(HEX[(b >> 4) & 0x0f])
+           .append(HEX[b & 0x0f]);
+    }
+
+    private static Charset charset(String enc) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(enc);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(enc);
         }
-        return sb.toString();
     }
 
     public static String decode(String e, String enc) throws UnsupportedEncodingException {
-      DecodingInputStream r = null;
-      try {
-        r = new DecodingInputStream(e.getBytes(enc));
-        StringBuilder builder = new StringBuilder();
-        byte[] buf = new byte[100];
-        int i = -1;
-        while ((i = r.read(buf)) != -1)
-          builder.append(new String(buf,0,i,enc));
-        return builder.toString();
-      } catch (IOException i) {
-        throw new RuntimeException(i);
-      } finally {
+        Charset charset = charset(enc);
+        if (e.indexOf('%') == -1)
+            return e;
+        StringBuilder sb = new StringBuilder(e.length());
         try {
-          if (r != null) r.close();
-        } catch (IOException t) {
-          // ok to ignore
+            decodeTo(sb, e, 0, e.length(), charset);
+        } catch (IOException i) {
+            throw new RuntimeException(i); // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Decodes the UTF-8 percent-encoded characters in s, writing the result
+     * to the given Appendable
+     */
+    public static void decodeTo(Appendable out, CharSequence s) {
+        try {
+            decodeTo(out, s, 0, s.length(), UTF8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Decodes the percent-encoded characters in s from start (inclusive) to 
+     * end (exclusive) using the specified character encoding, writing the 
+     * result to the given Appendable. Consecutive escapes are decoded 
+     * together so that multi-byte sequences are preserved; a '%' that is 
+     * not followed by two characters is copied as is.
+     */
+    public static void decodeTo(
+        Appendable out, 
+        CharSequence s, 
+        int start, 
+        int end, 
+        String enc) 
+          throws IOException {
+        decodeTo(out, s, start, end, charset(enc));
+    }
+
+    private static void decodeTo(
+        Appendable out, 
+        CharSequence s, 
+        int start, 
+        int end, 
+        Charset charset) 
+          throws IOException {
+        byte[] bytes = null;
+        int n = start;
+        while (n < end) {
+            char c = s.charAt(n);
+            if (c != '%' || n + 2 >= end) {
+                out.append(c);
+                n++;
+                continue;
+            }
+            if (bytes == null)
+                bytes = new byte[Math.min(32, (end - n) / 3)];
+            int len = 0;
+            boolean ascii = true;
+            while (n + 2 < end && s.charAt(n) == '%') {
+                if (len == bytes.length) {
+                    byte[] b = new byte[len * 2];
+                    System.arraycopy(bytes, 0, b, 0, len);
+                    bytes = b;
+                }
+                byte b = decode(s.charAt(n + 1), s.charAt(n + 2));
+                ascii &= b >= 0;
+                bytes[len++] = b;
+                n += 3;
+            }
+            if (ascii && charset.equals(UTF8)) {
+                for (int i = 0; i < len; i++)
+                    out.append((char)bytes[i]);
+            } else {
+                out.append(charset.decode(ByteBuffer.wrap(bytes, 0, len)));
+            }
         }
-      }
     }
 
     public static String decode(String e) {
@@ -422,26 +577,23 @@ public final class UrlEncoding {
 
         @Override
         public void write(char[] b, int off, int len) throws IOException {
-            String enc = encode(b, off, len, profiles);
-            out.write(enc.toCharArray());
+            encodeTo(out, CharBuffer.wrap(b, off, len), 0, len, DEFAULT_ENCODING, profiles);
         }
 
         @Override
         public void write(char[] b) throws IOException {
-            String enc = encode(b, profiles);
-            out.write(enc.toCharArray());
+            write(b, 0, b.length);
         }
 
         @Override
         public void write(int b) throws IOException {
-            String enc = encode(new char[] {(char)b}, profiles);
-            out.write(enc.toCharArray());
+            write(new char[] {(char)b}, 0, 1);
         }
 
         @Override
         public void write(String str, int off, int len) throws IOException {
-            String enc = encode(str, off, len, profiles);
-            out.write(enc.toCharArray());
+            int end = Math.min(str.length(), off + len);
+            encodeTo(out, str, off, end, DEFAULT_ENCODING, profiles);
         }
     }
 
@@ -20,15 +20,13 @@ package org.apache.abdera2.common.xml;
 import java.io.IOException;
 import java.io.InputStream;
 
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamReader;
-
 import org.apache.abdera2.common.io.CharsetSniffingInputStream;
 import org.apache.abdera2.common.io.PeekAheadInputStream;
 
 /**
  * Will attempt to autodetect the character encoding from the XML Stream 
- * This will preserve the BOM if it exists.
+ * This will preserve the BOM if it exists. If the BOM check fails, the 
+ * encoding is read from the XML declaration using the XmlDeclarationSniffer
  */
 public class XMLStreamSniffingInputStream extends CharsetSniffingInputStream {
 
@@ -41,18 +39,10 @@ public class XMLStreamSniffingInputStream extends CharsetSniffingInputStream {
         String charset = super.detectEncoding(); // first check the bom...
         if (charset == null) { // if the bom check failed...
           PeekAheadInputStream pin = getInternal();
-          try {
-              byte[] p = new byte[200]; // peek into the stream a ways
-              pin.peek(p);
-              XMLStreamReader xmlreader =
-                  XMLInputFactory.newInstance().createXMLStreamReader(
-                    new java.io.ByteArrayInputStream(p));
-              String cs = xmlreader.getCharacterEncodingScheme();
-              if (cs != null)
-                  charset = cs;
-          } catch (Throwable e) {
-            // Ok to ignore the exception
-          }
+          byte[] p = new byte[200]; // peek into the stream a ways
+          int r = pin.peek(p);
+          if (r > 0)
+            charset = XmlDeclarationSniffer.getEncoding(p, 0, r);
         }
         return charset;
     }
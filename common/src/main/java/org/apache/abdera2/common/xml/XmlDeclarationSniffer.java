@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.common.xml;
+
+import java.nio.charset.Charset;
+
+/**
+ * Reads the pseudo-attributes of an XML declaration directly from the 
+ * leading bytes of a document without creating an XML parser. The 
+ * layout of the declaration is inferred from the bytes of the initial 
+ * "&lt;?xm" as described in Appendix F of the XML specification, which 
+ * covers the UTF-8 and other ASCII compatible, UTF-16, UTF-32 and 
+ * EBCDIC families of encodings. A leading byte order mark is skipped.
+ */
+public final class XmlDeclarationSniffer {
+
+  private XmlDeclarationSniffer() {}
+  
+  private static final char[] EBCDIC = ebcdic();
+  
+  /**
+   * Maps the EBCDIC bytes to chars using code page 037. The characters 
+   * that may appear in an XML declaration are encoded the same way by 
+   * all of the EBCDIC code pages.
+   */
+  private static char[] ebcdic() {
+    try {
+      byte[] b = new byte[256];
+      for (int n = 0; n < b.length; n++)
+        b[n] = (byte)n;
+      return new String(b, Charset.forName("IBM037")).toCharArray();
+    } catch (Throwable t) {
+      return null;
+    }
+  }
+  
+  /**
+   * Returns the value of the encoding pseudo-attribute of the XML 
+   * declaration or null if there is no declaration or it does not 
+   * declare an encoding
+   */
+  public static String getEncoding(byte[] buf, int off, int len) {
+    return getPseudoAttribute("encoding", buf, off, len);
+  }
+  
+  /**
+   * Returns the value of the version pseudo-attribute of the XML 
+   * declaration or null if there is no declaration
+   */
+  public static String getVersion(byte[] buf, int off, int len) {
+    return getPseudoAttribute("version", buf, off, len);
+  }
+  
+  /**
+   * Returns the value of the named pseudo-attribute of the XML declaration
+   * found at the start of the given bytes, or null if there is no 
+   * well-formed declaration within them or it does not specify the 
+   * pseudo-attribute
+   */
+  public static String getPseudoAttribute(
+    String name, 
+    byte[] buf, 
+    int off, 
+    int len) {
+      int end = off + len;
+      off += bom(buf, off, len);
+      if (end - off < 4) return null;
+      int b0 = buf[off] & 0xFF, b1 = buf[off+1] & 0xFF, 
+          b2 = buf[off+2] & 0xFF, b3 = buf[off+3] & 0xFF;
+      Decl decl;
+      if (b0 == 0x3C && b1 == 0x3F && b2 == 0x78 && b3 == 0x6D)
+        decl = new Decl(buf, off, end, 1, 0, null);
+      else if (b0 == 0x00 && b1 == 0x3C && b2 == 0x00 && b3 == 0x3F)
+        decl = new Decl(buf, off, end, 2, 1, null);
+      else if (b0 == 0x3C && b1 == 0x00 && b2 == 0x3F && b3 == 0x00)
+        decl = new Decl(buf, off, end, 2, 0, null);
+      else if (b0 == 0x00 && b1 == 0x00 && b2 == 0x00 && b3 == 0x3C)
+        decl = new Decl(buf, off, end, 4, 3, null);
+      else if (b0 == 0x3C && b1 == 0x00 && b2 == 0x00 && b3 == 0x00)
+        decl = new Decl(buf, off, end, 4, 0, null);
+      else if (b0 == 0x4C && b1 == 0x6F && b2 == 0xA7 && b3 == 0x94 && EBCDIC != null)
+        decl = new Decl(buf, off, end, 1, 0, EBCDIC);
+      else return null;
+      return decl.get(name);
+  }
+  
+  private static int bom(byte[] buf, int off, int len) {
+    if (len >= 4) {
+      int b0 = buf[off] & 0xFF, b1 = buf[off+1] & 0xFF, 
+          b2 = buf[off+2] & 0xFF, b3 = buf[off+3] & 0xFF;
+      if ((b0 == 0x00 && b1 == 0x00 && b2 == 0xFE && b3 == 0xFF) ||
+          (b0 == 0xFF && b1 == 0xFE && b2 == 0x00 && b3 == 0x00))
+        return 4;
+    }
+    if (len >= 3 && 
+        (buf[off] & 0xFF) == 0xEF && 
+        (buf[off+1] & 0xFF) == 0xBB && 
+        (buf[off+2] & 0xFF) == 0xBF)
+      return 3;
+    if (len >= 2) {
+      int b0 = buf[off] & 0xFF, b1 = buf[off+1] & 0xFF;
+      if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE))
+        return 2;
+    }
+    return 0;
+  }
+  
+  /**
+   * Walks the declaration one character at a time. Only the ASCII 
+   * characters permitted within an XML declaration are recognized, 
+   * anything else ends the scan.
+   */
+  private static final class Decl {
+    private final byte[] buf;
+    private final int end;
+    private final int width;
+    private final int lsb;
+    private final char[] map;
+    private int pos;
+    
+    Decl(byte[] buf, int off, int end, int width, int lsb, char[] map) {
+      this.buf = buf;
+      this.pos = off;
+      this.end = end;
+      this.width = width;
+      this.lsb = lsb;
+      this.map = map;
+    }
+    
+    /**
+     * Returns the next character without consuming it or -1 if the 
+     * end of the buffer has been reached or the next character is not 
+     * ASCII
+     */
+    int peek() {
+      if (pos + width > end) return -1;
+      for (int n = 0; n < width; n++)
+        if (n != lsb && buf[pos+n] != 0) return -1;
+      int c = buf[pos+lsb] & 0xFF;
+      if (map != null) c = map[c];
+      return c < 0x80 ? c : -1;
+    }
+    
+    int next() {
+      int c = peek();
+      if (c != -1) pos += width;
+      return c;
+    }
+    
+    boolean skip(String s) {
+      for (int n = 0; n < s.length(); n++)
+        if (next() != s.charAt(n)) return false;
+      return true;
+    }
+    
+    boolean skipWhitespace() {
+      boolean ws = false;
+      for (int c = peek(); c == ' ' || c == '\t' || c == '\r' || c == '\n'; c = peek()) {
+        next();
+        ws = true;
+      }
+      return ws;
+    }
+    
+    String get(String name) {
+      if (!skip("<?xml") || !skipWhitespace()) return null;
+      StringBuilder sb = new StringBuilder();
+      for(;;) {
+        int c = peek();
+        if (c == '?') return null;
+        sb.setLength(0);
+        while ((c = peek()) != -1 && isNameChar(c))
+          sb.append((char)next());
+        if (sb.length() == 0) return null;
+        String attr = sb.toString();
+        skipWhitespace();
+        if (next() != '=') return null;
+        skipWhitespace();
+        int quote = next();
+        if (quote != '"' && quote != '\'') return null;
+        sb.setLength(0);
+        while ((c = next()) != quote) {
+          if (c == -1) return null;
+          sb.append((char)c);
+        }
+        if (attr.equals(name)) return sb.toString();
+        if (!skipWhitespace() && peek() != '?') return null;
+      }
+    }
+    
+    private static boolean isNameChar(int c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+  }
+}
@@ -39,6 +39,8 @@ import org.apache.abdera2.model.ElementWrapper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.google.common.base.Function;
+
 import static com.google.common.base.Preconditions.*;
 
 /**
@@ -88,9 +90,9 @@ public abstract class AbstractExtensionFactory
     /** A mapping of QNames to MimeTypes. **/
     private final Map<QName, String> mimetypes = new HashMap<QName, String>();
     
-    /** The mapping of QNames to implementation classes **/
-    private final Map<QName, Constructor<? extends ElementWrapper>> impls =
-        new HashMap<QName, Constructor<? extends ElementWrapper>>();
+    /** The mapping of QNames to the functions that create the wrappers **/
+    private final Map<QName, Function<Element,? extends ElementWrapper>> impls =
+        new HashMap<QName, Function<Element,? extends ElementWrapper>>();
 
     /**
      * The default constructor will automatically search the subclass
@@ -115,12 +117,9 @@ public abstract class AbstractExtensionFactory
     public <T extends Element> T getElementWrapper(Element internal) {
         T t = null;
         QName qname = internal.getQName();
-        Constructor<? extends ElementWrapper> con = impls.get(qname);        
-        if (con != null) {
-          try {
-            t = (T)con.newInstance(new Object[] {internal});
-          } catch (Throwable e) {}
-        }
+        Function<Element,? extends ElementWrapper> impl = impls.get(qname);        
+        if (impl != null)
+          t = (T)impl.apply(internal);
         return t != null ? t : (T)internal;
     }
 
@@ -156,6 +155,22 @@ public abstract class AbstractExtensionFactory
             "Missing Element Wrapper Constructor"));
         return this;
     }
+    
+    /**
+     * Associate a QName with a function that creates the wrapper for 
+     * the internal element. This avoids the reflective constructor 
+     * invocation used for implementation classes registered with 
+     * addImpl(QName,Class)
+     */
+    protected AbstractExtensionFactory addImpl(
+      QName qname, 
+      Function<Element,? extends ElementWrapper> impl) {
+        checkNotNull(qname);
+        checkNotNull(impl);
+        log.debug(String.format("Adding implementation function for [%s]",qname.toString()));
+        impls.put(qname, impl);
+        return this;
+    }
    
     public <T extends Base> String getMimeType(T base) {
         Element element =
@@ -176,7 +191,7 @@ public abstract class AbstractExtensionFactory
         return namespaces.contains(namespace);
     }
 
-    private static void addImpls(Object obj, Map<QName, Constructor<? extends ElementWrapper>> map) {
+    private static void addImpls(Object obj, Map<QName, Function<Element,? extends ElementWrapper>> map) {
       if (obj == null) return;
       Class<?> _class = obj instanceof Class ? (Class<?>)obj : obj.getClass();
       if (_class.isAnnotationPresent(Impls.class)) {
@@ -196,7 +211,7 @@ public abstract class AbstractExtensionFactory
           }
           if (qname != null) {
             log.debug(String.format("  Discovered QName: %s", qname.toString()));
-            Constructor<? extends ElementWrapper> con = 
+            Function<Element,? extends ElementWrapper> con = 
               constructor(_impl);
             if (con != null) {
               map.put(qname,con);
@@ -206,15 +221,44 @@ public abstract class AbstractExtensionFactory
       }
     }
     
-    private static Constructor<? extends ElementWrapper> constructor(Class<? extends ElementWrapper> _class) {
+    private static Function<Element,? extends ElementWrapper> constructor(Class<? extends ElementWrapper> _class) {
       try {
-        return _class.getConstructor(new Class[] {Element.class});
+        return new ConstructorFunction(_class.getConstructor(new Class[] {Element.class}));
       } catch (Throwable t) {
         log.error("Error retrieving constructor...",t);
         return null;
       }
     }
     
+    /**
+     * Creates wrappers using the reflected (Element) constructor of 
+     * an implementation class
+     */
+    private static final class ConstructorFunction 
+      implements Function<Element,ElementWrapper> {
+      private final Constructor<? extends ElementWrapper> con;
+      ConstructorFunction(Constructor<? extends ElementWrapper> con) {
+        this.con = con;
+      }
+      public ElementWrapper apply(Element internal) {
+        try {
+          return con.newInstance(new Object[] {internal});
+        } catch (Throwable e) {
+          log.error("Error creating element wrapper...",e);
+          return null;
+        }
+      }
+      @Override
+      public int hashCode() {
+        return con.hashCode();
+      }
+      @Override
+      public boolean equals(Object obj) {
+        return obj instanceof ConstructorFunction && 
+          con.equals(((ConstructorFunction)obj).con);
+      }
+    }
+    
     @Override
     public int hashCode() {
       return MoreFunctions.genHashCode(1, impls, mimetypes, namespaces);
@@ -17,9 +17,14 @@
  */
 package org.apache.abdera2.factory;
 
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.namespace.QName;
 
@@ -27,18 +32,33 @@ import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.Document;
 import org.apache.abdera2.model.Element;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 /**
  * A utility implementation of ExtensionFactory used internally by Abdera. It maintains the collection ExtensionFactory
  * instances discovered on the classpath and a cache of Internal-Wrapper mappings.
+ * 
+ * Factories are indexed by the namespaces they declare so that finding the factories for an element does not 
+ * require asking every registered factory. The index is immutable and is rebuilt whenever a factory is added. 
+ * QNames for which no factory produced a wrapper are remembered so that subsequent elements with the same 
+ * QName skip the lookup entirely.
  */
 public class ExtensionFactoryMap 
   implements ExtensionFactory, Iterable<ExtensionFactory> {
 
-    private final Set<ExtensionFactory> factories = 
-      new HashSet<ExtensionFactory>();
+    /** Upper bound on the number of unwrapped QNames remembered **/
+    private static final int MAX_UNWRAPPED = 1024;
+  
+    private volatile Set<ExtensionFactory> factories = 
+      ImmutableSet.of();
+    
+    private volatile Map<String,List<ExtensionFactory>> index = 
+      ImmutableMap.of();
     
-    private final Set<String> namespaces = 
-      new HashSet<String>();
+    private volatile ConcurrentMap<QName,Boolean> unwrapped = 
+      new ConcurrentHashMap<QName,Boolean>();
     
     public ExtensionFactoryMap(Iterable<ExtensionFactory> factories) {
       for (ExtensionFactory factory : factories)
@@ -49,40 +69,77 @@ public class ExtensionFactoryMap
     public <T extends Element> T getElementWrapper(Element internal) {
         if (internal == null)
             return null;
-        T t = null;
         QName qname = internal.getQName();
-        String ns = qname.getNamespaceURI();
-        for (ExtensionFactory factory : factories) {
-            if (ns == null || factory.handlesNamespace(ns)) {
-              t = (T)factory.getElementWrapper(internal);
-              if (t != null && t != internal)
-                  return t;
-            }
+        ConcurrentMap<QName,Boolean> unwrapped = this.unwrapped;
+        if (unwrapped.containsKey(qname))
+            return (T)internal;
+        T t = null;
+        for (ExtensionFactory factory : getFactories(qname.getNamespaceURI())) {
+            t = (T)factory.getElementWrapper(internal);
+            if (t != null && t != internal)
+                return t;
         }
+        if (unwrapped.size() < MAX_UNWRAPPED)
+            unwrapped.put(qname, Boolean.TRUE);
         return (t != null) ? t : (T)internal;
     }
 
+    /**
+     * Returns the factories that handle the given namespace. Namespaces
+     * not declared by any factory's getNamespaces() fall back to asking
+     * each factory.
+     */
+    private Iterable<ExtensionFactory> getFactories(String ns) {
+        List<ExtensionFactory> list = index.get(ns);
+        if (list != null)
+            return list;
+        ImmutableList.Builder<ExtensionFactory> builder = ImmutableList.builder();
+        for (ExtensionFactory factory : factories)
+            if (ns == null || factory.handlesNamespace(ns))
+                builder.add(factory);
+        return builder.build();
+    }
+
     public Iterable<String> getNamespaces() {
-        return namespaces;
+        return index.keySet();
     }
 
     public boolean handlesNamespace(String namespace) {
-        return namespaces.contains(namespace);
+        return index.containsKey(namespace);
     }
 
-    public ExtensionFactoryMap addFactory(ExtensionFactory factory) {
-        factories.add(factory);
-        for (String ns : factory.getNamespaces())
-          namespaces.add(ns);
+    public synchronized ExtensionFactoryMap addFactory(ExtensionFactory factory) {
+        Set<ExtensionFactory> factories = 
+          new LinkedHashSet<ExtensionFactory>(this.factories);
+        if (!factories.add(factory))
+          return this;
+        Map<String,ImmutableList.Builder<ExtensionFactory>> builders = 
+          new LinkedHashMap<String,ImmutableList.Builder<ExtensionFactory>>();
+        for (ExtensionFactory f : factories) {
+          for (String ns : f.getNamespaces()) {
+            ImmutableList.Builder<ExtensionFactory> builder = builders.get(ns);
+            if (builder == null) {
+              builder = ImmutableList.builder();
+              builders.put(ns, builder);
+            }
+            builder.add(f);
+          }
+        }
+        ImmutableMap.Builder<String,List<ExtensionFactory>> index = 
+          ImmutableMap.builder();
+        for (Map.Entry<String,ImmutableList.Builder<ExtensionFactory>> entry : builders.entrySet())
+          index.put(entry.getKey(), entry.getValue().build());
+        this.index = index.build();
+        this.factories = ImmutableSet.copyOf(factories);
+        this.unwrapped = new ConcurrentHashMap<QName,Boolean>();
         return this;
     }
 
     public <T extends Base> String getMimeType(T base) {
         Element element = base instanceof Element ? (Element)base : ((Document<?>)base).getRoot();
         String namespace = element.getQName().getNamespaceURI();
-        for (ExtensionFactory factory : factories)
-            if (factory.handlesNamespace(namespace))
-                return factory.getMimeType(base);
+        for (ExtensionFactory factory : getFactories(namespace))
+            return factory.getMimeType(base);
         return null;
     }
 
@@ -22,6 +22,8 @@ import java.util.Map;
 import org.apache.abdera2.common.selector.AbstractSelector;
 import org.apache.abdera2.common.selector.Selector;
 import org.apache.abdera2.model.Element;
+import org.apache.abdera2.xpath.CompiledXPath;
+import org.apache.abdera2.xpath.CompilingXPath;
 import org.apache.abdera2.xpath.XPath;
 
 import com.google.common.base.Supplier;
@@ -75,6 +77,7 @@ implements Selector<Object> {
     private final XPath xpath;
     private final Map<String, String> namespaces;
     private final String path;
+    private transient CompiledXPath compiled;
     
     XPathSelector(Builder builder) {
       this.path = builder.path;
@@ -84,9 +87,12 @@ implements Selector<Object> {
 
     public boolean select(Object element) {
       if (!(element instanceof Element)) return false;
-        if (xpath.booleanValueOf(path, (Element)element, namespaces))
-            return true;
-        return false;
+        if (!(xpath instanceof CompilingXPath))
+          return xpath.booleanValueOf(path, (Element)element, namespaces);
+        CompiledXPath compiled = this.compiled;
+        if (compiled == null)
+          this.compiled = compiled = ((CompilingXPath)xpath).compile(path, namespaces);
+        return compiled.booleanValueOf((Element)element);
     }
 
     public void addNamespace(String prefix, String uri) {
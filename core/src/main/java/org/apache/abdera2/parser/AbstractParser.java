@@ -23,6 +23,8 @@ import java.io.Reader;
 import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import javax.xml.stream.XMLStreamReader;
@@ -32,6 +34,10 @@ import org.apache.abdera2.common.mediatype.MimeTypeHelper;
 import org.apache.abdera2.factory.Factory;
 import org.apache.abdera2.model.Document;
 import org.apache.abdera2.model.Element;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+
+import com.google.common.collect.ImmutableList;
 
 /**
  * Abstract base implementation of Abdera Parser.
@@ -123,6 +129,43 @@ public abstract class AbstractParser implements Parser {
         return parse(buf, null, getDefaultParserOptions());
     }
     
+    public EntryStream stream(InputStream in) throws ParseException {
+        return stream(in, null, getDefaultParserOptions());
+    }
+
+    public EntryStream stream(InputStream in, ParserOptions options) throws ParseException {
+        return stream(in, null, options);
+    }
+
+    public EntryStream stream(InputStream in, String base, ParserOptions options) throws ParseException {
+        return createEntryStream(this.<Feed>parse(in, base, options));
+    }
+
+    public EntryStream stream(Reader in) throws ParseException {
+        return stream(in, null, getDefaultParserOptions());
+    }
+
+    public EntryStream stream(Reader in, ParserOptions options) throws ParseException {
+        return stream(in, null, options);
+    }
+
+    public EntryStream stream(Reader in, String base, ParserOptions options) throws ParseException {
+        return createEntryStream(this.<Feed>parse(in, base, options));
+    }
+
+    public EntryStream stream(XMLStreamReader reader, String base, ParserOptions options) throws ParseException {
+        return createEntryStream(this.<Feed>parse(reader, base, options));
+    }
+
+    /**
+     * Creates the EntryStream for a parsed document. The default implementation works from the already built
+     * document; Parser implementations that build documents incrementally should override this to stream entries
+     * as they are parsed.
+     */
+    protected EntryStream createEntryStream(Document<Feed> document) throws ParseException {
+        return new DocumentEntryStream(document);
+    }
+    
     public ParserOptions.Builder makeDefaultParserOptions() {
       return initDefaultParserOptions();
     }
@@ -151,4 +194,56 @@ public abstract class AbstractParser implements Parser {
       }
       return false;
   }
+
+  /**
+   * EntryStream implementation that iterates over the entries of a Document
+   * that has already been built.
+   */
+  private static class DocumentEntryStream implements EntryStream {
+    private final Document<Feed> document;
+    private final Feed feed;
+    private final Iterator<Entry> entries;
+    private Entry current;
+    
+    DocumentEntryStream(Document<Feed> document) {
+      this.document = document;
+      Element root = document.getRoot();
+      if (!(root instanceof Feed))
+        throw new ParseException("The document is not an Atom feed");
+      this.feed = (Feed)root;
+      this.entries = ImmutableList.copyOf(feed.getEntries()).iterator();
+    }
+    
+    public boolean hasNext() {
+      return entries.hasNext();
+    }
+    
+    public Entry next() {
+      if (current != null)
+        current.discard();
+      current = null;
+      if (!entries.hasNext())
+        throw new NoSuchElementException();
+      current = entries.next();
+      return current;
+    }
+    
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+    
+    public Iterator<Entry> iterator() {
+      return this;
+    }
+    
+    public Feed getFeed() {
+      return feed;
+    }
+    
+    public Document<Feed> getDocument() {
+      return document;
+    }
+    
+    public void close() {}
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.parser;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+
+/**
+ * Pull-based view over the entries of an Atom Feed Document. Entries are 
+ * parsed one at a time as the stream is advanced. Each Entry returned by 
+ * next() is fully built but is only retained by the underlying document
+ * until the caller moves on to the next entry, so the memory required to 
+ * process a feed does not grow with the number of entries it contains.
+ * 
+ * Feed-level metadata that precedes the first entry is available from 
+ * getFeed() before iteration begins. Metadata that follows the last entry
+ * becomes available once the stream has been exhausted.
+ */
+public interface EntryStream 
+  extends Iterator<Entry>, Iterable<Entry>, Closeable {
+
+  /**
+   * The Feed element. The returned feed never contains entries that 
+   * the caller has already moved past. Note that iterating over the
+   * children of the feed before the stream has been exhausted causes 
+   * the remainder of the document to be built in memory.
+   */
+  Feed getFeed();
+  
+  /**
+   * The Document being streamed
+   */
+  Document<Feed> getDocument();
+  
+  /**
+   * Stops parsing and releases the underlying XML parser. The 
+   * InputStream or Reader that was passed to the Parser is not closed.
+   */
+  void close();
+  
+}
@@ -188,6 +188,81 @@ public interface Parser {
      */
     <T extends Element> Document<T> parse(ReadableByteChannel buf, ParserOptions options) throws ParseException;
 
+    /**
+     * Incrementally parse an Atom Feed Document from the input stream using the default parser options. Entries are
+     * built one at a time as the returned stream is advanced rather than held in memory for the whole document.
+     *
+     * @param in The input stream to parse
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(InputStream in) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the input stream using the specified parser options.
+     *
+     * @param in The input stream to parse
+     * @param options The Parse Options
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(InputStream in, ParserOptions options) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the input stream using the specified parser options. The
+     * specified Base URI is used to resolve relative references contained in the document.
+     *
+     * @param in The input stream to parse
+     * @param base The Base URI of the document
+     * @param options The Parse Options
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(InputStream in, String base, ParserOptions options) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the reader using the default parser options.
+     *
+     * @param in The Reader to parse
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(Reader in) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the reader using the specified parser options.
+     *
+     * @param in The Reader to parse
+     * @param options The Parse Options
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(Reader in, ParserOptions options) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the reader using the specified parser options. The specified
+     * Base URI is used to resolve relative references contained in the document.
+     *
+     * @param in The Reader to parse
+     * @param base The Base URI of the document
+     * @param options The Parse Options
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(Reader in, String base, ParserOptions options) throws ParseException;
+
+    /**
+     * Incrementally parse an Atom Feed Document from the XMLStreamReader using the specified parser options. The
+     * specified Base URI is used to resolve relative references contained in the document.
+     *
+     * @param reader The XMLStreamReader to use to parse
+     * @param base The Base URI of the document
+     * @param options The Parse Options
+     * @return An EntryStream over the entries of the feed
+     * @throws ParseException if the parse failed or the document is not an Atom feed
+     */
+    EntryStream stream(XMLStreamReader reader, String base, ParserOptions options) throws ParseException;
+
     /**
      * Return the default parser options for this Parser. This method returns a copy of the default options. Changes to
      * this instance will not affect the defaults returned by subsequent requests.
@@ -26,6 +26,7 @@ import org.apache.abdera2.common.io.Compression.CompressionCodec;
 import org.apache.abdera2.factory.Factory;
 import org.apache.abdera2.parser.axiom.FOMFactory;
 import org.apache.abdera2.parser.filter.ParseFilter;
+import org.apache.abdera2.parser.filter.ParseFilterPlan;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
@@ -446,6 +447,7 @@ public class ParserOptions {
   private final Factory factory;
   private final String charset;
   private final ParseFilter parseFilter;
+  private final ParseFilterPlan parseFilterPlan;
   private final boolean detect;
   private final boolean preserve;
   private final boolean filterreserved;
@@ -462,6 +464,7 @@ public class ParserOptions {
       builder.factory : new FOMFactory();
     this.charset = builder.charset;
     this.parseFilter = builder.parseFilter;
+    this.parseFilterPlan = ParseFilterPlan.compile(builder.parseFilter);
     this.detect = builder.detect;
     this.preserve = builder.preserve;
     this.filterreserved = builder.filterreserved;
@@ -478,6 +481,7 @@ public class ParserOptions {
     this.factory = options.factory;
     this.charset = charset;
     this.parseFilter = options.parseFilter;
+    this.parseFilterPlan = options.parseFilterPlan;
     this.detect = options.detect;
     this.preserve = options.preserve;
     this.filterreserved = options.filterreserved;
@@ -517,6 +521,14 @@ public class ParserOptions {
       return parseFilter;
     }
 
+    /**
+     * Returns the precompiled form of the Parse Filter. If no filter has been set, 
+     * the returned plan accepts all elements and attributes
+     */
+    public ParseFilterPlan getParseFilterPlan() {
+      return parseFilterPlan;
+    }
+
     /**
      * Returns true if the parser should attempt to automatically detect the character encoding from the stream
      */
@@ -30,6 +30,7 @@ import org.apache.abdera2.model.Text;
 import org.apache.abdera2.parser.ParseException;
 import org.apache.abdera2.parser.ParserOptions;
 import org.apache.abdera2.parser.filter.ParseFilter;
+import org.apache.abdera2.parser.filter.ParseFilterPlan;
 import org.apache.axiom.om.OMConstants;
 import org.apache.axiom.om.OMContainer;
 import org.apache.axiom.om.OMDocument;
@@ -51,7 +52,7 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
     private final ParserOptions parserOptions;
     private boolean indoc = false;
     private int depth = 0;
-    private int depthInSkipElement = 0;
+    private final ParseFilterPlan filterPlan;
     private boolean ignoreWhitespace = false;
     private boolean ignoreComments = false;
     private boolean ignorePI = false;
@@ -72,6 +73,9 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
                 ignoreComments = parseFilter.getIgnoreComments();
                 ignorePI = parseFilter.getIgnoreProcessingInstructions();
             }
+            this.filterPlan = parserOptions.getParseFilterPlan();
+        } else {
+            this.filterPlan = ParseFilterPlan.ACCEPT_ALL;
         }
     }
 
@@ -125,38 +129,44 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
         return ctype;
     }
 
-    private boolean isAcceptableToParse(QName qname, boolean attribute) {
-        if (parserOptions == null)
-            return true;
-        ParseFilter filter = parserOptions.getParseFilter();
-        return (filter != null) ? (!attribute) ? filter.acceptable(qname) : filter.acceptable(parser.getName(), qname)
-            : true;
-    }
-
     private OMNode applyTextFilter(int type) {
-        if (parserOptions != null) {
-            ParseFilter parseFilter = parserOptions.getParseFilter();
-            if (parseFilter != null) {
-                if (parser.isWhiteSpace() && parseFilter.getIgnoreWhitespace())
-                    return createOMText("", type);
-            }
-        }
+        if (ignoreWhitespace && parser.isWhiteSpace())
+            return createOMText("", type);
         return createOMText(type);
     }
 
+    /**
+     * Returns the next token that should be processed. Elements rejected by the parse filter are skipped in their
+     * entirety without consulting the filter for any of their descendants.
+     */
     private int getNextElementToParse() throws XMLStreamException {
         int token = parser.next();
-        if (depthInSkipElement == 0 && token != XMLStreamConstants.START_ELEMENT) {
+        if (filterPlan.isAcceptAll())
             return token;
-        } else if (token == XMLStreamConstants.START_ELEMENT && isAcceptableToParse(parser.getName(), false)
-            && depthInSkipElement == 0) {
-            return token;
-        } else if (token == XMLStreamConstants.START_ELEMENT) {
-            depthInSkipElement++;
-        } else if (token == XMLStreamConstants.END_ELEMENT) { // otherwise skip like crazy
-            depthInSkipElement--;
+        while (token == XMLStreamConstants.START_ELEMENT && !filterPlan.acceptable(parser.getName())) {
+            skipElement();
+            token = parser.next();
+        }
+        return token;
+    }
+
+    /**
+     * Advances the parser past the end of the current element, discarding all nested content
+     */
+    private void skipElement() throws XMLStreamException {
+        int level = 1;
+        while (level > 0) {
+            switch (parser.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    level++;
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    level--;
+                    break;
+                case XMLStreamConstants.END_DOCUMENT:
+                    throw new ParseException("Unexpected end of document");
+            }
         }
-        return getNextElementToParse();
     }
 
     /**
@@ -191,6 +201,11 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
                     break;
                 case XMLStreamConstants.END_ELEMENT:
                     endElement();
+                    // once the root element completes, read through to the end of the
+                    // document so the underlying stream is fully consumed
+                    if (depth == 0)
+                        while (!done)
+                            next();
                     break;
                 case XMLStreamConstants.END_DOCUMENT:
                     done = true;
@@ -272,9 +287,10 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
     @Override
     protected void processAttributes(OMElement node) {
         int attribCount = parser.getAttributeCount();
+        boolean acceptAll = filterPlan.isAcceptAll();
+        QName name = acceptAll || attribCount == 0 ? null : parser.getName();
         for (int i = 0; i < attribCount; i++) {
-            QName attr = parser.getAttributeName(i);
-            if (isAcceptableToParse(attr, true)) {
+            if (acceptAll || filterPlan.acceptable(name, parser.getAttributeName(i))) {
                 String uri = parser.getAttributeNamespace(i);
                 String prefix = parser.getAttributePrefix(i);
                 OMNamespace namespace = null;
@@ -307,6 +323,49 @@ public class FOMBuilder extends StAXOMBuilder implements Constants {
         depth--;
     }
 
+    /**
+     * Unlinks a completely built node from its parent, along with any whitespace text immediately preceding it,
+     * without pulling further events from the parser. Unlike OMNode.detach(), this never builds ahead, so the
+     * builder stays positioned where it was and parsing can continue normally afterwards.
+     */
+    void release(OMNode node) {
+        OMContainerEx parent = (OMContainerEx)node.getParent();
+        if (parent == null)
+            return;
+        OMNode next = ((OMNodeEx)node).getNextOMSiblingIfAvailable();
+        OMNode prev = node.getPreviousOMSibling();
+        unlink(node);
+        while (prev instanceof OMText && isWhitespace(((OMText)prev).getText())) {
+            OMNode n = prev.getPreviousOMSibling();
+            unlink(prev);
+            prev = n;
+        }
+        if (prev == null)
+            parent.setFirstChild(next);
+        else
+            ((OMNodeEx)prev).setNextOMSibling(next);
+        if (next == null)
+            parent.setLastChild(prev);
+        else
+            ((OMNodeEx)next).setPreviousOMSibling(prev);
+        if (lastNode == node || (lastNode != null && lastNode.getParent() == null))
+            lastNode = prev != null ? prev : parent instanceof OMNode ? (OMNode)parent : null;
+    }
+
+    private static void unlink(OMNode node) {
+        OMNodeEx n = (OMNodeEx)node;
+        n.setParent(null);
+        n.setNextOMSibling(null);
+        n.setPreviousOMSibling(null);
+    }
+
+    private static boolean isWhitespace(String text) {
+        for (int n = 0; n < text.length(); n++)
+            if (!Character.isWhitespace(text.charAt(n)))
+                return false;
+        return true;
+    }
+
     public <T extends Element> Document<T> getFomDocument() {
         while (!indoc && !done) {
             next();
@@ -144,7 +144,10 @@ public class FOMDocument<T extends Element> extends OMDocumentImpl implements Do
         if (charset == null)
             charset = "UTF-8";
         Writer writer = getFactory().getAbdera().getWriter();
-        writeTo(writer, new OutputStreamWriter(out, charset));
+        if (writer instanceof FOMWriter && FOMSerializer.isSupported(charset))
+            FOMSerializer.serialize(this, out);
+        else
+            writeTo(writer, new OutputStreamWriter(out, charset));
     }
 
     public void writeTo(java.io.Writer writer) throws IOException {
@@ -202,7 +202,7 @@ public class FOMElement extends OMElementImpl implements Element, OMElement, Con
     }
 
     public IRI getBaseUri() {
-        IRI uri = _getUriValue(getAttributeValue(BASE));
+        IRI uri = IRI.intern(getAttributeValue(BASE));
         if (uri == null) {
             if (parent instanceof Element) {
                 uri = ((Element)parent).getBaseUri();
@@ -215,7 +215,7 @@ public class FOMElement extends OMElementImpl implements Element, OMElement, Con
 
     public IRI getResolvedBaseUri() {
         IRI baseUri = null;
-        IRI uri = _getUriValue(getAttributeValue(BASE));
+        IRI uri = IRI.intern(getAttributeValue(BASE));
         if (parent instanceof Element)
             baseUri = ((Element)parent).getResolvedBaseUri();
         else if (parent instanceof Document)
@@ -333,7 +333,10 @@ public class FOMElement extends OMElementImpl implements Element, OMElement, Con
         Document<?> doc = getDocument();
         String charset = doc != null ? doc.getCharset() : "UTF-8";
         Writer writer = this.getFactory().getAbdera().getWriter();
-        writeTo(writer, new OutputStreamWriter(out, charset));
+        if (writer instanceof FOMWriter && FOMSerializer.isSupported(charset))
+            FOMSerializer.serialize(this, out);
+        else
+            writeTo(writer, new OutputStreamWriter(out, charset));
     }
 
     public void writeTo(java.io.Writer writer) throws IOException {
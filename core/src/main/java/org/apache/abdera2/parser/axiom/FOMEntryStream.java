@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.parser.axiom;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLStreamConstants;
+
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.parser.EntryStream;
+import org.apache.abdera2.parser.ParseException;
+import org.apache.axiom.om.OMDocument;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNode;
+
+/**
+ * EntryStream implementation that drives the FOMBuilder directly. The 
+ * builder is pulled just far enough to completely build the next atom:entry
+ * child of the feed; once the caller moves on, that entry is unlinked from
+ * the feed so that it can be garbage collected. Because an EntryStream is 
+ * also an Iterator, it can only be iterated once.
+ */
+@SuppressWarnings("unchecked")
+class FOMEntryStream 
+  implements EntryStream, Constants {
+
+  private final FOMBuilder builder;
+  private final Document<Feed> document;
+  private final OMElement feed;
+  private OMElement current;
+  private OMElement next;
+  private boolean closed = false;
+  
+  FOMEntryStream(FOMBuilder builder, Document<Feed> document) {
+    this.builder = builder;
+    this.document = document;
+    this.feed = ((OMDocument)document).getOMDocumentElement();
+    if (feed == null || !FEED.equals(feed.getQName()))
+      throw new ParseException("The document is not an Atom feed");
+    this.next = advance();
+  }
+  
+  /**
+   * Pull events from the builder until the next atom:entry child of the 
+   * feed has been completely built, or until the feed is complete.
+   */
+  private OMElement advance() {
+    try {
+      while (!closed && !feed.isComplete() && !builder.isCompleted()) {
+        int token = builder.next();
+        if (token != XMLStreamConstants.START_ELEMENT)
+          continue;
+        OMNode node = builder.getLastNode();
+        if (node instanceof FOMEntry && node.getParent() == feed) {
+          OMElement entry = (OMElement)node;
+          while (!entry.isComplete())
+            builder.next();
+          return entry;
+        }
+      }
+      return null;
+    } catch (ParseException e) {
+      close();
+      throw e;
+    }
+  }
+  
+  private void release() {
+    if (current != null)
+      builder.release(current);
+    current = null;
+  }
+  
+  public boolean hasNext() {
+    if (next == null) {
+      release();
+      next = advance();
+    }
+    return next != null;
+  }
+
+  public Entry next() {
+    if (!hasNext())
+      throw new NoSuchElementException();
+    current = next;
+    next = null;
+    return ((FOMFactory)builder.getFactory()).getElementWrapper((Entry)current);
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public Iterator<Entry> iterator() {
+    return this;
+  }
+
+  public Feed getFeed() {
+    return document.getRoot();
+  }
+
+  public Document<Feed> getDocument() {
+    return document;
+  }
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      release();
+      next = null;
+      builder.close();
+    }
+  }
+
+}
@@ -65,7 +65,8 @@ import org.apache.axiom.om.OMXMLParserWrapper;
 import org.apache.axiom.om.impl.llom.factory.OMLinkedListImplFactory;
 
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 @SuppressWarnings( {"unchecked", "deprecation"})
 public class FOMFactory extends OMLinkedListImplFactory 
@@ -73,6 +74,7 @@ public class FOMFactory extends OMLinkedListImplFactory
 
     private final ExtensionFactoryMap factoriesMap;
     private final Abdera abdera;
+    private volatile java.util.Map<QName,ElementCreator> creators = defaultCreators;
 
     public static void registerAsDefault() {
         System.setProperty(
@@ -81,133 +83,242 @@ public class FOMFactory extends OMLinkedListImplFactory
     }
 
     
-    /** 
-     * This is a bit of a trick to speed up runtime performance during parse.
-     * Basically, in the old model, whenever we'd encounter an element during
-     * parsing, we would run through and do an if (qname.equals(whatever)) 
-     * check against each of the core known qnames. Each would be checked in
-     * sequence until a match was found, then the appropriate object would be 
-     * created. That approach meant that for every element parsed, there were
-     * we were potentially performing equals checks for every known qname 
-     * every time, which is just silly and slows performance during the parse.
-     * With this approach, we take a little bit of a hit during class init 
-     * and index the Constructors for each of the main types and map those to
-     * their qnames. Now, as we parse each element, we only need to look up 
-     * the qname in the hashmap and grab the appropriate constructor and invoke
-     * it. There are some variations with FOMContent and FOMText elements
-     * since their constructors are not identical to the others, but this 
-     * approach gives us constant time performance during parse (at least for 
-     * the object creation portion of it) and eliminates the need for checking
-     * every qname on every iteration... albeit, at a cost of a bit more 
-     * complexity
+    /**
+     * Creates the FOM implementation of a particular element. Creators are 
+     * registered per QName with the FOMFactory so that, as each element is 
+     * encountered during the parse, the appropriate object can be created 
+     * with a single hash lookup followed by a direct constructor call rather
+     * than a sequence of qname.equals checks or reflective invocation. 
+     * Additional creators can be registered using registerCreator.
      */
+    public static interface ElementCreator {
+      
+      /**
+       * Create the element programmatically. The objecttype is the 
+       * Text.Type or Content.Type for text and content elements, 
+       * null otherwise
+       */
+      OMElement create(
+        QName qname, 
+        OMNamespace namespace, 
+        OMContainer parent, 
+        FOMFactory factory, 
+        Object objecttype);
+      
+      /**
+       * Create the element during a parse
+       */
+      OMElement create(
+        QName qname, 
+        OMContainer parent, 
+        FOMFactory factory, 
+        FOMBuilder builder);
+    }
     
-    private static java.util.Map<QName,java.lang.reflect.Constructor<?>> conmap =
-      ImmutableMap.<QName,java.lang.reflect.Constructor<?>>builder()
-      .put(FEED, confrom(FOMFeed.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(SERVICE, confrom(FOMService.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .put(PRE_RFC_SERVICE, confrom(FOMService.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(ENTRY, confrom(FOMEntry.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(AUTHOR, confrom(FOMPerson.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(CATEGORY, confrom(FOMCategory.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(CONTENT, confrom(FOMContent.class, String.class, OMNamespace.class, Content.Type.class, OMContainer.class, OMFactory.class)) 
-      .put(CONTRIBUTOR, confrom(FOMPerson.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(GENERATOR, confrom(FOMGenerator.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(ICON, confrom(FOMIRI.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(ID, confrom(FOMIRI.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(LOGO, confrom(FOMIRI.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(LINK, confrom(FOMLink.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(PUBLISHED, confrom(FOMDateTime.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(SOURCE, confrom(FOMSource.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(RIGHTS, confrom(FOMText.class, Text.Type.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(SUBTITLE, confrom(FOMText.class, Text.Type.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(SUMMARY, confrom(FOMText.class, Text.Type.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(TITLE, confrom(FOMText.class, Text.Type.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(UPDATED, confrom(FOMDateTime.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(WORKSPACE, confrom(FOMWorkspace.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(PRE_RFC_WORKSPACE, confrom(FOMWorkspace.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(COLLECTION, confrom(FOMCollection.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(PRE_RFC_COLLECTION, confrom(FOMCollection.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(NAME, confrom(FOMElement.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(EMAIL, confrom(FOMElement.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(URI, confrom(FOMIRI.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(CONTROL, confrom(FOMControl.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .put(PRE_RFC_CONTROL, confrom(FOMControl.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class)) 
-      .put(DIV, confrom(FOMDiv.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .put(CATEGORIES, confrom(FOMCategories.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .put(PRE_RFC_CATEGORIES, confrom(FOMCategories.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .put(EDITED, confrom(FOMDateTime.class, String.class, OMNamespace.class, OMContainer.class, OMFactory.class))
-      .build();
+    private static final ElementCreator FEED_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMFeed(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMFeed(qname, parent, factory, builder);
+      }
+    };
     
-    private static java.util.Map<QName,java.lang.reflect.Constructor<?>> conmap2 =
-      ImmutableMap.<QName,java.lang.reflect.Constructor<?>>builder()
-      .put(FEED, confrom(FOMFeed.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(SERVICE, confrom(FOMService.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class))
-      .put(PRE_RFC_SERVICE, confrom(FOMService.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(ENTRY, confrom(FOMEntry.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(AUTHOR, confrom(FOMPerson.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(CATEGORY, confrom(FOMCategory.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(CONTENT, confrom(FOMContent.class, QName.class, Content.Type.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(CONTRIBUTOR, confrom(FOMPerson.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(GENERATOR, confrom(FOMGenerator.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(ICON, confrom(FOMIRI.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(ID, confrom(FOMIRI.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(LOGO, confrom(FOMIRI.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(LINK, confrom(FOMLink.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(PUBLISHED, confrom(FOMDateTime.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(SOURCE, confrom(FOMSource.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(RIGHTS, confrom(FOMText.class, Text.Type.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(SUBTITLE, confrom(FOMText.class, Text.Type.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(SUMMARY, confrom(FOMText.class, Text.Type.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(TITLE, confrom(FOMText.class, Text.Type.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(UPDATED, confrom(FOMDateTime.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(WORKSPACE, confrom(FOMWorkspace.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(PRE_RFC_WORKSPACE, confrom(FOMWorkspace.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(COLLECTION, confrom(FOMCollection.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(PRE_RFC_COLLECTION, confrom(FOMCollection.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(URI, confrom(FOMIRI.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(CONTROL, confrom(FOMControl.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class))
-      .put(PRE_RFC_CONTROL, confrom(FOMControl.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(DIV, confrom(FOMDiv.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(CATEGORIES, confrom(FOMCategories.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(PRE_RFC_CATEGORIES, confrom(FOMCategories.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(EDITED, confrom(FOMDateTime.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(NAME, confrom(FOMElement.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .put(EMAIL, confrom(FOMElement.class, QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class)) 
-      .build();
-
-    private static java.util.Set<QName> textset = ImmutableSet.of(RIGHTS,SUBTITLE,SUMMARY,TITLE);
-    private static java.lang.reflect.Constructor<?> confrom(Class<?> _class, Class<?>... _types) {
-      try {
-        return _class.getConstructor(_types);
-      } catch (Throwable t) {
-        throw new RuntimeException(t);
+    private static final ElementCreator SERVICE_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMService(qname.getLocalPart(), namespace, parent, factory);
       }
-    }
-    private static <T>T create(QName qname, Object... params) {
-      try {
-        return (T)(conmap.containsKey(qname) ? 
-          conmap.get(qname).newInstance(params) : null);
-      } catch (Throwable t) {
-        return null;
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMService(qname, parent, factory, builder);
       }
-    }
-    private static <T>T create2(QName qname, Object... params) {
-      try {
-        return (T)(conmap2.containsKey(qname) ? 
-          conmap2.get(qname).newInstance(params) : null);
-      } catch (Throwable t) {
-        t.printStackTrace();
-        return null;
+    };
+    
+    private static final ElementCreator ENTRY_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMEntry(qname.getLocalPart(), namespace, parent, factory);
       }
-    }
-    private static boolean is_content(QName qname) {
-      return qname.equals(CONTENT);
-    }
-    private static boolean is_text(QName qname) {
-      return textset.contains(qname);
-    }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMEntry(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator PERSON_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMPerson(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMPerson(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator CATEGORY_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMCategory(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMCategory(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator GENERATOR_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMGenerator(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMGenerator(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator IRI_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMIRI(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMIRI(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator LINK_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMLink(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMLink(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator DATETIME_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMDateTime(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMDateTime(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator SOURCE_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMSource(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMSource(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator WORKSPACE_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMWorkspace(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMWorkspace(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator COLLECTION_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMCollection(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMCollection(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator ELEMENT_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMElement(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMElement(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator CONTROL_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMControl(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMControl(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator DIV_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMDiv(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMDiv(qname, parent, factory, builder);
+      }
+    };
     
+    private static final ElementCreator CATEGORIES_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMCategories(qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMCategories(qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator TEXT_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMText((Text.Type)objecttype, qname.getLocalPart(), namespace, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMText(builder.getTextType(), qname, parent, factory, builder);
+      }
+    };
+    
+    private static final ElementCreator CONTENT_CREATOR = new ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new FOMContent(qname.getLocalPart(), namespace, (Content.Type)objecttype, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new FOMContent(qname, builder.getContentType(), parent, factory, builder);
+      }
+    };
+    
+    /**
+     * The creators for each of the core Atom and APP elements. Every other
+     * element is created as a FOMExtensibleElement unless a creator has 
+     * been registered for it. 
+     */
+    private static final java.util.Map<QName,ElementCreator> defaultCreators =
+      ImmutableMap.<QName,ElementCreator>builder()
+      .put(FEED, FEED_CREATOR)
+      .put(SERVICE, SERVICE_CREATOR)
+      .put(PRE_RFC_SERVICE, SERVICE_CREATOR)
+      .put(ENTRY, ENTRY_CREATOR)
+      .put(AUTHOR, PERSON_CREATOR)
+      .put(CATEGORY, CATEGORY_CREATOR)
+      .put(CONTENT, CONTENT_CREATOR)
+      .put(CONTRIBUTOR, PERSON_CREATOR)
+      .put(GENERATOR, GENERATOR_CREATOR)
+      .put(ICON, IRI_CREATOR)
+      .put(ID, IRI_CREATOR)
+      .put(LOGO, IRI_CREATOR)
+      .put(LINK, LINK_CREATOR)
+      .put(PUBLISHED, DATETIME_CREATOR)
+      .put(SOURCE, SOURCE_CREATOR)
+      .put(RIGHTS, TEXT_CREATOR)
+      .put(SUBTITLE, TEXT_CREATOR)
+      .put(SUMMARY, TEXT_CREATOR)
+      .put(TITLE, TEXT_CREATOR)
+      .put(UPDATED, DATETIME_CREATOR)
+      .put(WORKSPACE, WORKSPACE_CREATOR)
+      .put(PRE_RFC_WORKSPACE, WORKSPACE_CREATOR)
+      .put(COLLECTION, COLLECTION_CREATOR)
+      .put(PRE_RFC_COLLECTION, COLLECTION_CREATOR)
+      .put(NAME, ELEMENT_CREATOR)
+      .put(EMAIL, ELEMENT_CREATOR)
+      .put(URI, IRI_CREATOR)
+      .put(CONTROL, CONTROL_CREATOR)
+      .put(PRE_RFC_CONTROL, CONTROL_CREATOR)
+      .put(DIV, DIV_CREATOR)
+      .put(CATEGORIES, CATEGORIES_CREATOR)
+      .put(PRE_RFC_CATEGORIES, CATEGORIES_CREATOR)
+      .put(EDITED, DATETIME_CREATOR)
+      .build();
+
     /***********************************************************************/
     
     public FOMFactory() {
@@ -662,18 +773,10 @@ public class FOMFactory extends OMLinkedListImplFactory
 
     protected OMElement createElement(QName qname, OMContainer parent, OMFactory factory, Object objecttype) {
         OMElement element = null;
-        OMNamespace namespace = this.createOMNamespace(qname.getNamespaceURI(), qname.getPrefix());
-        
-        if (conmap.containsKey(qname)) {
-          if (is_text(qname)) {
-            Text.Type type = (Text.Type)objecttype;
-            element = create(qname,type,qname.getLocalPart(),namespace,parent,factory);
-          } else if (is_content(qname)) {
-            Content.Type type = (Content.Type)objecttype;
-            element = create(qname,qname.getLocalPart(),namespace,type,parent,factory);
-          } else {
-            element = create(qname,qname.getLocalPart(),namespace,parent,factory);
-          }
+        ElementCreator creator = creators.get(qname);
+        if (creator != null) {
+            OMNamespace namespace = this.createOMNamespace(qname.getNamespaceURI(), qname.getPrefix());
+            element = creator.create(qname, namespace, parent, this, objecttype);
         } else if (parent instanceof ExtensibleElement || parent instanceof Document) {
             element = (OMElement)new FOMExtensibleElement(qname, parent, this);
         } else {
@@ -684,22 +787,29 @@ public class FOMFactory extends OMLinkedListImplFactory
 
     protected OMElement createElement(QName qname, OMContainer parent, FOMBuilder builder) {
         OMElement element = null;
-        if (conmap2.containsKey(qname)) {
-          if (is_text(qname)) {
-            Text.Type type = builder.getTextType();
-            element = create2(qname,type,qname,(OMContainer)parent,(OMFactory)this,(OMXMLParserWrapper)builder);
-          } else if (is_content(qname)) {
-            Content.Type type = builder.getContentType();;
-            element = create2(qname,qname,type,(OMContainer)parent,(OMFactory)this,(OMXMLParserWrapper)builder);
-          } else {
-            element = create2(qname,qname,(OMContainer)parent,(OMFactory)this,(OMXMLParserWrapper)builder);
-          }
+        ElementCreator creator = creators.get(qname);
+        if (creator != null) {
+            element = creator.create(qname, parent, this, builder);
         } else if (parent instanceof ExtensibleElement || parent instanceof Document) {
             element = (OMElement)new FOMExtensibleElement(qname, parent, this, builder);
         }
         return element;
     }
 
+    /**
+     * Register the ElementCreator used to create elements with the given 
+     * QName, replacing any creator previously registered for it. This allows
+     * extensions to have their own FOM implementation classes created 
+     * directly during the parse.
+     */
+    public synchronized FOMFactory registerCreator(QName qname, ElementCreator creator) {
+        java.util.Map<QName,ElementCreator> map = 
+          new java.util.HashMap<QName,ElementCreator>(creators);
+        map.put(checkNotNull(qname), checkNotNull(creator));
+        creators = ImmutableMap.copyOf(map);
+        return this;
+    }
+
     public Factory registerExtension(ExtensionFactory factory) {
         factoriesMap.addFactory(factory);
         return this;
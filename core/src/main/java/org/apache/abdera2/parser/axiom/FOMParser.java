@@ -23,6 +23,7 @@ import java.io.Reader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.Source;
 
 import org.apache.abdera2.Abdera;
 import org.apache.abdera2.common.Localizer;
@@ -35,11 +36,16 @@ import org.apache.abdera2.common.xml.XmlVersionReader;
 import org.apache.abdera2.factory.Factory;
 import org.apache.abdera2.model.Document;
 import org.apache.abdera2.model.Element;
+import org.apache.abdera2.model.Feed;
 import org.apache.abdera2.parser.AbstractParser;
+import org.apache.abdera2.parser.EntryStream;
 import org.apache.abdera2.parser.ParseException;
 import org.apache.abdera2.parser.Parser;
 import org.apache.abdera2.parser.ParserOptions;
 
+import org.apache.axiom.om.OMDocument;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMXMLParserWrapper;
 import org.apache.axiom.om.util.StAXParserConfiguration;
 import org.apache.axiom.om.util.StAXUtils;
 import org.apache.axiom.util.stax.dialect.StAXDialect;
@@ -167,6 +173,16 @@ public class FOMParser extends AbstractParser implements Parser {
         return inputFactory.createXMLStreamReader(in);
     }
 
+    /**
+     * Creates a reader over an arbitrary JAXP Source (e.g. a DOMSource), allowing an existing tree to be fed to
+     * {@link #parse(XMLStreamReader, String, ParserOptions)} without first serializing it. Throws
+     * UnsupportedOperationException if the underlying StAX implementation cannot read the given kind of Source.
+     */
+    public static XMLStreamReader createXMLStreamReader(Source source) throws XMLStreamException {
+        XMLInputFactory inputFactory = getXMLInputFactory();
+        return inputFactory.createXMLStreamReader(source);
+    }
+
     private XMLStreamReader createXMLStreamReader(Reader in) throws XMLStreamException {
         XMLInputFactory inputFactory = getXMLInputFactory();
         XMLStreamReader reader = inputFactory.createXMLStreamReader(in);
@@ -185,6 +201,15 @@ public class FOMParser extends AbstractParser implements Parser {
         }
     }
 
+    @Override
+    protected EntryStream createEntryStream(Document<Feed> document) throws ParseException {
+        OMElement root = ((OMDocument)document).getOMDocumentElement();
+        OMXMLParserWrapper builder = root != null ? root.getBuilder() : null;
+        return builder instanceof FOMBuilder ? 
+            new FOMEntryStream((FOMBuilder)builder, document) : 
+            super.createEntryStream(document);
+    }
+
     @Override
     protected ParserOptions.Builder initDefaultParserOptions() {
         return ParserOptions.make().factory(getFactory());
@@ -0,0 +1,540 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.parser.axiom;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Base;
+import org.apache.abdera2.model.ElementWrapper;
+import org.apache.axiom.om.OMAttribute;
+import org.apache.axiom.om.OMComment;
+import org.apache.axiom.om.OMContainer;
+import org.apache.axiom.om.OMDocType;
+import org.apache.axiom.om.OMDocument;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMNode;
+import org.apache.axiom.om.OMProcessingInstruction;
+import org.apache.axiom.om.OMText;
+import org.apache.axiom.om.impl.util.OMSerializerUtil;
+
+/**
+ * Serializes FOM documents and elements directly to UTF-8 encoded bytes. 
+ * The output is the same as that produced by Axiom's serializer over a 
+ * StAX writer: the namespace declarations needed by each element are 
+ * determined the same way and the escaping follows the StAX writer's 
+ * conventions. Output is staged in a per-thread buffer that is reused 
+ * across calls, characters are escaped using precomputed tables and the 
+ * namespace declarations for the Atom, APP and other common namespaces 
+ * are precomputed.
+ */
+final class FOMSerializer {
+
+    private static final int BUFFER_SIZE = 8192;
+    // strings are encoded in windows of at most this many chars, so the 
+    // per thread char buffer stays the same size however long they are
+    private static final int WINDOW_SIZE = 1024;
+    private static final int MAX_CACHED_DECLARATIONS = 512;
+
+    private static final byte[][] NO_ESCAPES = new byte[128][];
+    private static final byte[][] TEXT_ESCAPES = new byte[128][];
+    private static final byte[][] ATTR_ESCAPES = new byte[128][];
+    // marks the characters that cannot appear in an XML 1.0 document
+    private static final byte[] INVALID = new byte[0];
+    // '>' is escaped in text only where it follows "]]"
+    private static final byte[] GT = ascii("&gt;");
+    static {
+        for (int c = 0; c < 0x20; c++)
+            TEXT_ESCAPES[c] = ATTR_ESCAPES[c] = INVALID;
+        TEXT_ESCAPES['\t'] = TEXT_ESCAPES['\n'] = null;
+        TEXT_ESCAPES['\r'] = ATTR_ESCAPES['\r'] = ascii("&#xd;");
+        ATTR_ESCAPES['\n'] = ascii("&#xa;");
+        ATTR_ESCAPES['\t'] = ascii("&#x9;");
+        TEXT_ESCAPES['<'] = ATTR_ESCAPES['<'] = ascii("&lt;");
+        TEXT_ESCAPES['&'] = ATTR_ESCAPES['&'] = ascii("&amp;");
+        ATTR_ESCAPES['"'] = ascii("&quot;");
+        TEXT_ESCAPES['>'] = GT;
+    }
+
+    /**
+     * Encoded namespace declarations keyed by prefix and namespace uri
+     */
+    private static final ConcurrentMap<String, byte[]> declarations = 
+        new ConcurrentHashMap<String, byte[]>();
+    static {
+        String[][] known = {
+            {"", Constants.ATOM_NS}, 
+            {"a", Constants.ATOM_NS}, 
+            {"atom", Constants.ATOM_NS}, 
+            {"", Constants.APP_NS}, 
+            {"app", Constants.APP_NS}, 
+            {"", Constants.XHTML_NS}, 
+            {"xhtml", Constants.XHTML_NS}, 
+            {"thr", "http://purl.org/syndication/thread/1.0"}, 
+            {"fh", "http://purl.org/syndication/history/1.0"}, 
+            {"at", "http://purl.org/atompub/tombstones/1.0"}, 
+            {"media", "http://search.yahoo.com/mrss/"}, 
+            {"georss", "http://www.georss.org/georss"}, 
+            {"opensearch", "http://a9.com/-/spec/opensearch/1.1/"}, 
+            {"", ""}
+        };
+        for (String[] ns : known)
+            declarations.put(key(ns[0], ns[1]), encodeDeclaration(ns[0], ns[1]));
+    }
+
+    private static final ThreadLocal<FOMSerializer> serializers = 
+        new ThreadLocal<FOMSerializer>() {
+            protected FOMSerializer initialValue() {
+                return new FOMSerializer();
+            }
+        };
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    // room for the window, the char before it and a trailing low surrogate
+    private final char[] chars = new char[WINDOW_SIZE + 2];
+    private int pos;
+    private OutputStream out;
+
+    // the in scope namespace bindings, innermost last
+    private String[] prefixes = new String[16];
+    private String[] uris = new String[16];
+    private int bindings;
+
+    private FOMSerializer() {}
+
+    /**
+     * True if the serializer can be used to write the given charset
+     */
+    static boolean isSupported(String charset) {
+        return "UTF-8".equalsIgnoreCase(charset) || "UTF8".equalsIgnoreCase(charset);
+    }
+
+    /**
+     * True if the serializer can be used to write the given object
+     */
+    static boolean isSupported(Base base) {
+        if (base instanceof ElementWrapper)
+            base = ((ElementWrapper)base).getInternal();
+        return base instanceof OMElement || base instanceof OMDocument;
+    }
+
+    /**
+     * Writes the given document or element to the stream as UTF-8
+     */
+    static void serialize(Base base, OutputStream out) throws IOException {
+        if (base instanceof ElementWrapper)
+            base = ((ElementWrapper)base).getInternal();
+        FOMSerializer serializer = serializers.get();
+        if (serializer.out != null) // reentrant use, e.g. from a nested writer
+            serializer = new FOMSerializer();
+        serializer.out = out;
+        try {
+            if (base instanceof OMDocument)
+                serializer.document((OMDocument)base);
+            else
+                serializer.node((OMNode)base);
+            serializer.flush();
+            out.flush();
+        } finally {
+            serializer.out = null;
+            serializer.pos = 0;
+            serializer.reset();
+        }
+    }
+
+    private void reset() {
+        for (int n = 0; n < bindings; n++) {
+            prefixes[n] = null;
+            uris[n] = null;
+        }
+        bindings = 0;
+    }
+
+    private void document(OMDocument doc) throws IOException {
+        String version = doc.getXMLVersion();
+        String encoding = doc.getCharsetEncoding();
+        write("<?xml version='");
+        write(version != null ? version : "1.0");
+        if (encoding == null || encoding.length() == 0)
+            encoding = "UTF-8";
+        write("' encoding='");
+        write(encoding);
+        write("'?>");
+        children(doc);
+    }
+
+    private void children(OMContainer container) throws IOException {
+        for (Iterator<?> i = container.getChildren(); i.hasNext();)
+            node((OMNode)i.next());
+    }
+
+    private void node(OMNode node) throws IOException {
+        switch (node.getType()) {
+            case OMNode.ELEMENT_NODE:
+                element((OMElement)node);
+                break;
+            case OMNode.TEXT_NODE:
+            case OMNode.SPACE_NODE:
+                text(((OMText)node).getText());
+                break;
+            case OMNode.CDATA_SECTION_NODE:
+                cdata(((OMText)node).getText());
+                break;
+            case OMNode.ENTITY_REFERENCE_NODE:
+                write('&');
+                write(((OMText)node).getText());
+                write(';');
+                break;
+            case OMNode.COMMENT_NODE:
+                write("<!--");
+                write(((OMComment)node).getValue());
+                write("-->");
+                break;
+            case OMNode.PI_NODE:
+                OMProcessingInstruction pi = (OMProcessingInstruction)node;
+                String value = pi.getValue();
+                write("<?");
+                write(pi.getTarget());
+                write(' ');
+                if (value != null && value.length() > 0) {
+                    write(' ');
+                    write(value);
+                }
+                write("?>");
+                break;
+            case OMNode.DTD_NODE:
+                write(((OMDocType)node).getValue());
+                break;
+            default:
+                throw new FOMException("Unsupported node type " + node.getType());
+        }
+    }
+
+    private void element(OMElement element) throws IOException {
+        int mark = bindings;
+        OMNamespace ns = element.getNamespace();
+        String prefix = ns != null ? nz(ns.getPrefix()) : "";
+        String uri = ns != null ? nz(ns.getNamespaceURI()) : "";
+        int decls = bindings;
+        // the namespace of the element itself is declared first
+        if (!isBound(prefix, uri))
+            bind(prefix, uri);
+        for (Iterator<?> i = element.getAllDeclaredNamespaces(); i.hasNext();) {
+            OMNamespace dns = (OMNamespace)i.next();
+            String p = nz(dns.getPrefix());
+            String u = nz(dns.getNamespaceURI());
+            if (!isBound(p, u) && !isDeclared(p, decls))
+                bind(p, u);
+        }
+        for (Iterator<?> i = element.getAllAttributes(); i.hasNext();) {
+            OMNamespace ans = ((OMAttribute)i.next()).getNamespace();
+            String u = ans != null ? nz(ans.getNamespaceURI()) : "";
+            if (u.length() == 0) continue;
+            String p = attributePrefix(ans, u);
+            if (!isBound(p, u) && !isDeclared(p, decls))
+                bind(p, u);
+        }
+        write('<');
+        qname(prefix, element.getLocalName());
+        for (int n = decls; n < bindings; n++)
+            write(declaration(prefixes[n], uris[n]));
+        for (Iterator<?> i = element.getAllAttributes(); i.hasNext();) {
+            OMAttribute attr = (OMAttribute)i.next();
+            OMNamespace ans = attr.getNamespace();
+            String u = ans != null ? nz(ans.getNamespaceURI()) : "";
+            write(' ');
+            qname(u.length() > 0 ? attributePrefix(ans, u) : "", attr.getLocalName());
+            write("=\"");
+            write(attr.getAttributeValue(), ATTR_ESCAPES);
+            write('"');
+        }
+        OMNode child = element.getFirstOMChild();
+        if (child == null) {
+            write(" />");
+        } else {
+            write('>');
+            for (; child != null; child = child.getNextOMSibling())
+                node(child);
+            write("</");
+            qname(prefix, element.getLocalName());
+            write('>');
+        }
+        while (bindings > mark) {
+            bindings--;
+            prefixes[bindings] = null;
+            uris[bindings] = null;
+        }
+    }
+
+    /**
+     * Returns the prefix to use for an attribute in the given namespace. 
+     * Attributes cannot use the default namespace so an attribute without 
+     * a prefix uses one already bound to the namespace or a generated one.
+     */
+    private String attributePrefix(OMNamespace ns, String uri) {
+        String prefix = nz(ns.getPrefix());
+        if (prefix.length() == 0) {
+            for (int n = bindings - 1; n >= 0; n--)
+                if (prefixes[n].length() > 0 && 
+                    uris[n].equals(uri) && 
+                    isBound(prefixes[n], uri))
+                    return prefixes[n];
+            if (Constants.XML_NS.equals(uri))
+                return "xml";
+            prefix = OMSerializerUtil.getNextNSPrefix();
+        }
+        return prefix;
+    }
+
+    private boolean isBound(String prefix, String uri) {
+        for (int n = bindings - 1; n >= 0; n--)
+            if (prefixes[n].equals(prefix))
+                return uris[n].equals(uri);
+        return prefix.length() == 0 ?
+            uri.length() == 0 :
+            "xml".equals(prefix) && Constants.XML_NS.equals(uri);
+    }
+
+    private boolean isDeclared(String prefix, int decls) {
+        for (int n = decls; n < bindings; n++)
+            if (prefixes[n].equals(prefix))
+                return true;
+        return false;
+    }
+
+    private void bind(String prefix, String uri) {
+        if (bindings == prefixes.length) {
+            String[] p = new String[bindings * 2];
+            String[] u = new String[bindings * 2];
+            System.arraycopy(prefixes, 0, p, 0, bindings);
+            System.arraycopy(uris, 0, u, 0, bindings);
+            prefixes = p;
+            uris = u;
+        }
+        prefixes[bindings] = prefix;
+        uris[bindings++] = uri;
+    }
+
+    private static String nz(String s) {
+        return s != null ? s : "";
+    }
+
+    private static String key(String prefix, String uri) {
+        return prefix + ' ' + uri;
+    }
+
+    private static byte[] declaration(String prefix, String uri) {
+        String key = key(prefix, uri);
+        byte[] decl = declarations.get(key);
+        if (decl == null) {
+            decl = encodeDeclaration(prefix, uri);
+            if (declarations.size() < MAX_CACHED_DECLARATIONS)
+                declarations.putIfAbsent(key, decl);
+        }
+        return decl;
+    }
+
+    private static byte[] encodeDeclaration(String prefix, String uri) {
+        FOMSerializer s = new FOMSerializer();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        s.out = out;
+        try {
+            s.write(prefix.length() > 0 ? " xmlns:" : " xmlns");
+            s.write(prefix);
+            s.write("=\"");
+            s.write(uri, ATTR_ESCAPES);
+            s.write('"');
+            s.flush();
+        } catch (IOException e) {
+            throw new FOMException(e.getMessage(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String s) {
+        byte[] b = new byte[s.length()];
+        for (int n = 0; n < b.length; n++)
+            b[n] = (byte)s.charAt(n);
+        return b;
+    }
+
+    private void qname(String prefix, String name) throws IOException {
+        if (prefix.length() > 0) {
+            write(prefix);
+            write(':');
+        }
+        write(name);
+    }
+
+    private void text(String text) throws IOException {
+        write(text, TEXT_ESCAPES);
+    }
+
+    private void cdata(String text) throws IOException {
+        write("<![CDATA[");
+        int s = 0;
+        for (int i = text.indexOf("]]>"); i != -1; i = text.indexOf("]]>", s)) {
+            write(text.substring(s, i + 2));
+            write("]]><![CDATA[");
+            s = i + 2;
+        }
+        write(s == 0 ? text : text.substring(s));
+        write("]]>");
+    }
+
+    /**
+     * Writes the string without escaping
+     */
+    private void write(String s) throws IOException {
+        write(s, NO_ESCAPES);
+    }
+
+    private void write(char c) throws IOException {
+        if (pos > buf.length - 4)
+            flush();
+        if (c < 0x80) {
+            buf[pos++] = (byte)c;
+        } else {
+            chars[0] = c;
+            encode(chars, 0, 1);
+        }
+    }
+
+    /**
+     * Encodes the string as UTF-8, replacing the ASCII characters that 
+     * have an entry in the escape table
+     */
+    private void write(String s, byte[][] escapes) throws IOException {
+        if (s == null) return;
+        int len = s.length();
+        for (int start = 0; start < len;) {
+            int end = Math.min(len, start + WINDOW_SIZE);
+            // never split a surrogate pair between windows
+            if (end < len && Character.isHighSurrogate(s.charAt(end - 1)))
+                end++;
+            // carry the previous char over for the "]>" check
+            int off = Math.min(start, 1);
+            s.getChars(start - off, end, chars, 0);
+            write(chars, off, end - start + off, start - off, escapes);
+            start = end;
+        }
+    }
+
+    /**
+     * Encodes chars from up to len, chars before from are only looked at.
+     * index is the position of chars[0] within the string being written
+     */
+    private void write(
+        char[] chars, 
+        int from, 
+        int len, 
+        int index, 
+        byte[][] escapes) 
+          throws IOException {
+        byte[] buf = this.buf;
+        int pos = this.pos;
+        for (int n = from; n < len; n++) {
+            if (pos > buf.length - 8) {
+                this.pos = pos;
+                flush();
+                pos = this.pos;
+            }
+            char c = chars[n];
+            if (c < 0x80) {
+                byte[] esc = escapes[c];
+                if (esc == null) {
+                    buf[pos++] = (byte)c;
+                } else if (esc == INVALID) {
+                    throw new FOMException(
+                        "Invalid white space character (0x" + 
+                        Integer.toHexString(c) + ") in text to output");
+                } else if (esc == GT) {
+                    // escaped where it could complete a "]]>" and at every
+                    // 512th char, the same places the StAX writer escapes it
+                    if ((index + n) % 512 == 0 || chars[n - 1] == ']') {
+                        System.arraycopy(GT, 0, buf, pos, GT.length);
+                        pos += GT.length;
+                    } else {
+                        buf[pos++] = '>';
+                    }
+                } else {
+                    System.arraycopy(esc, 0, buf, pos, esc.length);
+                    pos += esc.length;
+                }
+            } else {
+                this.pos = pos;
+                n = encode(chars, n, len);
+                pos = this.pos;
+            }
+        }
+        this.pos = pos;
+    }
+
+    /**
+     * Encodes the non-ASCII character at index n, returns the index of 
+     * the last char consumed
+     */
+    private int encode(char[] chars, int n, int len) {
+        char c = chars[n];
+        byte[] buf = this.buf;
+        if (c < 0x800) {
+            buf[pos++] = (byte)(0xC0 | (c >> 6));
+            buf[pos++] = (byte)(0x80 | (c & 0x3F));
+        } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+            if (Character.isHighSurrogate(c) && 
+                n + 1 < len && 
+                Character.isLowSurrogate(chars[n + 1])) {
+                int cp = Character.toCodePoint(c, chars[++n]);
+                buf[pos++] = (byte)(0xF0 | (cp >> 18));
+                buf[pos++] = (byte)(0x80 | ((cp >> 12) & 0x3F));
+                buf[pos++] = (byte)(0x80 | ((cp >> 6) & 0x3F));
+                buf[pos++] = (byte)(0x80 | (cp & 0x3F));
+            } else {
+                buf[pos++] = '?'; // malformed, as replaced by the charset encoder
+            }
+        } else {
+            buf[pos++] = (byte)(0xE0 | (c >> 12));
+            buf[pos++] = (byte)(0x80 | ((c >> 6) & 0x3F));
+            buf[pos++] = (byte)(0x80 | (c & 0x3F));
+        }
+        return n;
+    }
+
+    private void write(byte[] b) throws IOException {
+        if (pos > buf.length - b.length) {
+            flush();
+            if (b.length > buf.length) {
+                out.write(b);
+                return;
+            }
+        }
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    private void flush() throws IOException {
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+}
@@ -73,7 +73,10 @@ public class FOMWriter extends AbstractWriter {
             if (doc != null)
                 doc.setCharset(charset);
         }
-        base.writeTo(new OutputStreamWriter(out, charset));
+        if (FOMSerializer.isSupported(charset) && FOMSerializer.isSupported(base))
+            FOMSerializer.serialize(base, out);
+        else
+            base.writeTo(new OutputStreamWriter(out, charset));
         finishCompressedOutputStream(out, options);
         if (options.getAutoClose())
             out.close();
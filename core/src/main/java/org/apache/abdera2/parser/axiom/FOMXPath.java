@@ -18,6 +18,7 @@
 package org.apache.abdera2.parser.axiom;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,20 +29,52 @@ import org.apache.abdera2.Abdera;
 import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.ElementWrapper;
 import org.apache.abdera2.xpath.AbstractXPath;
+import org.apache.abdera2.xpath.CompiledXPath;
+import org.apache.abdera2.xpath.CompilingXPath;
 import org.apache.abdera2.xpath.XPathException;
 import org.apache.axiom.om.OMAttribute;
 import org.apache.axiom.om.xpath.DocumentNavigator;
 import org.jaxen.BaseXPath;
+import org.jaxen.Context;
+import org.jaxen.ContextSupport;
 import org.jaxen.Function;
 import org.jaxen.FunctionContext;
 import org.jaxen.JaxenException;
+import org.jaxen.Navigator;
 import org.jaxen.SimpleFunctionContext;
 import org.jaxen.SimpleVariableContext;
+import org.jaxen.UnresolvableException;
 import org.jaxen.VariableContext;
 import org.jaxen.XPath;
-
+import org.jaxen.XPathFunctionContext;
+import org.jaxen.function.BooleanFunction;
+import org.jaxen.function.NumberFunction;
+import org.jaxen.function.StringFunction;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * XPath implementation based on Jaxen. Compiled expressions are held in a
+ * bounded cache shared by all instances, keyed by the expression and the
+ * namespaces it was compiled with, so repeatedly evaluating the same 
+ * expression does not reparse it. Functions and variables are not part of
+ * the cached expression; they are bound to each CompiledXPath and supplied 
+ * when it is evaluated, so the cache never holds on to the values of 
+ * variables. The size of the cache can be set using the 
+ * "org.apache.abdera2.xpath.cacheSize" system property; a size of zero 
+ * disables the cache.
+ */
 @SuppressWarnings("unchecked")
-public class FOMXPath extends AbstractXPath {
+public class FOMXPath extends AbstractXPath implements CompilingXPath {
+
+    public static final String CACHE_SIZE = "org.apache.abdera2.xpath.cacheSize";
+
+    private static final Cache<Key, SharedXPath> compiled =
+      CacheBuilder.newBuilder()
+        .maximumSize(Math.max(0, Integer.getInteger(CACHE_SIZE, 256)))
+        .build();
 
     private final Map<QName, Function> functions;
     private final Map<QName, Object> variables;
@@ -105,20 +138,30 @@ public class FOMXPath extends AbstractXPath {
         return context;
     }
 
+    /**
+     * Returns a new Jaxen XPath for the specified expression. Functions are 
+     * registered with a function context owned by the returned XPath rather 
+     * than the shared default Jaxen function context.
+     */
     public static XPath getXPath(String path,
                                  Map<String, String> namespaces,
                                  Map<QName, Function> functions,
                                  Map<QName, Object> variables) throws JaxenException {
-        DocumentNavigator nav = new DocumentNavigator();
-        XPath contextpath = new BaseXPath(path, nav);
+        return newXPath(path, namespaces, functions, variables);
+    }
+
+    private static SharedXPath newXPath(String path,
+                                           Map<String, String> namespaces,
+                                           Map<QName, Function> functions,
+                                           Map<QName, Object> variables) throws JaxenException {
+        SharedXPath contextpath = new SharedXPath(path, new DocumentNavigator());
         if (namespaces != null) {
             for (Map.Entry<String, String> entry : namespaces.entrySet()) {
                 contextpath.addNamespace(entry.getKey(), entry.getValue());
             }
         }
         if (functions != null) {
-            contextpath.setFunctionContext(getFunctionContext(functions, (SimpleFunctionContext)contextpath
-                .getFunctionContext()));
+            contextpath.setFunctionContext(getFunctionContext(functions, new XPathFunctionContext()));
         }
         if (variables != null)
             contextpath.setVariableContext(getVariableContext(variables, (SimpleVariableContext)contextpath
@@ -130,27 +173,50 @@ public class FOMXPath extends AbstractXPath {
         return getXPath(path, namespaces, null, null);
     }
 
+    public CompiledXPath compile(String path) throws XPathException {
+        return compile(path, getDefaultNamespaces());
+    }
+
+    public CompiledXPath compile(String path, Map<String, String> namespaces) throws XPathException {
+        return compile(path, namespaces, functions, variables);
+    }
+
+    /**
+     * Return a compiled form of the specified Path using the specified Namespaces, Functions and Variables. The
+     * parsed expression is taken from the shared cache when possible. Later changes to the maps passed in do not 
+     * affect the returned instance.
+     */
+    public CompiledXPath compile(String path,
+                                 Map<String, String> namespaces,
+                                 Map<QName, Function> functions,
+                                 Map<QName, Object> variables) throws XPathException {
+        return getCompiled(path, namespaces, functions, variables);
+    }
+
+    private static FOMCompiledXPath getCompiled(String path,
+                                                Map<String, String> namespaces,
+                                                Map<QName, Function> functions,
+                                                Map<QName, Object> variables) throws XPathException {
+        Key key = new Key(path, namespaces);
+        SharedXPath xpath = compiled.getIfPresent(key);
+        if (xpath == null) {
+            try {
+                xpath = newXPath(path, namespaces, null, null);
+                xpath.init();
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+            compiled.put(key.snapshot(), xpath);
+        }
+        return new FOMCompiledXPath(path, xpath, functions, variables);
+    }
+
     public List<Object> selectNodes(String path,
                             Base base,
                             Map<String, String> namespaces,
                             Map<QName, Function> functions,
                             Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            List<Object> nodes = new ArrayList<Object>();
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            List<Object> results = xpath.selectNodes(base);
-            for (Object obj : results) {
-                if (obj instanceof OMAttribute) {
-                    nodes.add(new FOMAttribute((OMAttribute)obj));
-                } else {
-                    nodes.add(obj);
-                }
-            }
-            return nodes;
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).selectNodes(base);
     }
 
     public List<Object> selectNodes(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -162,16 +228,7 @@ public class FOMXPath extends AbstractXPath {
                                    Map<String, String> namespaces,
                                    Map<QName, Function> functions,
                                    Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            Object obj = xpath.selectSingleNode(base);
-            if (obj instanceof OMAttribute)
-                obj = new FOMAttribute((OMAttribute)obj);
-            return obj;
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).selectSingleNode(base);
     }
 
     public Object selectSingleNode(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -183,13 +240,7 @@ public class FOMXPath extends AbstractXPath {
                            Map<String, String> namespaces,
                            Map<QName, Function> functions,
                            Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            return xpath.evaluate(base);
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).evaluate(base);
     }
 
     public Object evaluate(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -201,13 +252,7 @@ public class FOMXPath extends AbstractXPath {
                           Map<String, String> namespaces,
                           Map<QName, Function> functions,
                           Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            return xpath.stringValueOf(base);
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).valueOf(base);
     }
 
     public String valueOf(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -219,13 +264,7 @@ public class FOMXPath extends AbstractXPath {
                                   Map<String, String> namespaces,
                                   Map<QName, Function> functions,
                                   Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            return xpath.booleanValueOf(base);
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).booleanValueOf(base);
     }
 
     public boolean booleanValueOf(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -237,13 +276,7 @@ public class FOMXPath extends AbstractXPath {
                                  Map<String, String> namespaces,
                                  Map<QName, Function> functions,
                                  Map<QName, Object> variables) throws XPathException {
-        try {
-            base = getElementWrapped(base);
-            XPath xpath = getXPath(path, namespaces, functions, variables);
-            return xpath.numberValueOf(base);
-        } catch (JaxenException e) {
-            throw new XPathException(e);
-        }
+        return getCompiled(path, namespaces, functions, variables).numericValueOf(base);
     }
 
     public Number numericValueOf(String path, Base base, Map<String, String> namespaces) throws XPathException {
@@ -268,10 +301,234 @@ public class FOMXPath extends AbstractXPath {
         this.variables.putAll(variables);
     }
 
-    private Base getElementWrapped(Base base) {
+    private static Base getElementWrapped(Base base) {
         if (base instanceof ElementWrapper) {
             base = ((ElementWrapper)base).getInternal();
         }
         return base;
     }
+
+    /**
+     * Jaxen XPath whose context support can be created eagerly, before the 
+     * instance is shared, since BaseXPath creates it lazily without 
+     * synchronization. The evaluation methods taking a ContextSupport 
+     * mirror those of BaseXPath but use the given functions and variables 
+     * in place of the instance's own.
+     */
+    private static final class SharedXPath extends BaseXPath {
+        private static final long serialVersionUID = -2466470577960599127L;
+        SharedXPath(String path, Navigator navigator) throws JaxenException {
+            super(path, navigator);
+        }
+        void init() {
+            getContextSupport();
+        }
+        ContextSupport getContextSupport(FunctionContext functions, VariableContext variables) {
+            return new ContextSupport(getNamespaceContext(), functions, variables, getNavigator());
+        }
+        private Context getContext(Object node, ContextSupport support) {
+            if (node instanceof Context)
+                return (Context)node;
+            Context context = new Context(support);
+            context.setNodeSet(node instanceof List ? (List<?>)node : Collections.singletonList(node));
+            return context;
+        }
+        List<?> selectNodes(Object node, ContextSupport support) throws JaxenException {
+            return selectNodesForContext(getContext(node, support));
+        }
+        Object selectSingleNode(Object node, ContextSupport support) throws JaxenException {
+            return selectSingleNodeForContext(getContext(node, support));
+        }
+        Object evaluate(Object node, ContextSupport support) throws JaxenException {
+            List<?> answer = selectNodes(node, support);
+            if (answer != null && answer.size() == 1) {
+                Object first = answer.get(0);
+                if (first instanceof String || first instanceof Number || first instanceof Boolean)
+                    return first;
+            }
+            return answer;
+        }
+        String stringValueOf(Object node, ContextSupport support) throws JaxenException {
+            Context context = getContext(node, support);
+            Object result = selectSingleNodeForContext(context);
+            return result != null ? StringFunction.evaluate(result, context.getNavigator()) : "";
+        }
+        boolean booleanValueOf(Object node, ContextSupport support) throws JaxenException {
+            Context context = getContext(node, support);
+            List<?> result = selectNodesForContext(context);
+            return result != null && BooleanFunction.evaluate(result, context.getNavigator()).booleanValue();
+        }
+        Number numberValueOf(Object node, ContextSupport support) throws JaxenException {
+            Context context = getContext(node, support);
+            Object result = selectSingleNodeForContext(context);
+            return NumberFunction.evaluate(result, context.getNavigator());
+        }
+    }
+
+    /**
+     * Resolves the functions in the map, falling back to the standard 
+     * XPath functions
+     */
+    private static final class MapFunctionContext implements FunctionContext {
+        private final Map<QName, Function> functions;
+        MapFunctionContext(Map<QName, Function> functions) {
+            this.functions = new HashMap<QName, Function>(functions);
+        }
+        public Function getFunction(String uri, String prefix, String name) throws UnresolvableException {
+            Function function = functions.get(new QName(uri, name));
+            return function != null ? 
+                function : 
+                XPathFunctionContext.getInstance().getFunction(uri, prefix, name);
+        }
+    }
+
+    /**
+     * Resolves the variables in the map
+     */
+    private static final class MapVariableContext implements VariableContext {
+        private final Map<QName, Object> variables;
+        MapVariableContext(Map<QName, Object> variables) {
+            this.variables = 
+                variables != null ? 
+                    new HashMap<QName, Object>(variables) : 
+                    Collections.<QName, Object>emptyMap();
+        }
+        public Object getVariableValue(String uri, String prefix, String name) throws UnresolvableException {
+            QName qname = new QName(uri, name);
+            if (!variables.containsKey(qname))
+                throw new UnresolvableException("No such variable " + qname);
+            return variables.get(qname);
+        }
+    }
+
+    /**
+     * A cached expression bound to the functions and variables it was 
+     * compiled with
+     */
+    private static final class FOMCompiledXPath implements CompiledXPath {
+        private final String path;
+        private final SharedXPath xpath;
+        private final ContextSupport support;
+
+        FOMCompiledXPath(String path, 
+                         SharedXPath xpath, 
+                         Map<QName, Function> functions, 
+                         Map<QName, Object> variables) {
+            this.path = path;
+            this.xpath = xpath;
+            this.support = xpath.getContextSupport(
+                functions != null ? 
+                    new MapFunctionContext(functions) : 
+                    XPathFunctionContext.getInstance(), 
+                new MapVariableContext(variables));
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public List<Object> selectNodes(Base base) throws XPathException {
+            try {
+                List<?> results = xpath.selectNodes(getElementWrapped(base), support);
+                List<Object> nodes = new ArrayList<Object>(results.size());
+                for (Object obj : results) {
+                    if (obj instanceof OMAttribute) {
+                        nodes.add(new FOMAttribute((OMAttribute)obj));
+                    } else {
+                        nodes.add(obj);
+                    }
+                }
+                return nodes;
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public Object selectSingleNode(Base base) throws XPathException {
+            try {
+                Object obj = xpath.selectSingleNode(getElementWrapped(base), support);
+                if (obj instanceof OMAttribute)
+                    obj = new FOMAttribute((OMAttribute)obj);
+                return obj;
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public Object evaluate(Base base) throws XPathException {
+            try {
+                return xpath.evaluate(getElementWrapped(base), support);
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public String valueOf(Base base) throws XPathException {
+            try {
+                return xpath.stringValueOf(getElementWrapped(base), support);
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public boolean booleanValueOf(Base base) throws XPathException {
+            try {
+                return xpath.booleanValueOf(getElementWrapped(base), support);
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public Number numericValueOf(Base base) throws XPathException {
+            try {
+                return xpath.numberValueOf(getElementWrapped(base), support);
+            } catch (JaxenException e) {
+                throw new XPathException(e);
+            }
+        }
+
+        public String toString() {
+            return path;
+        }
+    }
+
+    /**
+     * Cache key. Lookups use the caller's map directly; the entry that is 
+     * stored holds a copy so later changes to that map cannot affect it.
+     */
+    private static final class Key {
+        private final String path;
+        private final Map<String, String> namespaces;
+        private final int hash;
+
+        Key(String path,
+            Map<String, String> namespaces) {
+            this.path = path;
+            this.namespaces = namespaces;
+            this.hash = Objects.hashCode(path, namespaces);
+        }
+
+        Key snapshot() {
+            return new Key(path, copy(namespaces));
+        }
+
+        private static <K, V> Map<K, V> copy(Map<K, V> map) {
+            return map != null ? Collections.unmodifiableMap(new HashMap<K, V>(map)) : null;
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key)obj;
+            return hash == other.hash && 
+                   Objects.equal(path, other.path) && 
+                   Objects.equal(namespaces, other.namespaces);
+        }
+    }
 }
@@ -57,6 +57,15 @@ public class StaxStreamWriter extends AbstractStreamWriter {
 
     private static final String NAME = "default";
 
+    /**
+     * The namespace repairing XMLOutputFactory is resolved once rather than 
+     * looked up for every writer
+     */
+    private static final class OutputFactoryHolder {
+        static final XMLOutputFactory FACTORY = 
+            StAXUtils.getXMLOutputFactory(ABDERA_WRITER_CONFIGURATION);
+    }
+
     private XMLStreamWriter writer;
     private int depth = 0;
     private int textwritten = 0;
@@ -90,7 +99,7 @@ public class StaxStreamWriter extends AbstractStreamWriter {
     }
 
     private static XMLStreamWriter createXMLStreamWriter(Writer out) throws XMLStreamException {
-        XMLOutputFactory outputFactory = StAXUtils.getXMLOutputFactory(ABDERA_WRITER_CONFIGURATION);
+        XMLOutputFactory outputFactory = OutputFactoryHolder.FACTORY;
         XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out);
         return writer;
     }
@@ -105,7 +114,7 @@ public class StaxStreamWriter extends AbstractStreamWriter {
     }
 
     private static XMLStreamWriter createXMLStreamWriter(OutputStream out, String encoding) throws XMLStreamException {
-        XMLOutputFactory outputFactory = StAXUtils.getXMLOutputFactory(ABDERA_WRITER_CONFIGURATION);
+        XMLOutputFactory outputFactory = OutputFactoryHolder.FACTORY;
         XMLStreamWriter writer = outputFactory.createXMLStreamWriter(out, encoding);
         return writer;
     }
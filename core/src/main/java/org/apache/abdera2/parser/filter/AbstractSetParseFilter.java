@@ -98,6 +98,14 @@ public abstract class AbstractSetParseFilter
         false;
     }
 
+    Set<QName> qnames() {
+      return qnames;
+    }
+
+    Map<QName, Set<QName>> attributes() {
+      return attributes;
+    }
+
     public abstract boolean acceptable(QName qname);
 
     public abstract boolean acceptable(QName qname, QName attribute);
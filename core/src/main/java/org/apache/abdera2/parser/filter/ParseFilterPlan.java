@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.parser.filter;
+
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+/**
+ * An immutable, precompiled form of a ParseFilter used by the parser when 
+ * deciding whether to keep or skip elements and attributes. White list, 
+ * black list and compound filters made up of those are reduced to direct 
+ * set lookups so that no per-event virtual dispatch or exception handling 
+ * is required. Any other filter (or any filter configured to throw on 
+ * unacceptable input) is wrapped and consulted directly so the original 
+ * semantics are preserved.
+ */
+public abstract class ParseFilterPlan {
+
+  /**
+   * A plan that accepts every element and attribute
+   */
+  public static final ParseFilterPlan ACCEPT_ALL = 
+    new ParseFilterPlan() {
+      public boolean acceptable(QName qname) {
+        return true;
+      }
+      public boolean acceptable(QName qname, QName attribute) {
+        return true;
+      }
+      public boolean isAcceptAll() {
+        return true;
+      }
+  };
+  
+  /**
+   * Compile the given ParseFilter. A null filter yields ACCEPT_ALL
+   */
+  public static ParseFilterPlan compile(ParseFilter filter) {
+    if (filter == null || filter == NonOpParseFilter.INSTANCE)
+      return ACCEPT_ALL;
+    Class<?> type = filter.getClass();
+    if (type == WhiteListParseFilter.class) {
+      WhiteListParseFilter wl = (WhiteListParseFilter) filter;
+      if (wl._throw == null)
+        return new WhiteListPlan(wl);
+    } else if (type == BlackListParseFilter.class) {
+      BlackListParseFilter bl = (BlackListParseFilter) filter;
+      if (bl._throw == null)
+        return new BlackListPlan(bl);
+    } else if (type == CompoundParseFilter.class) {
+      CompoundParseFilter cf = (CompoundParseFilter) filter;
+      if (cf._throw == null && cf.condition != null) {
+        ParseFilterPlan[] plans = new ParseFilterPlan[cf.filters.size()];
+        int n = 0;
+        for (ParseFilter child : cf.filters) {
+          ParseFilterPlan plan = compile(child);
+          if (plan instanceof DelegatePlan)
+            return new DelegatePlan(filter);
+          plans[n++] = plan;
+        }
+        return new CompoundPlan(cf.condition, plans);
+      }
+    }
+    return new DelegatePlan(filter);
+  }
+  
+  ParseFilterPlan() {}
+  
+  /**
+   * Returns true if elements with the given QName are acceptable
+   */
+  public abstract boolean acceptable(QName qname);
+  
+  /**
+   * Returns true if attributes with the given qname appearing on elements 
+   * with the given qname are acceptable
+   */
+  public abstract boolean acceptable(QName qname, QName attribute);
+  
+  /**
+   * Returns true if this plan never rejects anything, allowing the parser
+   * to bypass the filter checks entirely
+   */
+  public boolean isAcceptAll() {
+    return false;
+  }
+  
+  private static final class WhiteListPlan extends ParseFilterPlan {
+    private final Set<QName> qnames;
+    private final Map<QName,Set<QName>> attributes;
+    private final boolean explicit;
+    WhiteListPlan(WhiteListParseFilter filter) {
+      this.qnames = filter.qnames();
+      this.attributes = filter.attributes();
+      this.explicit = filter.listAttributesExplicitly();
+    }
+    public boolean acceptable(QName qname) {
+      return qnames.contains(qname);
+    }
+    public boolean acceptable(QName qname, QName attribute) {
+      if (!qnames.contains(qname))
+        return false;
+      if (!explicit)
+        return true;
+      Set<QName> attrs = attributes.get(qname);
+      return attrs != null && attrs.contains(attribute);
+    }
+  }
+  
+  private static final class BlackListPlan extends ParseFilterPlan {
+    private final Set<QName> qnames;
+    private final Map<QName,Set<QName>> attributes;
+    BlackListPlan(BlackListParseFilter filter) {
+      this.qnames = filter.qnames();
+      this.attributes = filter.attributes();
+    }
+    public boolean acceptable(QName qname) {
+      return !qnames.contains(qname);
+    }
+    public boolean acceptable(QName qname, QName attribute) {
+      Set<QName> attrs = attributes.get(qname);
+      return attrs == null || !attrs.contains(attribute);
+    }
+    public boolean isAcceptAll() {
+      return qnames.isEmpty() && attributes.isEmpty();
+    }
+  }
+  
+  private static final class CompoundPlan extends ParseFilterPlan {
+    private final CompoundParseFilter.Condition condition;
+    private final ParseFilterPlan[] plans;
+    CompoundPlan(CompoundParseFilter.Condition condition, ParseFilterPlan[] plans) {
+      this.condition = condition;
+      this.plans = plans;
+    }
+    public boolean acceptable(QName qname) {
+      for (ParseFilterPlan plan : plans) {
+        switch(condition.evaluate(plan.acceptable(qname))) {
+          case 1:
+            return true;
+          case -1:
+            return false;
+        }
+      }
+      return true;
+    }
+    public boolean acceptable(QName qname, QName attribute) {
+      for (ParseFilterPlan plan : plans) {
+        switch(condition.evaluate(plan.acceptable(qname, attribute))) {
+          case 1:
+            return true;
+          case -1:
+            return false;
+        }
+      }
+      return true;
+    }
+    public boolean isAcceptAll() {
+      if (plans.length == 0)
+        return true;
+      if (condition == CompoundParseFilter.Condition.UNACCEPTABLE_TO_ALL)
+        return false;
+      for (ParseFilterPlan plan : plans)
+        if (!plan.isAcceptAll())
+          return false;
+      return true;
+    }
+  }
+  
+  private static final class DelegatePlan extends ParseFilterPlan {
+    private final ParseFilter filter;
+    DelegatePlan(ParseFilter filter) {
+      this.filter = filter;
+    }
+    public boolean acceptable(QName qname) {
+      return filter.acceptable(qname);
+    }
+    public boolean acceptable(QName qname, QName attribute) {
+      return filter.acceptable(qname, attribute);
+    }
+  }
+}
@@ -47,6 +47,10 @@ public class WhiteListParseFilter extends AbstractSetParseFilter {
         this.listAttributesExplicitly = builder.listAttributesExplicitly;
     }
 
+    boolean listAttributesExplicitly() {
+        return listAttributesExplicitly;
+    }
+
     public boolean acceptable(QName qname) {
         return checkThrow(contains(qname),qname,null);
     }
@@ -91,6 +91,7 @@ class AbderaClientResponseImpl
           doc.setSlug(slug);
       return doc;
     } catch (Throwable t) {
+      release();
       throw new ParseException(t);
     }
   }
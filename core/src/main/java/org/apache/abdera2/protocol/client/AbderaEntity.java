@@ -17,12 +17,11 @@
  */
 package org.apache.abdera2.protocol.client;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
+import org.apache.abdera2.common.io.SegmentedBuffer;
 import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.Element.Helper;
 import org.apache.http.Header;
@@ -31,7 +30,12 @@ import org.apache.http.entity.BasicHttpEntity;
 import org.apache.http.message.BasicHeader;
 
 /**
- * Wraps an Abdera object for use with the Apache HTTP client.
+ * Wraps an Abdera object for use with the Apache HTTP client. When the 
+ * content length is calculated the object is serialized once into a 
+ * pooled segmented buffer that is then used for sending the content.
+ * The buffer is only returned to the pool when the entity is released,
+ * or, for entities that are not repeatable, once the content is written;
+ * repeatable entities otherwise leave it to the garbage collector.
  */
 public class AbderaEntity
   extends BasicHttpEntity 
@@ -40,7 +44,8 @@ public class AbderaEntity
     private final Header ct;
     private final Base base;
     private final long len;
-    private byte[] buf = null;
+    private final boolean repeatable;
+    private SegmentedBuffer buf = null;
 
     /**
      * Create the entity using the specified Abdera document or element. 
@@ -81,44 +86,105 @@ public class AbderaEntity
      * detected based on the type of element passed in.
      */
     public AbderaEntity(Base base, boolean calclen, String contentType) {
+      this(base, calclen, contentType, true);
+    }
+    
+    /**
+     * Create the entity using the specified Abdera document or element.
+     * The content length will be automatically calculated if the 
+     * calclen argument is true. The Content-Type specified will be
+     * used. If contentType is null, the Content-Type will be automatically
+     * detected based on the type of element passed in. If the entity is 
+     * not repeatable, the buffered content is released once it has been 
+     * written.
+     */
+    public AbderaEntity(
+      Base base, 
+      boolean calclen, 
+      String contentType, 
+      boolean repeatable) {
       if (base == null) 
         throw new IllegalArgumentException();
       this.base = base;
+      this.repeatable = repeatable;
       this.ct = new BasicHeader(
         "Content-Type", 
         contentType!=null?contentType:Helper.getMimeType(base));
       if (calclen) {
         long l = -1;
         try {
-          ByteArrayOutputStream out = 
-            new ByteArrayOutputStream();
-          base.writeTo(out);
-          buf = out.toByteArray();
-          l = buf.length;
-        } catch (Throwable t) {}
+          l = buffer().size();
+        } catch (Throwable t) {
+          release();
+        }
         len = l;
       } else {
         len = -1;
       }
     }
 
+    /**
+     * Calculate the serialized length of the specified Abdera document 
+     * or element without buffering it. Useful for callers that only need 
+     * the length, at the cost of serializing the object again when it 
+     * is sent.
+     */
+    public static long calculateContentLength(Base base) throws IOException {
+      CountingOutputStream out = new CountingOutputStream();
+      base.writeTo(out);
+      return out.count;
+    }
+
+    private SegmentedBuffer buffer() throws IOException {
+      if (buf == null) {
+        SegmentedBuffer buf = new SegmentedBuffer();
+        try {
+          base.writeTo(buf);
+        } catch (IOException e) {
+          buf.release();
+          throw e;
+        } catch (RuntimeException e) {
+          buf.release();
+          throw e;
+        }
+        this.buf = buf;
+      }
+      return buf;
+    }
+
+    /**
+     * Return the buffered content, if any, to the buffer pool. The 
+     * content will be serialized again if it is needed after release
+     */
+    public void release() {
+      if (buf != null) {
+        buf.release();
+        buf = null;
+      }
+    }
+
     public boolean isRepeatable() {
-        return true;
+        return repeatable;
     }
 
     public void writeTo(OutputStream out) throws IOException {
-      base.writeTo(out);
+      if (buf != null) {
+        buf.writeTo(out);
+        if (!repeatable)
+          release();
+      } else {
+        base.writeTo(out);
+      }
     }
     
+    /**
+     * Return a stream over the serialized content. The stream should be
+     * closed once read; buffered content still being read is not returned
+     * to the pool until then, even if the entity is released.
+     */
     public InputStream getContent() {
       try {
-        if (buf == null) {
-          ByteArrayOutputStream out = 
-            new ByteArrayOutputStream();
-          base.writeTo(out);
-          buf = out.toByteArray();
-        }
-        return new ByteArrayInputStream(buf);
+        return buffer().getInputStream();
       } catch (Throwable t) {
         throw new RuntimeException(t);
       }
@@ -136,4 +202,14 @@ public class AbderaEntity
         return ct;
     }
 
+    private static final class CountingOutputStream extends OutputStream {
+      private long count;
+      public void write(int b) {
+        count++;
+      }
+      public void write(byte[] b, int off, int len) {
+        count += len;
+      }
+    }
+
 }
@@ -79,7 +79,7 @@ public final class AbderaConfiguration
     protected Map<String, Class<? extends StreamWriter>> initStreamWriters() {
         Map<String, Class<? extends StreamWriter>> writers = null;
         Iterable<Class<? extends StreamWriter>> _writers = 
-          Discover.locate("org.apache.abdera2.writer.StreamWriter", true, abdera);
+          Discover.locate("org.apache.abdera2.writer.StreamWriter", true, new Object[] {abdera});
         writers = Collections.synchronizedMap(new HashMap<String, Class<? extends StreamWriter>>());
         for (Class<? extends StreamWriter> writer : _writers) {
             String name = AnnoUtil.getName(writer);
@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.xpath;
+
+import java.util.List;
+
+import org.apache.abdera2.model.Base;
+
+/**
+ * A compiled XPath expression, obtained from CompilingXPath.compile, that can be 
+ * evaluated repeatedly against Feed Object Model instances. Instances are
+ * immutable and may be shared by multiple threads.
+ */
+public interface CompiledXPath {
+
+    /**
+     * Return the expression this instance was compiled from
+     */
+    String getPath();
+
+    /**
+     * Return a listing of nodes matching the Path
+     */
+    List<?> selectNodes(Base base) throws XPathException;
+
+    /**
+     * Return the first node matching the Path
+     */
+    Object selectSingleNode(Base base) throws XPathException;
+
+    /**
+     * Evaluate the XPath and return it's value
+     */
+    Object evaluate(Base base) throws XPathException;
+
+    /**
+     * Return the text value of the Path
+     */
+    String valueOf(Base base) throws XPathException;
+
+    /**
+     * Return a boolean representation of the Path
+     */
+    boolean booleanValueOf(Base base) throws XPathException;
+
+    /**
+     * Return a numeric representation of the Path
+     */
+    Number numericValueOf(Base base) throws XPathException;
+
+}
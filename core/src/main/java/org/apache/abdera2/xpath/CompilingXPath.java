@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.xpath;
+
+import java.util.Map;
+
+/**
+ * An XPath implementation that can compile expressions for repeated 
+ * evaluation. Use instanceof to check whether an XPath supports this; 
+ * the default FOM implementation does.
+ */
+public interface CompilingXPath extends XPath {
+
+    /**
+     * Return a compiled form of the specified Path, using the default Namespaces mapping, that can be evaluated
+     * repeatedly and by multiple threads
+     */
+    CompiledXPath compile(String path) throws XPathException;
+
+    /**
+     * Return a compiled form of the specified Path, using the specified Namespaces mapping, that can be evaluated
+     * repeatedly and by multiple threads
+     */
+    CompiledXPath compile(String path, Map<String, String> namespaces) throws XPathException;
+
+}
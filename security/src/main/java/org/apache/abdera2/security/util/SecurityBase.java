@@ -19,21 +19,72 @@ package org.apache.abdera2.security.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 
 import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.Document;
 import org.apache.abdera2.model.Element;
+import org.apache.abdera2.model.ElementWrapper;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.axiom.FOMParser;
+import org.apache.abdera2.security.SecurityException;
 import org.apache.abdera2.security.SecurityOptions;
+import org.apache.axiom.om.OMComment;
+import org.apache.axiom.om.OMContainer;
+import org.apache.axiom.om.OMDocument;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMProcessingInstruction;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
 
+/**
+ * Base class for the XML Signature and Encryption implementations. Converting between the FOM and DOM object models
+ * is done directly where possible: FOM trees are walked through their XMLStreamReader to build the DOM, and DOM trees
+ * are handed to the Abdera parser through a StAX reader over a DOMSource. Only when either side is not backed by the
+ * default implementation do we fall back to serializing and reparsing. The DocumentBuilder and Transformer used are
+ * cached per thread since neither is thread safe and both are expensive to create.
+ */
 public abstract class SecurityBase {
 
+    private static final ThreadLocal<DocumentBuilder> documentBuilders = new ThreadLocal<DocumentBuilder>() {
+        protected DocumentBuilder initialValue() {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setValidating(false);
+            dbf.setNamespaceAware(true);
+            try {
+                return dbf.newDocumentBuilder();
+            } catch (ParserConfigurationException e) {
+                throw new SecurityException(e);
+            }
+        }
+    };
+
+    private static final ThreadLocal<Transformer> transformers = new ThreadLocal<Transformer>() {
+        protected Transformer initialValue() {
+            try {
+                return TransformerFactory.newInstance().newTransformer();
+            } catch (TransformerConfigurationException e) {
+                throw new SecurityException(e);
+            }
+        }
+    };
+
     protected final Abdera abdera;
 
     protected SecurityBase(Abdera abdera) {
@@ -45,68 +96,190 @@ public abstract class SecurityBase {
     }
 
     protected org.w3c.dom.Document fomToDom(Document<?> doc, SecurityOptions options) {
-        org.w3c.dom.Document dom = null;
-        if (doc != null) {
-            try {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                doc.writeTo(out);
-                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                dbf.setValidating(false);
-                dbf.setNamespaceAware(true);
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                dom = db.parse(in);
-            } catch (Exception e) {
+        if (doc == null)
+            return null;
+        DocumentBuilder db = documentBuilders.get();
+        try {
+            if (doc instanceof OMDocument) {
+                // the document level XMLStreamReader cannot be used with FOMDocument, so walk the top level nodes
+                org.w3c.dom.Document dom = db.newDocument();
+                for (Iterator<?> i = ((OMDocument)doc).getChildren(); i.hasNext();) {
+                    Object node = i.next();
+                    if (node instanceof OMElement)
+                        build(((OMElement)node).getXMLStreamReader(), dom);
+                    else if (node instanceof OMComment)
+                        dom.appendChild(dom.createComment(((OMComment)node).getValue()));
+                    else if (node instanceof OMProcessingInstruction)
+                        dom.appendChild(dom.createProcessingInstruction(((OMProcessingInstruction)node).getTarget(),
+                                                                        ((OMProcessingInstruction)node).getValue()));
+                }
+                return dom;
             }
+            return db.parse(new ByteArrayInputStream(serialize(doc)));
+        } catch (XMLStreamException e) {
+            throw new SecurityException(e);
+        } catch (SAXException e) {
+            throw new SecurityException(e);
+        } catch (IOException e) {
+            throw new SecurityException(e);
         }
-        return dom;
     }
 
     protected Document<?> domToFom(org.w3c.dom.Document dom, SecurityOptions options) {
-        Document<?> doc = null;
-        if (dom != null) {
-            try {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                TransformerFactory tf = TransformerFactory.newInstance();
-                Transformer t = tf.newTransformer();
-                t.transform(new DOMSource(dom), new StreamResult(out));
-                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-                doc = options.getParser().parse(in);
-            } catch (Exception e) {
-            }
-        }
-        return doc;
+        return dom != null ? parse(dom, options) : null;
     }
 
     protected org.w3c.dom.Element fomToDom(Element element, SecurityOptions options) {
-        org.w3c.dom.Element dom = null;
-        if (element != null) {
-            try {
-                ByteArrayInputStream in = new ByteArrayInputStream(element.toString().getBytes());
-                DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-                dbf.setValidating(false);
-                dbf.setNamespaceAware(true);
-                DocumentBuilder db = dbf.newDocumentBuilder();
-                dom = db.parse(in).getDocumentElement();
-            } catch (Exception e) {
+        if (element == null)
+            return null;
+        Element internal = element instanceof ElementWrapper ? ((ElementWrapper)element).getInternal() : element;
+        DocumentBuilder db = documentBuilders.get();
+        try {
+            if (internal instanceof OMContainer) {
+                org.w3c.dom.Document dom = db.newDocument();
+                build(((OMContainer)internal).getXMLStreamReader(), dom);
+                return dom.getDocumentElement();
             }
+            return db.parse(new ByteArrayInputStream(serialize(element))).getDocumentElement();
+        } catch (XMLStreamException e) {
+            throw new SecurityException(e);
+        } catch (SAXException e) {
+            throw new SecurityException(e);
+        } catch (IOException e) {
+            throw new SecurityException(e);
         }
-        return dom;
     }
 
     protected Element domToFom(org.w3c.dom.Element element, SecurityOptions options) {
-        Element el = null;
-        if (element != null) {
-            try {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                TransformerFactory tf = TransformerFactory.newInstance();
-                Transformer t = tf.newTransformer();
-                t.transform(new DOMSource(element), new StreamResult(out));
-                ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
-                el = options.getParser().parse(in).getRoot();
-            } catch (Exception e) {
+        return element != null ? parse(element, options).getRoot() : null;
+    }
+
+    private static byte[] serialize(Base base) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        base.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Parses the DOM node into FOM. When the StAX implementation can read a DOMSource (Woodstox can) the parser
+     * consumes the DOM directly, otherwise the node is serialized and reparsed.
+     */
+    private static <T extends Element> Document<T> parse(Node node, SecurityOptions options) {
+        Parser parser = options.getParser();
+        XMLStreamReader reader = null;
+        try {
+            reader = FOMParser.createXMLStreamReader(new DOMSource(node));
+        } catch (UnsupportedOperationException e) {
+        } catch (IllegalArgumentException e) {
+        } catch (XMLStreamException e) {
+            throw new SecurityException(e);
+        }
+        if (reader != null) {
+            // build eagerly: the DOM is mutable and may be modified or discarded by the caller
+            Document<T> doc = parser.parse(reader);
+            return doc.complete();
+        }
+        Transformer t = transformers.get();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            t.transform(new DOMSource(node), new StreamResult(out));
+            return parser.parse(new ByteArrayInputStream(out.toByteArray()));
+        } catch (TransformerException e) {
+            throw new SecurityException(e);
+        } finally {
+            t.reset();
+        }
+    }
+
+    /**
+     * Appends the events of the reader to the given DOM node. Namespace declarations are copied as xmlns attributes,
+     * and any namespace used by an element or attribute that is not in scope at that point is declared so that the
+     * resulting DOM is well formed when detached from its original ancestors.
+     */
+    private static void build(XMLStreamReader reader, Node target) throws XMLStreamException {
+        org.w3c.dom.Document dom = target.getNodeType() == Node.DOCUMENT_NODE ? 
+            (org.w3c.dom.Document)target : 
+            target.getOwnerDocument();
+        Node current = target;
+        try {
+            for (int event = reader.getEventType(); event != XMLStreamConstants.END_DOCUMENT; event = reader.next()) {
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        org.w3c.dom.Element el =
+                            dom.createElementNS(emptyToNull(reader.getNamespaceURI()), qualify(reader.getPrefix(),
+                                                                                              reader.getLocalName()));
+                        for (int n = 0; n < reader.getNamespaceCount(); n++) {
+                            String prefix = reader.getNamespacePrefix(n);
+                            String uri = reader.getNamespaceURI(n);
+                            el.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, 
+                                              xmlns(prefix), 
+                                              uri != null ? uri : "");
+                        }
+                        for (int n = 0; n < reader.getAttributeCount(); n++) {
+                            String uri = emptyToNull(reader.getAttributeNamespace(n));
+                            String prefix = reader.getAttributePrefix(n);
+                            el.setAttributeNS(uri, 
+                                              qualify(prefix, reader.getAttributeLocalName(n)), 
+                                              reader.getAttributeValue(n));
+                            if (uri != null)
+                                declare(el, current, prefix, uri);
+                        }
+                        declare(el, current, el.getPrefix(), el.getNamespaceURI());
+                        current.appendChild(el);
+                        current = el;
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        current = current.getParentNode();
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        if (current != dom && reader.getText() != null)
+                            current.appendChild(dom.createTextNode(reader.getText()));
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        current.appendChild(dom.createCDATASection(reader.getText()));
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                        current.appendChild(dom.createComment(reader.getText()));
+                        break;
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                        current.appendChild(dom.createProcessingInstruction(reader.getPITarget(), reader.getPIData()));
+                        break;
+                }
+                if (!reader.hasNext())
+                    break;
             }
+        } finally {
+            reader.close();
         }
-        return el;
+    }
+
+    private static void declare(org.w3c.dom.Element el, Node parent, String prefix, String uri) {
+        if (XMLConstants.XML_NS_PREFIX.equals(prefix))
+            return;
+        prefix = emptyToNull(prefix);
+        if (el.hasAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, prefix != null ? prefix : XMLConstants.XMLNS_ATTRIBUTE))
+            return;
+        String inscope = parent.getNodeType() == Node.ELEMENT_NODE ? parent.lookupNamespaceURI(prefix) : null;
+        if (uri == null ? inscope == null : uri.equals(inscope))
+            return;
+        el.setAttributeNS(XMLConstants.XMLNS_ATTRIBUTE_NS_URI, 
+                          xmlns(prefix), 
+                          uri != null ? uri : "");
+    }
+
+    private static String xmlns(String prefix) {
+        return prefix == null || prefix.length() == 0 ? 
+            XMLConstants.XMLNS_ATTRIBUTE : 
+            XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+    }
+
+    private static String qualify(String prefix, String name) {
+        return prefix == null || prefix.length() == 0 ? name : prefix + ":" + name;
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.length() == 0 ? null : s;
     }
 }
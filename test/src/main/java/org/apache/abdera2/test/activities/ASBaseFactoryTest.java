@@ -0,0 +1,69 @@
+package org.apache.abdera2.test.activities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.abdera2.activities.model.ASBase;
+import org.apache.abdera2.activities.model.ASObject;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+
+public class ASBaseFactoryTest {
+
+  public static class Thing extends ASObject {
+    private static final long serialVersionUID = 1L;
+    public Thing(Map<String,Object> map) {
+      super(map);
+    }
+  }
+  
+  @Test
+  public void testFactoryIsCached() {
+    assertSame(ASBase.factory(Thing.class), ASBase.factory(Thing.class));
+    ASObject obj = ASObject.makeObject().id("urn:1").get();
+    Thing thing = obj.as(Thing.class);
+    assertEquals("urn:1", thing.getId().toString());
+  }
+  
+  @Test
+  public void testRegisterFactory() {
+    final AtomicInteger count = new AtomicInteger();
+    ASBase.registerFactory(Thing.class, new Function<Map<String,Object>,Thing>() {
+      public Thing apply(Map<String,Object> input) {
+        count.incrementAndGet();
+        return new Thing(input);
+      }
+    });
+    ASObject obj = ASObject.makeObject().id("urn:2").get();
+    Thing thing = obj.as(Thing.class);
+    assertEquals("urn:2", thing.getId().toString());
+    assertEquals(1, count.get());
+  }
+  
+  @Test
+  public void testTemplateAfterSerialization() throws Exception {
+    ASObject obj = ASObject.makeObject().displayName("foo").get();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ObjectOutputStream oout = new ObjectOutputStream(out);
+    oout.writeObject(obj);
+    oout.close();
+    ObjectInputStream in = new ObjectInputStream(
+      new ByteArrayInputStream(out.toByteArray()));
+    ASObject copy = (ASObject) in.readObject();
+    ASObject changed = 
+      copy.<ASObject,ASObject.ASObjectBuilder>template()
+        .summary("bar").get();
+    assertEquals("foo", changed.getDisplayName());
+    assertEquals("bar", changed.getSummary());
+    assertTrue(changed instanceof ASObject);
+  }
+}
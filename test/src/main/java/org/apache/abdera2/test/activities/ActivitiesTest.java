@@ -146,12 +146,12 @@ public class ActivitiesTest {
     assertThat(base2, not(hasItems("c","d","e","f","@base","@language")));
     
     // Test Template
-    ASBuilder builder = base.template();
+    ASBuilder builder = base.<ASBase,ASBuilder>template();
     assertNotNull(builder);
     base2 = builder.get();
     assertEquals(base,base2);
     
-    builder = base.template(ASBase.withFields("a"));
+    builder = base.<ASBase,ASBuilder>template(ASBase.withFields("a"));
     base2 = builder.set("e","z").set("z","y").get();
     assertThat(base2, hasItems("a","e","z"));
     assertThat(base2, not(hasItems("b","c","d")));
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.activities;
+
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+
+import org.apache.abdera2.activities.model.ASObject;
+import org.apache.abdera2.activities.model.Activity;
+import org.apache.abdera2.activities.model.Collection;
+import org.apache.abdera2.activities.model.IO;
+import org.apache.abdera2.activities.model.objects.NoteObject;
+import org.apache.abdera2.activities.model.objects.PersonObject;
+import org.joda.time.DateTime;
+
+import com.google.gson.Gson;
+
+/**
+ * Compares reading a large Activity Streams collection from the token 
+ * stream against the previous approach of deserializing it through 
+ * Gson's JsonElement tree, reporting both the time taken and the 
+ * number of bytes allocated per read. Not run as part of the unit 
+ * tests; run the main method directly.
+ */
+public class CollectionReadBenchmark {
+
+  private static final int ITEMS = 5000;
+  private static final int ROUNDS = 20;
+
+  public static void main(String... args) throws Exception {
+    IO io = IO.get();
+    Collection.CollectionBuilder<Activity> builder = Collection.makeCollection();
+    for (int n = 0; n < ITEMS; n++)
+      builder.item(
+        Activity.makeActivity()
+          .id("urn:activity:" + n)
+          .published(DateTime.now())
+          .actor(PersonObject.makePerson("Joe " + n).id("urn:person:" + n))
+          .object(NoteObject.makeNote().content("This is note number " + n))
+          .get());
+    String json = io.write(builder.get());
+    
+    // the tree based deserialization is still reachable through Gson
+    Field field = io.getClass().getDeclaredField("gson");
+    field.setAccessible(true);
+    Gson gson = (Gson) field.get(io);
+    
+    if (!io.write(io.readCollection(json)).equals(io.write(gson.fromJson(json, Collection.class))))
+      throw new IllegalStateException();
+    for (int n = 0; n < 3; n++) {
+      streaming(io, json, ROUNDS);
+      tree(gson, json, ROUNDS);
+    }
+    long[] s = streaming(io, json, ROUNDS);
+    long[] t = tree(gson, json, ROUNDS);
+    System.out.println(String.format(
+      "streaming %6.1f ms %6.1f MB, tree %6.1f ms %6.1f MB per read (%.1fx faster, %.1fx less allocation)",
+      s[0] / 1e6 / ROUNDS, s[1] / 1e6 / ROUNDS, 
+      t[0] / 1e6 / ROUNDS, t[1] / 1e6 / ROUNDS,
+      (double)t[0] / s[0], (double)t[1] / s[1]));
+  }
+  
+  private static long allocated() {
+    return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean())
+      .getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static long[] streaming(IO io, String json, int rounds) {
+    long a = allocated();
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      Collection<ASObject> col = io.readCollection(new StringReader(json));
+      if (col == null) throw new IllegalStateException();
+    }
+    return new long[] {System.nanoTime() - start, allocated() - a};
+  }
+  
+  private static long[] tree(Gson gson, String json, int rounds) {
+    long a = allocated();
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      Collection<?> col = gson.fromJson(new StringReader(json), Collection.class);
+      if (col == null) throw new IllegalStateException();
+    }
+    return new long[] {System.nanoTime() - start, allocated() - a};
+  }
+}
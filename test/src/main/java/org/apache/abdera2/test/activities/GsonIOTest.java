@@ -0,0 +1,137 @@
+package org.apache.abdera2.test.activities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.apache.abdera2.activities.extra.Extra;
+import org.apache.abdera2.activities.model.ASBase;
+import org.apache.abdera2.activities.model.ASObject;
+import org.apache.abdera2.activities.model.Activity;
+import org.apache.abdera2.activities.model.Collection;
+import org.apache.abdera2.activities.model.CollectionReader;
+import org.apache.abdera2.activities.model.IO;
+import org.apache.abdera2.activities.model.MediaLink;
+import org.apache.abdera2.activities.model.Verb;
+import org.apache.abdera2.activities.model.objects.NoteObject;
+import org.apache.abdera2.activities.model.objects.PersonObject;
+import org.apache.abdera2.activities.model.objects.PlaceObject;
+import org.apache.abdera2.common.iri.IRI;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.gson.JsonParseException;
+
+public class GsonIOTest {
+
+  private static final String COLLECTION = 
+    "{\"totalItems\":2,\"url\":\"http://example.org/c\"," +
+    "\"items\":[" +
+      "{\"content\":\"a note\",\"objectType\":\"note\",\"id\":\"urn:1\"," +
+       "\"published\":\"2011-02-10T15:04:55Z\",\"image\":{\"url\":\"http://example.org/i.png\",\"width\":10}," +
+       "\"location\":{\"displayName\":\"Home\"},\"tags\":[\"a\",[1,true],null],\"x\":null}," +
+      "{\"verb\":\"post\",\"actor\":{\"objectType\":\"person\",\"displayName\":\"Joe\"}," +
+       "\"object\":{\"displayName\":\"anonymous\"}}" +
+    "]}";
+
+  @Test
+  public void testReadCollection() {
+    IO io = IO.get();
+    Collection<ASObject> col = io.readCollection(COLLECTION);
+    assertEquals(2, col.getTotalItems());
+    assertEquals(new IRI("http://example.org/c"), col.getUrl());
+    List<ASObject> items = Lists.newArrayList(col.getItems());
+    assertEquals(2, items.size());
+    
+    // the objectType comes after other properties but still selects the builder
+    ASBase note = items.get(0);
+    assertTrue(note instanceof NoteObject);
+    assertEquals("a note", note.getProperty("content"));
+    assertTrue(note.getProperty("published") instanceof DateTime);
+    assertTrue(note.getProperty("image") instanceof MediaLink);
+    assertEquals(10, ((Number)((MediaLink)note.getProperty("image")).getProperty("width")).intValue());
+    assertTrue(note.getProperty("location") instanceof PlaceObject);
+    assertNull(note.getProperty("x"));
+    List<?> tags = note.getProperty("tags");
+    assertEquals(2, tags.size());
+    assertEquals("a", tags.get(0));
+    assertEquals(1, ((Number)((List<?>)tags.get(1)).get(0)).intValue());
+    assertEquals(Boolean.TRUE, ((List<?>)tags.get(1)).get(1));
+    
+    // no objectType, detected from the properties
+    ASBase activity = items.get(1);
+    assertTrue(activity instanceof Activity);
+    assertEquals(Verb.POST, ((Activity)activity).getVerb());
+    assertTrue(((Activity)activity).getActor() instanceof PersonObject);
+  }
+  
+  @Test
+  public void testRoundTrip() {
+    IO io = IO.get();
+    Collection<ASObject> col = io.readCollection(new StringReader(COLLECTION));
+    String json = io.write(col);
+    assertEquals(json, io.write(io.readCollection(json)));
+    ASBase base = io.read(json);
+    assertTrue(base instanceof Collection);
+    assertEquals(2, Iterables.size(((Collection<?>)base).getItems()));
+  }
+  
+  @Test
+  public void testReadEmpty() {
+    IO io = IO.get();
+    assertNull(io.read(""));
+    assertNull(io.readObject("null"));
+  }
+  
+  @Test(expected=JsonParseException.class)
+  public void testNotFullyConsumed() {
+    IO.get().readObject("{\"a\":1} {");
+  }
+  
+  @Test(expected=JsonParseException.class)
+  public void testMalformed() {
+    IO.get().readObject("{\"a\":");
+  }
+  @Test
+  public void testCollectionReader() {
+    IO io = IO.get();
+    String json = 
+      "{\"totalItems\":3,\"url\":\"http://example.org/c\",\"items\":[" +
+        "{\"objectType\":\"note\",\"id\":\"urn:1\"}," +
+        "null,\"skipped\"," +
+        "{\"objectType\":\"person\",\"id\":\"urn:2\"}," +
+        "{\"objectType\":\"note\",\"id\":\"urn:3\"}" +
+      "],\"displayName\":\"after\"}";
+    CollectionReader<ASObject> reader = 
+      io.getCollectionReader(new StringReader(json));
+    // the header properties preceding the items are available immediately
+    assertEquals(3, reader.getHeader().getTotalItems());
+    assertEquals(new IRI("http://example.org/c"), reader.getHeader().getUrl());
+    assertNull(reader.getHeader().getDisplayName());
+    List<String> ids = Lists.newArrayList();
+    for (ASObject obj : reader.getItems(Extra.isObjectType("note")))
+      ids.add(obj.getId().toString());
+    assertEquals(Lists.newArrayList("urn:1","urn:3"), ids);
+    assertEquals("after", reader.getHeader().getDisplayName());
+    reader.close();
+    try {
+      reader.iterator();
+      fail();
+    } catch (IllegalStateException e) {}
+  }
+  
+  @Test
+  public void testCollectionReaderNoItems() {
+    CollectionReader<ASObject> reader = 
+      IO.get().getCollectionReader(new StringReader("{\"totalItems\":0}"));
+    assertFalse(reader.iterator().hasNext());
+    assertEquals(0, reader.getHeader().getTotalItems());
+  }
+}
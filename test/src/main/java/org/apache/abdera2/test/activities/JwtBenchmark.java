@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.activities;
+
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.abdera2.activities.extra.Jwt;
+import org.apache.abdera2.activities.extra.Jwt.Alg;
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Compares HS256 and RS256 JWT signature validation using the engines 
+ * cached by HashHelper against the previous approach of looking up and 
+ * initializing a new Mac or Signature for every call. Not run as part 
+ * of the unit tests; run the main method directly.
+ */
+public class JwtBenchmark {
+
+  private static final int HMAC_ROUNDS = 200000;
+  private static final int RSA_ROUNDS = 20000;
+
+  public static void main(String... args) throws Exception {
+    Key secret = new SecretKeySpec("a shared secret of reasonable size".getBytes(), "RAW");
+    KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+    gen.initialize(2048);
+    KeyPair pair = gen.generateKeyPair();
+    
+    String jwt = Jwt.generate(Alg.HS256, secret, "{\"iss\":\"joe\",\"exp\":1300819380}".getBytes("UTF-8"));
+    int i = jwt.lastIndexOf('.');
+    byte[] mat = jwt.substring(0, i).getBytes("UTF-8");
+    byte[] hs256 = Base64.decodeBase64(jwt.substring(i + 1));
+    byte[] rs256 = Base64.decodeBase64(Alg.RS256.sig(pair.getPrivate(), mat));
+    if (!Jwt.validate(secret, jwt) || 
+        !legacyHmac(secret, mat, hs256) ||
+        !legacySig(pair.getPublic(), mat, rs256))
+      throw new IllegalStateException();
+    
+    for (int n = 0; n < 3; n++) {
+      hmac(secret, mat, hs256, HMAC_ROUNDS);
+      legacyHmac(secret, mat, hs256, HMAC_ROUNDS);
+      sig(pair.getPublic(), mat, rs256, RSA_ROUNDS);
+      legacySig(pair.getPublic(), mat, rs256, RSA_ROUNDS);
+    }
+    report("HS256", HMAC_ROUNDS, 
+      hmac(secret, mat, hs256, HMAC_ROUNDS), 
+      legacyHmac(secret, mat, hs256, HMAC_ROUNDS));
+    report("RS256", RSA_ROUNDS, 
+      sig(pair.getPublic(), mat, rs256, RSA_ROUNDS), 
+      legacySig(pair.getPublic(), mat, rs256, RSA_ROUNDS));
+  }
+  
+  private static void report(String name, int rounds, long cached, long legacy) {
+    System.out.println(String.format(
+      "%s cached %9.0f validations/s, uncached %9.0f validations/s (%.1fx)",
+      name, rounds / (cached / 1e9), rounds / (legacy / 1e9), (double)legacy / cached));
+  }
+
+  private static long hmac(Key key, byte[] mat, byte[] dat, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      if (!Alg.HS256.val(key, mat, dat))
+        throw new IllegalStateException();
+    return System.nanoTime() - start;
+  }
+  
+  private static long legacyHmac(Key key, byte[] mat, byte[] dat, int rounds) throws Exception {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      if (!legacyHmac(key, mat, dat))
+        throw new IllegalStateException();
+    return System.nanoTime() - start;
+  }
+  
+  private static long sig(Key key, byte[] mat, byte[] dat, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      if (!Alg.RS256.val(key, mat, dat))
+        throw new IllegalStateException();
+    return System.nanoTime() - start;
+  }
+  
+  private static long legacySig(Key key, byte[] mat, byte[] dat, int rounds) throws Exception {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      if (!legacySig(key, mat, dat))
+        throw new IllegalStateException();
+    return System.nanoTime() - start;
+  }
+  
+  private static boolean legacyHmac(Key key, byte[] mat, byte[] dat) throws Exception {
+    Mac mac = Mac.getInstance("HmacSHA256");
+    mac.init(key);
+    return Arrays.equals(mac.doFinal(mat), dat);
+  }
+  
+  private static boolean legacySig(Key key, byte[] mat, byte[] dat) throws Exception {
+    Signature sig = Signature.getInstance("SHA256withRSA");
+    sig.initVerify((java.security.PublicKey)key);
+    sig.update(mat);
+    return sig.verify(dat);
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.protocol.client.AbderaEntity;
+
+/**
+ * Compares sending a large entry through an AbderaEntity with a 
+ * calculated content length against the previous approach of buffering 
+ * the entry in a ByteArrayOutputStream to get the length and then 
+ * serializing it again when it is sent. Not run as part of the unit 
+ * tests; run the main method directly.
+ */
+public class AbderaEntityBenchmark {
+
+  private static final int ROUNDS = 2000;
+
+  public static void main(String... args) throws Exception {
+    Entry entry = Abdera.getInstance().newEntry();
+    entry.setId("http://example.org/entry");
+    entry.setTitle("A large entry");
+    entry.addAuthor("James");
+    StringBuilder content = new StringBuilder();
+    for (int n = 0; n < 2000; n++)
+      content.append("Paragraph ").append(n).append(" of the content, caf\u00e9. ");
+    entry.setContent(content.toString());
+    OutputStream out = new OutputStream() {
+      public void write(int b) {}
+      public void write(byte[] b, int off, int len) {}
+    };
+    for (int n = 0; n < 3; n++) {
+      buffered(entry, out, ROUNDS);
+      legacy(entry, out, ROUNDS);
+    }
+    long b = buffered(entry, out, ROUNDS);
+    long l = legacy(entry, out, ROUNDS);
+    System.out.println(String.format(
+      "%d byte entry: segmented buffer %6.1f us, serialized twice %6.1f us per request (%.1fx)",
+      new AbderaEntity(entry, true).getContentLength(), 
+      b / 1e3 / ROUNDS, l / 1e3 / ROUNDS, (double)l / b));
+  }
+
+  private static long buffered(Entry entry, OutputStream out, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      AbderaEntity entity = new AbderaEntity(entry, true, null, false);
+      entity.getContentLength();
+      entity.writeTo(out);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long legacy(Entry entry, OutputStream out, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      entry.writeTo(buf);
+      buf.toByteArray();
+      entry.writeTo(out);
+    }
+    return System.nanoTime() - start;
+  }
+}
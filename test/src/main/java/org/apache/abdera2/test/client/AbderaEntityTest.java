@@ -0,0 +1,92 @@
+package org.apache.abdera2.test.client;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.parser.axiom.FOMEntry;
+import org.apache.abdera2.protocol.client.AbderaEntity;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class AbderaEntityTest {
+
+    private static Entry entry() {
+        Entry entry = new FOMEntry();
+        entry.setTitle("entity test");
+        entry.addAuthor("james");
+        entry.setId("tag:apache.org,2008:entity");
+        entry.setContent("\u00e9t\u00e9 \u6f22\u5b57");
+        return entry;
+    }
+
+    private static byte[] serialize(Entry entry) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeTo(out);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testContentLength() throws Exception {
+        Entry entry = entry();
+        byte[] expected = serialize(entry);
+        AbderaEntity entity = new AbderaEntity(entry, true);
+        assertEquals(expected.length, entity.getContentLength());
+        assertFalse(entity.isChunked());
+        assertEquals(expected.length, AbderaEntity.calculateContentLength(entry));
+        for (int n = 0; n < 2; n++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            assertArrayEquals(expected, out.toByteArray());
+            assertArrayEquals(expected, ByteStreams.toByteArray(entity.getContent()));
+        }
+    }
+
+    @Test
+    public void testWithoutContentLength() throws Exception {
+        Entry entry = entry();
+        AbderaEntity entity = new AbderaEntity(entry);
+        assertEquals(-1, entity.getContentLength());
+        assertTrue(entity.isChunked());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertArrayEquals(serialize(entry), out.toByteArray());
+    }
+
+    @Test
+    public void testNotRepeatable() throws Exception {
+        Entry entry = entry();
+        byte[] expected = serialize(entry);
+        AbderaEntity entity = new AbderaEntity(entry, true, null, false);
+        assertFalse(entity.isRepeatable());
+        assertEquals(expected.length, entity.getContentLength());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+        assertArrayEquals(expected, out.toByteArray());
+        // the buffer is released once sent, the content is serialized again
+        assertArrayEquals(expected, ByteStreams.toByteArray(entity.getContent()));
+        entity.release();
+    }
+
+    @Test
+    public void testContentReadAfterRelease() throws Exception {
+        Entry entry = entry();
+        byte[] expected = serialize(entry);
+        AbderaEntity entity = new AbderaEntity(entry, true, null, false);
+        InputStream in = entity.getContent();
+        entity.writeTo(new ByteArrayOutputStream());
+        // the segments must not be handed out again while the stream is open
+        Entry other = entry();
+        other.setContent("other");
+        new AbderaEntity(other, true).release();
+        assertArrayEquals(expected, ByteStreams.toByteArray(in));
+        in.close();
+    }
+
+}
@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.abdera2.common.misc.MoreExecutors2;
+import org.apache.abdera2.common.protocol.BasicAsyncClient;
+import org.apache.abdera2.common.protocol.ClientResponse;
+import org.apache.abdera2.common.protocol.ProtocolException;
+import org.apache.abdera2.common.protocol.Session;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.protocol.client.AbderaClient;
+import org.apache.abdera2.protocol.client.AbderaClientResponse;
+import org.apache.abdera2.protocol.client.AbderaSession;
+import org.apache.abdera2.test.JettyUtil;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class AsyncClientTest {
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+      JettyUtil.addServlet(TestServlet.class.getName(), "/async/*");
+      JettyUtil.start();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+      JettyUtil.stop();
+    }
+
+    private static final AtomicInteger current = new AtomicInteger();
+    private static final AtomicInteger max = new AtomicInteger();
+
+    public static class TestServlet extends HttpServlet {
+      private static final long serialVersionUID = -3012880345472874203L;
+      protected void doGet(
+        HttpServletRequest request, 
+        HttpServletResponse response)
+          throws ServletException, IOException {
+        String path = request.getPathInfo();
+        if ("/redirect".equals(path)) {
+          response.sendRedirect("/async/echo?q=redirected");
+        } else if ("/cookie".equals(path)) {
+          response.addCookie(new Cookie("x-async", "yes"));
+          response.getWriter().write("set");
+        } else if ("/https".equals(path)) {
+          response.sendRedirect(
+            "https://localhost:" + JettyUtil.getPort() + "/async/echo?q=plain");
+        } else if ("/auth".equals(path)) {
+          if (request.getHeader("Authorization") == null) {
+            response.setHeader("WWW-Authenticate", "Basic realm=\"async\"");
+            response.sendError(401);
+          } else {
+            response.getWriter().write("auth");
+          }
+        } else if ("/date".equals(path)) {
+          response.getWriter().write(request.getHeader("Date") != null ? "date" : "none");
+        } else if ("/slow".equals(path)) {
+          int c = current.incrementAndGet();
+          for (int m = max.get(); c > m && !max.compareAndSet(m, c); m = max.get());
+          try {
+            Thread.sleep(100);
+          } catch (InterruptedException e) {}
+          current.decrementAndGet();
+          response.getWriter().write("slow");
+        } else if ("/missing".equals(path)) {
+          response.sendError(404);
+        } else if ("/feed".equals(path)) {
+          response.setContentType("application/atom+xml");
+          // no content length, so the response is chunked
+          StringBuilder buf = new StringBuilder("<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id>");
+          for (int n = 0; n < 1000; n++)
+            buf.append("<entry><id>urn:entry:").append(n).append("</id></entry>");
+          buf.append("</feed>");
+          response.getWriter().write(buf.toString());
+          response.getWriter().flush();
+        } else {
+          String val = request.getParameter("q");
+          Cookie[] cookies = request.getCookies();
+          if (cookies != null)
+            for (Cookie c : cookies)
+              if (c.getName().equals("x-async"))
+                val = val + ";" + c.getValue();
+          response.getWriter().write(val);
+        }
+      }
+      protected void doPost(
+        HttpServletRequest request, 
+        HttpServletResponse response)
+          throws ServletException, IOException {
+        InputStream in = request.getInputStream();
+        StringBuilder buf = new StringBuilder();
+        int c = -1;
+        while ((c = in.read()) != -1)
+          buf.append((char)c);
+        response.setContentLength(buf.length());
+        response.getWriter().write(buf.toString());
+      }
+    }
+    
+    private static String base() {
+      return "http://localhost:" + JettyUtil.getPort() + "/async";
+    }
+    
+    private static String read(ClientResponse resp) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      Reader reader = resp.getReader();
+      char[] buf = new char[100];
+      int r = -1;
+      while ((r = reader.read(buf)) > -1) 
+        sb.append(buf,0,r);
+      return sb.toString();
+    }
+    
+    @Test
+    public void testConcurrentRequests() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      Session session = client.newSession();
+      List<ListenableFuture<ClientResponse>> futures = 
+        new ArrayList<ListenableFuture<ClientResponse>>();
+      for (int n = 0; n < 200; n++)
+        futures.add(session.<ClientResponse>getAsync(base() + "/echo?q=" + n));
+      for (int n = 0; n < 200; n++) {
+        ClientResponse resp = futures.get(n).get(10, TimeUnit.SECONDS);
+        assertEquals(200, resp.getStatus());
+        assertEquals(Integer.toString(n), read(resp));
+        assertTrue(resp.getUri().endsWith("/async/echo?q=" + n));
+      }
+      client.shutdown();
+    }
+    
+    @Test
+    public void testPostRedirectAndCookies() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      Session session = client.newSession();
+      ClientResponse resp = 
+        session.<ClientResponse>postAsync(
+          base() + "/echo", 
+          new StringEntity("posted body"), 
+          null).get(10, TimeUnit.SECONDS);
+      assertEquals("posted body", read(resp));
+      
+      resp = session.<ClientResponse>getAsync(base() + "/redirect").get(10, TimeUnit.SECONDS);
+      assertEquals(200, resp.getStatus());
+      assertEquals("redirected", read(resp));
+      
+      session.<ClientResponse>getAsync(base() + "/cookie").get(10, TimeUnit.SECONDS);
+      resp = session.<ClientResponse>getAsync(base() + "/echo?q=c").get(10, TimeUnit.SECONDS);
+      assertEquals("c;yes", read(resp));
+      client.shutdown();
+    }
+    
+    @Test
+    public void testRequestException() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      Session session = client.newSession();
+      ListenableFuture<ClientResponse> future = 
+        session.getAsync(
+          base() + "/missing", 
+          session.getDefaultRequestOptions()
+            .requestException4xx()
+            .get());
+      try {
+        future.get(10, TimeUnit.SECONDS);
+        fail("expected a ProtocolException");
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof ProtocolException);
+      }
+      client.shutdown();
+    }
+    
+    @Test
+    public void testAbderaSession() throws Exception {
+      AbderaClient client = new AbderaClient(new BasicAsyncClient());
+      AbderaSession session = client.newSession();
+      ExecutorService exec = MoreExecutors2.getExitingExecutor();
+      Future<AbderaClientResponse> future = session.get(base() + "/feed", exec);
+      AbderaClientResponse resp = future.get(10, TimeUnit.SECONDS);
+      Document<Feed> doc = resp.getDocument();
+      assertEquals(1000, doc.getRoot().getEntries().size());
+      client.shutdown();
+    }
+
+    @Test
+    public void testHttpsRedirect() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      client.setSocketTimeout(5000);
+      Session session = client.newSession();
+      // the redirect must be followed over https, which the test server 
+      // does not speak, rather than in plain text by the reactor
+      try {
+        session.<ClientResponse>getAsync(base() + "/https").get(10, TimeUnit.SECONDS);
+        fail("expected the https request to fail");
+      } catch (ExecutionException e) {}
+      client.shutdown();
+    }
+
+    @Test
+    public void testCredentials() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      Session session = client.newSession();
+      ClientResponse resp = session.<ClientResponse>getAsync(base() + "/auth").get(10, TimeUnit.SECONDS);
+      assertEquals(401, resp.getStatus());
+      client.addCredentials(base(), null, null, "user", "password");
+      resp = session.<ClientResponse>getAsync(base() + "/auth").get(10, TimeUnit.SECONDS);
+      assertEquals(200, resp.getStatus());
+      assertEquals("auth", read(resp));
+      client.shutdown();
+    }
+
+    @Test
+    public void testInterceptors() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      Session session = client.newSession();
+      ClientResponse resp = session.<ClientResponse>getAsync(base() + "/date").get(10, TimeUnit.SECONDS);
+      assertEquals("none", read(resp));
+      client.includeRequestDateHeader();
+      resp = session.<ClientResponse>getAsync(base() + "/date").get(10, TimeUnit.SECONDS);
+      assertEquals("date", read(resp));
+      client.shutdown();
+    }
+
+    @Test
+    public void testRegisterScheme() throws Exception {
+      final AtomicInteger sockets = new AtomicInteger();
+      BasicAsyncClient client = new BasicAsyncClient();
+      client.registerScheme("http", 80, new PlainSocketFactory() {
+        public Socket createSocket(HttpParams params) {
+          sockets.incrementAndGet();
+          return super.createSocket(params);
+        }
+      });
+      Session session = client.newSession();
+      ClientResponse resp = session.<ClientResponse>getAsync(base() + "/echo?q=s").get(10, TimeUnit.SECONDS);
+      assertEquals("s", read(resp));
+      assertTrue(sockets.get() > 0);
+      client.shutdown();
+    }
+
+    @Test
+    public void testMaxConnectionsPerHost() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      client.setMaxConnectionsPerHost(1);
+      Session session = client.newSession();
+      max.set(0);
+      List<ListenableFuture<ClientResponse>> futures = 
+        new ArrayList<ListenableFuture<ClientResponse>>();
+      for (int n = 0; n < 5; n++)
+        futures.add(session.<ClientResponse>getAsync(base() + "/slow"));
+      for (ListenableFuture<ClientResponse> future : futures)
+        assertEquals("slow", read(future.get(10, TimeUnit.SECONDS)));
+      assertEquals(1, max.get());
+      client.shutdown();
+    }
+
+    @Test
+    public void testMaxResponseSize() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      client.setMaxResponseSize(1000);
+      Session session = client.newSession();
+      StringBuilder body = new StringBuilder();
+      for (int n = 0; n < 1001; n++)
+        body.append('x');
+      ListenableFuture<ClientResponse> posted = 
+        session.postAsync(base() + "/echo", new StringEntity(body.toString()), null);
+      ListenableFuture<ClientResponse> chunked = 
+        session.getAsync(base() + "/feed");
+      for (ListenableFuture<ClientResponse> future : ImmutableList.of(posted, chunked)) {
+        try {
+          future.get(10, TimeUnit.SECONDS);
+          fail("expected the response to be too large");
+        } catch (ExecutionException e) {
+          assertTrue(e.getCause() instanceof java.net.ProtocolException);
+        }
+      }
+      body.setLength(1000);
+      ClientResponse resp = 
+        session.<ClientResponse>postAsync(
+          base() + "/echo", 
+          new StringEntity(body.toString()), 
+          null).get(10, TimeUnit.SECONDS);
+      assertEquals(body.toString(), read(resp));
+      client.shutdown();
+    }
+
+    @Test
+    public void testExecutor() throws Exception {
+      BasicAsyncClient client = new BasicAsyncClient();
+      final ExecutorService exec = MoreExecutors2.getExitingExecutor();
+      final AtomicInteger tasks = new AtomicInteger();
+      Executor executor = new Executor() {
+        public void execute(Runnable command) {
+          tasks.incrementAndGet();
+          exec.execute(command);
+        }
+      };
+      HttpResponse response = 
+        client.executeAsync(
+          new HttpGet(base() + "/echo?q=e"), 
+          new BasicHttpContext(), 
+          executor).get(10, TimeUnit.SECONDS);
+      assertEquals("e", EntityUtils.toString(response.getEntity()));
+      // the request is prepared and the future completed on the executor
+      assertEquals(2, tasks.get());
+      client.shutdown();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.abdera2.common.protocol.RequestOptions;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.protocol.client.AbderaClient;
+import org.apache.abdera2.protocol.client.AbderaClientResponse;
+import org.apache.abdera2.protocol.client.AbderaSession;
+import org.apache.abdera2.test.JettyUtil;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class StreamingResponseTest {
+
+    private static final int ENTRIES = 500;
+  
+    @BeforeClass
+    public static void setUp() throws Exception {
+      JettyUtil.addServlet(FeedServlet.class.getName(), "/feed");
+      JettyUtil.start();
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+      JettyUtil.stop();
+    }
+
+    public static class FeedServlet extends HttpServlet {
+      private static final long serialVersionUID = 6513294012839817412L;
+      protected void doGet(
+        HttpServletRequest request, 
+        HttpServletResponse response)
+          throws ServletException, IOException {
+        response.setContentType("application/atom+xml;charset=utf-8");
+        response.setHeader("Content-Encoding", "gzip");
+        GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream());
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        writer.write("<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id>");
+        for (int n = 0; n < ENTRIES; n++)
+          writer.write("<entry><id>urn:entry:" + n + "</id><title>Entry " + n + "</title></entry>");
+        writer.write("</feed>");
+        writer.flush();
+        out.finish();
+      }
+    }
+    
+    private static String uri() {
+      return "http://localhost:" + JettyUtil.getPort() + "/feed";
+    }
+    
+    @Test(timeout=30000)
+    public void testStreamedResponse() throws Exception {
+      AbderaClient client = new AbderaClient();
+      client.setMaxConnectionsPerHost(1);
+      AbderaSession session = client.newSession();
+      RequestOptions options = 
+        session.getDefaultRequestOptions()
+          .streamResponse()
+          .get();
+      assertTrue(options.isStreamResponse());
+      // with a single pooled connection, each request will block unless
+      // the previous connection was released once the document completed
+      for (int r = 0; r < 3; r++) {
+        AbderaClientResponse resp = session.get(uri(), options);
+        assertEquals(200, resp.getStatus());
+        Document<Feed> doc = resp.getDocument();
+        int n = 0;
+        for (Entry entry : doc.getRoot().getEntries())
+          assertEquals("urn:entry:" + n++, entry.getId().toString());
+        assertEquals(ENTRIES, n);
+      }
+      client.shutdown();
+    }
+    
+    @Test(timeout=30000)
+    public void testStreamingSession() throws Exception {
+      AbderaClient client = new AbderaClient();
+      client.setMaxConnectionsPerHost(1);
+      AbderaSession session = client.newSession();
+      session.setStreamResponses(true);
+      for (int r = 0; r < 3; r++) {
+        AbderaClientResponse resp = session.get(uri());
+        assertEquals(200, resp.getStatus());
+        Document<Feed> doc = resp.getDocument();
+        assertEquals(ENTRIES, doc.getRoot().getEntries().size());
+      }
+      client.shutdown();
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+
+import org.apache.abdera2.common.text.CharUtils.Profile;
+import org.apache.abdera2.common.xml.XmlRestrictedCharReader;
+
+/**
+ * Compares the throughput of the XmlRestrictedCharReader against an 
+ * unfiltered InputStreamReader and against the previous implementation
+ * that filtered one character at a time, reading a 1 MB UTF-8 document
+ * in 8 KB blocks as the XML parser does. Not run as part of the unit 
+ * tests; run the main method directly.
+ */
+public class FilteredCharReaderBenchmark {
+
+  private static final int ROUNDS = 50;
+
+  public static void main(String... args) throws Exception {
+    StringBuilder buf = new StringBuilder();
+    while (buf.length() < 1024 * 1024)
+      buf.append("<entry><title>An entry \u00e9\u4e2d\uD83D\uDE00</title>")
+         .append("<content>This is the content of the entry.\u0001</content></entry>\n");
+    byte[] doc = buf.toString().getBytes("UTF-8");
+    for (int n = 0; n < 3; n++) {
+      plain(doc, ROUNDS);
+      filtered(doc, ROUNDS);
+      legacy(doc, ROUNDS);
+    }
+    long p = plain(doc, ROUNDS);
+    long f = filtered(doc, ROUNDS);
+    long l = legacy(doc, ROUNDS);
+    double mb = doc.length / 1024d / 1024d * ROUNDS;
+    System.out.println(String.format(
+      "unfiltered %6.1f MB/s, filtered %6.1f MB/s (%.2fx slower), per character filter %6.1f MB/s (%.1fx slower)",
+      mb / (p / 1e9), mb / (f / 1e9), (double)f / p, mb / (l / 1e9), (double)l / p));
+  }
+
+  private static long drain(Reader reader) throws IOException {
+    char[] chars = new char[8192];
+    long c = 0;
+    for (int r = reader.read(chars); r != -1; r = reader.read(chars))
+      c += r;
+    return c;
+  }
+
+  private static long plain(byte[] doc, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      drain(new InputStreamReader(new ByteArrayInputStream(doc), "UTF-8"));
+    return System.nanoTime() - start;
+  }
+
+  private static long filtered(byte[] doc, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      drain(new XmlRestrictedCharReader(new ByteArrayInputStream(doc), "UTF-8"));
+    return System.nanoTime() - start;
+  }
+
+  private static long legacy(byte[] doc, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      drain(new LegacyFilteredCharReader(
+        new InputStreamReader(new ByteArrayInputStream(doc), "UTF-8"), 
+        Profile.XML1RESTRICTED));
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * The character at a time filtering as performed prior to the block 
+   * oriented FilteredCharReader
+   */
+  private static class LegacyFilteredCharReader extends FilterReader {
+    private final Profile profile;
+    LegacyFilteredCharReader(Reader in, Profile profile) {
+      super(in);
+      this.profile = profile;
+    }
+    public int read() throws IOException {
+      int c = -1;
+      while (((c = super.read()) != -1 && profile.apply(c))) {}
+      return c;
+    }
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n = off;
+      for (; n < Math.min(len, cbuf.length - off); n++) {
+        int r = read();
+        if (r != -1)
+          cbuf[n] = (char)r;
+        else
+          break;
+      }
+      n -= off;
+      return n <= 0 ? -1 : n;
+    }
+  }
+}
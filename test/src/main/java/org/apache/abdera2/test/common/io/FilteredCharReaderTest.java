@@ -3,6 +3,9 @@ package org.apache.abdera2.test.common.io;
 import static org.junit.Assert.assertEquals;
 
 import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 
 import org.apache.abdera2.common.io.FilteredCharReader;
 import org.apache.abdera2.common.text.CharUtils.Profile;
@@ -23,4 +26,62 @@ public class FilteredCharReaderTest {
     } catch (Throwable t) {}
   }
   
+  private static String read(Reader reader, int size) throws IOException {
+    StringBuilder buf = new StringBuilder();
+    char[] chars = new char[size];
+    for (int r = reader.read(chars); r != -1; r = reader.read(chars))
+      buf.append(chars, 0, r);
+    return buf.toString();
+  }
+  
+  /**
+   * Returns a single character from each read so that surrogate pairs 
+   * are split between reads
+   */
+  private static Reader trickle(String s) {
+    return new StringReader(s) {
+      public int read(char[] cbuf, int off, int len) throws IOException {
+        return super.read(cbuf, off, Math.min(len, 1));
+      }
+    };
+  }
+  
+  @Test
+  public void testSurrogates() throws Exception {
+    String s = "a\uD834\uDD1E\u0001b\uDD1Ec\uD834";
+    assertEquals("a\uD834\uDD1Ebc", 
+      read(new FilteredCharReader(new StringReader(s),Profile.XML1RESTRICTED), 4));
+    assertEquals("a\uD834\uDD1Ebc", 
+      read(new FilteredCharReader(trickle(s),Profile.XML1RESTRICTED), 1));
+    assertEquals("a\uD834\uDD1E?b?c?", 
+      read(new FilteredCharReader(trickle(s),Profile.XML1RESTRICTED,'?'), 3));
+  }
+  
+  @Test
+  public void testLargeInput() throws Exception {
+    StringBuilder in = new StringBuilder(), out = new StringBuilder();
+    for (int n = 0; n < 50000; n++) {
+      char c = (char)('a' + n % 26);
+      in.append(c);
+      out.append(c);
+      if (n % 7 == 0) {
+        in.append('\u0000');
+        out.append('_');
+      }
+      if (n % 11 == 0) {
+        in.append("\uD83D\uDE00");
+        out.append("\uD83D\uDE00");
+      }
+    }
+    FilteredCharReader reader = 
+      new FilteredCharReader(
+        new StringReader(in.toString()),
+        Profile.XML1RESTRICTED,'_');
+    assertEquals(out.toString(), read(reader, 1000));
+    reader = new FilteredCharReader(
+      new StringReader(in.toString()),
+      Profile.XML1RESTRICTED,'_');
+    assertEquals(10, reader.skip(10));
+    assertEquals(out.substring(10, 20), read(reader, 10).substring(0, 10));
+  }
 }
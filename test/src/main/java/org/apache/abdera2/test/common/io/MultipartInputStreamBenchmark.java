@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.abdera2.common.io.MultipartInputStream;
+
+/**
+ * Measures the throughput of reading a multipart body with large binary 
+ * parts through MultipartInputStream, compared with copying the same 
+ * bytes without looking for boundaries. Not run as part of the unit 
+ * tests; run the main method directly.
+ */
+public class MultipartInputStreamBenchmark {
+
+  private static final int ROUNDS = 50;
+  private static final byte[] BOUNDARY = "\r\n--MIMEBoundary_4f9a8c1d2e7b3a6f".getBytes();
+
+  public static void main(String... args) throws Exception {
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    byte[] part = new byte[1 << 20];
+    for (int n = 0; n < part.length; n++)
+      part[n] = (byte)(n * 7 + (n >> 9));
+    for (int n = 0; n < 4; n++) {
+      body.write(BOUNDARY);
+      body.write("\r\nContent-Type: image/png\r\n\r\n".getBytes());
+      body.write(part);
+    }
+    body.write(BOUNDARY);
+    body.write("--\r\n".getBytes());
+    byte[] data = body.toByteArray();
+    byte[] buf = new byte[4096];
+    for (int n = 0; n < 3; n++) {
+      multipart(data, buf, ROUNDS);
+      plain(data, buf, ROUNDS);
+    }
+    long m = multipart(data, buf, ROUNDS);
+    long p = plain(data, buf, ROUNDS);
+    System.out.println(String.format(
+      "%d byte body: MultipartInputStream %6.1f MB/s, plain copy %6.1f MB/s",
+      data.length, mb(data, m), mb(data, p)));
+  }
+
+  private static double mb(byte[] data, long nanos) {
+    return (double)data.length * ROUNDS / (1 << 20) / (nanos / 1e9);
+  }
+
+  private static long multipart(byte[] data, byte[] buf, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      MultipartInputStream in = 
+        new MultipartInputStream(new ByteArrayInputStream(data), BOUNDARY);
+      for (int p = 0; p < 6; p++)
+        while (in.read(buf) != -1);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long plain(byte[] data, byte[] buf, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      InputStream in = new ByteArrayInputStream(data);
+      while (in.read(buf) != -1);
+    }
+    return System.nanoTime() - start;
+  }
+}
@@ -1,8 +1,17 @@
 package org.apache.abdera2.test.common.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 import org.apache.abdera2.common.io.MultipartInputStream;
 import org.junit.Test;
@@ -32,5 +41,113 @@ public class MultipartInputStreamTest {
       
     } catch (Throwable t) {}
   }
-  
+
+  private static final byte[] BOUNDARY = "\r\n--boundary".getBytes();
+
+  /**
+   * Splits the data at each boundary
+   */
+  private static List<byte[]> split(byte[] data, byte[] boundary) {
+    List<byte[]> parts = new ArrayList<byte[]>();
+    int s = 0;
+    for (int i = 0; i <= data.length - boundary.length; i++) {
+      if (Arrays.equals(boundary, Arrays.copyOfRange(data, i, i + boundary.length))) {
+        parts.add(Arrays.copyOfRange(data, s, i));
+        s = i + boundary.length;
+        i = s - 1;
+      }
+    }
+    parts.add(Arrays.copyOfRange(data, s, data.length));
+    return parts;
+  }
+
+  /**
+   * Returns at most one byte per read
+   */
+  private static InputStream trickle(byte[] data) {
+    return new FilterInputStream(new ByteArrayInputStream(data)) {
+      public int read(byte[] b, int off, int len) throws IOException {
+        return super.read(b, off, Math.min(len, 1));
+      }
+    };
+  }
+
+  private static byte[] readPart(InputStream in, int chunk) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    if (chunk == 1) {
+      for (int b = in.read(); b != -1; b = in.read())
+        out.write(b);
+    } else {
+      byte[] buf = new byte[chunk];
+      for (int r = in.read(buf); r != -1; r = in.read(buf))
+        out.write(buf, 0, r);
+    }
+    return out.toByteArray();
+  }
+
+  private static void assertParts(byte[] data, boolean trickle, int chunk) throws IOException {
+    List<byte[]> expected = split(data, BOUNDARY);
+    MultipartInputStream in = new MultipartInputStream(
+      trickle ? trickle(data) : new ByteArrayInputStream(data), BOUNDARY);
+    for (byte[] part : expected)
+      assertArrayEquals(part, readPart(in, chunk));
+    assertEquals(-1, in.read());
+  }
+
+  @Test
+  public void testParts() throws Exception {
+    byte[] data = "preamble\r\n--boundary\r\nfirst\r\n--boundary\r\n--boundary\r\n--boundar\r\n--boundary--\r\n".getBytes();
+    List<byte[]> parts = split(data, BOUNDARY);
+    assertEquals(5, parts.size());
+    for (int chunk : new int[] {1, 3, 100}) {
+      assertParts(data, false, chunk);
+      assertParts(data, true, chunk);
+    }
+  }
+
+  @Test
+  public void testLargeParts() throws Exception {
+    Random random = new Random(42);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int n = 0; n < 20; n++) {
+      byte[] part = new byte[random.nextInt(20000)];
+      random.nextBytes(part);
+      out.write(part);
+      // partial boundaries that must be returned as data
+      out.write(BOUNDARY, 0, random.nextInt(BOUNDARY.length));
+      out.write(BOUNDARY);
+    }
+    byte[] data = out.toByteArray();
+    assertEquals(21, split(data, BOUNDARY).size());
+    for (int chunk : new int[] {1, 1000, 10000}) {
+      assertParts(data, false, chunk);
+      assertParts(data, true, chunk);
+    }
+  }
+
+  @Test
+  public void testGetPart() throws Exception {
+    byte[] data = "one\r\n--boundarytwo\r\n--boundarythree".getBytes();
+    MultipartInputStream in = new MultipartInputStream(new ByteArrayInputStream(data), BOUNDARY);
+    InputStream part = in.getPart();
+    assertEquals('o', part.read());
+    part.close();
+    assertEquals(-1, part.read());
+    part = in.getPart();
+    assertArrayEquals("two".getBytes(), readPart(part, 10));
+    part.close();
+    assertArrayEquals("three".getBytes(), readPart(in.getPart(), 10));
+  }
+
+  @Test
+  public void testSkip() throws Exception {
+    byte[] data = "one\r\n--boundarytwo".getBytes();
+    MultipartInputStream in = new MultipartInputStream(new ByteArrayInputStream(data), BOUNDARY);
+    assertEquals(3, in.skip(10));
+    assertEquals(0, in.skip(10));
+    assertEquals(-1, in.read());
+    assertEquals(1, in.skip(1));
+    assertArrayEquals("wo".getBytes(), readPart(in, 10));
+  }
+
 }
@@ -0,0 +1,99 @@
+package org.apache.abdera2.test.common.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.abdera2.common.io.SegmentedBuffer;
+import org.junit.Test;
+
+import com.google.common.io.ByteStreams;
+
+public class SegmentedBufferTest {
+
+  private static byte[] data(int len) {
+    byte[] data = new byte[len];
+    for (int n = 0; n < len; n++)
+      data[n] = (byte)(n * 31);
+    return data;
+  }
+
+  @Test
+  public void testWriteTo() throws Exception {
+    for (int len : new int[] {0, 1, SegmentedBuffer.SEGMENT_SIZE, 3 * SegmentedBuffer.SEGMENT_SIZE + 17}) {
+      byte[] data = data(len);
+      SegmentedBuffer buf = new SegmentedBuffer();
+      buf.write(data, 0, len / 2);
+      if (len > 0) {
+        buf.write(data[len / 2]);
+        buf.write(data, len / 2 + 1, len - len / 2 - 1);
+      }
+      assertEquals(len, buf.size());
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      buf.writeTo(out);
+      assertArrayEquals(data, out.toByteArray());
+      // the content can be read any number of times
+      assertArrayEquals(data, ByteStreams.toByteArray(buf.getInputStream()));
+      assertArrayEquals(data, ByteStreams.toByteArray(buf.getInputStream()));
+      buf.release();
+      assertEquals(0, buf.size());
+    }
+  }
+
+  @Test
+  public void testInputStream() throws Exception {
+    byte[] data = data(2 * SegmentedBuffer.SEGMENT_SIZE + 5);
+    SegmentedBuffer buf = new SegmentedBuffer();
+    buf.write(data);
+    InputStream in = buf.getInputStream();
+    assertEquals(data.length, in.available());
+    assertEquals(data[0] & 0xFF, in.read());
+    assertEquals(SegmentedBuffer.SEGMENT_SIZE, in.skip(SegmentedBuffer.SEGMENT_SIZE));
+    in.mark(0);
+    assertEquals(data[SegmentedBuffer.SEGMENT_SIZE + 1] & 0xFF, in.read());
+    in.reset();
+    byte[] rest = new byte[data.length];
+    assertEquals(data.length - SegmentedBuffer.SEGMENT_SIZE - 1, in.read(rest, 0, rest.length));
+    assertEquals(data[data.length - 1], rest[data.length - SegmentedBuffer.SEGMENT_SIZE - 2]);
+    assertEquals(-1, in.read());
+    buf.release();
+  }
+
+  @Test
+  public void testReuseAfterRelease() throws Exception {
+    SegmentedBuffer buf = new SegmentedBuffer();
+    buf.write(data(100));
+    buf.release();
+    byte[] data = data(10);
+    buf.write(data);
+    assertArrayEquals(data, ByteStreams.toByteArray(buf.getInputStream()));
+    buf.release();
+  }
+
+  @Test
+  public void testReleaseWhileReading() throws Exception {
+    byte[] data = data(SegmentedBuffer.SEGMENT_SIZE + 1);
+    SegmentedBuffer buf = new SegmentedBuffer();
+    buf.write(data);
+    InputStream in = buf.getInputStream();
+    buf.release();
+    SegmentedBuffer other = new SegmentedBuffer();
+    other.write(new byte[data.length]);
+    assertArrayEquals(data, ByteStreams.toByteArray(in));
+    in.close();
+    other.release();
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadAfterClose() throws Exception {
+    SegmentedBuffer buf = new SegmentedBuffer();
+    buf.write(data(10));
+    InputStream in = buf.getInputStream();
+    in.close();
+    in.read();
+  }
+
+}
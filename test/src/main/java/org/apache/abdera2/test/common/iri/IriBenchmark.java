@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.iri;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.abdera2.common.iri.IRI;
+import org.apache.abdera2.common.text.CharUtils.Profile;
+import org.apache.abdera2.common.text.UrlEncoding;
+
+import com.ibm.icu.text.IDNA;
+
+/**
+ * Compares the single pass IRI parser (with lazily computed ASCII forms 
+ * and with the intern cache) against the previous approach of splitting 
+ * the IRI with regular expressions, verifying each component and eagerly 
+ * computing the ASCII forms. Not run as part of the unit tests; run the 
+ * main method directly.
+ */
+public class IriBenchmark {
+
+  private static final String[] IRIS = {
+    "http://www.example.org/feed",
+    "http://www.example.org/entries/1?format=atom",
+    "tag:example.org,2011:entry/123456",
+    "urn:uuid:1225c695-cfb8-4ebb-aaaa-80da344efa6a",
+    "https://user@example.com:8443/collection/media/photo.jpg#thumb",
+    "/relative/path/entry.xml",
+    "http://b\u00FCcher.example/\u00FCber?q=\u00E9t\u00E9"
+  };
+
+  private static final int ROUNDS = 50000;
+
+  public static void main(String... args) throws Exception {
+    for (String iri : IRIS)
+      if (!new IRI(iri).toString().equals(legacy(iri)))
+        throw new IllegalStateException(iri);
+    for (int n = 0; n < 3; n++) {
+      parsed(ROUNDS);
+      interned(ROUNDS);
+      legacy(ROUNDS);
+    }
+    long p = parsed(ROUNDS);
+    long i = interned(ROUNDS);
+    long l = legacy(ROUNDS);
+    int count = ROUNDS * IRIS.length;
+    System.out.println(String.format(
+      "single pass %9.0f IRIs/s, interned %9.0f IRIs/s, regex %9.0f IRIs/s (%.1fx, %.1fx)",
+      count / (p / 1e9), count / (i / 1e9), count / (l / 1e9), 
+      (double)l / p, (double)l / i));
+  }
+
+  private static long parsed(int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String iri : IRIS)
+        new IRI(iri).toString();
+    return System.nanoTime() - start;
+  }
+
+  private static long interned(int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String iri : IRIS)
+        IRI.intern(iri).toString();
+    return System.nanoTime() - start;
+  }
+
+  private static long legacy(int rounds) throws Exception {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String iri : IRIS)
+        legacy(iri);
+    return System.nanoTime() - start;
+  }
+
+  private static final Pattern IRIPATTERN =
+    Pattern.compile("^(?:([^:/?#]+):)?(?://([^/?#]*))?([^?#]*)(?:\\?([^#]*))?(?:#(.*))?");
+
+  private static final Pattern AUTHORITYPATTERN =
+    Pattern.compile("^(?:(.*)?@)?((?:\\[.*\\])|(?:[^:]*))?(?::(\\d+))?");
+
+  /**
+   * The work performed by the IRI constructor prior to the single pass
+   * parser, followed by toString()
+   */
+  private static String legacy(String iri) throws Exception {
+    Matcher irim = IRIPATTERN.matcher(iri);
+    irim.find();
+    String scheme = irim.group(1);
+    String authority = irim.group(2);
+    String path = irim.group(3);
+    String query = irim.group(4);
+    String fragment = irim.group(5);
+    String userinfo = null, host = null;
+    if (authority != null) {
+      Matcher auth = AUTHORITYPATTERN.matcher(authority);
+      auth.find();
+      userinfo = auth.group(1);
+      host = auth.group(2);
+      if (auth.group(3) != null)
+        Integer.parseInt(auth.group(3));
+      Profile.IUSERINFO.verify(userinfo);
+      Profile.IHOST.verify(host);
+    }
+    Profile.SCHEME.verify(scheme);
+    Profile.IPATH.verify(path);
+    Profile.IQUERY.verify(query);
+    Profile.IFRAGMENT.verify(fragment);
+    if (host != null && host.length() > 0)
+      IDNA.convertIDNToASCII(host, IDNA.USE_STD3_RULES);
+    UrlEncoding.encode(fragment, Profile.FRAGMENT);
+    UrlEncoding.encode(path, Profile.PATH);
+    UrlEncoding.encode(query, Profile.QUERY, Profile.PATH);
+    UrlEncoding.encode(userinfo, Profile.USERINFO);
+    UrlEncoding.encode(authority, Profile.AUTHORITY);
+    StringBuilder buf = new StringBuilder();
+    if (scheme != null)
+      buf.append(scheme).append(':');
+    if (authority != null)
+      buf.append("//").append(authority);
+    buf.append(path);
+    if (query != null)
+      buf.append('?').append(query);
+    if (fragment != null)
+      buf.append('#').append(fragment);
+    return UrlEncoding.encode(buf.toString(), Profile.SCHEMESPECIFICPART);
+  }
+}
@@ -1,9 +1,13 @@
 package org.apache.abdera2.test.common.iri;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.apache.abdera2.common.iri.IRI;
+import org.apache.abdera2.common.iri.IRISyntaxException;
 import org.junit.Test;
 
 public class IriTest {
@@ -32,4 +36,66 @@ public class IriTest {
           .normalizeString("HTTPs://www.EXAMPLE.org:444/foo/../Bar/%3f/./foo/."));
   }
   
+  @Test
+  public void testIriComponents() {
+    IRI iri = new IRI("http://user:pass@[::1]:8080/a/b?x=1#frag");
+    assertEquals("user:pass",iri.getUserInfo());
+    assertEquals("[::1]",iri.getHost());
+    assertEquals(8080,iri.getPort());
+    assertEquals("user:pass@[::1]:8080",iri.getAuthority());
+    assertEquals("/a/b",iri.getPath());
+    assertEquals("x=1",iri.getQuery());
+    assertEquals("frag",iri.getFragment());
+    iri = new IRI("foo/bar:baz?#");
+    assertNull(iri.getScheme());
+    assertNull(iri.getAuthority());
+    assertEquals("foo/bar:baz",iri.getPath());
+    assertEquals("",iri.getQuery());
+    assertEquals("",iri.getFragment());
+    iri = new IRI("urn:isbn:0451450523");
+    assertEquals("urn",iri.getScheme());
+    assertEquals("isbn:0451450523",iri.getPath());
+    assertEquals(-1,iri.getPort());
+    iri = new IRI("http://example.org:/");
+    assertEquals("example.org",iri.getHost());
+    assertEquals(-1,iri.getPort());
+    assertEquals("/",iri.getPath());
+  }
+
+  @Test
+  public void testIriAsciiForms() {
+    IRI iri = new IRI("http://\u00FCser@b\u00FCcher.example/\u00FC?\u00FC#\u00FC");
+    assertEquals("b\u00FCcher.example",iri.getHost());
+    assertEquals("xn--bcher-kva.example",iri.getASCIIHost());
+    assertEquals("/%C3%BC",iri.getASCIIPath());
+    assertEquals(
+      "http://%C3%BCser@xn--bcher-kva.example/%C3%BC?%C3%BC#%C3%BC",
+      iri.toASCIIString());
+  }
+
+  @Test
+  public void testIriInvalidCharacters() {
+    String[] invalid = {
+      "http://example.org/a b",
+      "http://exa mple.org/",
+      "http://example.org/?a<b",
+      "http://example.org/#a#b",
+      "ht^tp://example.org/"
+    };
+    for (String s : invalid) {
+      try {
+        new IRI(s);
+        fail(s);
+      } catch (IRISyntaxException e) {}
+    }
+  }
+
+  @Test
+  public void testIriIntern() {
+    IRI iri = IRI.intern("http://example.org/foo");
+    assertSame(iri, IRI.intern("http://example.org/foo"));
+    assertEquals(new IRI("http://example.org/foo"), iri);
+    assertNull(IRI.intern(null));
+  }
+
 }
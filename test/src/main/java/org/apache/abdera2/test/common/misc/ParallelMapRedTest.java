@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.misc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.abdera2.common.misc.MapRed;
+import org.apache.abdera2.common.misc.MapRed.Collector;
+import org.apache.abdera2.common.misc.MapRed.Mapper;
+import org.apache.abdera2.common.misc.MapRed.Reducer;
+import org.apache.abdera2.common.misc.Pair;
+import org.apache.abdera2.common.misc.ParallelMapRed;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+
+public class ParallelMapRedTest {
+
+  private static final ExecutorService exec = 
+    Executors.newFixedThreadPool(4);
+  
+  @AfterClass
+  public static void tearDown() {
+    exec.shutdown();
+  }
+  
+  // input is "actor verb" strings, keyed by position
+  private static final Mapper<Integer,String,String,String> mapper = 
+    new Mapper<Integer,String,String,String>() {
+      public void map(Integer key, String val, Collector<String,String> context) {
+        String[] split = val.split(" ");
+        context.collect(split[0], split[1] + key);
+      }
+    };
+  
+  private static final Mapper<Integer,String,String,Integer> countMapper = 
+    new Mapper<Integer,String,String,Integer>() {
+      public void map(Integer key, String val, Collector<String,Integer> context) {
+        context.collect(val, 1);
+      }
+    };
+  
+  private static final Reducer<String,Integer,String,Integer> sum = 
+    new Reducer<String,Integer,String,Integer>() {
+      public void reduce(String key, Iterator<Integer> vals, Collector<String,Integer> context) {
+        int n = 0;
+        while (vals.hasNext())
+          n += vals.next();
+        context.collect(key, n);
+      }
+    };
+  
+  private static Iterable<Pair<Integer,String>> input(int size) {
+    String[] actors = {"joe","sally","bob","mary","jane","fred","al"};
+    String[] verbs = {"post","share","like","follow"};
+    List<Pair<Integer,String>> list = new ArrayList<Pair<Integer,String>>();
+    for (int n = 0; n < size; n++)
+      list.add(Pair.of(n, actors[(n * 31) % actors.length] + " " + verbs[n % verbs.length]));
+    return list;
+  }
+  
+  private static <K,V>List<String> flatten(Iterable<Pair<K,Iterable<V>>> res) {
+    List<String> list = new ArrayList<String>();
+    for (Pair<K,Iterable<V>> pair : res)
+      list.add(pair.first() + "=" + ImmutableList.copyOf(pair.second()));
+    return list;
+  }
+  
+  @Test
+  public void testSameAsSequential() {
+    Iterable<Pair<Integer,String>> input = input(10000);
+    Function<Iterable<Pair<Integer,String>>,Iterable<Pair<String,Iterable<String>>>> seq = 
+      MapRed.compose(mapper, MapRed.<String,String>identityReducer());
+    ParallelMapRed<Integer,String,String,String,String,String> par = 
+      ParallelMapRed.make(mapper, MapRed.<String,String>identityReducer())
+        .executor(exec)
+        .partitionSize(64)
+        .get();
+    assertEquals(flatten(seq.apply(input)), flatten(par.apply(input)));
+  }
+  
+  @Test
+  public void testOrderedOutput() {
+    Iterable<Pair<Integer,String>> input = input(5000);
+    Function<Iterable<Pair<Integer,String>>,Iterable<Pair<Integer,Iterable<String>>>> seq = 
+      MapRed.compose(
+        MapRed.<Integer,String>invertMapper(), 
+        MapRed.<String,Integer>invertReducer(),
+        Collections.<String>reverseOrder(),
+        Collections.<Integer>reverseOrder());
+    ParallelMapRed<Integer,String,String,Integer,Integer,String> par = 
+      ParallelMapRed.make(
+          MapRed.<Integer,String>invertMapper(), 
+          MapRed.<String,Integer>invertReducer())
+        .comparator(Collections.<String>reverseOrder())
+        .outputComparator(Collections.<Integer>reverseOrder())
+        .executor(exec)
+        .partitionSize(10)
+        .get();
+    List<String> expected = flatten(seq.apply(input));
+    assertEquals(expected, flatten(par.apply(input)));
+    assertTrue(expected.get(0).startsWith("4999="));
+  }
+  
+  @Test
+  public void testCombinerAndSpill() {
+    List<Pair<Integer,String>> input = new ArrayList<Pair<Integer,String>>();
+    for (Pair<Integer,String> pair : input(20000))
+      input.add(Pair.of(pair.first(), pair.second() + (pair.first() % 500)));
+    Function<Iterable<Pair<Integer,String>>,Iterable<Pair<String,Iterable<Integer>>>> seq = 
+      MapRed.compose(countMapper, sum);
+    List<String> expected = flatten(seq.apply(input));
+    assertEquals(3500, expected.size());
+    // combining alone keeps the buffer under budget
+    assertEquals(expected, flatten(
+      ParallelMapRed.make(countMapper, sum)
+        .combiner(sum)
+        .executor(exec)
+        .partitionSize(100)
+        .memoryBudget(5000)
+        .get()
+        .apply(input)));
+    // without a combiner every value is spilled in sorted runs
+    assertEquals(expected, flatten(
+      ParallelMapRed.make(countMapper, sum)
+        .executor(exec)
+        .partitionSize(100)
+        .memoryBudget(1000)
+        .get()
+        .apply(input)));
+    // spilled and combined
+    assertEquals(expected, flatten(
+      ParallelMapRed.make(countMapper, sum)
+        .combiner(sum)
+        .executor(exec)
+        .partitionSize(1000)
+        .memoryBudget(100)
+        .get()
+        .apply(input)));
+  }
+  
+  @Test(expected=IllegalStateException.class)
+  public void testMapperFailure() {
+    ParallelMapRed.make(
+      new Mapper<Integer,String,String,String>() {
+        public void map(Integer key, String val, Collector<String,String> context) {
+          if (key == 500) 
+            throw new IllegalStateException();
+          context.collect(val, val);
+        }
+      }, 
+      MapRed.<String,String>identityReducer())
+      .get()
+      .apply(input(1000));
+  }
+}
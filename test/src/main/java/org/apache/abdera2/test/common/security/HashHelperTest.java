@@ -0,0 +1,136 @@
+package org.apache.abdera2.test.common.security;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.abdera2.common.security.HashHelper;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.junit.Test;
+
+public class HashHelperTest {
+
+  private static final SecretKeySpec KEY = 
+    new SecretKeySpec("secret".getBytes(), "RAW");
+  
+  private static final byte[] DATA = 
+    "The quick brown fox jumps over the lazy dog".getBytes();
+  
+  private static byte[] hmac(String alg, byte[] data) throws Exception {
+    Mac mac = Mac.getInstance(alg);
+    mac.init(KEY);
+    return mac.doFinal(data);
+  }
+  
+  @Test
+  public void testHmac() throws Exception {
+    String expected = Base64.encodeBase64URLSafeString(hmac("HmacSHA256",DATA));
+    // repeated calls reuse the cached engine and must not carry state over
+    for (int n = 0; n < 3; n++)
+      assertEquals(expected, HashHelper.hmac(KEY, "HmacSHA256", DATA));
+    assertEquals(
+      Base64.encodeBase64URLSafeString(hmac("HmacSHA1",DATA)),
+      HashHelper.hmac(KEY, "HmacSHA1", DATA));
+    assertEquals(
+      Base64.encodeBase64URLSafeString(hmac("HmacSHA256","other".getBytes())),
+      HashHelper.hmac(new SecretKeySpec("secret".getBytes(), "RAW"), "HmacSHA256", "other".getBytes()));
+    assertTrue(HashHelper.hmacval(KEY, "HmacSHA256", DATA, hmac("HmacSHA256",DATA)));
+    assertFalse(HashHelper.hmacval(KEY, "HmacSHA256", DATA, hmac("HmacSHA256","x".getBytes())));
+    assertFalse(HashHelper.hmacval(KEY, "HmacSHA256", DATA, new byte[3]));
+  }
+  
+  @Test
+  public void testByteBuffer() throws Exception {
+    ByteBuffer buf = ByteBuffer.allocateDirect(DATA.length + 4);
+    buf.put(new byte[4]).put(DATA).flip();
+    buf.position(4);
+    assertEquals(HashHelper.hmac(KEY, "HmacSHA256", DATA), HashHelper.hmac(KEY, "HmacSHA256", buf));
+    assertEquals(4, buf.position());
+    assertTrue(HashHelper.hmacval(KEY, "HmacSHA256", buf, hmac("HmacSHA256",DATA)));
+    assertEquals(
+      new HashHelper.SHA256(KEY).update(DATA).get(),
+      new HashHelper.SHA256(KEY).update(ByteBuffer.wrap(DATA)).get());
+    assertEquals(
+      new HashHelper.Md5().update(DATA).get(),
+      new HashHelper.Md5().update(buf.duplicate()).get());
+  }
+  
+  @Test
+  public void testSignature() throws Exception {
+    KeyPairGenerator gen = KeyPairGenerator.getInstance("RSA");
+    gen.initialize(1024);
+    KeyPair pair = gen.generateKeyPair();
+    for (int n = 0; n < 3; n++) {
+      String sig = HashHelper.sig(pair.getPrivate(), "SHA256withRSA", DATA);
+      assertTrue(HashHelper.sigval(pair.getPublic(), "SHA256withRSA", DATA, Base64.decodeBase64(sig)));
+      assertTrue(HashHelper.sigval(pair.getPublic(), "SHA256withRSA", ByteBuffer.wrap(DATA), Base64.decodeBase64(sig)));
+      assertFalse(HashHelper.sigval(pair.getPublic(), "SHA256withRSA", "x".getBytes(), Base64.decodeBase64(sig)));
+    }
+  }
+  
+  @Test
+  public void testHashers() throws Exception {
+    // interleaved hashers on the same thread must not share state
+    HashHelper.Md5 a = new HashHelper.Md5();
+    HashHelper.Md5 b = new HashHelper.Md5();
+    a.update(DATA);
+    b.update("x".getBytes());
+    assertEquals("9e107d9d372bb6826bd81d3542a419d6", a.get());
+    assertEquals("9dd4e461268c8034f5c8564e155c67a6", b.get());
+    assertEquals("9e107d9d372bb6826bd81d3542a419d6", HashHelper.md5(DATA));
+    assertEquals(
+      Hex.encodeHexString(hmac("HmacSHA256",DATA)),
+      HashHelper.sha256(KEY, new ByteArrayInputStream(DATA)));
+  }
+  
+  @Test
+  public void testEngineCache() throws Exception {
+    final String expected = 
+      Base64.encodeBase64URLSafeString(hmac("HmacSHA256",DATA));
+    // engines are shared between threads, each borrowing its own
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int n = 0; n < 8; n++)
+        results.add(exec.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            for (int i = 0; i < 500; i++)
+              if (!expected.equals(HashHelper.hmac(KEY, "HmacSHA256", DATA)))
+                return false;
+            return true;
+          }
+        }));
+      for (Future<Boolean> result : results)
+        assertTrue(result.get());
+    } finally {
+      exec.shutdown();
+    }
+    HashHelper.clearEngineCache();
+    assertEquals(expected, HashHelper.hmac(KEY, "HmacSHA256", DATA));
+    assertEquals("9e107d9d372bb6826bd81d3542a419d6", HashHelper.md5(DATA));
+  }
+  
+  @Test
+  public void testIsEqual() {
+    assertTrue(HashHelper.isEqual(new byte[] {1,2,3}, new byte[] {1,2,3}));
+    assertFalse(HashHelper.isEqual(new byte[] {1,2,3}, new byte[] {1,2,4}));
+    assertFalse(HashHelper.isEqual(new byte[] {1,2,3}, new byte[] {1,2}));
+    assertFalse(HashHelper.isEqual(new byte[] {1,2,3}, null));
+    assertTrue(HashHelper.isEqual(null, null));
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.templates;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.abdera2.common.templates.Route;
+import org.apache.abdera2.common.templates.RouteManager;
+
+/**
+ * Compares finding the matching route and its variables for a set of 
+ * URIs by calling Route.match and Route.parse on each route in turn with
+ * a single RouteManager lookup. Not run as part of the unit tests; run 
+ * the main method directly.
+ */
+public class RouteBenchmark {
+
+  private static final int COLLECTIONS = 100;
+  private static final int ROUNDS = 200;
+  
+  public static void main(String... args) throws Exception {
+    List<Route<String>> routes = new ArrayList<Route<String>>();
+    for (int n = 0; n < COLLECTIONS; n++) {
+      routes.add(new Route<String>("feed" + n, "/c" + n + "/:feed"));
+      routes.add(new Route<String>("entry" + n, "/c" + n + "/:feed/:entry"));
+      routes.add(new Route<String>("media" + n, "/c" + n + "/:feed/:entry/media"));
+      routes.add(new Route<String>("category" + n, "/c" + n + "/:feed/-/:category"));
+    }
+    RouteManager<String> manager = 
+      RouteManager.<String>make()
+        .add(routes)
+        .get();
+    List<String> uris = new ArrayList<String>();
+    for (int n = 0; n < COLLECTIONS; n++) {
+      uris.add("/c" + n + "/feed");
+      uris.add("/c" + n + "/feed/entry-" + n);
+      uris.add("/c" + n + "/feed/entry-" + n + "/media");
+      uris.add("/c" + n + "/feed/-/cat");
+    }
+    for (int n = 0; n < 3; n++) {
+      linear(routes, uris, ROUNDS / 10);
+      trie(manager, uris, ROUNDS / 10);
+    }
+    long l = linear(routes, uris, ROUNDS);
+    long t = trie(manager, uris, ROUNDS);
+    int count = ROUNDS * uris.size();
+    System.out.println(String.format(
+      "%d routes: linear %8.0f lookups/s, RouteManager %8.0f lookups/s (%.1fx)", 
+      routes.size(), count / (l / 1e9), count / (t / 1e9), (double)l / t));
+  }
+  
+  private static long linear(List<Route<String>> routes, List<String> uris, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String uri : uris) 
+        for (Route<String> route : routes)
+          if (route.match(uri)) {
+            Map<String,String> vars = route.parse(uri);
+            if (vars.get("feed") == null)
+              throw new IllegalStateException();
+            break;
+          }
+    return System.nanoTime() - start;
+  }
+  
+  private static long trie(RouteManager<String> manager, List<String> uris, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String uri : uris) 
+        if (manager.match(uri).get("feed") == null)
+          throw new IllegalStateException();
+    return System.nanoTime() - start;
+  }
+}
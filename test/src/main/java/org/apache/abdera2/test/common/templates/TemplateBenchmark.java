@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.templates;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.abdera2.common.templates.Context;
+import org.apache.abdera2.common.templates.Expression;
+import org.apache.abdera2.common.templates.MapContext;
+import org.apache.abdera2.common.templates.Template;
+
+/**
+ * Compares compiled Template expansion with the previous approach of 
+ * rewriting the pattern with String.replaceAll once per expression, using 
+ * the level 1 to 4 examples from RFC 6570. Not run as part of the unit 
+ * tests; run the main method directly.
+ */
+public class TemplateBenchmark {
+
+  private static final String[][] LEVELS = {
+    {"{var}", "{hello}"},
+    {"{+var}", "{+hello}", "{+path}/here", "here?ref={+path}", 
+     "X{#var}", "X{#hello}"},
+    {"map?{x,y}", "{x,hello,y}", "{+x,hello,y}", "{+path,x}/here", 
+     "{#x,hello,y}", "{#path,x}/here", "X{.var}", "X{.x,y}", "{/var}", 
+     "{/var,x}/here", "{;x,y}", "{;x,y,empty}", "{?x,y}", "{?x,y,empty}", 
+     "?fixed=yes{&x}", "{&x,y,empty}"},
+    {"{var:3}", "{var:30}", "{list}", "{list*}", "{keys}", "{keys*}", 
+     "{+path:6}/here", "{+list}", "{+list*}", "{+keys}", "{+keys*}", 
+     "{#path:6}/here", "{#list}", "{#list*}", "{#keys}", "{#keys*}", 
+     "X{.var:3}", "X{.list}", "X{.list*}", "X{.keys}", "X{.keys*}", 
+     "{/var:1,var}", "{/list}", "{/list*}", "{/list*,path:4}", "{/keys}", 
+     "{/keys*}", "{;hello:5}", "{;list}", "{;list*}", "{;keys}", "{;keys*}", 
+     "{?var:3}", "{?list}", "{?list*}", "{?keys}", "{?keys*}", "{&var:3}", 
+     "{&list}", "{&list*}", "{&keys}", "{&keys*}"}
+  };
+  
+  private static final int ROUNDS = 20000;
+  
+  public static void main(String... args) throws Exception {
+    MapContext context = new MapContext();
+    context.put("var", "value");
+    context.put("hello", "Hello World!");
+    context.put("path", "/foo/bar");
+    context.put("list", Arrays.asList("red", "green", "blue"));
+    Map<String,String> keys = new LinkedHashMap<String,String>();
+    keys.put("semi", ";");
+    keys.put("dot", ".");
+    keys.put("comma", ",");
+    context.put("keys", keys);
+    context.put("x", "1024");
+    context.put("y", "768");
+    context.put("empty", "");
+    for (int l = 0; l < LEVELS.length; l++) {
+      Template[] templates = new Template[LEVELS[l].length];
+      for (int n = 0; n < templates.length; n++) {
+        templates[n] = new Template(LEVELS[l][n]);
+        if (!templates[n].expand(context).equals(legacy(templates[n], context)))
+          throw new IllegalStateException(LEVELS[l][n]);
+      }
+      for (int n = 0; n < 3; n++) {
+        compiled(templates, context, ROUNDS);
+        legacy(templates, context, ROUNDS);
+      }
+      long c = compiled(templates, context, ROUNDS);
+      long r = legacy(templates, context, ROUNDS);
+      int count = ROUNDS * templates.length;
+      System.out.println(String.format(
+        "level %d: compiled %8.0f expansions/s, replaceAll %8.0f expansions/s (%.1fx)", 
+        l + 1, count / (c / 1e9), count / (r / 1e9), (double)r / c));
+    }
+  }
+  
+  private static long compiled(Template[] templates, Context context, int rounds) {
+    StringBuilder buf = new StringBuilder();
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (Template template : templates) {
+        buf.setLength(0);
+        template.expand(context, buf);
+      }
+    return System.nanoTime() - start;
+  }
+  
+  private static long legacy(Template[] templates, Context context, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (Template template : templates)
+        legacy(template, context);
+    return System.nanoTime() - start;
+  }
+  
+  /**
+   * The expansion performed by Template.expand(Context) prior to compiling 
+   * templates into segments
+   */
+  private static String legacy(Template template, Context context) {
+    String pattern = template.toString();
+    for (Expression exp : template)
+      pattern = 
+        pattern.replaceAll(
+          "\\{" + Pattern.quote(exp.toString()) + "\\}", 
+          Matcher.quoteReplacement(exp.evaluate(context)));
+    return pattern;
+  }
+}
@@ -1,18 +1,30 @@
 package org.apache.abdera2.test.common.templates;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.abdera2.common.templates.Context;
 import org.apache.abdera2.common.templates.DefaultingContext;
+import org.apache.abdera2.common.templates.Expression;
 import org.apache.abdera2.common.templates.MapContext;
+import org.apache.abdera2.common.templates.ObjectContext;
+import org.apache.abdera2.common.templates.Operation;
 import org.apache.abdera2.common.templates.Route;
+import org.apache.abdera2.common.templates.RouteManager;
 import org.apache.abdera2.common.templates.Template;
 import org.apache.abdera2.common.anno.Name;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
+
 public class TemplateTest {
 
   private static final String template = "{scheme}://www{.host*}{/path*}{;g}{?a,b}{&c,d}{#e,f}";
@@ -81,6 +93,26 @@ public class TemplateTest {
     }
   }
   
+  private static class Bar {
+    private final int id;
+    Bar(int id) {
+      this.id = id;
+    }
+    public int getId() {
+      return id;
+    }
+  }
+  
+  @Test
+  public void objectContextReuseTest() {
+    Template t = new Template("/bar/{id}");
+    for (int n = 0; n < 3; n++) {
+      ObjectContext ctx = new ObjectContext(new Bar(n));
+      assertTrue(ctx.contains("id"));
+      assertEquals("/bar/" + n, t.expand(ctx));
+    }
+  }
+  
   @Test
   public void defaultingContextTest() {
     MapContext m1 = new MapContext();
@@ -97,6 +129,35 @@ public class TemplateTest {
     assertEquals(m1.resolve("a"),"b"); // does not change the default
   }
   
+  @Test
+  public void repeatedExpressionTest() {
+    MapContext map = new MapContext();
+    map.put("a", "x$1");
+    map.put("b", "\\y");
+    Template t = new Template("/{+a}/{a}/{+a}{?b}");
+    assertEquals(4, ImmutableList.copyOf(t).size());
+    assertEquals("/x$1/x%241/x$1?b=%5Cy", t.expand(map));
+    StringBuilder buf = new StringBuilder("<");
+    assertEquals("</x$1/x%241/x$1?b=%5Cy", t.expand(map, buf).toString());
+  }
+  
+  @Test
+  public void customOperationTest() {
+    // operations that only implement evaluate(Expression,Context) can
+    // still be used with a buffer
+    Operation upper = new Operation() {
+      private static final long serialVersionUID = 1L;
+      public String evaluate(Expression exp, Context context) {
+        return Operation.get(null).evaluate(exp, context).toUpperCase();
+      }
+    };
+    MapContext map = new MapContext();
+    map.put("a", "x");
+    StringBuilder buf = new StringBuilder("<");
+    upper.evaluate(new Expression("a"), map, buf);
+    assertEquals("<X", buf.toString());
+  }
+  
   @Test
   public void routeTest() {
     Route<String> route = new Route<String>("A","http://foo/:a/:b/:c");
@@ -105,4 +166,79 @@ public class TemplateTest {
     assertEquals(map.get("b"),"2");
     assertEquals(map.get("c"),"3");
   }
+  
+  @Test
+  public void routeManagerTest() {
+    Map<String,String> reqs = new HashMap<String,String>();
+    reqs.put("id", "\\d+");
+    RouteManager<String> routes = 
+      RouteManager.<String>make()
+        .add("feed", "/:feed")
+        .add("entry", "/:feed/:entry")
+        .add("media", "/:feed/:entry/media")
+        .add("numbered", "/:feed/:entry/:id")
+        .add(new Route<String>("comment", "/:feed/:entry/:id", null, reqs))
+        .add("service", "/service")
+        .add("file", "/files/:name.:ext")
+        .get();
+    assertEquals("service", routes.matchKey("/service"));
+    assertEquals("feed", routes.matchKey("/other"));
+    RouteManager.Match<String> match = routes.match("/foo/bar");
+    assertEquals("entry", match.getKey());
+    assertEquals("foo", match.get("feed"));
+    assertEquals("bar", match.get("entry"));
+    assertNull(match.get("id"));
+    assertEquals("media", routes.matchKey("/foo/bar/media"));
+    assertEquals("numbered", routes.matchKey("/foo/bar/baz"));
+    match = routes.match("/files/a.b-c.txt");
+    assertEquals("a.b-c", match.get("name"));
+    assertEquals("txt", match.get("ext"));
+    assertNull(routes.match("/foo/bar/baz/qux"));
+    assertNull(routes.match("/foo?x=y"));
+    assertNull(routes.match("//"));
+    
+    // the requirement only lets the comment route match numeric ids
+    RouteManager<String> comments = 
+      RouteManager.<String>make()
+        .add(new Route<String>("comment", "/:feed/:entry/:id", null, reqs))
+        .add("numbered", "/:feed/:entry/:id")
+        .get();
+    assertEquals("comment", comments.matchKey("/a/b/123"));
+    assertEquals("numbered", comments.matchKey("/a/b/c"));
+    
+    // agrees with Route.match and Route.parse
+    for (String uri : new String[] {"/a", "/a/b", "/files/x.y", "/files/x", "/a/b/media", "/a/b/c/"}) {
+      match = routes.match(uri);
+      for (Route<String> route : routes) {
+        if (route.match(uri)) {
+          assertNotNull(uri, match);
+          if (route == match.getRoute())
+            assertEquals(route.parse(uri), match.getVariables());
+        }
+      }
+      if (match != null) 
+        assertTrue(match.getRoute().match(uri));
+    }
+    
+    // requirements apply to the greedy parse, so /x.y.z does not match
+    // even though a=x, b=y.z would satisfy the requirement
+    Map<String,String> word = new HashMap<String,String>();
+    word.put("a", "\\w+");
+    Route<String> dotted = new Route<String>("dotted", "/:a.:b", null, word);
+    Route<String> repeated = new Route<String>("repeated", "/r/:a/:a");
+    RouteManager<String> odd = 
+      RouteManager.<String>make()
+        .add(dotted)
+        .add(repeated)
+        .get();
+    for (String uri : new String[] {"/x.y.z", "/x.y", "/r/x/y", "/r/x/", "/r/x/x"}) {
+      Route<String> expected = 
+        dotted.match(uri) ? dotted : 
+        repeated.match(uri) ? repeated : null;
+      match = odd.match(uri);
+      assertEquals(uri, expected, match != null ? match.getRoute() : null);
+    }
+    assertFalse(dotted.match("/x.y.z"));
+    assertTrue(dotted.match("/x.y"));
+  }
 }
@@ -7,7 +7,9 @@ import org.apache.abdera2.common.text.InvalidCharacterException;
 import org.junit.Test;
 
 import static junit.framework.Assert.assertTrue;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 public class CharUtilsTest {
 
@@ -46,4 +48,47 @@ public class CharUtilsTest {
   public void verifyFailureTest() {
     Profile.ALPHANUM.verify("test1,");
   }
+  
+  @Test
+  public void compiledMatcherTest() {
+    CodepointMatcher[] matchers = {
+      CodepointMatchers.isIPath().negate(),
+      CodepointMatchers.isIQuery().negate(),
+      CodepointMatchers.isIHost().negate(),
+      CodepointMatchers.isToken(),
+      CodepointMatcher.and(
+        CodepointMatchers.isIUnreserved().negate(),
+        CodepointMatchers.isReserved().negate(),
+        CodepointMatchers.isIPrivate().negate()),
+      CodepointMatcher.notInRange(0x20, 0x7E),
+      CodepointMatcher.MATCH_ALL,
+      CodepointMatcher.MATCH_NONE
+    };
+    for (CodepointMatcher matcher : matchers) {
+      CodepointMatcher compiled = matcher.compile();
+      assertTrue(compiled != matcher);
+      for (int cp = -1; cp <= 0x110000; cp++)
+        assertEquals(matcher.apply(cp), compiled.apply(cp));
+      assertEquals(matcher.apply(Integer.MIN_VALUE), compiled.apply(Integer.MIN_VALUE));
+      assertEquals(matcher.apply(Integer.MAX_VALUE), compiled.apply(Integer.MAX_VALUE));
+    }
+  }
+  
+  @Test
+  public void compiledScanTest() {
+    CodepointMatcher cm = CodepointMatchers.isAlpha().compile();
+    String s = "ab1\uD834\uDD1Ec";
+    assertEquals(2, cm.indexNotIn(s, 0, s.length()));
+    assertEquals(3, cm.indexNotIn(s, 3, s.length()));
+    assertEquals(5, cm.indexIn(s, 2, s.length()));
+    assertEquals(-1, cm.indexIn(s, 2, 5));
+    assertFalse(cm.all(s));
+    assertTrue(cm.any(s));
+    try {
+      cm.verify(s.substring(3));
+      fail();
+    } catch (InvalidCharacterException e) {
+      assertTrue(e.getMessage().contains("1d11e"));
+    }
+  }
 }
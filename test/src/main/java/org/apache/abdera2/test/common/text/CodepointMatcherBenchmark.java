@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.common.text;
+
+import org.apache.abdera2.common.text.CharUtils.Profile;
+import org.apache.abdera2.common.text.CodepointIterator;
+import org.apache.abdera2.common.text.CodepointMatcher;
+import org.apache.abdera2.common.text.CodepointMatchers;
+
+/**
+ * Compares verification of IRI components using the compiled Profile 
+ * matchers against the equivalent uncompiled composite matchers driven
+ * by a CodepointIterator, as Profile.verify did previously. Not run as 
+ * part of the unit tests; run the main method directly.
+ */
+public class CodepointMatcherBenchmark {
+
+  private static final String[] PATHS = {
+    "/feeds/entries/2011/12/31/an-entry-with-a-fairly-long-slug",
+    "/collection/media/photo.jpg",
+    "/b\u00FCcher/\u00FCber/caf\u00E9"
+  };
+  
+  private static final String[] QUERIES = {
+    "q=abdera&start-index=10&max-results=25",
+    "format=atom;v=2&x=%20y"
+  };
+  
+  private static final String[] HOSTS = {
+    "www.example.org", "b\u00FCcher.example", "[2001:db8::7]"
+  };
+  
+  private static final int ROUNDS = 200000;
+  
+  public static void main(String... args) {
+    run("ipath", Profile.IPATH, CodepointMatchers.isIPath().negate(), PATHS);
+    run("iquery", Profile.IQUERY, CodepointMatchers.isIQuery().negate(), QUERIES);
+    run("ihost", Profile.IHOST, CodepointMatchers.isIHost().negate(), HOSTS);
+  }
+  
+  private static void run(
+    String name, 
+    Profile profile, 
+    CodepointMatcher composite, 
+    String[] input) {
+    for (int n = 0; n < 3; n++) {
+      compiled(profile, input, ROUNDS);
+      composite(composite, input, ROUNDS);
+    }
+    long c = compiled(profile, input, ROUNDS);
+    long l = composite(composite, input, ROUNDS);
+    int count = ROUNDS * input.length;
+    System.out.println(String.format(
+      "%-7s compiled %10.0f verifies/s, composite %10.0f verifies/s (%.1fx)",
+      name, count / (c / 1e9), count / (l / 1e9), (double)l / c));
+  }
+  
+  private static long compiled(Profile profile, String[] input, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String s : input)
+        profile.verify(s);
+    return System.nanoTime() - start;
+  }
+  
+  private static long composite(CodepointMatcher matcher, String[] input, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      for (String s : input)
+        matcher.verifyNot(CodepointIterator.getInstance(s));
+    return System.nanoTime() - start;
+  }
+}
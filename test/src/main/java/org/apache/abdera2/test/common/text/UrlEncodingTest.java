@@ -0,0 +1,52 @@
+package org.apache.abdera2.test.common.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.apache.abdera2.common.text.CharUtils.Profile;
+import org.apache.abdera2.common.text.UrlEncoding;
+import org.junit.Test;
+
+public class UrlEncodingTest {
+
+  @Test
+  public void encodeTest() throws Exception {
+    assertEquals("a%20b%2Fc", UrlEncoding.encode("a b/c", Profile.UNRESERVED));
+    assertEquals("%C3%BC%E2%82%AC%F0%9D%84%9E", 
+      UrlEncoding.encode("\u00FC\u20AC\uD834\uDD1E", Profile.UNRESERVED));
+    assertEquals("\u00FC%20", UrlEncoding.encode("\u00FC ", Profile.IUNRESERVED));
+    assertEquals("%FC%3F", UrlEncoding.encode("\u00FC\u20AC", "ISO-8859-1", Profile.UNRESERVED));
+    assertEquals("a b", UrlEncoding.encode("a b", Profile.NONE));
+    assertEquals("%61%20%62", UrlEncoding.encode("a b"));
+    String s = "/already/safe";
+    assertSame(s, UrlEncoding.encode(s, Profile.PATH));
+  }
+  
+  @Test
+  public void encodeAppendableTest() throws Exception {
+    StringBuilder buf = new StringBuilder("x=");
+    UrlEncoding.encodeTo(buf, "\u00FC&y", Profile.UNRESERVED);
+    assertEquals("x=%C3%BC%26y", buf.toString());
+    buf.setLength(0);
+    UrlEncoding.encodeTo(buf, "[a b]", 1, 4, "UTF-8", Profile.UNRESERVED);
+    assertEquals("a%20b", buf.toString());
+  }
+  
+  @Test
+  public void decodeTest() throws Exception {
+    assertEquals("a b/c", UrlEncoding.decode("a%20b%2Fc"));
+    assertEquals("\u00FC\u20AC\uD834\uDD1E", 
+      UrlEncoding.decode("%C3%BC%E2%82%AC%F0%9D%84%9E"));
+    assertEquals("\u00FC", UrlEncoding.decode("%FC", "ISO-8859-1"));
+    assertEquals("100%", UrlEncoding.decode("100%"));
+    StringBuilder buf = new StringBuilder();
+    UrlEncoding.decodeTo(buf, "caf%C3%A9 %3D");
+    assertEquals("caf\u00E9 =", buf.toString());
+    for (int n = 0; n < 300; n++)
+      buf.append("%E2%82%AC");
+    String decoded = UrlEncoding.decode(buf.toString());
+    assertEquals(300, decoded.length() - "caf\u00E9 =".length());
+    assertEquals('\u20AC', decoded.charAt(decoded.length() - 1));
+  }
+  
+}
@@ -0,0 +1,63 @@
+package org.apache.abdera2.test.common.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+
+import org.apache.abdera2.common.xml.XMLStreamSniffingInputStream;
+import org.apache.abdera2.common.xml.XmlDeclarationSniffer;
+import org.junit.Test;
+
+public class XmlDeclarationSnifferTest {
+
+  private static String encoding(String xml, String charset) throws Exception {
+    byte[] b = xml.getBytes(charset);
+    return XmlDeclarationSniffer.getEncoding(b, 0, b.length);
+  }
+  
+  @Test
+  public void testEncodingFamilies() throws Exception {
+    String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a/>";
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-8"));
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-16BE"));
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-16LE"));
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-32BE"));
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-32LE"));
+    assertEquals("ISO-8859-1", encoding(xml, "IBM037"));
+    assertEquals("ISO-8859-1", encoding(xml, "IBM500"));
+    // java's UTF-16 encoder writes a big endian byte order mark
+    assertEquals("ISO-8859-1", encoding(xml, "UTF-16"));
+  }
+  
+  @Test
+  public void testDeclarations() throws Exception {
+    assertEquals("utf-8", encoding("<?xml version='1.0' encoding='utf-8'?>", "UTF-8"));
+    assertEquals("UTF-8", encoding("<?xml\tversion = \"1.0\"\n encoding =\r\n\"UTF-8\" standalone=\"yes\"?>", "UTF-8"));
+    assertEquals("1.1", XmlDeclarationSniffer.getVersion("<?xml version=\"1.1\"?>".getBytes("UTF-8"), 0, 21));
+    assertNull(encoding("<?xml version=\"1.0\"?><a encoding=\"UTF-8\"/>", "UTF-8"));
+    assertNull(encoding("<a/>", "UTF-8"));
+    assertNull(encoding("<?xml-stylesheet href=\"a.xsl\"?>", "UTF-8"));
+    assertNull(encoding("<?xml version=\"1.0\" encoding=\"UTF", "UTF-8"));
+    assertNull(encoding("<?xml version=\"1.0\"encoding=\"UTF-8\"?>", "UTF-8"));
+    assertNull(encoding("", "UTF-8"));
+  }
+  
+  @Test
+  public void testSniffingInputStream() throws Exception {
+    String xml = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a>\u00e9</a>";
+    XMLStreamSniffingInputStream in = 
+      new XMLStreamSniffingInputStream(
+        new ByteArrayInputStream(xml.getBytes("ISO-8859-1")));
+    assertEquals("ISO-8859-1", in.getEncoding());
+    StringBuilder buf = new StringBuilder();
+    InputStreamReader reader = new InputStreamReader(in, in.getEncoding());
+    for (int c = reader.read(); c != -1; c = reader.read())
+      buf.append((char)c);
+    assertEquals(xml, buf.toString());
+    in = new XMLStreamSniffingInputStream(
+      new ByteArrayInputStream("<a/>".getBytes("UTF-8")));
+    assertNull(in.getEncoding());
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.factory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Element;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.ParserOptions;
+import org.apache.abdera2.parser.axiom.FOMBuilder;
+import org.apache.abdera2.parser.axiom.FOMFactory;
+import org.apache.axiom.om.OMContainer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMXMLParserWrapper;
+
+/**
+ * Compares the cost of fully parsing the sample feeds when the core
+ * elements are created through the direct ElementCreators against the
+ * reflective Constructor.newInstance approach FOMFactory used before.
+ * Not run as part of the unit tests; run the main method directly.
+ */
+public class FOMFactoryBenchmark {
+
+  private static final String[] SAMPLES = {
+    "/feed.xml", "/complete.xml", "/simpleFeed.xml",
+    "/www.snellspace.com/public/linktests.xml",
+    "/www.snellspace.com/public/ordertest.xml",
+    "/www.snellspace.com/public/xmlbase.xml",
+    "/www.snellspace.com/public/contentsummary.xml"
+  };
+  
+  private static final QName[] REFLECTED = {
+    Constants.FEED, Constants.ENTRY, Constants.ID, Constants.LINK,
+    Constants.UPDATED, Constants.PUBLISHED, Constants.AUTHOR, 
+    Constants.CONTRIBUTOR, Constants.NAME, Constants.EMAIL, Constants.URI,
+    Constants.CATEGORY, Constants.GENERATOR, Constants.ICON, Constants.LOGO
+  };
+  
+  public static void main(String... args) throws Exception {
+    Abdera abdera = Abdera.getInstance();
+    Parser parser = abdera.getParser();
+    List<byte[]> docs = new ArrayList<byte[]>();
+    for (String sample : SAMPLES)
+      docs.add(read(FOMFactoryBenchmark.class.getResourceAsStream(sample)));
+    docs.add(entryHeavyFeed(2000));
+    
+    FOMFactory direct = new FOMFactory(abdera);
+    FOMFactory reflective = new FOMFactory(abdera);
+    for (QName qname : REFLECTED)
+      reflective.registerCreator(qname, new ReflectiveCreator(qname));
+    ParserOptions directOptions = parser.makeDefaultParserOptions().factory(direct).get();
+    ParserOptions reflectiveOptions = parser.makeDefaultParserOptions().factory(reflective).get();
+    
+    int iterations = 200;
+    for (int round = 0; round < 3; round++) {
+      long r = run(parser, docs, reflectiveOptions, iterations);
+      long d = run(parser, docs, directOptions, iterations);
+      System.out.println(String.format(
+        "round %d: reflective %6d ms, direct %6d ms (%.1f%%)", 
+        round, r, d, 100.0 * (r - d) / r));
+    }
+  }
+  
+  private static long run(Parser parser, List<byte[]> docs, ParserOptions options, int iterations) {
+    long start = System.nanoTime();
+    for (int n = 0; n < iterations; n++) {
+      for (byte[] doc : docs) {
+        Document<Element> d = parser.parse(new ByteArrayInputStream(doc), options);
+        d.complete();
+      }
+    }
+    return (System.nanoTime() - start) / 1000000;
+  }
+  
+  private static byte[] entryHeavyFeed(int entries) {
+    StringBuilder buf = new StringBuilder();
+    buf.append("<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id><title>Entries</title>");
+    for (int n = 0; n < entries; n++) {
+      buf.append("<entry><id>urn:entry:").append(n).append("</id><title>Entry</title>")
+         .append("<updated>2011-01-01T00:00:00Z</updated><author><name>James</name></author>")
+         .append("<link href='http://example.org/").append(n).append("'/>")
+         .append("<category term='a'/><summary>Summary</summary></entry>");
+    }
+    buf.append("</feed>");
+    return buf.toString().getBytes();
+  }
+  
+  private static byte[] read(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int r;
+    while ((r = in.read(buf)) > -1)
+      out.write(buf, 0, r);
+    in.close();
+    return out.toByteArray();
+  }
+  
+  /**
+   * Mimics the previous FOMFactory behavior by looking up and invoking
+   * the implementation class constructors reflectively
+   */
+  private static class ReflectiveCreator implements FOMFactory.ElementCreator {
+    private final Constructor<?> con;
+    private final Constructor<?> con2;
+    ReflectiveCreator(QName qname) throws Exception {
+      OMElement element = (OMElement)new FOMFactory().newElement(qname);
+      Class<?> _class = element.getClass();
+      con = _class.getConstructor(String.class, OMNamespace.class, OMContainer.class, OMFactory.class);
+      con2 = _class.getConstructor(QName.class, OMContainer.class, OMFactory.class, OMXMLParserWrapper.class);
+    }
+    public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+      try {
+        return (OMElement)con.newInstance(qname.getLocalPart(), namespace, parent, factory);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+    public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+      try {
+        return (OMElement)con2.newInstance(qname, parent, factory, builder);
+      } catch (Exception e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
@@ -1,6 +1,12 @@
 package org.apache.abdera2.test.factory;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Collections;
 
 import javax.xml.namespace.QName;
 
@@ -16,7 +22,18 @@ import org.apache.abdera2.ext.thread.Total;
 import org.apache.abdera2.factory.AbstractExtensionFactory;
 import org.apache.abdera2.factory.AbstractExtensionFactory.Impls;
 import org.apache.abdera2.factory.AbstractExtensionFactory.Impl;
+import org.apache.abdera2.factory.ExtensionFactory;
+import org.apache.abdera2.factory.ExtensionFactoryMap;
 import org.apache.abdera2.factory.Factory;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.axiom.FOMBuilder;
+import org.apache.abdera2.parser.axiom.FOMExtensibleElement;
+import org.apache.abdera2.parser.axiom.FOMFactory;
+import org.apache.axiom.om.OMContainer;
+import org.apache.axiom.om.OMElement;
+import org.apache.axiom.om.OMFactory;
+import org.apache.axiom.om.OMNamespace;
+import org.apache.axiom.om.OMXMLParserWrapper;
 import org.junit.Test;
 
 public class FactoryTest {
@@ -81,6 +98,54 @@ public class FactoryTest {
     assertNotNull(te);
   }
   
+  @Test
+  public void extensionFactoryMapTest() {
+    ExtensionFactoryMap map = 
+      new ExtensionFactoryMap(Collections.<ExtensionFactory>emptySet());
+    Element el = new FOMExtensibleElement(new QName("b","a"));
+    assertFalse(map.handlesNamespace("b"));
+    assertSame(el, map.getElementWrapper(el));
+    map.addFactory(new TestExtensionFactory());
+    assertTrue(map.handlesNamespace("b"));
+    assertTrue(map.handlesNamespace("foo"));
+    assertTrue(map.getElementWrapper(el) instanceof TestExtension);
+    Element other = new FOMExtensibleElement(new QName("b","c"));
+    assertSame(other, map.getElementWrapper(other));
+    assertSame(other, map.getElementWrapper(other));
+  }
+  
+  @Test
+  public void elementCreatorTest() {
+    Abdera abdera = Abdera.getInstance();
+    FOMFactory factory = new FOMFactory(abdera);
+    QName qname = new QName("urn:test","custom");
+    factory.registerCreator(qname, new FOMFactory.ElementCreator() {
+      public OMElement create(QName qname, OMNamespace namespace, OMContainer parent, FOMFactory factory, Object objecttype) {
+        return new CustomElement(qname, parent, factory);
+      }
+      public OMElement create(QName qname, OMContainer parent, FOMFactory factory, FOMBuilder builder) {
+        return new CustomElement(qname, parent, factory, builder);
+      }
+    });
+    assertTrue(factory.newExtensionElement(qname) instanceof CustomElement);
+    
+    Parser parser = abdera.getParser();
+    Entry entry = parser.<Entry>parse(
+      new StringReader("<entry xmlns='http://www.w3.org/2005/Atom'><c:custom xmlns:c='urn:test'/></entry>"),
+      parser.makeDefaultParserOptions().factory(factory).get()).getRoot();
+    assertTrue(entry.getExtension(qname) instanceof CustomElement);
+  }
+  
+  public static class CustomElement extends FOMExtensibleElement {
+    private static final long serialVersionUID = 1L;
+    public CustomElement(QName qname, OMContainer parent, OMFactory factory) {
+      super(qname, parent, factory);
+    }
+    public CustomElement(QName qname, OMContainer parent, OMFactory factory, OMXMLParserWrapper builder) {
+      super(qname, parent, factory, builder);
+    }
+  }
+  
   @Namespace({"foo","b"})
   @Impls(@Impl(TestExtension.class))
   public static class TestExtensionFactory extends AbstractExtensionFactory {}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.parser;
+
+import java.io.StringReader;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.ParserOptions;
+import org.apache.abdera2.parser.filter.WhiteListParseFilter;
+
+/**
+ * Compares the time taken for a full parse of a synthetic feed against a
+ * parse that uses a white list filter to keep only the id, updated and
+ * link elements of each entry. Not run as part of the unit tests; run 
+ * the main method directly.
+ */
+public class ParseFilterBenchmark {
+
+  private static final int ENTRIES = 2000;
+  private static final int ROUNDS = 20;
+  
+  public static void main(String... args) throws Exception {
+    Parser parser = Abdera.getInstance().getParser();
+    String feed = feed(ENTRIES);
+    ParserOptions full = parser.getDefaultParserOptions();
+    ParserOptions filtered = 
+      parser.makeDefaultParserOptions()
+        .filter(WhiteListParseFilter.make()
+          .add(Constants.FEED)
+          .add(Constants.ENTRY)
+          .add(Constants.ID)
+          .add(Constants.UPDATED)
+          .add(Constants.LINK)
+          .get())
+        .get();
+    for (int n = 0; n < 3; n++) {
+      run(parser, feed, full, ROUNDS);
+      run(parser, feed, filtered, ROUNDS);
+    }
+    long f = run(parser, feed, full, ROUNDS);
+    long w = run(parser, feed, filtered, ROUNDS);
+    System.out.println(String.format(
+      "%d entries: full parse %6.2f ms, filtered parse %6.2f ms (%.1fx)", 
+      ENTRIES, f / 1e6 / ROUNDS, w / 1e6 / ROUNDS, (double)f / w));
+  }
+  
+  private static long run(Parser parser, String feed, ParserOptions options, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      Document<Feed> doc = parser.parse(new StringReader(feed), options);
+      for (Entry entry : doc.getRoot().getEntries())
+        entry.getId();
+    }
+    return System.nanoTime() - start;
+  }
+  
+  private static String feed(int size) {
+    StringBuilder buf = new StringBuilder(
+      "<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id><title>Benchmark</title>" +
+      "<updated>2011-01-01T00:00:00Z</updated>\n");
+    for (int n = 0; n < size; n++) {
+      buf.append("<entry><id>urn:entry:").append(n).append("</id>")
+         .append("<title type='html'>Entry ").append(n).append("</title>")
+         .append("<updated>2011-01-01T00:00:00Z</updated>")
+         .append("<author><name>Author ").append(n).append("</name>")
+         .append("<uri>http://example.org/people/").append(n).append("</uri></author>")
+         .append("<category term='a'/><category term='b'/><category term='c'/>")
+         .append("<link href='http://example.org/").append(n).append("'/>")
+         .append("<summary>Lorem ipsum dolor sit amet, consectetur adipiscing elit</summary>")
+         .append("<content type='xhtml'><div xmlns='http://www.w3.org/1999/xhtml'>");
+      for (int p = 0; p < 5; p++)
+        buf.append("<p>Paragraph <b>").append(p).append("</b> with <a href='#'>a link</a> and <i>more</i> text.</p>");
+      buf.append("</div></content></entry>\n");
+    }
+    return buf.append("</feed>").toString();
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Element;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.ParserOptions;
+import org.apache.abdera2.parser.filter.BlackListParseFilter;
+import org.apache.abdera2.parser.filter.CompoundParseFilter;
+import org.apache.abdera2.parser.filter.ParseFilter;
+import org.apache.abdera2.parser.filter.ParseFilterPlan;
+import org.apache.abdera2.parser.filter.SafeContentWhiteListParseFilter;
+import org.apache.abdera2.parser.filter.WhiteListParseFilter;
+import org.junit.Test;
+
+public class ParseFilterTest {
+
+  private static final QName A = new QName("a");
+  private static final QName B = new QName("b");
+  private static final QName C = new QName("c");
+  private static final QName X = new QName("x");
+  
+  @Test
+  public void testPlanMatchesFilter() {
+    ParseFilter white = WhiteListParseFilter.make().listAttributesExplicitly().add(A).add(B).add(A,X).get();
+    ParseFilter black = BlackListParseFilter.make().add(B).add(C,X).get();
+    ParseFilter[] filters = {
+      white,
+      black,
+      CompoundParseFilter.acceptableToAll(white,black),
+      CompoundParseFilter.acceptableToAny(white,black),
+      CompoundParseFilter.unacceptableToAll(white,black),
+      CompoundParseFilter.unacceptableToAny(white,black),
+      SafeContentWhiteListParseFilter.make().get()
+    };
+    QName[] names = {A, B, C, X};
+    for (ParseFilter filter : filters) {
+      ParseFilterPlan plan = ParseFilterPlan.compile(filter);
+      for (QName name : names) {
+        assertEquals(filter.acceptable(name), plan.acceptable(name));
+        for (QName attr : names)
+          assertEquals(filter.acceptable(name, attr), plan.acceptable(name, attr));
+      }
+    }
+    assertTrue(ParseFilterPlan.compile(null).isAcceptAll());
+    assertTrue(ParseFilterPlan.compile(BlackListParseFilter.make().get()).isAcceptAll());
+    assertFalse(ParseFilterPlan.compile(white).isAcceptAll());
+  }
+  
+  @Test
+  public void testDeeplyNestedSkip() {
+    int depth = 100000;
+    StringBuilder buf = new StringBuilder("<a>");
+    for (int n = 0; n < depth; n++)
+      buf.append("<b>");
+    for (int n = 0; n < depth; n++)
+      buf.append("</b>");
+    buf.append("<c/></a>");
+    Parser parser = Abdera.getInstance().getParser();
+    ParserOptions options = 
+      parser.makeDefaultParserOptions()
+        .filter(BlackListParseFilter.make().add(B).get())
+        .get();
+    Document<Element> doc = parser.parse(new StringReader(buf.toString()), options);
+    Element root = doc.getRoot();
+    Element c = root.getFirstChild();
+    assertNotNull(c);
+    assertEquals(C, c.getQName());
+    assertNull(c.getNextSibling());
+  }
+  
+  @Test
+  public void testFilteredFeed() {
+    String feed = 
+      "<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id><title>Filtered</title>" +
+      "<entry><id>urn:1</id><updated>2011-01-01T00:00:00Z</updated>" +
+      "<author><name>James</name><email>james@example.org</email></author>" +
+      "<content type='xhtml'><div xmlns='http://www.w3.org/1999/xhtml'><p><b>bold</b></p></div></content>" +
+      "<link href='http://example.org/1'/></entry></feed>";
+    Parser parser = Abdera.getInstance().getParser();
+    ParserOptions options = 
+      parser.makeDefaultParserOptions()
+        .filter(WhiteListParseFilter.make()
+          .add(Constants.FEED)
+          .add(Constants.ENTRY)
+          .add(Constants.ID)
+          .add(Constants.UPDATED)
+          .add(Constants.LINK)
+          .get())
+        .get();
+    Document<Feed> doc = parser.parse(new StringReader(feed), options);
+    Entry entry = doc.getRoot().getEntries().get(0);
+    assertNull(doc.getRoot().getTitle());
+    assertEquals("urn:1", entry.getId().toString());
+    assertNotNull(entry.getUpdated());
+    assertEquals("http://example.org/1", entry.getAlternateLink().getHref().toString());
+    assertNull(entry.getAuthor());
+    assertNull(entry.getContentElement());
+  }
+  
+  @Test
+  public void testRejectedSubtreeNotVisited() {
+    final List<QName> seen = new ArrayList<QName>();
+    ParseFilter filter = new ParseFilter() {
+      private static final long serialVersionUID = 1L;
+      public Object clone() {
+        return this;
+      }
+      public boolean acceptable(QName qname) {
+        seen.add(qname);
+        return !qname.equals(B);
+      }
+      public boolean acceptable(QName qname, QName attribute) {
+        return true;
+      }
+      public boolean getIgnoreComments() {
+        return false;
+      }
+      public boolean getIgnoreWhitespace() {
+        return false;
+      }
+      public boolean getIgnoreProcessingInstructions() {
+        return false;
+      }
+    };
+    Parser parser = Abdera.getInstance().getParser();
+    ParserOptions options = 
+      parser.makeDefaultParserOptions()
+        .filter(filter)
+        .get();
+    Document<Element> doc = parser.parse(new StringReader("<a><b><c/><c/></b><c/></a>"), options);
+    doc.getRoot().complete();
+    assertEquals(3, seen.size());
+    assertEquals(A, seen.get(0));
+    assertEquals(B, seen.get(1));
+    assertEquals(C, seen.get(2));
+  }
+}
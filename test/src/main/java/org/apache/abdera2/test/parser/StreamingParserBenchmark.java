@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.parser;
+
+import java.io.Reader;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.parser.EntryStream;
+import org.apache.abdera2.parser.Parser;
+
+/**
+ * Compares the retained heap of a full parse against Parser.stream(...)
+ * for synthetic feeds of increasing size. With streaming, the retained
+ * heap stays flat regardless of the number of entries. Not run as part
+ * of the unit tests; run the main method directly, e.g. with -Xmx512m.
+ */
+public class StreamingParserBenchmark {
+
+  public static void main(String... args) throws Exception {
+    Parser parser = Abdera.getInstance().getParser();
+    int[] sizes = {1000, 10000, 50000};
+    for (int size : sizes) {
+      long full = full(parser, size);
+      long streamed = streamed(parser, size);
+      System.out.println(String.format(
+        "%6d entries: full parse retains %8d KB, stream retains %6d KB", 
+        size, full / 1024, streamed / 1024));
+    }
+  }
+  
+  private static long full(Parser parser, int size) {
+    long base = used();
+    Document<Feed> doc = parser.parse(new FeedReader(size));
+    long peak = 0;
+    int n = 0;
+    for (Entry entry : doc.getRoot().getEntries()) {
+      entry.getId();
+      if (++n % (size / 4) == 0) 
+        peak = Math.max(peak, used() - base);
+    }
+    return peak;
+  }
+  
+  private static long streamed(Parser parser, int size) {
+    long base = used();
+    EntryStream stream = parser.stream(new FeedReader(size));
+    long peak = 0;
+    int n = 0;
+    for (Entry entry : stream) {
+      entry.getId();
+      if (++n % (size / 4) == 0) 
+        peak = Math.max(peak, used() - base);
+    }
+    stream.close();
+    return peak;
+  }
+  
+  private static long used() {
+    Runtime rt = Runtime.getRuntime();
+    for (int n = 0; n < 3; n++) 
+      System.gc();
+    return rt.totalMemory() - rt.freeMemory();
+  }
+  
+  /**
+   * Generates an Atom feed with the given number of entries without 
+   * holding the serialized document in memory
+   */
+  static class FeedReader extends Reader {
+    private final int size;
+    private int count = -1;
+    private String chunk = 
+      "<feed xmlns='http://www.w3.org/2005/Atom'><id>urn:feed</id><title>Benchmark</title>" +
+      "<updated>2011-01-01T00:00:00Z</updated>\n";
+    private int pos = 0;
+    
+    FeedReader(int size) {
+      this.size = size;
+    }
+    
+    private boolean fill() {
+      if (pos < chunk.length()) return true;
+      if (count == size) return false;
+      count++;
+      pos = 0;
+      chunk = count < size ?
+        "<entry><id>urn:entry:" + count + "</id><title>Entry " + count + "</title>" +
+        "<updated>2011-01-01T00:00:00Z</updated><link href='http://example.org/" + count + "'/>" +
+        "<summary>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod</summary>" +
+        "</entry>\n" :
+        "</feed>";
+      return true;
+    }
+    
+    public int read(char[] cbuf, int off, int len) {
+      if (!fill()) return -1;
+      int r = Math.min(len, chunk.length() - pos);
+      chunk.getChars(pos, pos + r, cbuf, off);
+      pos += r;
+      return r;
+    }
+    
+    public void close() {}
+  }
+}
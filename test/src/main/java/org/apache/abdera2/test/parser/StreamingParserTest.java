@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.common.Constants;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.apache.abdera2.parser.EntryStream;
+import org.apache.abdera2.parser.ParseException;
+import org.apache.abdera2.parser.Parser;
+import org.apache.abdera2.parser.ParserOptions;
+import org.apache.abdera2.parser.filter.BlackListParseFilter;
+import org.junit.Test;
+
+public class StreamingParserTest {
+
+  private static final String FEED = 
+    "<feed xmlns='http://www.w3.org/2005/Atom' xml:base='http://example.org/'>\n" +
+    "  <id>urn:feed</id>\n" +
+    "  <title>Streaming</title>\n" +
+    "  <entry><id>urn:1</id><link href='one'/><summary>a</summary></entry>\n" +
+    "  <entry><id>urn:2</id><link href='two'/><summary>b</summary></entry>\n" +
+    "  <entry><id>urn:3</id><link href='three'/><summary>c</summary></entry>\n" +
+    "  <updated>2011-01-01T00:00:00Z</updated>\n" +
+    "</feed>";
+  
+  @Test
+  public void testStream() {
+    Parser parser = Abdera.getInstance().getParser();
+    EntryStream stream = parser.stream(new StringReader(FEED));
+    Feed feed = stream.getFeed();
+    assertNotNull(feed);
+    assertEquals("urn:feed", feed.getId().toString());
+    assertEquals("Streaming", feed.getTitle());
+    String[] ids = {"urn:1","urn:2","urn:3"};
+    String[] hrefs = {"one","two","three"};
+    int n = 0;
+    for (Entry entry : stream) {
+      assertEquals(ids[n], entry.getId().toString());
+      assertEquals("http://example.org/" + hrefs[n], entry.getAlternateLink().getResolvedHref().toString());
+      n++;
+    }
+    assertEquals(3, n);
+    assertFalse(stream.hasNext());
+    assertTrue(feed.getEntries().isEmpty());
+    // metadata following the entries is available once the stream is exhausted
+    assertNotNull(feed.getUpdated());
+    stream.close();
+  }
+  
+  @Test
+  public void testStreamWithFilter() {
+    Parser parser = Abdera.getInstance().getParser();
+    ParserOptions options = 
+      parser.makeDefaultParserOptions()
+        .filter(BlackListParseFilter.make().add(Constants.SUMMARY).get())
+        .get();
+    EntryStream stream = parser.stream(new StringReader(FEED), options);
+    int n = 0;
+    while (stream.hasNext()) {
+      Entry entry = stream.next();
+      assertNotNull(entry.getId());
+      assertNull(entry.getSummaryElement());
+      n++;
+    }
+    assertEquals(3, n);
+  }
+  
+  @Test(expected=ParseException.class)
+  public void testStreamNotAFeed() {
+    Parser parser = Abdera.getInstance().getParser();
+    parser.stream(new StringReader("<entry xmlns='http://www.w3.org/2005/Atom'><id>urn:1</id></entry>"));
+  }
+  
+}
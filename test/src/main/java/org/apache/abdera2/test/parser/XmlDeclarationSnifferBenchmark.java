@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.parser;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.common.io.PeekAheadInputStream;
+import org.apache.abdera2.common.xml.XMLStreamSniffingInputStream;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.parser.Parser;
+import org.joda.time.DateTime;
+
+/**
+ * Compares the byte level XML declaration sniffer used to autodetect the 
+ * charset of parsed documents against the previous approach of creating 
+ * a new XMLInputFactory and XMLStreamReader for every document, both for 
+ * the detection alone and for complete parses of small (1-4 KB) entries. 
+ * Not run as part of the unit tests; run the main method directly.
+ */
+public class XmlDeclarationSnifferBenchmark {
+
+  private static final int ROUNDS = 20000;
+
+  public static void main(String... args) throws Exception {
+    Abdera abdera = Abdera.getInstance();
+    Parser parser = abdera.getParser();
+    byte[][] entries = new byte[4][];
+    for (int n = 0; n < entries.length; n++)
+      entries[n] = entry(abdera, (n + 1) * 1024);
+    for (int n = 0; n < 3; n++) {
+      sniff(entries, ROUNDS, false);
+      sniff(entries, ROUNDS, true);
+      parse(parser, entries, ROUNDS / 4, false);
+      parse(parser, entries, ROUNDS / 4, true);
+    }
+    long s = sniff(entries, ROUNDS, false);
+    long ls = sniff(entries, ROUNDS, true);
+    long p = parse(parser, entries, ROUNDS / 4, false);
+    long lp = parse(parser, entries, ROUNDS / 4, true);
+    System.out.println(String.format(
+      "detect: sniffer %6.2f us, XMLStreamReader %6.2f us per document (%.1fx)",
+      s / 1e3 / ROUNDS, ls / 1e3 / ROUNDS, (double)ls / s));
+    System.out.println(String.format(
+      "parse:  sniffer %6.2f us, XMLStreamReader %6.2f us per document (%.1fx)",
+      p / 1e3 / (ROUNDS / 4), lp / 1e3 / (ROUNDS / 4), (double)lp / p));
+  }
+
+  private static byte[] entry(Abdera abdera, int size) throws IOException {
+    Entry entry = abdera.getFactory().newEntry();
+    entry.setId("http://example.org/foo/entry");
+    entry.setUpdated(DateTime.now());
+    entry.setTitle("This is an entry");
+    entry.addAuthor("James");
+    StringBuilder buf = new StringBuilder();
+    while (buf.length() < size - 400)
+      buf.append("This is the content of the entry. ");
+    entry.setContent(buf.toString());
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>".getBytes("UTF-8"));
+    entry.writeTo(out);
+    return out.toByteArray();
+  }
+
+  private static InputStream open(byte[] entry, boolean legacy) {
+    InputStream in = new ByteArrayInputStream(entry);
+    return legacy ? 
+      new LegacySniffingInputStream(in) : 
+      new XMLStreamSniffingInputStream(in);
+  }
+  
+  private static long sniff(byte[][] entries, int rounds, boolean legacy) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      XMLStreamSniffingInputStream in = 
+        (XMLStreamSniffingInputStream) open(entries[n % entries.length], legacy);
+      if (!"UTF-8".equals(in.getEncoding()))
+        throw new IllegalStateException();
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long parse(Parser parser, byte[][] entries, int rounds, boolean legacy) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      parser.parse(open(entries[n % entries.length], legacy)).complete();
+    return System.nanoTime() - start;
+  }
+
+  /**
+   * The charset detection as performed prior to the XmlDeclarationSniffer
+   */
+  private static class LegacySniffingInputStream extends XMLStreamSniffingInputStream {
+    LegacySniffingInputStream(InputStream in) {
+      super(in);
+    }
+    @Override
+    protected String detectEncoding() throws IOException {
+      PeekAheadInputStream pin = getInternal();
+      try {
+        byte[] p = new byte[200];
+        pin.peek(p);
+        XMLStreamReader xmlreader =
+          XMLInputFactory.newInstance().createXMLStreamReader(
+            new ByteArrayInputStream(p));
+        return xmlreader.getCharacterEncodingScheme();
+      } catch (Throwable e) {
+        return null;
+      }
+    }
+  }
+}
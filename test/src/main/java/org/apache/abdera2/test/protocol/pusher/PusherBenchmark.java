@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.protocol.pusher;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.abdera2.common.pusher.Listener;
+import org.apache.abdera2.common.pusher.Pusher;
+import org.apache.abdera2.common.pusher.Receiver;
+import org.apache.abdera2.common.pusher.RingBufferPusher;
+import org.apache.abdera2.common.pusher.SimplePusher;
+
+/**
+ * Measures the time taken to deliver a number of items from a single 
+ * producer to a single listener using the SimplePusher and the
+ * RingBufferPusher, along with the CPU time used by the process while 
+ * each channel sits idle. Not run as part of the unit tests; run the 
+ * main method directly.
+ */
+public class PusherBenchmark {
+
+  private static final int ITEMS = 200000;
+  private static final long IDLE = 1000;
+  
+  public static void main(String... args) throws Exception {
+    // the SimplePusher threads never go idle, so measure the 
+    // RingBufferPusher first
+    for (int n = 0; n < 3; n++) {
+      RingBufferPusher<Integer> pusher = new RingBufferPusher<Integer>();
+      run(pusher);
+      pusher.shutdown();
+    }
+    report("RingBufferPusher", new RingBufferPusher<Integer>());
+    for (int n = 0; n < 3; n++)
+      run(new SimplePusher<Integer>());
+    report("SimplePusher", new SimplePusher<Integer>());
+    System.exit(0);
+  }
+  
+  private static <P extends Pusher<Integer> & Receiver<Integer>>void report(
+    String name, P pusher) throws Exception {
+      long start = System.nanoTime();
+      run(pusher);
+      long time = System.nanoTime() - start;
+      long cpu = idle();
+      System.out.println(String.format(
+        "%-16s %8.0f items/s, %5d ms process cpu per %d ms idle", 
+        name, ITEMS / (time / 1e9), cpu, IDLE));
+  }
+  
+  private static <P extends Pusher<Integer> & Receiver<Integer>>P run(
+    P pusher) throws Exception {
+      final CountDownLatch latch = new CountDownLatch(ITEMS);
+      pusher.startListening(
+        new Listener<Integer>() {
+          public void beforeItems() {}
+          public void onItem(Integer t) {
+            latch.countDown();
+          }
+          public void afterItems() {}
+        });
+      for (int n = 0; n < ITEMS; n++)
+        pusher.push(n);
+      latch.await();
+      return pusher;
+  }
+  
+  private static long idle() throws Exception {
+    java.lang.management.OperatingSystemMXBean os = 
+      java.lang.management.ManagementFactory.getOperatingSystemMXBean();
+    if (!(os instanceof com.sun.management.OperatingSystemMXBean))
+      return -1;
+    com.sun.management.OperatingSystemMXBean sun = 
+      (com.sun.management.OperatingSystemMXBean) os;
+    long start = sun.getProcessCpuTime();
+    Thread.sleep(IDLE);
+    return (sun.getProcessCpuTime() - start) / 1000000;
+  }
+}
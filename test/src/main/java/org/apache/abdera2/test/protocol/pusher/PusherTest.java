@@ -1,13 +1,17 @@
 package org.apache.abdera2.test.protocol.pusher;
 
+import static org.junit.Assert.assertTrue;
+
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.abdera2.common.pusher.ChannelManager;
 import org.apache.abdera2.common.pusher.Listener;
 import org.apache.abdera2.common.pusher.Pusher;
 import org.apache.abdera2.common.pusher.Receiver;
+import org.apache.abdera2.common.pusher.RingBufferPusher;
 import org.apache.abdera2.common.pusher.SimpleChannelManager;
 import org.junit.Test;
 
@@ -42,4 +46,32 @@ public class PusherTest {
     cm.shutdown();
   }
   
+  @Test
+  public void slowListenerTest() throws Exception {
+    final ChannelManager cm = new SimpleChannelManager();
+    final int count = 3 * RingBufferPusher.DEFAULT_CAPACITY;
+    final CountDownLatch latch = new CountDownLatch(count);
+    Receiver<Integer> r = cm.getReceiver("bar");
+    r.startListening(
+      new Listener<Integer>() {
+        public void beforeItems() {}
+        public void onItem(Integer t) {
+          if (t % 256 == 0) {
+            try {
+              Thread.sleep(10);
+            } catch (InterruptedException e) {}
+          }
+          latch.countDown();
+        }
+        public void afterItems() {}
+      }
+    );
+    // the publisher waits for the listener rather than losing items
+    Pusher<Integer> pusher = cm.getPusher("bar");
+    for (int n = 0; n < count; n++)
+      pusher.push(n);
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    cm.shutdown();
+  }
+  
 }
@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.protocol.pusher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.abdera2.common.pusher.BatchListener;
+import org.apache.abdera2.common.pusher.Listener;
+import org.apache.abdera2.common.pusher.RingBufferPusher;
+import org.apache.abdera2.common.pusher.RingBufferPusher.Overflow;
+import org.junit.Test;
+
+public class RingBufferPusherTest {
+
+  private static class CountingListener 
+    implements BatchListener<Integer> {
+    final CountDownLatch latch;
+    final List<Integer> items = new CopyOnWriteArrayList<Integer>();
+    volatile int batches, after;
+    CountingListener(int count) {
+      latch = new CountDownLatch(count);
+    }
+    public void beforeItems() {}
+    public void onItem(Integer t) {
+      fail("onItems should be used for batch listeners");
+    }
+    public void onItems(Iterable<Integer> items) {
+      batches++;
+      for (Integer i : items) {
+        this.items.add(i);
+        latch.countDown();
+      }
+    }
+    public void afterItems() {
+      after++;
+    }
+  }
+  
+  @Test
+  public void testOrderedBatchDelivery() throws Exception {
+    RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(16, Overflow.BLOCK, 8);
+    assertEquals(16, pusher.capacity());
+    CountingListener listener = new CountingListener(1000);
+    pusher.startListening(listener);
+    for (int n = 0; n < 1000; n++)
+      pusher.push(n);
+    assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+    for (int n = 0; n < 1000; n++)
+      assertEquals(n, listener.items.get(n).intValue());
+    assertTrue(listener.batches <= 1000);
+    pusher.shutdown();
+    assertEquals(1, listener.after);
+  }
+  
+  @Test
+  public void testItemsRetainedUntilListening() throws Exception {
+    RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(8);
+    pusher.pushAll(1,2,3);
+    assertEquals(3, pusher.size());
+    final CountDownLatch latch = new CountDownLatch(3);
+    pusher.startListening(
+      new Listener<Integer>() {
+        public void beforeItems() {}
+        public void onItem(Integer t) {
+          latch.countDown();
+        }
+        public void afterItems() {}
+      });
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+    pusher.shutdown();
+  }
+  
+  /**
+   * A listener that holds the dispatcher in onItem until released
+   */
+  private static class BlockingListener 
+    implements Listener<Integer> {
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    public void beforeItems() {}
+    public void onItem(Integer t) {
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {}
+    }
+    public void afterItems() {}
+  }
+  
+  @Test
+  public void testOldestDiscardedWithoutListeners() throws Exception {
+    RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(4, Overflow.BLOCK);
+    // must not block with nobody listening
+    for (int n = 0; n < 10; n++)
+      pusher.push(n);
+    assertEquals(4, pusher.size());
+    assertEquals(6, pusher.getDroppedCount());
+    CountingListener listener = new CountingListener(4);
+    pusher.startListening(listener);
+    assertTrue(listener.latch.await(10, TimeUnit.SECONDS));
+    for (int n = 0; n < 4; n++)
+      assertEquals(n + 6, listener.items.get(n).intValue());
+    pusher.shutdown();
+  }
+  
+  @Test
+  public void testDropAndFail() throws Exception {
+    BlockingListener listener = new BlockingListener();
+    RingBufferPusher<Integer> drop = 
+      new RingBufferPusher<Integer>(4, Overflow.DROP);
+    drop.startListening(listener);
+    drop.push(0);
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    for (int n = 1; n < 11; n++)
+      drop.push(n);
+    assertEquals(4, drop.size());
+    assertEquals(6, drop.getDroppedCount());
+    listener.release.countDown();
+    drop.shutdown();
+    
+    listener = new BlockingListener();
+    RingBufferPusher<Integer> failing = 
+      new RingBufferPusher<Integer>(4, Overflow.FAIL);
+    failing.startListening(listener);
+    failing.push(0);
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    failing.pushAll(1,2,3,4);
+    try {
+      failing.push(5);
+      fail("expected the push to fail");
+    } catch (IllegalStateException e) {}
+    listener.release.countDown();
+    failing.shutdown();
+    try {
+      failing.push(6);
+      fail("expected the push to fail");
+    } catch (IllegalStateException e) {}
+  }
+  
+  @Test
+  public void testBlockedPushInterrupted() throws Exception {
+    BlockingListener listener = new BlockingListener();
+    final RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(2, Overflow.BLOCK, 1);
+    pusher.startListening(listener);
+    pusher.push(0);
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    final CountDownLatch failed = new CountDownLatch(1);
+    Thread producer = new Thread() {
+      public void run() {
+        try {
+          for (int n = 1; n < 10; n++)
+            pusher.push(n);
+        } catch (IllegalStateException e) {
+          if (isInterrupted())
+            failed.countDown();
+        }
+      }
+    };
+    producer.start();
+    producer.join(500);
+    assertTrue(producer.isAlive());
+    producer.interrupt();
+    assertTrue(failed.await(10, TimeUnit.SECONDS));
+    listener.release.countDown();
+    pusher.shutdown();
+  }
+  
+  @Test
+  public void testBlockedPushWhenListenerStops() throws Exception {
+    BlockingListener listener = new BlockingListener();
+    final RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(2, Overflow.BLOCK, 1);
+    pusher.startListening(listener);
+    pusher.push(0);
+    assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+    Thread producer = new Thread() {
+      public void run() {
+        for (int n = 1; n < 10; n++)
+          pusher.push(n);
+      }
+    };
+    producer.start();
+    producer.join(500);
+    assertTrue(producer.isAlive());
+    pusher.stopListening(listener);
+    producer.join(10000);
+    assertTrue(!producer.isAlive());
+    listener.release.countDown();
+    pusher.shutdown();
+  }
+  
+  @Test
+  public void testShutdownWaitsForDelivery() throws Exception {
+    final BlockingListener blocking = new BlockingListener();
+    final List<String> events = new CopyOnWriteArrayList<String>();
+    RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(4);
+    pusher.startListening(
+      new Listener<Integer>() {
+        public void beforeItems() {}
+        public void onItem(Integer t) {
+          blocking.onItem(t);
+          events.add("item");
+        }
+        public void afterItems() {
+          events.add("after");
+        }
+      });
+    pusher.push(0);
+    assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+    new Thread() {
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {}
+        blocking.release.countDown();
+      }
+    }.start();
+    pusher.shutdown();
+    assertEquals(2, events.size());
+    assertEquals("item", events.get(0));
+    assertEquals("after", events.get(1));
+  }
+  
+  @Test
+  public void testBlockingBackpressure() throws Exception {
+    final RingBufferPusher<Integer> pusher = 
+      new RingBufferPusher<Integer>(2, Overflow.BLOCK, 1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final CountDownLatch received = new CountDownLatch(6);
+    pusher.startListening(
+      new Listener<Integer>() {
+        public void beforeItems() {}
+        public void onItem(Integer t) {
+          try {
+            release.await();
+          } catch (InterruptedException e) {}
+          received.countDown();
+        }
+        public void afterItems() {}
+      });
+    Thread producer = new Thread() {
+      public void run() {
+        for (int n = 0; n < 6; n++)
+          pusher.push(n);
+      }
+    };
+    producer.start();
+    producer.join(500);
+    // one item held by the listener, two in the buffer
+    assertTrue(producer.isAlive());
+    release.countDown();
+    producer.join(10000);
+    assertTrue(received.await(10, TimeUnit.SECONDS));
+    pusher.shutdown();
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.abdera2.Abdera;
 import org.apache.abdera2.factory.Factory;
 import org.apache.abdera2.model.Document;
 import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
 import org.apache.abdera2.security.Security;
 import org.apache.abdera2.security.Signature;
 import org.apache.abdera2.security.SignatureOptions;
@@ -111,4 +112,44 @@ public class DigitalSignatureTest {
 
     }
 
+    @Test
+    public void testSignNestedEntry() throws Exception {
+        KeyStore ks = KeyStore.getInstance(keystoreType);
+        InputStream in = DigitalSignatureTest.class.getResourceAsStream(keystoreFile);
+        ks.load(in, keystorePass.toCharArray());
+        PrivateKey signingKey = (PrivateKey)ks.getKey(privateKeyAlias, privateKeyPass.toCharArray());
+        X509Certificate cert = (X509Certificate)ks.getCertificate(certificateAlias);
+
+        Abdera abdera = Abdera.getInstance();
+        Security absec = new Security(abdera);
+
+        // the extension namespace is declared on the feed, not on the entry being signed
+        QName ext = new QName("urn:example", "ext", "x");
+        Feed feed = abdera.getFactory().newFeed();
+        feed.declareNS(ext.getNamespaceURI(), ext.getPrefix());
+        feed.setBaseUri("http://example.org/");
+        Entry entry = feed.addEntry();
+        entry.setId("http://example.org/foo/entry");
+        entry.setUpdated(DateTime.now());
+        entry.setTitle("This is an entry");
+        entry.addSimpleExtension(ext, "value");
+
+        Signature sig = absec.getSignature();
+        SignatureOptions options = 
+          sig.getDefaultSignatureOptions()
+            .certificate(cert)
+            .signingKey(signingKey)
+            .get();
+
+        entry = sig.sign(entry, options);
+        assertEquals("value", entry.getSimpleExtension(ext));
+        assertEquals("http://example.org/", entry.getResolvedBaseUri().toString());
+        assertTrue(sig.verify(entry, options));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entry.writeTo(out);
+        Document<Entry> entry_doc = abdera.getParser().parse(new ByteArrayInputStream(out.toByteArray()));
+        assertTrue(sig.verify(entry_doc.getRoot(), options));
+    }
+
 }
@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.security;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Element;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.security.SecurityOptions;
+import org.apache.abdera2.security.util.SecurityBase;
+import org.apache.abdera2.security.xmlsec.XmlSignature;
+import org.joda.time.DateTime;
+
+/**
+ * Compares the direct FOM/DOM bridge used by the XML Signature and 
+ * Encryption implementations against the previous approach of serializing 
+ * each tree and reparsing it with newly created DocumentBuilder and 
+ * Transformer instances. Not run as part of the unit tests; run the main 
+ * method directly.
+ */
+public class SecurityBridgeBenchmark extends SecurityBase {
+
+  private static final int ROUNDS = 5000;
+
+  private final SecurityOptions options;
+
+  private SecurityBridgeBenchmark(Abdera abdera) {
+    super(abdera);
+    this.options = new XmlSignature(abdera).getDefaultSignatureOptions().get();
+  }
+
+  public static void main(String... args) throws Exception {
+    Abdera abdera = Abdera.getInstance();
+    SecurityBridgeBenchmark bench = new SecurityBridgeBenchmark(abdera);
+    Entry entry = abdera.getFactory().newEntry();
+    entry.setId("http://example.org/foo/entry");
+    entry.setUpdated(DateTime.now());
+    entry.setTitle("This is an entry");
+    entry.setContentAsXhtml("This <b>is</b> <i>markup</i>");
+    entry.addAuthor("James");
+    for (int n = 0; n < 20; n++)
+      entry.addLink("http://www.example.org/" + n);
+    entry.addCategory("urn:example", "term", "label");
+    if (!bench.direct(entry).toString().equals(bench.legacy(entry).toString()))
+      throw new IllegalStateException();
+    for (int n = 0; n < 3; n++) {
+      bench.direct(entry, ROUNDS);
+      bench.legacy(entry, ROUNDS);
+    }
+    long d = bench.direct(entry, ROUNDS);
+    long l = bench.legacy(entry, ROUNDS);
+    System.out.println(String.format(
+      "direct %7.0f round trips/s, serialize and reparse %7.0f round trips/s (%.1fx)",
+      ROUNDS / (d / 1e9), ROUNDS / (l / 1e9), (double)l / d));
+  }
+
+  private long direct(Entry entry, int rounds) {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      direct(entry).toString();
+    return System.nanoTime() - start;
+  }
+
+  private long legacy(Entry entry, int rounds) throws Exception {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++)
+      legacy(entry).toString();
+    return System.nanoTime() - start;
+  }
+
+  private Element direct(Element element) {
+    return domToFom(fomToDom(element, options), options);
+  }
+
+  /**
+   * The FOM to DOM to FOM round trip as performed prior to the direct bridge
+   */
+  private Element legacy(Element element) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    element.writeTo(out);
+    DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+    dbf.setValidating(false);
+    dbf.setNamespaceAware(true);
+    org.w3c.dom.Element dom = 
+      dbf.newDocumentBuilder().parse(new ByteArrayInputStream(out.toByteArray())).getDocumentElement();
+    out = new ByteArrayOutputStream();
+    TransformerFactory.newInstance().newTransformer().transform(new DOMSource(dom), new StreamResult(out));
+    return options.getParser().parse(new ByteArrayInputStream(out.toByteArray())).getRoot();
+  }
+}
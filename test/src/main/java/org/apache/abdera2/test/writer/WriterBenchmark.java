@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  The ASF licenses this file to You
+ * under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.  For additional information regarding
+ * copyright in this work, please see the NOTICE file in the top level
+ * directory of this distribution.
+ */
+package org.apache.abdera2.test.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.Feed;
+import org.joda.time.DateTime;
+
+/**
+ * Compares writing a feed to an OutputStream as UTF-8 using the direct 
+ * serializer against the previous approach of writing through an 
+ * OutputStreamWriter and Axiom's StAX based serializer. Not run as part 
+ * of the unit tests; run the main method directly.
+ */
+public class WriterBenchmark {
+
+  private static final int ROUNDS = 2000;
+
+  public static void main(String... args) throws Exception {
+    Abdera abdera = Abdera.getInstance();
+    Feed feed = abdera.newFeed();
+    feed.setId("http://example.org/feed");
+    feed.setTitle("A feed");
+    feed.setUpdated(DateTime.now());
+    feed.addLink("http://example.org/feed", "self");
+    for (int n = 0; n < 50; n++) {
+      Entry entry = feed.addEntry();
+      entry.setId("http://example.org/entry/" + n);
+      entry.setTitle("Entry number " + n + " & more");
+      entry.setUpdated(DateTime.now());
+      entry.addAuthor("James");
+      entry.addLink("http://example.org/entry/" + n + "?a=1&b=2", "alternate");
+      entry.addCategory("urn:example", "term" + n, "Label");
+      entry.setSummary("A <summary> of the entry, caf\u00e9 \u4e2d\u6587");
+      entry.setContentAsXhtml("<p>This is <b>the</b> content of entry " + n + "</p>");
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int n = 0; n < 3; n++) {
+      direct(feed, out, ROUNDS);
+      legacy(feed, out, ROUNDS);
+    }
+    long d = direct(feed, out, ROUNDS);
+    long l = legacy(feed, out, ROUNDS);
+    System.out.println(String.format(
+      "%d byte feed: direct %6.1f us, OutputStreamWriter and StAX %6.1f us per feed (%.1fx)",
+      out.size(), d / 1e3 / ROUNDS, l / 1e3 / ROUNDS, (double)l / d));
+  }
+
+  private static long direct(Feed feed, ByteArrayOutputStream out, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      out.reset();
+      feed.getDocument().writeTo(out);
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static long legacy(Feed feed, ByteArrayOutputStream out, int rounds) throws IOException {
+    long start = System.nanoTime();
+    for (int n = 0; n < rounds; n++) {
+      out.reset();
+      OutputStreamWriter w = new OutputStreamWriter(out, "UTF-8");
+      feed.getDocument().writeTo(w);
+      w.flush();
+    }
+    return System.nanoTime() - start;
+  }
+}
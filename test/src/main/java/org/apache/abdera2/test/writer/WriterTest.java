@@ -6,10 +6,17 @@ import static org.junit.Assert.assertNotNull;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+
+import javax.xml.namespace.QName;
 
 import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.Document;
+import org.apache.abdera2.model.Element;
 import org.apache.abdera2.model.Entry;
+import org.apache.abdera2.model.ExtensibleElement;
 import org.apache.abdera2.model.Person;
 import org.apache.abdera2.writer.StreamWriter;
 import org.apache.abdera2.writer.Writer;
@@ -49,4 +56,61 @@ public class WriterTest {
     Person person = entry.getAuthor();
     assertEquals("James",person.getName());
   }
+  
+  /**
+   * Writing to an OutputStream as UTF-8 bypasses the StAX writer, the 
+   * output must be the same as that written through a java.io.Writer
+   */
+  private static void assertSameOutput(Base base) throws IOException {
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    OutputStreamWriter w = new OutputStreamWriter(expected, "UTF-8");
+    base.writeTo(w);
+    w.flush();
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    base.writeTo(actual);
+    assertEquals(expected.toString("UTF-8"), actual.toString("UTF-8"));
+  }
+  
+  @Test
+  public void testUtf8Output() throws IOException {
+    Abdera abdera = Abdera.getInstance();
+    Entry entry = abdera.newEntry();
+    entry.setId("urn:x");
+    entry.setTitle("a < b & c > d \" ' \r\n\t ]]> \u00e9\u4e2d\uD83D\uDE00");
+    entry.addLink("http://example.org/?a=1&b=2", "alternate")
+      .setAttributeValue("title", "q\"x'<&>\r\n\t");
+    entry.addExtension(new QName("urn:ext", "foo", "x"))
+      .setAttributeValue(new QName("urn:ext2", "bar", "y"), "v");
+    ((ExtensibleElement)entry.addExtension(new QName("urn:ext", "empty")))
+      .addSimpleExtension(new QName("", "none"), "v");
+    entry.setAttributeValue(new QName("urn:attr", "a", ""), "v");
+    entry.setContentAsXhtml("<p>hello <b>there</b></p>");
+    entry.addComment("a comment");
+    entry.getDocument().addProcessingInstruction("pi", "x");
+    entry.setLanguage("en");
+    assertSameOutput(entry.getDocument());
+    assertSameOutput(entry);
+    assertSameOutput(entry.getLinks().get(0));
+    Document<Element> doc = abdera.getParser().parse(new StringReader(
+      "<?xml version='1.0'?><!DOCTYPE a><a xmlns='urn:a' xmlns:b='urn:b'>" +
+      "<b:c xmlns:b='urn:b' xmlns:d='urn:d'/><x xmlns=''/>&lt;<![CDATA[cd]]>" +
+      "]]&gt;<?p?></a>"));
+    assertSameOutput(doc);
+    assertSameOutput(doc.getRoot().getFirstChild());
+  }
+  
+  @Test
+  public void testLongUtf8Output() throws IOException {
+    // long strings are encoded in pieces, a "]]>" or a surrogate pair
+    // may straddle two of them
+    StringBuilder buf = new StringBuilder();
+    for (int n = 0; n < 5000; n++)
+      buf.append(n % 1000 == 0 ? "]]>" : n % 700 == 0 ? "\uD83D\uDE00" : "x\u00e9");
+    for (int s = 0; s < 4; s++) {
+      Entry entry = Abdera.getInstance().newEntry();
+      entry.setTitle(buf.substring(s));
+      entry.setAttributeValue("x", buf.substring(s));
+      assertSameOutput(entry);
+    }
+  }
 }
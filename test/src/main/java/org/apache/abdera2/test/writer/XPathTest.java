@@ -1,12 +1,29 @@
 package org.apache.abdera2.test.writer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.xml.namespace.QName;
 
 import org.apache.abdera2.Abdera;
+import org.apache.abdera2.model.Base;
 import org.apache.abdera2.model.Entry;
 import org.apache.abdera2.model.Person;
+import org.apache.abdera2.model.selector.XPathSelector;
+import org.apache.abdera2.parser.axiom.FOMXPath;
+import org.apache.abdera2.xpath.AbstractXPath;
+import org.apache.abdera2.xpath.CompiledXPath;
+import org.apache.abdera2.xpath.CompilingXPath;
 import org.apache.abdera2.xpath.XPath;
 import org.junit.Test;
 
@@ -24,4 +41,88 @@ public class XPathTest {
     assertEquals("James",person.getName());
   }
   
+  @Test
+  public void compiledXPathTest() throws Exception {
+    Abdera abdera = Abdera.getInstance();
+    final Entry entry = abdera.newEntry();
+    entry.setTitle("Foo");
+    entry.addAuthor("James");
+    CompilingXPath xpath = (CompilingXPath) abdera.getXPath();
+    final CompiledXPath compiled = xpath.compile("count(/a:entry/a:author)");
+    assertEquals(1, compiled.numericValueOf(entry).intValue());
+    FOMXPath fom = (FOMXPath) xpath;
+    Map<QName,Object> vars = new HashMap<QName,Object>();
+    vars.put(new QName("title"), "Foo");
+    CompiledXPath match = fom.compile("/a:entry/a:title = $title", xpath.getDefaultNamespaces(), null, vars);
+    vars.put(new QName("title"), "Bar");
+    CompiledXPath other = fom.compile("/a:entry/a:title = $title", xpath.getDefaultNamespaces(), null, vars);
+    assertTrue(match.booleanValueOf(entry));
+    assertFalse(other.booleanValueOf(entry));
+    Map<String,String> ns = new HashMap<String,String>();
+    ns.put("atom", "http://www.w3.org/2005/Atom");
+    CompiledXPath title = xpath.compile("/atom:entry/atom:title", ns);
+    ns.put("atom", "urn:other");
+    assertEquals("Foo", title.valueOf(entry));
+    assertFalse(title == xpath.compile("/atom:entry/atom:title", ns));
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int n = 0; n < 16; n++)
+        results.add(exec.submit(new Callable<Boolean>() {
+          public Boolean call() {
+            for (int i = 0; i < 100; i++)
+              if (compiled.numericValueOf(entry).intValue() != 1)
+                return false;
+            return true;
+          }
+        }));
+      for (Future<Boolean> result : results)
+        assertTrue(result.get());
+    } finally {
+      exec.shutdown();
+    }
+    assertTrue(
+      XPathSelector.make(xpath)
+        .path("/a:entry/a:title = 'Foo'")
+        .with(xpath.getDefaultNamespaces())
+        .get()
+        .apply(entry));
+  }
+  
+  @Test
+  public void plainXPathSelectorTest() {
+    Abdera abdera = Abdera.getInstance();
+    Entry entry = abdera.newEntry();
+    entry.setTitle("Foo");
+    // implementations that cannot compile expressions still work
+    final XPath fom = abdera.getXPath();
+    XPath xpath = new AbstractXPath() {
+      public List<?> selectNodes(String path, Base base, Map<String, String> namespaces) {
+        return fom.selectNodes(path, base, namespaces);
+      }
+      public Object selectSingleNode(String path, Base base, Map<String, String> namespaces) {
+        return fom.selectSingleNode(path, base, namespaces);
+      }
+      public Object evaluate(String path, Base base, Map<String, String> namespaces) {
+        return fom.evaluate(path, base, namespaces);
+      }
+      public String valueOf(String path, Base base, Map<String, String> namespaces) {
+        return fom.valueOf(path, base, namespaces);
+      }
+      public boolean booleanValueOf(String path, Base base, Map<String, String> namespaces) {
+        return fom.booleanValueOf(path, base, namespaces);
+      }
+      public Number numericValueOf(String path, Base base, Map<String, String> namespaces) {
+        return fom.numericValueOf(path, base, namespaces);
+      }
+    };
+    assertFalse(xpath instanceof CompilingXPath);
+    assertTrue(
+      XPathSelector.make(xpath)
+        .path("/a:entry/a:title = 'Foo'")
+        .with(xpath.getDefaultNamespaces())
+        .get()
+        .apply(entry));
+  }
+  
 }